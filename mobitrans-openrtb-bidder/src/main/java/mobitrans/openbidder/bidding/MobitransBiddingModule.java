@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.bidding;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+
+import mobitrans.openbidder.cache.BiddingSnapshotStore;
+import mobitrans.openbidder.dataAccessLayer.DataAccess;
+import mobitrans.openbidder.workers.SnapshotWorker;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+/**
+ * Binds the bidding data used by {@link RandomBidInterceptor}: the snapshot store, and the
+ * service that refreshes it.
+ */
+@Parameters(separators = "=")
+public class MobitransBiddingModule extends AbstractModule {
+  @Parameter(names = "--mobitrans_refresh_seconds",
+      description = "Period for reloading rules, creatives and configs")
+  private int refreshSeconds = 60;
+
+  @Parameter(names = "--mobitrans_data_url",
+      description = "Base URL of the data API serving rules, creatives and configs")
+  private String dataUrl = DataAccess.DEFAULT_BASE_URL;
+
+  @Parameter(names = "--mobitrans_data_timeout_ms",
+      description = "Connect and read timeout for the data API")
+  private int dataTimeoutMs = DataAccess.DEFAULT_TIMEOUT_MS;
+
+  @Override protected void configure() {
+    checkArgument(refreshSeconds > 0, "--mobitrans_refresh_seconds must be greater than 0");
+    checkArgument(dataTimeoutMs > 0, "--mobitrans_data_timeout_ms must be greater than 0");
+    bind(BiddingSnapshotStore.class);
+    Multibinder.newSetBinder(binder(), Service.class).addBinding().to(SnapshotWorker.class);
+  }
+
+  @Provides @Singleton
+  public SnapshotWorker provideSnapshotWorker(BiddingSnapshotStore store) {
+    return new SnapshotWorker(new DataAccess(dataUrl, dataTimeoutMs), store,
+        Scheduler.newFixedDelaySchedule(refreshSeconds, refreshSeconds, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+import mobitrans.openbidder.data.bidding.Config;
+import mobitrans.openbidder.data.bidding.Creative;
+import mobitrans.openbidder.data.bidding.Rule;
+
+/**
+ * Immutable set of the rules, creatives and configs used for bidding, as loaded together
+ * from the data API, and the {@link RuleIndex} built from them. A new snapshot is created
+ * for each refresh, with a higher version; bid requests should read
+ * {@link BiddingSnapshotStore#current()} once, and use that snapshot for the whole request.
+ */
+public final class BiddingSnapshot {
+  public static final BiddingSnapshot EMPTY = new BiddingSnapshot(0,
+      ImmutableList.<Rule>of(), ImmutableList.<Creative>of(), ImmutableList.<Config>of());
+
+  private final long version;
+  private final ImmutableList<Rule> rules;
+  private final ImmutableList<Creative> creatives;
+  private final ImmutableList<Config> configs;
+  private final RuleIndex ruleIndex;
+
+  public BiddingSnapshot(long version, ImmutableList<Rule> rules,
+      ImmutableList<Creative> creatives, ImmutableList<Config> configs) {
+    this.version = version;
+    this.rules = checkNotNull(rules);
+    this.creatives = checkNotNull(creatives);
+    this.configs = checkNotNull(configs);
+    this.ruleIndex = rules.isEmpty() ? RuleIndex.EMPTY : RuleIndex.build(rules, creatives);
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public ImmutableList<Rule> getRules() {
+    return rules;
+  }
+
+  public ImmutableList<Creative> getCreatives() {
+    return creatives;
+  }
+
+  public ImmutableList<Config> getConfigs() {
+    return configs;
+  }
+
+  /**
+   * Returns the index of the rules, with their creatives.
+   */
+  public RuleIndex getRuleIndex() {
+    return ruleIndex;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("version", version)
+        .add("rules", rules.size())
+        .add("creatives", creatives.size())
+        .add("configs", configs.size())
+        .toString();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.cache;
+
+import com.google.common.collect.ImmutableList;
+
+import mobitrans.openbidder.data.bidding.Config;
+import mobitrans.openbidder.data.bidding.Creative;
+import mobitrans.openbidder.data.bidding.Rule;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Singleton;
+
+/**
+ * Holds the current {@link BiddingSnapshot}. Readers never lock nor copy: they get the
+ * current snapshot, which is never modified; refreshes publish a whole new snapshot.
+ */
+@Singleton
+public class BiddingSnapshotStore {
+  private final AtomicReference<BiddingSnapshot> current =
+      new AtomicReference<>(BiddingSnapshot.EMPTY);
+
+  public BiddingSnapshot current() {
+    return current.get();
+  }
+
+  /**
+   * Publishes a new snapshot, with the next version.
+   *
+   * @return the published snapshot
+   */
+  public BiddingSnapshot publish(
+      Iterable<Rule> rules, Iterable<Creative> creatives, Iterable<Config> configs) {
+    ImmutableList<Rule> newRules = ImmutableList.copyOf(rules);
+    ImmutableList<Creative> newCreatives = ImmutableList.copyOf(creatives);
+    ImmutableList<Config> newConfigs = ImmutableList.copyOf(configs);
+    BiddingSnapshot prev;
+    BiddingSnapshot next;
+    do {
+      prev = current.get();
+      next = new BiddingSnapshot(prev.getVersion() + 1, newRules, newCreatives, newConfigs);
+    } while (!current.compareAndSet(prev, next));
+    return next;
+  }
+}
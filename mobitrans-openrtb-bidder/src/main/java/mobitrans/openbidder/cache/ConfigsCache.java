@@ -1,20 +0,0 @@
-/*
- * To change this license header, choose License Headers in Project Properties.
- * To change this template file, choose Tools | Templates
- * and open the template in the editor.
- */
-
-package mobitrans.openbidder.cache;
-
-import mobitrans.openbidder.data.bidding.Config;
-import mobitrans.openbidder.data.bidding.Creative;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- *
- * @author tkhalilov
- */
-public class ConfigsCache {
-        public static List<Config> Cache = new ArrayList<Config>();
-}
@@ -1,18 +0,0 @@
-/*
- * To change this license header, choose License Headers in Project Properties.
- * To change this template file, choose Tools | Templates
- * and open the template in the editor.
- */
-
-package mobitrans.openbidder.cache;
-
-import mobitrans.openbidder.data.bidding.Creative;
-import java.util.*;
-
-/**
- *
- * @author tkhalilov
- */
-public class CreativesCache {
-    public static List<Creative> Cache = new ArrayList<Creative>();
-}
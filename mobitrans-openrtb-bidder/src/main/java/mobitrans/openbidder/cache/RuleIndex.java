@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.cache;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Ordering;
+
+import mobitrans.openbidder.data.bidding.Creative;
+import mobitrans.openbidder.data.bidding.Rule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Index of the bidding rules, built once per {@link BiddingSnapshot}, to find the best rule
+ * for an impression without scanning all rules. Rules are indexed by banner size, then
+ * country, then operating system; each leaf keeps its rules sorted by descending price.
+ * Rules without a country or operating system match any value, so a lookup checks at most
+ * four leaves, and only the first rule in each. Rules for unknown creatives are dropped.
+ */
+public final class RuleIndex {
+  private static final String ANY = "";
+  private static final Ordering<Rule> BY_PRICE = new Ordering<Rule>() {
+    @Override public int compare(Rule left, Rule right) {
+      assert left != null && right != null;
+      int cmp = Float.compare(right.Price, left.Price);
+      return cmp == 0 ? Integer.compare(left.ID, right.ID) : cmp;
+    }};
+  public static final RuleIndex EMPTY =
+      build(ImmutableList.<Rule>of(), ImmutableList.<Creative>of());
+
+  private final ImmutableMap<Long, ImmutableMap<String, ImmutableMap<String, ImmutableList<Rule>>>>
+      rules;
+  private final ImmutableMap<Integer, Creative> creatives;
+
+  private RuleIndex(
+      ImmutableMap<Long, ImmutableMap<String, ImmutableMap<String, ImmutableList<Rule>>>> rules,
+      ImmutableMap<Integer, Creative> creatives) {
+    this.rules = rules;
+    this.creatives = creatives;
+  }
+
+  public static RuleIndex build(List<Rule> rules, List<Creative> creatives) {
+    Map<Integer, Creative> creativeMap = new HashMap<>();
+    for (Creative creative : creatives) {
+      creativeMap.put(creative.ID, creative);
+    }
+
+    Map<Long, Map<String, Map<String, List<Rule>>>> index = new HashMap<>();
+    for (Rule rule : rules) {
+      if (!creativeMap.containsKey(rule.CreativeID)) {
+        continue;
+      }
+      Map<String, Map<String, List<Rule>>> byCountry = index.get(sizeKey(rule));
+      if (byCountry == null) {
+        index.put(sizeKey(rule), byCountry = new HashMap<>());
+      }
+      Map<String, List<Rule>> byOs = byCountry.get(key(rule.Country));
+      if (byOs == null) {
+        byCountry.put(key(rule.Country), byOs = new HashMap<>());
+      }
+      List<Rule> leaf = byOs.get(key(rule.OperatingSystem));
+      if (leaf == null) {
+        byOs.put(key(rule.OperatingSystem), leaf = new ArrayList<>());
+      }
+      leaf.add(rule);
+    }
+
+    ImmutableMap.Builder<Long, ImmutableMap<String, ImmutableMap<String, ImmutableList<Rule>>>>
+        sizes = ImmutableMap.builder();
+    for (Map.Entry<Long, Map<String, Map<String, List<Rule>>>> size : index.entrySet()) {
+      ImmutableMap.Builder<String, ImmutableMap<String, ImmutableList<Rule>>> countries =
+          ImmutableMap.builder();
+      for (Map.Entry<String, Map<String, List<Rule>>> country : size.getValue().entrySet()) {
+        ImmutableMap.Builder<String, ImmutableList<Rule>> oss = ImmutableMap.builder();
+        for (Map.Entry<String, List<Rule>> os : country.getValue().entrySet()) {
+          oss.put(os.getKey(), BY_PRICE.immutableSortedCopy(os.getValue()));
+        }
+        countries.put(country.getKey(), oss.build());
+      }
+      sizes.put(size.getKey(), countries.build());
+    }
+
+    return new RuleIndex(sizes.build(), ImmutableMap.copyOf(creativeMap));
+  }
+
+  /**
+   * Finds the highest-priced rule that matches an impression.
+   *
+   * @param country Country of the user, {@code null} if unknown
+   * @param os Operating system of the device, {@code null} if unknown
+   * @param bidFloor Minimum price; rules below that price don't match
+   * @return Best matching rule, or {@code null} if none
+   */
+  public @Nullable Rule match(
+      int width, int height, @Nullable String country, @Nullable String os, double bidFloor) {
+    ImmutableMap<String, ImmutableMap<String, ImmutableList<Rule>>> byCountry =
+        rules.get(sizeKey(width, height));
+    if (byCountry == null) {
+      return null;
+    }
+
+    String countryKey = key(country);
+    String osKey = key(os);
+    Rule best = best(null, byCountry.get(countryKey), osKey);
+    if (!countryKey.equals(ANY)) {
+      best = best(best, byCountry.get(ANY), osKey);
+    }
+    return best == null || best.Price < bidFloor ? null : best;
+  }
+
+  public @Nullable Creative creative(int creativeId) {
+    return creatives.get(creativeId);
+  }
+
+  public int size() {
+    int size = 0;
+    for (ImmutableMap<String, ImmutableMap<String, ImmutableList<Rule>>> byCountry
+        : rules.values()) {
+      for (ImmutableMap<String, ImmutableList<Rule>> byOs : byCountry.values()) {
+        for (ImmutableList<Rule> leaf : byOs.values()) {
+          size += leaf.size();
+        }
+      }
+    }
+    return size;
+  }
+
+  private static @Nullable Rule best(@Nullable Rule best,
+      @Nullable ImmutableMap<String, ImmutableList<Rule>> byOs, String osKey) {
+    if (byOs != null) {
+      best = better(best, byOs.get(osKey));
+      if (!osKey.equals(ANY)) {
+        best = better(best, byOs.get(ANY));
+      }
+    }
+    return best;
+  }
+
+  private static @Nullable Rule better(@Nullable Rule best, @Nullable ImmutableList<Rule> leaf) {
+    return leaf == null || best != null && BY_PRICE.compare(best, leaf.get(0)) <= 0
+        ? best
+        : leaf.get(0);
+  }
+
+  private static long sizeKey(Rule rule) {
+    return sizeKey(rule.BannerWidth, rule.BannerHeight);
+  }
+
+  private static long sizeKey(int width, int height) {
+    return ((long) width << 32) | (height & 0xFFFFFFFFL);
+  }
+
+  private static String key(@Nullable String value) {
+    String trimmed = value == null ? ANY : value.trim();
+    return "*".equals(trimmed) ? ANY : Ascii.toLowerCase(trimmed);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("rules", size())
+        .add("creatives", creatives.size())
+        .toString();
+  }
+}
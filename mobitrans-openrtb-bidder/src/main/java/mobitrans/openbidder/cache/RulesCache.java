@@ -1,18 +0,0 @@
-/*
- * To change this license header, choose License Headers in Project Properties.
- * To change this template file, choose Tools | Templates
- * and open the template in the editor.
- */
-
-package mobitrans.openbidder.cache;
-
-import mobitrans.openbidder.data.bidding.Rule;
-import java.util.*;
-
-/**
- *
- * @author tkhalilov
- */
-public class RulesCache {
-        public static List<Rule> Cache = new ArrayList<Rule>();
-}
\ No newline at end of file
@@ -1,147 +1,223 @@
 /*
- * To change this license header, choose License Headers in Project Properties.
- * To change this template file, choose Tools | Templates
- * and open the template in the editor.
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
  */
+
 package mobitrans.openbidder.dataAccessLayer;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import mobitrans.openbidder.data.bidding.*;
-import java.io.BufferedReader;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import mobitrans.openbidder.data.bidding.Config;
+import mobitrans.openbidder.data.bidding.Creative;
+import mobitrans.openbidder.data.bidding.Rule;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 /**
- *
- * @author tkhalilov
+ * Client for the rules, creatives and configs served by the mobitrans data API.
+ * <p>
+ * Each feed remembers the {@code ETag} and {@code Last-Modified} validators of its last good
+ * response and sends them back, so an unchanged feed costs a {@code 304} and no parsing.
+ * Feeds served without validators are downloaded every time, but only reported as changed
+ * when the hash of their body differs from the last good one.
+ * Bodies are streamed straight into objects by a {@link TypeAdapter} shared across fetches.
+ * Response streams are always drained and closed, never disconnected, so the JDK keeps the
+ * connection alive for the next fetch. A failed fetch throws and leaves the last good data
+ * in place.
  */
 public class DataAccess {
-
-    //private final String BaseUrl = "http://imp.mli.me/";
-    private final String BaseUrl = "http://mobitrans.openrtb.com:8080/";
-
-    public List<Creative> GetCreatives() {
-        String RequestUrl = "api/data/creatives";
-        List<Creative> ReturnValue = new ArrayList<Creative>();
-
-        try {
-            URL Url = new URL(BaseUrl + RequestUrl);
-            HttpURLConnection con = (HttpURLConnection) Url.openConnection();
-
-            // optional default is GET
-            con.setRequestMethod("GET");
-
-            int ResponseCode = con.getResponseCode();
-
-            if (ResponseCode != -1) {
-                BufferedReader In = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                StringBuffer response = new StringBuffer();
-                String InputLine;
-
-                while ((InputLine = In.readLine()) != null) {
-                    response.append(InputLine);
-                }
-
-                In.close();
-
-                Gson gson = new GsonBuilder().create();
-                Creative[] Creatives = gson.fromJson(response.toString(), Creative[].class);
-
-                for (Creative C : Creatives) {
-                    ReturnValue.add(C);
-                }
-            }
-
-        } catch (Exception EObj) {
-
-        }
-
-        return ReturnValue;
+  public static final String DEFAULT_BASE_URL = "http://mobitrans.openrtb.com:8080/";
+  public static final int DEFAULT_TIMEOUT_MS = 10000;
+
+  private final Feed<Rule> rules;
+  private final Feed<Creative> creatives;
+  private final Feed<Config> configs;
+  private boolean changed;
+
+  public DataAccess() {
+    this(DEFAULT_BASE_URL, DEFAULT_TIMEOUT_MS);
+  }
+
+  public DataAccess(String baseUrl, int timeoutMs) {
+    checkNotNull(baseUrl);
+    checkArgument(timeoutMs > 0, "timeoutMs must be greater than 0");
+    Gson gson = new Gson();
+    this.rules = new Feed<>(baseUrl + "api/data/rules", timeoutMs,
+        gson.getAdapter(new TypeToken<List<Rule>>() {}));
+    this.creatives = new Feed<>(baseUrl + "api/data/creatives", timeoutMs,
+        gson.getAdapter(new TypeToken<List<Creative>>() {}));
+    this.configs = new Feed<>(baseUrl + "api/data/configs", timeoutMs,
+        gson.getAdapter(new TypeToken<List<Config>>() {}));
+  }
+
+  /**
+   * Fetches all feeds.
+   *
+   * @return {@code true} if any feed changed since the last call that returned {@code true};
+   * a change picked up by a call that later failed is reported by the next successful call
+   * @throws IOException if any feed could not be fetched or parsed
+   */
+  public synchronized boolean fetch() throws IOException {
+    changed |= rules.fetch();
+    changed |= creatives.fetch();
+    changed |= configs.fetch();
+    boolean ret = changed;
+    changed = false;
+    return ret;
+  }
+
+  public ImmutableList<Rule> getRules() {
+    return rules.get();
+  }
+
+  public ImmutableList<Creative> getCreatives() {
+    return creatives.get();
+  }
+
+  public ImmutableList<Config> getConfigs() {
+    return configs.get();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("rules", rules)
+        .add("creatives", creatives)
+        .add("configs", configs)
+        .toString();
+  }
+
+  /**
+   * One JSON array endpoint, with its validators and last good content.
+   */
+  static final class Feed<T> {
+    private static final HashFunction BODY_HASH = Hashing.murmur3_128();
+    private final URL url;
+    private final int timeoutMs;
+    private final TypeAdapter<List<T>> adapter;
+    private volatile ImmutableList<T> items = ImmutableList.of();
+    private @Nullable String etag;
+    private @Nullable String lastModified;
+    private @Nullable HashCode bodyHash;
+
+    Feed(String url, int timeoutMs, TypeAdapter<List<T>> adapter) {
+      try {
+        this.url = new URL(url);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+      this.timeoutMs = timeoutMs;
+      this.adapter = adapter;
     }
 
-    public List<Rule> GetRules() {
-
-        String RequestUrl = "api/data/rules";
-        List<Rule> ReturnValue = new ArrayList<Rule>();
-
-        try {
-            URL Url = new URL(BaseUrl + RequestUrl);
-            HttpURLConnection con = (HttpURLConnection) Url.openConnection();
-
-            // optional default is GET
-            con.setRequestMethod("GET");
-
-            int ResponseCode = con.getResponseCode();
-
-            if (ResponseCode != -1) {
-                
-                BufferedReader In = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                StringBuffer response = new StringBuffer();
-                String InputLine;
-
-                while ((InputLine = In.readLine()) != null) {
-                    response.append(InputLine);
-                }
-
-                In.close();
-
-                Gson gson = new GsonBuilder().create();
-                Rule[] Rules = gson.fromJson(response.toString(), Rule[].class);
-
-                for (Rule R : Rules) {
-                    ReturnValue.add(R);
-                }
-            }
-
-        } catch (Exception EObj) {
-
-        }
-
-        return ReturnValue;
+    /**
+     * @return {@code true} if new content was loaded, {@code false} if the server reported
+     * the feed unchanged or sent the same body again
+     */
+    boolean fetch() throws IOException {
+      HttpURLConnection con = (HttpURLConnection) url.openConnection();
+      con.setConnectTimeout(timeoutMs);
+      con.setReadTimeout(timeoutMs);
+      con.setUseCaches(false);
+      con.setRequestProperty(HttpHeaders.ACCEPT, "application/json");
+      if (etag != null) {
+        con.setRequestProperty(HttpHeaders.IF_NONE_MATCH, etag);
+      }
+      if (lastModified != null) {
+        con.setRequestProperty(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+      }
+
+      int status = con.getResponseCode();
+      if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        drain(con.getInputStream());
+        return false;
+      } else if (status != HttpURLConnection.HTTP_OK) {
+        drain(con.getErrorStream());
+        throw new IOException("HTTP " + status + " from " + url);
+      }
+
+      List<T> parsed;
+      HashCode hash;
+      try (InputStream is = con.getInputStream()) {
+        HashingInputStream his = new HashingInputStream(BODY_HASH, is);
+        parsed = adapter.read(new JsonReader(new InputStreamReader(his, Charsets.UTF_8)));
+        ByteStreams.copy(his, ByteStreams.nullOutputStream());
+        hash = his.hash();
+      } catch (JsonParseException | IllegalStateException e) {
+        throw new IOException("Malformed response from " + url, e);
+      }
+      if (parsed == null) {
+        throw new IOException("Empty response from " + url);
+      }
+
+      etag = con.getHeaderField(HttpHeaders.ETAG);
+      lastModified = con.getHeaderField(HttpHeaders.LAST_MODIFIED);
+      if (hash.equals(bodyHash)) {
+        return false;
+      }
+      items = ImmutableList.copyOf(Iterables.filter(parsed, Predicates.notNull()));
+      bodyHash = hash;
+      return true;
     }
 
-    public List<Config> GetConfigs() {
-
-        String RequestUrl = "api/data/configs";
-        List<Config> ReturnValue = new ArrayList<Config>();
+    ImmutableList<T> get() {
+      return items;
+    }
 
+    private static void drain(@Nullable InputStream is) throws IOException {
+      if (is != null) {
         try {
-            URL Url = new URL(BaseUrl + RequestUrl);
-            HttpURLConnection con = (HttpURLConnection) Url.openConnection();
-
-            // optional default is GET
-            con.setRequestMethod("GET");
-
-            int ResponseCode = con.getResponseCode();
-
-            if (ResponseCode != -1) {
-                
-                BufferedReader In = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                StringBuffer response = new StringBuffer();
-                String InputLine;
-
-                while ((InputLine = In.readLine()) != null) {
-                    response.append(InputLine);
-                }
-
-                In.close();
-
-                Gson gson = new GsonBuilder().create();
-                Config[] Configs = gson.fromJson(response.toString(), Config[].class);
-
-                for (Config C : Configs) {
-                    ReturnValue.add(C);
-                }
-            }
-
-        } catch (Exception EObj) {
-
+          ByteStreams.copy(is, ByteStreams.nullOutputStream());
+        } finally {
+          is.close();
         }
+      }
+    }
 
-        return ReturnValue;
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).omitNullValues()
+          .add("url", url)
+          .add("items", items.size())
+          .add("etag", etag)
+          .add("lastModified", lastModified)
+          .toString();
     }
+  }
 }
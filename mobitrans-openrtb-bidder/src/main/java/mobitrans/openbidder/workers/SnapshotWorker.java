@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.workers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+
+import mobitrans.openbidder.cache.BiddingSnapshot;
+import mobitrans.openbidder.cache.BiddingSnapshotStore;
+import mobitrans.openbidder.dataAccessLayer.DataAccess;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Periodically loads the rules, creatives and configs from the data API, publishing them
+ * together as a new {@link BiddingSnapshot}. The first load happens when the service starts.
+ * A new snapshot is only published when some feed changed; if loading or publishing fails,
+ * with any exception, the current snapshot stays in place until a later refresh succeeds, and
+ * the service keeps running.
+ */
+public class SnapshotWorker extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(SnapshotWorker.class);
+  private final DataAccess dataAccess;
+  private final BiddingSnapshotStore store;
+  private final Scheduler scheduler;
+  // Data changed but not published yet; guarded by this
+  private boolean pending;
+
+  public SnapshotWorker(DataAccess dataAccess, BiddingSnapshotStore store, Scheduler scheduler) {
+    this.dataAccess = checkNotNull(dataAccess);
+    this.store = checkNotNull(store);
+    this.scheduler = checkNotNull(scheduler);
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  protected void startUp() {
+    refresh();
+  }
+
+  @Override
+  protected void runOneIteration() {
+    refresh();
+  }
+
+  /**
+   * Loads the data, publishing a new snapshot if it changed.
+   *
+   * @return the current snapshot, new or not
+   */
+  public synchronized BiddingSnapshot refresh() {
+    try {
+      pending |= dataAccess.fetch();
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Failed to load bidding data, keeping {}: {}", store.current(), e.toString());
+      if (!pending) {
+        return store.current();
+      }
+    }
+    if (!pending) {
+      logger.debug("Bidding data unchanged");
+      return store.current();
+    }
+
+    try {
+      BiddingSnapshot snapshot = store.publish(
+          dataAccess.getRules(), dataAccess.getCreatives(), dataAccess.getConfigs());
+      pending = false;
+      logger.info("Published {}", snapshot);
+      return snapshot;
+    } catch (RuntimeException e) {
+      // Retried by the next refresh, even if the data doesn't change again
+      logger.error("Failed to publish bidding data, keeping {}", store.current(), e);
+      return store.current();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+
+import mobitrans.openbidder.data.bidding.Creative;
+import mobitrans.openbidder.data.bidding.Rule;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RuleIndex}.
+ */
+public class RuleIndexTest {
+  private final Rule usAndroid = rule(1, 10, 300, 250, "USA", "Android", 2.0f);
+  private final Rule usAny = rule(2, 10, 300, 250, "USA", null, 1.5f);
+  private final Rule anyIos = rule(3, 20, 300, 250, " * ", "iOS", 3.0f);
+  private final Rule anyAny = rule(4, 20, 300, 250, null, null, 0.5f);
+  private final Rule leaderboard = rule(5, 10, 728, 90, "USA", "Android", 9.0f);
+  private final Rule noCreative = rule(6, 99, 300, 250, "USA", "Android", 99.0f);
+  private final RuleIndex index = RuleIndex.build(
+      ImmutableList.of(usAndroid, usAny, anyIos, anyAny, leaderboard, noCreative),
+      ImmutableList.of(creative(10), creative(20)));
+
+  @Test
+  public void testMatch() {
+    assertSame(usAndroid, index.match(300, 250, "USA", "Android", 0));
+    assertSame(usAndroid, index.match(300, 250, "usa", "android", 0));
+    assertSame(usAny, index.match(300, 250, "USA", "BlackBerry", 0));
+    assertSame(anyIos, index.match(300, 250, "USA", "iOS", 0));
+    assertSame(anyIos, index.match(300, 250, "GBR", "iOS", 0));
+    assertSame(anyAny, index.match(300, 250, "GBR", "Android", 0));
+    assertSame(anyAny, index.match(300, 250, null, null, 0));
+    assertSame(anyAny, index.match(300, 250, " ", "*", 0));
+    assertSame(leaderboard, index.match(728, 90, "USA", "Android", 0));
+    assertNull(index.match(320, 50, "USA", "Android", 0));
+  }
+
+  @Test
+  public void testBidFloor() {
+    assertSame(usAndroid, index.match(300, 250, "USA", "Android", 2.0));
+    assertNull(index.match(300, 250, "USA", "Android", 2.5));
+  }
+
+  @Test
+  public void testCreatives() {
+    assertEquals(5, index.size());
+    assertEquals(20, index.creative(20).ID);
+    assertNull(index.creative(99));
+    assertNull(RuleIndex.EMPTY.match(300, 250, "USA", "Android", 0));
+  }
+
+  private static Rule rule(
+      int id, int creativeId, int width, int height, String country, String os, float price) {
+    Rule rule = new Rule();
+    rule.ID = id;
+    rule.CreativeID = creativeId;
+    rule.BannerWidth = width;
+    rule.BannerHeight = height;
+    rule.Country = country;
+    rule.OperatingSystem = os;
+    rule.Price = price;
+    return rule;
+  }
+
+  private static Creative creative(int id) {
+    Creative creative = new Creative();
+    creative.ID = id;
+    return creative;
+  }
+}
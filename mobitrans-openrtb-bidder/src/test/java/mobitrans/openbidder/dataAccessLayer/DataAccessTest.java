@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.dataAccessLayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Charsets;
+import com.google.common.net.HttpHeaders;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link DataAccess}, against a local HTTP server.
+ */
+public class DataAccessTest {
+  private HttpServer server;
+  private DataAccess dataAccess;
+  private volatile int status;
+  private volatile String rulesJson;
+  private volatile String creativesJson;
+  private final AtomicInteger rulesSent = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    status = 200;
+    rulesJson = "[{\"ID\":1,\"CreativeID\":10,\"Price\":1.5,\"Country\":\"USA\"}]";
+    creativesJson = "[{\"ID\":10,\"Width\":300,\"Height\":250}]";
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/api/data/rules", new HttpHandler() {
+      @Override public void handle(HttpExchange exchange) throws IOException {
+        String etag = "\"" + rulesJson.hashCode() + "\"";
+        if (etag.equals(exchange.getRequestHeaders().getFirst(HttpHeaders.IF_NONE_MATCH))) {
+          respond(exchange, 304, etag, null);
+        } else {
+          rulesSent.incrementAndGet();
+          respond(exchange, status, etag, rulesJson);
+        }
+      }
+    });
+    server.createContext("/api/data/creatives", new HttpHandler() {
+      @Override public void handle(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, null, creativesJson);
+      }
+    });
+    server.createContext("/api/data/configs", new HttpHandler() {
+      @Override public void handle(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, null, "[]");
+      }
+    });
+    server.start();
+    dataAccess = new DataAccess(
+        "http://127.0.0.1:" + server.getAddress().getPort() + "/", 5000);
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testFetch() throws IOException {
+    assertTrue(dataAccess.fetch());
+    assertEquals(1, dataAccess.getRules().size());
+    assertEquals(10, dataAccess.getRules().get(0).CreativeID);
+    assertEquals("USA", dataAccess.getRules().get(0).Country);
+    assertEquals(300, dataAccess.getCreatives().get(0).Width);
+    assertTrue(dataAccess.getConfigs().isEmpty());
+
+    // Rules get a 304; creatives and configs send no validators, but the same bodies
+    assertFalse(dataAccess.fetch());
+    assertEquals(1, rulesSent.get());
+    assertEquals(1, dataAccess.getRules().size());
+
+    rulesJson = "[{\"ID\":1},{\"ID\":2}]";
+    assertTrue(dataAccess.fetch());
+    assertEquals(2, rulesSent.get());
+    assertEquals(2, dataAccess.getRules().size());
+    assertFalse(dataAccess.fetch());
+  }
+
+  @Test
+  public void testFetchWithoutValidators() throws IOException {
+    assertTrue(dataAccess.fetch());
+    assertFalse(dataAccess.fetch());
+
+    creativesJson = "[{\"ID\":10,\"Width\":300,\"Height\":250},{\"ID\":20}]";
+    assertTrue(dataAccess.fetch());
+    assertEquals(2, dataAccess.getCreatives().size());
+    assertEquals(1, dataAccess.getRules().size());
+    assertFalse(dataAccess.fetch());
+  }
+
+  @Test
+  public void testKeepsLastGood() throws IOException {
+    assertTrue(dataAccess.fetch());
+
+    rulesJson = "[{\"ID\":1},{\"ID\":2}]";
+    status = 500;
+    try {
+      dataAccess.fetch();
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(1, dataAccess.getRules().size());
+
+    status = 200;
+    rulesJson = "[{\"ID\":";
+    try {
+      dataAccess.fetch();
+      fail("Expected IOException");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(1, dataAccess.getRules().size());
+  }
+
+  private static void respond(HttpExchange exchange, int status, String etag, String body)
+      throws IOException {
+    if (etag != null) {
+      exchange.getResponseHeaders().set(HttpHeaders.ETAG, etag);
+    }
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      byte[] bytes = body.getBytes(Charsets.UTF_8);
+      exchange.sendResponseHeaders(status, bytes.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(bytes);
+      }
+    }
+    exchange.close();
+  }
+}
@@ -16,35 +16,129 @@
 
 package mobitrans.openbidder.sample.bidding;
 
-import mobitrans.openbidder.bidding.RandomBidInterceptor;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Range;
 import com.google.openbidder.api.bidding.BidController;
 import com.google.openbidder.api.bidding.BidRequest;
 import com.google.openbidder.api.bidding.BidResponse;
 import com.google.openbidder.api.testing.bidding.BiddingTestUtil;
 import com.google.openbidder.api.testing.bidding.TestBidRequestBuilder;
 import com.google.openbidder.api.testing.bidding.TestBidResponseBuilder;
+import com.google.openrtb.OpenRtb;
+import com.google.openrtb.OpenRtb.BidRequest.Device;
+import com.google.openrtb.OpenRtb.BidRequest.Geo;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
+import com.google.openrtb.OpenRtb.BidRequest.User;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+
+import mobitrans.openbidder.bidding.RandomBidInterceptor;
+import mobitrans.openbidder.cache.BiddingSnapshotStore;
+import mobitrans.openbidder.data.bidding.Config;
+import mobitrans.openbidder.data.bidding.Creative;
+import mobitrans.openbidder.data.bidding.Rule;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 /**
  * Unit tests for {@link RandomBidInterceptor}.
  */
 public class RandomBidInterceptorTest {
+  private final BiddingSnapshotStore snapshots = new BiddingSnapshotStore();
+  private BidController controller;
+
+  @Before
+  public void setUp() {
+    snapshots.publish(
+        ImmutableList.of(
+            rule(1, 10, 300, 250, "USA", 2.0f),
+            rule(2, 20, 300, 250, "GBR", 3.0f)),
+        ImmutableList.of(creative(10, 300, 250), creative(20, 300, 250)),
+        ImmutableList.<Config>of());
+    controller = BiddingTestUtil.newBidController(new RandomBidInterceptor(snapshots));
+  }
+
+  @After
+  public void tearDown() {
+    controller.stopAsync().awaitTerminated();
+  }
+
+  @Test
+  public void testBannerBid() {
+    BidResponse response = bid(OpenRtb.BidRequest.newBuilder()
+        .setDevice(Device.newBuilder().setGeo(Geo.newBuilder().setCountry("USA")))
+        .addImp(banner("1", 300, 250, 1.0f)));
+
+    Bid.Builder bid = Iterables.getOnlyElement(response.bids());
+    assertEquals("1", bid.getImpid());
+    assertEquals(2.0, bid.getPrice(), 1e-9);
+    assertEquals("buyer-10", bid.getAdid());
+    assertEquals("10", bid.getCrid());
+    assertEquals("<div>10</div>", bid.getAdm());
+    assertEquals(300, bid.getW());
+    assertEquals(250, bid.getH());
+  }
+
+  @Test
+  public void testNoBid() {
+    BidResponse response = bid(OpenRtb.BidRequest.newBuilder()
+        .setDevice(Device.newBuilder().setGeo(Geo.newBuilder().setCountry("USA")))
+        .addImp(banner("1", 300, 250, 2.5f))
+        .addImp(banner("2", 320, 50, 0.1f)));
+
+    assertTrue(Iterables.isEmpty(response.bids()));
+  }
 
   @Test
-  public void testInterceptor() {
-      /*
-    BidRequest request = TestBidRequestBuilder.create().setRequest("1", 1, 1, 5.0).build();
-    BidController controller = BiddingTestUtil.newBidController(new RandomBidInterceptor());
+  public void testUserCountry() {
+    BidResponse response = bid(OpenRtb.BidRequest.newBuilder()
+        .setDevice(Device.newBuilder().setOs("Android"))
+        .setUser(User.newBuilder().setGeo(Geo.newBuilder().setCountry("GBR")))
+        .addImp(banner("1", 300, 250, 1.0f)));
+
+    Bid.Builder bid = Iterables.getOnlyElement(response.bids());
+    assertEquals(3.0, bid.getPrice(), 1e-9);
+    assertEquals("20", bid.getCrid());
+  }
+
+  private BidResponse bid(OpenRtb.BidRequest.Builder openRtb) {
+    BidRequest request = TestBidRequestBuilder.create().setRequest(openRtb.setId("1")).build();
     BidResponse response = TestBidResponseBuilder.create().build();
     controller.onRequest(request, response);
-    controller.stopAsync().awaitTerminated();
-    assertTrue(Range.closedOpen(5.0, 10.0)
-        .contains(Iterables.getOnlyElement(response.bids()).getPrice()));
-              */
+    return response;
+  }
+
+  private static Imp.Builder banner(String id, int width, int height, float bidFloor) {
+    return Imp.newBuilder()
+        .setId(id)
+        .setBidfloor(bidFloor)
+        .setBanner(Banner.newBuilder().setId(id).setW(width).setH(height));
+  }
+
+  private static Rule rule(
+      int id, int creativeId, int width, int height, String country, float price) {
+    Rule rule = new Rule();
+    rule.ID = id;
+    rule.CreativeID = creativeId;
+    rule.BannerWidth = width;
+    rule.BannerHeight = height;
+    rule.Country = country;
+    rule.Price = price;
+    return rule;
+  }
+
+  private static Creative creative(int id, int width, int height) {
+    Creative creative = new Creative();
+    creative.ID = id;
+    creative.BuyerCreativeID = "buyer-" + id;
+    creative.Width = width;
+    creative.Height = height;
+    creative.HtmlSnippet = "<div>" + id + "</div>";
+    return creative;
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mobitrans.openbidder.workers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+
+import mobitrans.openbidder.cache.BiddingSnapshot;
+import mobitrans.openbidder.cache.BiddingSnapshotStore;
+import mobitrans.openbidder.data.bidding.Rule;
+import mobitrans.openbidder.dataAccessLayer.DataAccess;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link SnapshotWorker}.
+ */
+public class SnapshotWorkerTest {
+  private final FakeDataAccess dataAccess = new FakeDataAccess();
+  private final BiddingSnapshotStore store = new BiddingSnapshotStore();
+  private final SnapshotWorker worker = new SnapshotWorker(dataAccess, store,
+      Scheduler.newFixedDelaySchedule(1, 1, TimeUnit.HOURS));
+
+  @Test
+  public void testRefresh() {
+    assertEquals(1, worker.refresh().getVersion());
+    assertEquals(1, worker.refresh().getVersion());
+    dataAccess.changed = true;
+    assertEquals(2, worker.refresh().getVersion());
+  }
+
+  @Test
+  public void testFailures() {
+    BiddingSnapshot snapshot = worker.refresh();
+
+    dataAccess.fetchFailure = new IllegalStateException("bad data");
+    assertSame(snapshot, worker.refresh());
+    dataAccess.fetchFailure = null;
+
+    // A change that failed to publish is published by a later refresh, without a new change
+    dataAccess.changed = true;
+    dataAccess.publishFailure = new NullPointerException();
+    assertSame(snapshot, worker.refresh());
+    dataAccess.publishFailure = null;
+    assertEquals(2, worker.refresh().getVersion());
+    assertEquals(2, worker.refresh().getVersion());
+  }
+
+  /**
+   * Serves empty feeds, changed when told so, and fails when told so.
+   */
+  static class FakeDataAccess extends DataAccess {
+    boolean changed = true;
+    RuntimeException fetchFailure;
+    RuntimeException publishFailure;
+
+    @Override
+    public boolean fetch() throws IOException {
+      if (fetchFailure != null) {
+        throw fetchFailure;
+      }
+      boolean ret = changed;
+      changed = false;
+      return ret;
+    }
+
+    @Override
+    public ImmutableList<Rule> getRules() {
+      if (publishFailure != null) {
+        throw publishFailure;
+      }
+      return super.getRules();
+    }
+  }
+}
@@ -13,6 +13,7 @@ import com.google.openbidder.exchange.doubleclick.interceptor.DoubleClickInterce
 import com.google.openbidder.exchange.doubleclick.match.DoubleClickMatchModule;
 import com.google.openbidder.metrics.reporter.bigquery.BigQueryMetricsReporterModule;
 import com.google.openbidder.remarketing.services.RemarketingModule;
+import mobitrans.openbidder.bidding.MobitransBiddingModule;
 import mobitrans.openbidder.exchange.MyExchangeModule;
 import com.google.openbidder.storage.dao.StorageModule;
 import com.google.openbidder.weather.config.WeatherModule;
@@ -75,6 +76,7 @@ public class SamplesServer extends BidderServer {
                 .add(new BigQueryMetricsReporterModule())
                 .add(new PreferredDealsModule())
                 .add(new MyExchangeModule())
+                .add(new MobitransBiddingModule())
                 .build();
     }
 
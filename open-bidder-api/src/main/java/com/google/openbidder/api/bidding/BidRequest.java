@@ -48,6 +48,7 @@ import javax.annotation.Nullable;
 public class BidRequest extends UserRequest {
   private final Object nativeRequest;
   private final OpenRtb.BidRequest request;
+  private ImpIndex impIndex;
 
   /**
    * Creates a bid request.
@@ -121,12 +122,24 @@ public class BidRequest extends UserRequest {
   }
 
   /**
-   * Finds an {@link Imp} by ID.
+   * Finds an {@link Imp} by ID, in constant time.
    *
    * @return The {@link Imp}s that has the given id, or {@code null} if not found.
    */
   public final @Nullable Imp impWithId(final String id) {
-    return OpenRtbUtils.impWithId(openRtb(), id);
+    return impIndex().get(id);
+  }
+
+  /**
+   * @return Index of the {@link Imp}s, built on first use.
+   */
+  public final ImpIndex impIndex() {
+    // Benign race: the index is a pure function of the immutable request.
+    ImpIndex index = impIndex;
+    if (index == null) {
+      impIndex = index = new ImpIndex(imps());
+    }
+    return index;
   }
 
   /**
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.api.bidding;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Index of the {@link Imp}s of a {@link BidRequest}, built once per request (see
+ * {@link BidRequest#impIndex()}) so interceptors that post-process every bid can find each bid's
+ * impression in constant time. The index also caches values derived from each impression,
+ * identified by a {@link Key}, so expensive decoding (like parsing an exchange extension) happens
+ * at most once per impression and request, regardless of the number of bids and interceptors.
+ *
+ * <p>A request is processed by one thread at a time; concurrent use is safe as long as the
+ * derived values are immutable, at worst computing some value more than once.
+ */
+public final class ImpIndex {
+  private static final Object NULL = new Object();
+
+  private final ImmutableList<Imp> imps;
+  private final Map<String, Integer> positions;
+  private final Object[][] values;
+
+  ImpIndex(List<Imp> imps) {
+    this.imps = ImmutableList.copyOf(imps);
+    this.positions = new HashMap<>(imps.size() * 2);
+    for (int i = 0; i < imps.size(); ++i) {
+      String id = imps.get(i).getId();
+      if (!positions.containsKey(id)) {
+        positions.put(id, i);
+      }
+    }
+    this.values = new Object[imps.size()][];
+  }
+
+  /**
+   * @return All impressions, in request order
+   */
+  public List<Imp> imps() {
+    return imps;
+  }
+
+  /**
+   * @return Position of the first impression with the given ID, or -1 if not found
+   */
+  public int indexOf(String impId) {
+    Integer position = positions.get(checkNotNull(impId));
+    return position == null ? -1 : position;
+  }
+
+  /**
+   * @return The first impression with the given ID, or {@code null} if not found
+   */
+  public @Nullable Imp get(String impId) {
+    int position = indexOf(impId);
+    return position == -1 ? null : imps.get(position);
+  }
+
+  /**
+   * Returns a value derived from the impression with the given ID, computing it on first use.
+   *
+   * @return The derived value, or {@code null} if the impression was not found
+   */
+  public @Nullable <T> T get(String impId, Key<T> key) {
+    int position = indexOf(impId);
+    return position == -1 ? null : get(position, key);
+  }
+
+  /**
+   * Returns a value derived from the impression at the given position, computing it on first use.
+   */
+  public @Nullable <T> T get(int position, Key<T> key) {
+    Object[] impValues = values[position];
+    if (impValues == null || impValues.length <= key.slot) {
+      impValues = impValues == null
+          ? new Object[Key.slots.get()]
+          : Arrays.copyOf(impValues, Key.slots.get());
+      values[position] = impValues;
+    }
+
+    Object value = impValues[key.slot];
+    if (value == null) {
+      value = key.compute(imps.get(position));
+      impValues[key.slot] = value == null ? NULL : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    T ret = value == NULL ? null : (T) value;
+    return ret;
+  }
+
+  /**
+   * Identifies a value derived from an {@link Imp}. Keys should be constants, since each one
+   * reserves a slot in the per-impression storage of every index.
+   *
+   * @param <T> Type of the derived value, which should be immutable
+   */
+  public abstract static class Key<T> {
+    private static final AtomicInteger slots = new AtomicInteger();
+    private final int slot = slots.getAndIncrement();
+
+    /**
+     * Computes the value for an impression; invoked at most once per impression and index
+     * (barring concurrent access).
+     */
+    protected abstract @Nullable T compute(Imp imp);
+  }
+}
@@ -22,6 +22,9 @@ import com.google.openbidder.api.interceptor.UserRequest;
 import com.google.openbidder.api.platform.Exchange;
 import com.google.openbidder.http.HttpRequest;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.annotation.Nullable;
 
 /**
@@ -30,6 +33,7 @@ import javax.annotation.Nullable;
 public class ImpressionRequest extends UserRequest {
   private final String priceName;
   private Double priceValue;
+  private Map<String, Double> namedPriceValues;
 
   /**
    * Creates an impression request.
@@ -70,7 +74,7 @@ public class ImpressionRequest extends UserRequest {
    */
   public final double getPriceValue() {
     if (priceValue == null) {
-      priceValue = getPriceValue(priceName);
+      priceValue = decodePriceParameter(priceName);
     }
 
     return priceValue;
@@ -79,9 +83,26 @@ public class ImpressionRequest extends UserRequest {
   /**
    * @param priceName Name for a parameter containing the encoded winning price
    * @return the winning price, decoded from a specific parameter.
-   * Decoding/decryption will be performed for every call.
+   * Decoding/decryption will be performed only once per parameter and cached.
    */
   public final double getPriceValue(String priceName) {
+    if (priceName.equals(this.priceName)) {
+      return getPriceValue();
+    }
+
+    Double value = namedPriceValues == null ? null : namedPriceValues.get(priceName);
+    if (value == null) {
+      value = decodePriceParameter(priceName);
+      if (namedPriceValues == null) {
+        namedPriceValues = new HashMap<>(4);
+      }
+      namedPriceValues.put(priceName, value);
+    }
+
+    return value;
+  }
+
+  private double decodePriceParameter(String priceName) {
     String encodedPrice = httpRequest().getParameter(priceName);
 
     if (encodedPrice == null) {
@@ -22,6 +22,7 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.MoreObjects.ToStringHelper;
 import com.google.openbidder.api.platform.CompatibleExchanges;
 import com.google.openbidder.api.platform.Exchange;
+import com.google.openbidder.http.trace.RequestTrace;
 
 import com.codahale.metrics.Timer;
 
@@ -77,9 +78,17 @@ public class InterceptorChain<Req extends UserRequest, Resp extends UserResponse
 
         Timer timer = controller.getResource(Timer.class, interceptor);
         Timer.Context timerContext = timer == null ? null : timer.time();
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+          trace.mark("> " + interceptor.getClass().getSimpleName());
+        }
 
         call(interceptor);
 
+        if (trace != null) {
+          trace.mark("< " + interceptor.getClass().getSimpleName());
+        }
+
         if (logger.isTraceEnabled()) {
           logger.trace("<< Interceptor: {}", interceptor.getClass().getSimpleName());
         }
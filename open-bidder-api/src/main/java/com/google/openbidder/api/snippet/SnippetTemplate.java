@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.api.snippet;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openrtb.snippet.SnippetMacroType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A snippet parsed once into literal segments and macro slots, so expanding it for a bid is a
+ * single append pass with no rescanning or macro lookup. Unknown {@code ${...}} sequences,
+ * exchange macros and {@code %{...}%} encoding markers are kept as literal text.
+ */
+final class SnippetTemplate {
+  private static final String MACRO_START = "${";
+  private static final char MACRO_END = '}';
+
+  private final ImmutableList<String> literals;
+  private final ImmutableList<SnippetMacroType> macros;
+  private volatile int sizeHint;
+
+  private SnippetTemplate(List<String> literals, List<SnippetMacroType> macros, int sizeHint) {
+    this.literals = ImmutableList.copyOf(literals);
+    this.macros = ImmutableList.copyOf(macros);
+    this.sizeHint = sizeHint;
+  }
+
+  /**
+   * Parses a snippet.
+   *
+   * @param macrosByKey All macros recognized by the processor, by {@link SnippetMacroType#key()}
+   */
+  static SnippetTemplate compile(String snippet, Map<String, SnippetMacroType> macrosByKey) {
+    List<String> literals = new ArrayList<>();
+    List<SnippetMacroType> macros = new ArrayList<>();
+    int literalStart = 0;
+    int pos = snippet.indexOf(MACRO_START);
+
+    while (pos != -1) {
+      int end = snippet.indexOf(MACRO_END, pos + MACRO_START.length());
+      if (end == -1) {
+        break;
+      }
+      SnippetMacroType macro = macrosByKey.get(snippet.substring(pos, end + 1));
+      if (macro == null) {
+        pos = snippet.indexOf(MACRO_START, pos + MACRO_START.length());
+      } else {
+        literals.add(snippet.substring(literalStart, pos));
+        macros.add(macro);
+        literalStart = end + 1;
+        pos = snippet.indexOf(MACRO_START, literalStart);
+      }
+    }
+
+    literals.add(snippet.substring(literalStart));
+    return new SnippetTemplate(literals, macros, snippet.length());
+  }
+
+  /**
+   * @return Number of macro slots; literal segments are one more than this
+   */
+  int macroCount() {
+    return macros.size();
+  }
+
+  String literal(int index) {
+    return literals.get(index);
+  }
+
+  SnippetMacroType macro(int index) {
+    return macros.get(index);
+  }
+
+  /**
+   * @return Capacity for the expansion buffer, from the size of the previous expansion
+   */
+  int sizeHint() {
+    return sizeHint;
+  }
+
+  void updateSizeHint(int size) {
+    if (size > sizeHint) {
+      sizeHint = size;
+    }
+  }
+}
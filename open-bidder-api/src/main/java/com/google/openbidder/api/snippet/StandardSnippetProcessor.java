@@ -20,7 +20,11 @@ import static java.util.Arrays.asList;
 
 import com.google.common.base.MoreObjects.ToStringHelper;
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.openbidder.api.openrtb.ObExt;
 import com.google.openrtb.OpenRtb.BidRequest.ImpOrBuilder;
 import com.google.openrtb.snippet.OpenRtbSnippetProcessor;
@@ -39,12 +43,17 @@ import javax.inject.Singleton;
 
 /**
  * Default {@link SnippetProcessor}.
+ * <p>
+ * Snippets are parsed once into a {@link SnippetTemplate} and kept in a bounded cache, since
+ * most bidders use a small, stable set of creatives; expansion is then a single append pass.
  */
 @Singleton
 public class StandardSnippetProcessor extends OpenRtbSnippetProcessor {
   private static final Logger logger = LoggerFactory.getLogger(SnippetProcessor.class);
+  private static final String ENCODING_START = "%{";
+  public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 1000;
   public static final StandardSnippetProcessor STD_NULL =
-      new StandardSnippetProcessor(null, null, null) {
+      new StandardSnippetProcessor(null, null, null, 0) {
     @Override public String process(SnippetProcessorContext ctx, String snippet) {
       return SnippetProcessor.NULL.process(ctx, snippet);
     }
@@ -53,6 +62,7 @@ public class StandardSnippetProcessor extends OpenRtbSnippetProcessor {
   private final @Nullable String callbackUrl;
   private final @Nullable String impressionUrl;
   private final @Nullable String clickUrl;
+  private final @Nullable LoadingCache<String, SnippetTemplate> templates;
 
   @Override protected List<SnippetMacroType> registerMacros() {
     return ImmutableList.<SnippetMacroType>builder()
@@ -62,12 +72,71 @@ public class StandardSnippetProcessor extends OpenRtbSnippetProcessor {
   }
 
   /**
-   * Creates a processor for some configuration.
+   * Creates a processor for some configuration, with the default template cache size.
    */
   public StandardSnippetProcessor(String callbackUrl, String impressionUrl, String clickUrl) {
+    this(callbackUrl, impressionUrl, clickUrl, DEFAULT_TEMPLATE_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a processor for some configuration.
+   *
+   * @param templateCacheSize Maximum number of distinct snippets kept precompiled;
+   * zero disables the cache, so every snippet is scanned on each use
+   */
+  public StandardSnippetProcessor(String callbackUrl, String impressionUrl, String clickUrl,
+      int templateCacheSize) {
     this.callbackUrl = Strings.isNullOrEmpty(callbackUrl) ? null : callbackUrl;
     this.clickUrl = preprocess(SnippetMacros.OB_CALLBACK_URL, this.callbackUrl, clickUrl);
     this.impressionUrl = preprocess(SnippetMacros.OB_CALLBACK_URL, this.callbackUrl, impressionUrl);
+
+    if (templateCacheSize > 0) {
+      ImmutableMap.Builder<String, SnippetMacroType> macrosByKey = ImmutableMap.builder();
+      for (SnippetMacroType macro : registerMacros()) {
+        macrosByKey.put(macro.key(), macro);
+      }
+      final ImmutableMap<String, SnippetMacroType> macros = macrosByKey.build();
+      this.templates = CacheBuilder.newBuilder()
+          .maximumSize(templateCacheSize)
+          .build(new CacheLoader<String, SnippetTemplate>() {
+            @Override public SnippetTemplate load(String snippet) {
+              return SnippetTemplate.compile(snippet, macros);
+            }
+          });
+    } else {
+      this.templates = null;
+    }
+  }
+
+  @Override
+  public String process(SnippetProcessorContext ctx, String snippet) {
+    LoadingCache<String, SnippetTemplate> templates = this.templates;
+    if (templates == null) {
+      return super.process(ctx, snippet);
+    }
+
+    SnippetTemplate template = templates.getUnchecked(snippet);
+    int macroCount = template.macroCount();
+    StringBuilder sb;
+    if (macroCount == 0) {
+      if (snippet.indexOf(ENCODING_START) == -1) {
+        return snippet;
+      }
+      sb = new StringBuilder(snippet);
+    } else {
+      sb = new StringBuilder(template.sizeHint());
+      for (int i = 0; i < macroCount; ++i) {
+        sb.append(template.literal(i));
+        processMacroAt(ctx, sb, template.macro(i));
+      }
+      sb.append(template.literal(macroCount));
+      template.updateSizeHint(sb.length());
+    }
+
+    // Encoding markers can come from the snippet or from macro values (URL parameters)
+    return sb.indexOf(ENCODING_START) == -1
+        ? sb.toString()
+        : urlEncode(sb.toString(), new StringBuilder(sb.length() + sb.length() / 2));
   }
 
   @Override
@@ -187,6 +256,7 @@ public class StandardSnippetProcessor extends OpenRtbSnippetProcessor {
     return super.toStringHelper()
         .add("callbackUrl", callbackUrl)
         .add("clickUrl", clickUrl)
-        .add("impressionUrl", impressionUrl);
+        .add("impressionUrl", impressionUrl)
+        .add("templates", templates == null ? null : templates.size());
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.api.bidding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.openbidder.api.testing.bidding.TestBidRequestBuilder;
+import com.google.openrtb.OpenRtb;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ImpIndex}.
+ */
+public class ImpIndexTest {
+
+  @Test
+  public void testIndex() {
+    BidRequest request = TestBidRequestBuilder.create()
+        .setRequest(OpenRtb.BidRequest.newBuilder()
+            .setId("1")
+            .addImp(Imp.newBuilder().setId("1").setBidfloor(1))
+            .addImp(Imp.newBuilder().setId("2"))
+            .addImp(Imp.newBuilder().setId("1").setBidfloor(2))
+            .buildPartial()).build();
+    ImpIndex index = request.impIndex();
+
+    assertSame(index, request.impIndex());
+    assertEquals(3, index.imps().size());
+    assertEquals(0, index.indexOf("1"));
+    assertEquals(1, index.indexOf("2"));
+    assertEquals(-1, index.indexOf("3"));
+    assertSame(request.imps().get(0), index.get("1"));
+    assertSame(request.imps().get(0), request.impWithId("1"));
+    assertNull(index.get("3"));
+  }
+
+  @Test
+  public void testDerivedValues() {
+    BidRequest request = TestBidRequestBuilder.create()
+        .setRequest(OpenRtb.BidRequest.newBuilder()
+            .setId("1")
+            .addImp(Imp.newBuilder().setId("1").setBidfloor(1.5))
+            .addImp(Imp.newBuilder().setId("2"))
+            .buildPartial()).build();
+    CountingKey floorKey = new CountingKey();
+    CountingKey otherKey = new CountingKey();
+    ImpIndex index = request.impIndex();
+
+    assertEquals("1.5", index.get("1", floorKey));
+    assertEquals("1.5", index.get("1", floorKey));
+    assertNull(index.get("2", floorKey));
+    assertNull(index.get("2", floorKey));
+    assertNull(index.get("3", floorKey));
+    assertEquals(2, floorKey.computed);
+    assertEquals("1.5", index.get(0, otherKey));
+    assertEquals(1, otherKey.computed);
+  }
+
+  static class CountingKey extends ImpIndex.Key<String> {
+    int computed;
+
+    @Override protected String compute(Imp imp) {
+      ++computed;
+      return imp.hasBidfloor() ? String.valueOf(imp.getBidfloor()) : null;
+    }
+  }
+}
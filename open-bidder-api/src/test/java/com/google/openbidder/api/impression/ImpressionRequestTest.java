@@ -76,6 +76,27 @@ public class ImpressionRequestTest {
     assertEquals(100.0, req.getPriceValue("myprice"), 1e-9);
   }
 
+  @Test
+  public void testGetPriceNamed_cached() {
+    final int[] decodes = { 0 };
+    ImpressionRequest req = new ImpressionRequest(NoExchange.INSTANCE,
+        StandardHttpRequest.newBuilder()
+            .setUri("http://localhost")
+            .setParameter(PRICE_NAME, "55")
+            .setParameter("myprice", "100")
+            .build(),
+        PRICE_NAME) {
+      @Override protected double decodePrice(String encodedPrice) {
+        ++decodes[0];
+        return super.decodePrice(encodedPrice);
+      }};
+    assertEquals(55.0, req.getPriceValue(), 1e-9);
+    assertEquals(55.0, req.getPriceValue(PRICE_NAME), 1e-9);
+    assertEquals(100.0, req.getPriceValue("myprice"), 1e-9);
+    assertEquals(100.0, req.getPriceValue("myprice"), 1e-9);
+    assertEquals(2, decodes[0]);
+  }
+
   @Test(expected = IllegalStateException.class)
   public void testGetPrice_missing() {
     TestImpressionRequestBuilder.create().build().getPriceValue();
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.openbidder.api.bidding.BidRequest;
 import com.google.openbidder.api.bidding.BidResponse;
@@ -73,6 +74,44 @@ public class SnippetProcessorTest {
         process(SnippetMacros.OB_CLICK_URL, false, false));
   }
 
+  @Test
+  public void testTemplateCache() {
+    StandardSnippetProcessor uncached = new StandardSnippetProcessor(
+        "http://localhost",
+        SnippetMacros.OB_CALLBACK_URL.key() + "/impression",
+        SnippetMacros.OB_CALLBACK_URL.key() + "/click",
+        0);
+    String[] snippets = {
+        "",
+        "plain text",
+        "<a href='${OB_CLICK_URL}'><img src='${OB_AD_CREATIVE_URL}' width=${OB_AD_WIDTH}></a>",
+        "${OB_IMPRESSION_URL}&price=%%WINNING_PRICE%%&${UNKNOWN}",
+        "${OB_CALLBACK_URL}/x?u=%{${OB_AD_CLICKTHROUGH_URL}}%",
+        "%{a b}%${OB_AD_HEIGHT}}",
+    };
+
+    for (String snippet : snippets) {
+      String expected = process(uncached, snippet, false, true);
+      assertEquals(snippet, expected, process(snippet, false, true));
+      assertEquals(snippet, expected, process(snippet, false, true));
+    }
+  }
+
+  @Test
+  public void testTemplateCompile() {
+    SnippetTemplate template = SnippetTemplate.compile(
+        "a${OB_AD_WIDTH}b${X}c${OB_AD_HEIGHT}",
+        ImmutableMap.<String, SnippetMacroType>of(
+            SnippetMacros.OB_AD_WIDTH.key(), SnippetMacros.OB_AD_WIDTH,
+            SnippetMacros.OB_AD_HEIGHT.key(), SnippetMacros.OB_AD_HEIGHT));
+    assertEquals(2, template.macroCount());
+    assertEquals("a", template.literal(0));
+    assertSame(SnippetMacros.OB_AD_WIDTH, template.macro(0));
+    assertEquals("b${X}c", template.literal(1));
+    assertSame(SnippetMacros.OB_AD_HEIGHT, template.macro(1));
+    assertEquals("", template.literal(2));
+  }
+
   @Test
   public void testNullProcessor() {
     String snippet = SnippetMacros.OB_CALLBACK_URL.key();
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench;
+
+import com.google.caliper.Benchmark;
+import com.google.caliper.runner.CaliperMain;
+import com.google.doubleclick.crypto.DoubleClickCrypto;
+import com.google.openbidder.exchange.doubleclick.impression.DoubleClickImpressionRequest;
+import com.google.openbidder.exchange.doubleclick.impression.DoubleClickPriceDecoder;
+import com.google.openbidder.http.HttpRequest;
+import com.google.openbidder.http.request.StandardHttpRequest;
+
+import java.security.InvalidKeyException;
+import java.security.SignatureException;
+import java.util.Date;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Benchmark for DoubleClick winning price decryption.
+ */
+public class PriceDecodeBench {
+  static final DoubleClickCrypto.Keys KEYS;
+  static final DoubleClickCrypto.Price priceCrypto;
+  static final DoubleClickPriceDecoder priceDecoder;
+  static final String ENCODED_PRICE;
+  static final HttpRequest HTTP_REQUEST;
+
+  static {
+    try {
+      KEYS = new DoubleClickCrypto.Keys(
+          new SecretKeySpec(new byte[32], DoubleClickCrypto.KEY_ALGORITHM),
+          new SecretKeySpec(new byte[32], DoubleClickCrypto.KEY_ALGORITHM));
+    } catch (InvalidKeyException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+    priceCrypto = new DoubleClickCrypto.Price(KEYS);
+    priceDecoder = new DoubleClickPriceDecoder(KEYS);
+    ENCODED_PRICE = priceCrypto.encodePriceValue(
+        1.2, priceCrypto.createInitVector(new Date(0), 1));
+    HTTP_REQUEST = StandardHttpRequest.newBuilder()
+        .setUri("http://localhost")
+        .setParameter("price", ENCODED_PRICE)
+        .build();
+  }
+
+  public static void main(String[] args) {
+    CaliperMain.main(PriceDecodeBench.class, args);
+  }
+
+  @Benchmark
+  public double time_decode_crypto(int reps) throws SignatureException {
+    double dummy = 0;
+    for (int i = 0; i < reps; ++i) {
+      dummy += priceCrypto.decodePriceValue(ENCODED_PRICE);
+    }
+    return dummy;
+  }
+
+  @Benchmark
+  public double time_decode_decoder(int reps) throws SignatureException {
+    double dummy = 0;
+    for (int i = 0; i < reps; ++i) {
+      dummy += priceDecoder.decodePriceValue(ENCODED_PRICE);
+    }
+    return dummy;
+  }
+
+  /**
+   * One impression request, with the price read by three interceptors.
+   */
+  @Benchmark
+  public double time_request_crypto(int reps) {
+    return requests(reps, DoubleClickImpressionRequest.newBuilder().setPriceCrypto(priceCrypto));
+  }
+
+  /**
+   * Same as {@link #time_request_crypto(int)}, with the faster decoder.
+   */
+  @Benchmark
+  public double time_request_decoder(int reps) {
+    return requests(reps, DoubleClickImpressionRequest.newBuilder().setPriceDecoder(priceDecoder));
+  }
+
+  private static double requests(int reps, DoubleClickImpressionRequest.Builder builder) {
+    builder.setHttpRequest(HTTP_REQUEST).setPriceName("price");
+    double dummy = 0;
+    for (int i = 0; i < reps; ++i) {
+      DoubleClickImpressionRequest request = builder.build();
+      dummy += request.getPriceValue();
+      dummy += request.getPriceValue();
+      dummy += request.getPriceValue("price");
+    }
+    return dummy;
+  }
+}
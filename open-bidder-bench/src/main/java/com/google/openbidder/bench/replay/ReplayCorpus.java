@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench.replay;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.openbidder.exchange.doubleclick.interceptor.BidRequestDumpInterceptor;
+import com.google.openbidder.http.capture.CaptureReader;
+import com.google.openbidder.http.capture.CaptureWriter;
+import com.google.protos.adx.NetworkBid;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads a bid request corpus into memory, so reading it doesn't affect measured latency.
+ * Supports binary captures from {@link CaptureWriter} (a {@code .capture} file or a directory
+ * of them) and hex dumps from {@link BidRequestDumpInterceptor} (any other file).
+ */
+public final class ReplayCorpus {
+
+  private ReplayCorpus() {
+  }
+
+  public static ImmutableList<NetworkBid.BidRequest> load(File file) throws IOException {
+    ImmutableList.Builder<NetworkBid.BidRequest> requests = ImmutableList.builder();
+
+    if (file.isDirectory() || file.getName().endsWith(CaptureWriter.SUFFIX)) {
+      try (CaptureReader reader = new CaptureReader(file)) {
+        for (NetworkBid.BidRequest request = reader.next(NetworkBid.BidRequest.PARSER);
+            request != null; request = reader.next(NetworkBid.BidRequest.PARSER)) {
+          requests.add(request);
+        }
+      }
+    } else {
+      for (String line : Files.readLines(file, Charsets.US_ASCII)) {
+        if (!Strings.isNullOrEmpty(line.trim())) {
+          requests.add(BidRequestDumpInterceptor.undump(line.trim()));
+        }
+      }
+    }
+
+    return requests.build();
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench.replay;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.TextFormat;
+import com.google.protos.adx.NetworkBid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares two {@link ReplayResult}s of the same corpus, typically from the current and a
+ * candidate build: lists requests whose status or response changed, and reports the latency
+ * distribution and throughput of both runs. Exits with status 1 if any response differs.
+ *
+ * <p>Usage: {@code ReplayDiff <baseline result> <candidate result> [max diffs shown]}
+ */
+public class ReplayDiff {
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+  private static final DecimalFormat PERCENTILE_FORMAT = new DecimalFormat("0.#");
+
+  private final ReplayResult baseline;
+  private final ReplayResult candidate;
+
+  public ReplayDiff(ReplayResult baseline, ReplayResult candidate) {
+    this.baseline = baseline;
+    this.candidate = candidate;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: ReplayDiff <baseline result> <candidate result> [max diffs]");
+      System.exit(2);
+    }
+    ReplayDiff diff = new ReplayDiff(
+        ReplayResult.read(new File(args[0])), ReplayResult.read(new File(args[1])));
+    int differences = diff.report(System.out, args.length > 2 ? Integer.parseInt(args[2]) : 10);
+    System.exit(differences == 0 ? 0 : 1);
+  }
+
+  /**
+   * Prints the comparison.
+   *
+   * @param maxDiffs Maximum number of differing responses to print in full
+   * @return Number of requests with a different outcome
+   */
+  public int report(PrintStream out, int maxDiffs) {
+    List<ReplayResult.Entry> base = baseline.getEntries();
+    List<ReplayResult.Entry> cand = candidate.getEntries();
+    int size = Math.min(base.size(), cand.size());
+    if (base.size() != cand.size()) {
+      out.format("WARNING: different corpus sizes (%d vs %d), comparing the first %d\n",
+          base.size(), cand.size(), size);
+    }
+
+    int differences = 0;
+    for (int i = 0; i < size; ++i) {
+      ReplayResult.Entry b = base.get(i);
+      ReplayResult.Entry c = cand.get(i);
+      if (!b.getId().equals(c.getId())) {
+        out.format("WARNING: request #%d has different IDs (%s vs %s); not the same corpus?\n",
+            i, b.getId(), c.getId());
+      }
+      if (b.getStatus() != c.getStatus() || !Arrays.equals(b.getResponse(), c.getResponse())) {
+        if (++differences <= maxDiffs) {
+          out.format("DIFF request #%d id=%s status %d -> %d\n  - %s\n  + %s\n",
+              i, b.getId(), b.getStatus(), c.getStatus(),
+              toText(b.getResponse()), toText(c.getResponse()));
+        }
+      }
+    }
+    out.format("\nResponses: %d compared, %d identical, %d different\n\n",
+        size, size - differences, differences);
+
+    long[] baseLatency = latencies(base);
+    long[] candLatency = latencies(cand);
+    out.format("%-12s %12s %12s %9s\n", "Latency(us)", "baseline", "candidate", "delta");
+    printRow(out, "mean", mean(baseLatency), mean(candLatency));
+    for (double percentile : PERCENTILES) {
+      printRow(out, "p" + PERCENTILE_FORMAT.format(percentile),
+          percentile(baseLatency, percentile), percentile(candLatency, percentile));
+    }
+    printRow(out, "max", percentile(baseLatency, 100), percentile(candLatency, 100));
+    out.format("%-12s %12.1f %12.1f %8.1f%%\n", "req/s",
+        baseline.getThroughput(), candidate.getThroughput(),
+        delta(baseline.getThroughput(), candidate.getThroughput()));
+    return differences;
+  }
+
+  private static void printRow(PrintStream out, String label, double base, double cand) {
+    out.format("%-12s %12.1f %12.1f %8.1f%%\n", label, base / 1000, cand / 1000, delta(base, cand));
+  }
+
+  private static double delta(double base, double cand) {
+    return base == 0 ? 0 : (cand - base) * 100 / base;
+  }
+
+  private static long[] latencies(List<ReplayResult.Entry> entries) {
+    long[] latencies = new long[entries.size()];
+    for (int i = 0; i < latencies.length; ++i) {
+      latencies[i] = entries.get(i).getLatencyNanos();
+    }
+    Arrays.sort(latencies);
+    return latencies;
+  }
+
+  private static double mean(long[] values) {
+    if (values.length == 0) {
+      return 0;
+    }
+    double sum = 0;
+    for (long value : values) {
+      sum += value;
+    }
+    return sum / values.length;
+  }
+
+  /**
+   * Nearest-rank percentile of sorted values.
+   */
+  static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+
+  private static String toText(byte[] response) {
+    try {
+      return TextFormat.shortDebugString(NetworkBid.BidResponse.parseFrom(response));
+    } catch (InvalidProtocolBufferException e) {
+      return "<unparseable: " + response.length + " bytes>";
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench.replay;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.BindingAnnotation;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import java.io.File;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Configuration for {@link ReplayTool}.
+ */
+@Parameters(separators = "=")
+public class ReplayModule extends AbstractModule {
+
+  @Parameter(names = "--replay_corpus", required = true,
+      description = "Bid request corpus: binary capture file or directory, or hex dump file")
+  private String corpus;
+
+  @Parameter(names = "--replay_output", required = true,
+      description = "File to write the replay result")
+  private String output;
+
+  @Parameter(names = "--replay_warmup",
+      description = "Passes over the corpus before measuring, to warm up the JIT and caches")
+  private int warmup = 1;
+
+  @Override
+  protected void configure() {
+    bind(File.class).annotatedWith(Corpus.class).toInstance(new File(corpus));
+    bind(File.class).annotatedWith(Output.class).toInstance(new File(output));
+    bind(Integer.class).annotatedWith(Warmup.class).toInstance(warmup);
+  }
+
+  /**
+   * Bid request corpus.
+   */
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface Corpus {
+  }
+
+  /**
+   * Replay result file.
+   */
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface Output {
+  }
+
+  /**
+   * Number of warmup passes.
+   */
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface Warmup {
+  }
+}
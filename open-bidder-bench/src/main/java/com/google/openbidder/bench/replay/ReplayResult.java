@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench.replay;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Outcome of one replay run: the response and latency for each request of the corpus, in
+ * corpus order, plus the total wall time. Stored as a tab-separated text file so runs from
+ * different builds can be kept around and compared with {@link ReplayDiff}.
+ */
+public final class ReplayResult {
+  private static final String WALL_TIME = "# wall_nanos=";
+  private static final Splitter TAB = Splitter.on('\t');
+  private static final BaseEncoding HEX = BaseEncoding.base16();
+
+  private final ImmutableList<Entry> entries;
+  private final long wallNanos;
+
+  public ReplayResult(List<Entry> entries, long wallNanos) {
+    this.entries = ImmutableList.copyOf(entries);
+    this.wallNanos = wallNanos;
+  }
+
+  public ImmutableList<Entry> getEntries() {
+    return entries;
+  }
+
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  /**
+   * @return Requests per second over the whole run
+   */
+  public double getThroughput() {
+    return wallNanos == 0 ? 0 : entries.size() * 1e9 / wallNanos;
+  }
+
+  public void write(File file) throws IOException {
+    try (BufferedWriter writer = Files.newWriter(file, Charsets.US_ASCII)) {
+      writer.write(WALL_TIME + wallNanos);
+      writer.newLine();
+
+      for (Entry entry : entries) {
+        writer.write(entry.id);
+        writer.write('\t');
+        writer.write(String.valueOf(entry.status));
+        writer.write('\t');
+        writer.write(String.valueOf(entry.latencyNanos));
+        writer.write('\t');
+        writer.write(HEX.encode(entry.response));
+        writer.newLine();
+      }
+    }
+  }
+
+  public static ReplayResult read(File file) throws IOException {
+    ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+    long wallNanos = 0;
+
+    for (String line : Files.readLines(file, Charsets.US_ASCII)) {
+      if (line.startsWith(WALL_TIME)) {
+        wallNanos = Long.parseLong(line.substring(WALL_TIME.length()));
+      } else if (!line.isEmpty()) {
+        Iterator<String> fields = TAB.split(line).iterator();
+        entries.add(new Entry(
+            fields.next(),
+            Integer.parseInt(fields.next()),
+            Long.parseLong(fields.next()),
+            HEX.decode(fields.next())));
+      }
+    }
+
+    return new ReplayResult(entries.build(), wallNanos);
+  }
+
+  /**
+   * Result of a single request.
+   */
+  public static final class Entry {
+    private final String id;
+    private final int status;
+    private final long latencyNanos;
+    private final byte[] response;
+
+    /**
+     * @param id Request ID, hex-encoded
+     * @param status HTTP status code of the response
+     * @param latencyNanos Time spent in the bidder
+     * @param response Serialized response, stripped of non-deterministic fields
+     */
+    public Entry(String id, int status, long latencyNanos, byte[] response) {
+      this.id = checkNotNull(id);
+      this.status = status;
+      this.latencyNanos = latencyNanos;
+      this.response = checkNotNull(response);
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public int getStatus() {
+      return status;
+    }
+
+    public long getLatencyNanos() {
+      return latencyNanos;
+    }
+
+    public byte[] getResponse() {
+      return response;
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench.replay;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.Service;
+import com.google.common.util.concurrent.ServiceManager;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.google.openbidder.binary.BidderServer;
+import com.google.openbidder.exchange.doubleclick.DoubleClickModule;
+import com.google.openbidder.exchange.doubleclick.interceptor.DoubleClickInterceptorsModule;
+import com.google.openbidder.exchange.doubleclick.server.DoubleClickBidRequestReceiver;
+import com.google.openbidder.flags.FlagsModuleBuilder;
+import com.google.openbidder.http.HttpRequest;
+import com.google.openbidder.http.HttpResponse;
+import com.google.openbidder.http.Protocol;
+import com.google.openbidder.http.receiver.DefaultHttpReceiverContext;
+import com.google.openbidder.http.request.StandardHttpRequest;
+import com.google.openbidder.http.response.StandardHttpResponse;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protos.adx.NetworkBid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+/**
+ * Replays a captured bid request corpus through an in-process bidder, built from the same
+ * modules as {@link BidderServer} plus the DoubleClick connector, and records each response
+ * and its latency. Every request goes through the full receiver: request mapping,
+ * interceptors, snippet processing and response serialization; no network is involved.
+ * Compare two runs with {@link ReplayDiff}.
+ *
+ * <p>Takes the bidder's normal flags plus those of {@link ReplayModule}. To replay through
+ * your own bidder's configuration, subclass and override {@link #getModules(String[])}.
+ */
+public class ReplayTool {
+  private static final Logger logger = LoggerFactory.getLogger(ReplayTool.class);
+
+  public static void main(String[] args) throws Exception {
+    new ReplayTool().run(args);
+  }
+
+  /**
+   * Returns the bidder modules to replay through.
+   */
+  protected ImmutableList<Module> getModules(String[] args) {
+    return new DoubleClickBidderServer(args).modules();
+  }
+
+  protected final void run(String[] args) throws IOException {
+    Module rootModule = new FlagsModuleBuilder()
+        .addModules(getModules(args))
+        .addModule(new ReplayModule())
+        .build(args);
+    Injector injector = Guice.createInjector(Stage.PRODUCTION, rootModule);
+    injector.getInstance(Runner.class).run();
+  }
+
+  static class Runner {
+    private final DoubleClickBidRequestReceiver receiver;
+    private final Set<Service> services;
+    private final File corpus;
+    private final File output;
+    private final int warmup;
+
+    @Inject
+    Runner(
+        DoubleClickBidRequestReceiver receiver,
+        Set<Service> services,
+        @ReplayModule.Corpus File corpus,
+        @ReplayModule.Output File output,
+        @ReplayModule.Warmup Integer warmup) {
+      this.receiver = checkNotNull(receiver);
+      this.services = checkNotNull(services);
+      this.corpus = checkNotNull(corpus);
+      this.output = checkNotNull(output);
+      this.warmup = warmup;
+    }
+
+    void run() throws IOException {
+      ImmutableList<NetworkBid.BidRequest> requests = ReplayCorpus.load(corpus);
+      logger.info("Loaded {} requests from {}", requests.size(), corpus);
+
+      ServiceManager serviceManager = new ServiceManager(services);
+      serviceManager.startAsync().awaitHealthy();
+      try {
+        for (int i = 0; i < warmup; ++i) {
+          for (NetworkBid.BidRequest request : requests) {
+            receive(newHttpRequest(request));
+          }
+        }
+
+        List<ReplayResult.Entry> entries = new ArrayList<>(requests.size());
+        long start = System.nanoTime();
+        for (NetworkBid.BidRequest request : requests) {
+          // The request content is a read-once stream, so each pass needs a new request
+          HttpRequest httpRequest = newHttpRequest(request);
+          long requestStart = System.nanoTime();
+          HttpResponse httpResponse = receive(httpRequest);
+          long latency = System.nanoTime() - requestStart;
+          entries.add(new ReplayResult.Entry(
+              BaseEncoding.base16().encode(request.getId().toByteArray()),
+              httpResponse.getStatusCode(),
+              latency,
+              normalize(httpResponse)));
+        }
+        ReplayResult result = new ReplayResult(entries, System.nanoTime() - start);
+
+        result.write(output);
+        logger.info("Replayed {} requests at {} req/s, result: {}",
+            entries.size(), String.format("%.1f", result.getThroughput()), output);
+      } finally {
+        serviceManager.stopAsync().awaitStopped();
+      }
+    }
+
+    private HttpResponse receive(HttpRequest httpRequest) {
+      HttpResponse.Builder httpResponse = StandardHttpResponse.newBuilder();
+      receiver.receive(new DefaultHttpReceiverContext(httpRequest, httpResponse));
+      return httpResponse.build();
+    }
+  }
+
+  private static HttpRequest newHttpRequest(NetworkBid.BidRequest request) throws IOException {
+    HttpRequest.Builder httpRequest = StandardHttpRequest.newBuilder()
+        .setProtocol(Protocol.HTTP_1_1)
+        .setMethod("POST")
+        .setUri("http://localhost");
+    request.writeTo(httpRequest.content());
+    return httpRequest.build();
+  }
+
+  /**
+   * Strips the processing time, which differs on every run, so responses compare byte-wise.
+   */
+  private static byte[] normalize(HttpResponse httpResponse) {
+    try {
+      return NetworkBid.BidResponse.parseFrom(httpResponse.content()).toBuilder()
+          .clearProcessingTimeMs()
+          .build()
+          .toByteArray();
+    } catch (InvalidProtocolBufferException e) {
+      return new byte[0];
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class DoubleClickBidderServer extends BidderServer {
+    DoubleClickBidderServer(String[] args) {
+      super(args);
+    }
+
+    @Override
+    protected ImmutableList<Module> getModules() {
+      return ImmutableList.<Module>builder()
+          .addAll(super.getModules())
+          .add(new DoubleClickModule())
+          .add(new DoubleClickInterceptorsModule())
+          .build();
+    }
+
+    ImmutableList<Module> modules() {
+      return getModules();
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Tests for {@link ReplayDiff}.
+ */
+public class ReplayDiffTest {
+
+  @Test
+  public void testPercentile() {
+    long[] sorted = { 10, 20, 30, 40, 50, 60, 70, 80, 90, 100 };
+    assertEquals(10, ReplayDiff.percentile(sorted, 0), 0);
+    assertEquals(10, ReplayDiff.percentile(sorted, 10), 0);
+    assertEquals(20, ReplayDiff.percentile(sorted, 11), 0);
+    assertEquals(50, ReplayDiff.percentile(sorted, 50), 0);
+    assertEquals(90, ReplayDiff.percentile(sorted, 90), 0);
+    assertEquals(100, ReplayDiff.percentile(sorted, 99), 0);
+    assertEquals(100, ReplayDiff.percentile(sorted, 99.9), 0);
+    assertEquals(100, ReplayDiff.percentile(sorted, 100), 0);
+  }
+
+  @Test
+  public void testPercentileSmall() {
+    assertEquals(0, ReplayDiff.percentile(new long[0], 50), 0);
+    assertEquals(7, ReplayDiff.percentile(new long[] { 7 }, 0), 0);
+    assertEquals(7, ReplayDiff.percentile(new long[] { 7 }, 99.9), 0);
+    assertEquals(3, ReplayDiff.percentile(new long[] { 3, 9 }, 50), 0);
+    assertEquals(9, ReplayDiff.percentile(new long[] { 3, 9 }, 51), 0);
+  }
+
+  @Test
+  public void testReport() {
+    ReplayResult baseline = new ReplayResult(ImmutableList.of(
+        new ReplayResult.Entry("01", 200, 1000, new byte[] { 1 }),
+        new ReplayResult.Entry("02", 200, 2000, new byte[] { 2 }),
+        new ReplayResult.Entry("03", 204, 3000, new byte[0])),
+        1000000000L);
+    ReplayResult candidate = new ReplayResult(ImmutableList.of(
+        new ReplayResult.Entry("01", 200, 1000, new byte[] { 1 }),
+        new ReplayResult.Entry("02", 200, 2000, new byte[] { 3 }),
+        new ReplayResult.Entry("03", 200, 3000, new byte[0])),
+        1000000000L);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    assertEquals(2, new ReplayDiff(baseline, candidate).report(new PrintStream(out), 1));
+    String report = out.toString();
+    assertTrue(report, report.contains("DIFF request #1 id=02"));
+    assertTrue(report, !report.contains("DIFF request #2"));
+    assertTrue(report, report.contains("3 compared, 1 identical, 2 different"));
+    assertEquals(0, new ReplayDiff(baseline, baseline).report(new PrintStream(out), 1));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bench.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests for {@link ReplayResult}.
+ */
+public class ReplayResultTest {
+  private File directory;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testWriteRead() throws IOException {
+    ReplayResult result = new ReplayResult(ImmutableList.of(
+        new ReplayResult.Entry("0a1b", 200, 1500, new byte[] { 0x08, (byte) 0xff, 0 }),
+        new ReplayResult.Entry("0a1c", 204, 900, new byte[0])),
+        2000000000L);
+    File file = new File(directory, "result.tsv");
+    result.write(file);
+
+    ReplayResult read = ReplayResult.read(file);
+    assertEquals(2000000000L, read.getWallNanos());
+    assertEquals(1.0, read.getThroughput(), 1e-9);
+    assertEquals(2, read.getEntries().size());
+    for (int i = 0; i < 2; ++i) {
+      ReplayResult.Entry expected = result.getEntries().get(i);
+      ReplayResult.Entry actual = read.getEntries().get(i);
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getStatus(), actual.getStatus());
+      assertEquals(expected.getLatencyNanos(), actual.getLatencyNanos());
+      assertArrayEquals(expected.getResponse(), actual.getResponse());
+    }
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    File file = new File(directory, "empty.tsv");
+    new ReplayResult(ImmutableList.<ReplayResult.Entry>of(), 0).write(file);
+
+    ReplayResult read = ReplayResult.read(file);
+    assertEquals(0, read.getWallNanos());
+    assertEquals(0.0, read.getThroughput(), 0);
+    assertEquals(0, read.getEntries().size());
+  }
+}
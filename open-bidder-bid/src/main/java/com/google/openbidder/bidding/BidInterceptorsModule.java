@@ -18,11 +18,14 @@ package com.google.openbidder.bidding;
 
 import com.google.common.io.CharStreams;
 import com.google.inject.AbstractModule;
+import com.google.inject.TypeLiteral;
 import com.google.inject.util.Providers;
 import com.google.openbidder.api.openrtb.ObExt;
 import com.google.openbidder.bidding.interceptor.ConfigurableBidInterceptor;
 import com.google.openbidder.bidding.interceptor.LoadTestBidInterceptor;
 import com.google.openbidder.bidding.interceptor.RawBidInterceptor;
+import com.google.openbidder.bidding.interceptor.RawRules;
+import com.google.openbidder.bidding.interceptor.RawRulesBidInterceptor;
 import com.google.openrtb.OpenRtb;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
 import com.google.protobuf.Message;
@@ -84,6 +87,15 @@ public class BidInterceptorsModule extends AbstractModule {
       description = "Raw BidResponse message resource")
   private String rawResponse;
 
+  @Parameter(names = "--raw_rules",
+      description = "RawRulesBidInterceptor: Rules file, resource, or gs://bucket/object"
+          + " (Cloud Storage requires the storage module)")
+  private String rawRules;
+
+  @Parameter(names = "--raw_rules_reload_seconds",
+      description = "RawRulesBidInterceptor: Period for reloading changed rules (0=disabled)")
+  private int rawRulesReloadSeconds = 60;
+
   @Parameter(names = "--load_delay", required = false,
       description = "LoadTestBidInterceptor: Milliseconds to wait per request")
   private Long loadDelay;
@@ -131,6 +143,13 @@ public class BidInterceptorsModule extends AbstractModule {
       }
     }
 
+    if (rawRules != null) {
+      install(new RawRulesModule<>(
+          new TypeLiteral<RawRules<OpenRtb.BidRequest, OpenRtb.BidResponse>>() {},
+          rawRules, RawRulesBidInterceptor.DIMENSIONS, OpenRtb.BidRequest.getDefaultInstance(),
+          OpenRtb.BidResponse.getDefaultInstance(), rawRulesReloadSeconds));
+    }
+
     if (loadDelay != null || loadWork != null) {
       bind(Long.class).annotatedWith(LoadTestBidInterceptor.DelayTime.class)
           .toProvider(Providers.of(loadDelay));
@@ -27,6 +27,7 @@ import com.google.inject.multibindings.Multibinder;
 import com.google.openbidder.api.bidding.BidController;
 import com.google.openbidder.api.bidding.BidInterceptor;
 import com.google.openbidder.api.openrtb.ObExt.UrlParameter;
+import com.google.openbidder.api.snippet.StandardSnippetProcessor;
 import com.google.openbidder.bidding.json.ObExtBidReader;
 import com.google.openbidder.bidding.json.ObExtBidWriter;
 import com.google.openbidder.bidding.json.ObExtImpReader;
@@ -36,6 +37,7 @@ import com.google.openbidder.config.bid.CallbackUrl;
 import com.google.openbidder.config.bid.ClickUrl;
 import com.google.openbidder.config.bid.HasBid;
 import com.google.openbidder.config.bid.ImpressionUrl;
+import com.google.openbidder.config.bid.SnippetTemplateCacheSize;
 import com.google.openbidder.config.http.Feature;
 import com.google.openbidder.config.server.LoadBalancerHost;
 import com.google.openbidder.config.server.LoadBalancerPort;
@@ -79,6 +81,10 @@ public class BidModule extends AbstractModule {
   @Parameter(names = "--click_url", description = "Impression callback URL")
   private String clickUrl = ClickUrl.DEFAULT;
 
+  @Parameter(names = "--snippet_template_cache_size",
+      description = "Maximum number of distinct snippets kept precompiled, 0 to disable")
+  private int snippetTemplateCacheSize = StandardSnippetProcessor.DEFAULT_TEMPLATE_CACHE_SIZE;
+
   @Override
   protected void configure() {
     logger.info("Bid interceptors: {}", interceptors);
@@ -99,6 +105,9 @@ public class BidModule extends AbstractModule {
 
     logger.info("Click callback URL: {}", clickUrl);
     bind(String.class).annotatedWith(ClickUrl.class).toInstance(clickUrl);
+
+    bind(Integer.class).annotatedWith(SnippetTemplateCacheSize.class)
+        .toInstance(snippetTemplateCacheSize);
   }
 
   @Provides
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+import com.google.openbidder.bidding.interceptor.RawRuleSource;
+import com.google.openbidder.bidding.interceptor.RawRuleTable;
+import com.google.openbidder.bidding.interceptor.RawRules;
+import com.google.openbidder.cloudstorage.GoogleCloudStorage;
+import com.google.protobuf.Message;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Binds the {@link RawRules} of a raw rules bid interceptor, for any request and response
+ * message types, and its reloading service. Rules in Cloud Storage require a binding for
+ * {@link GoogleCloudStorage}, usually from the storage module.
+ *
+ * @param <Req> Request message type
+ * @param <Resp> Response message type
+ */
+public class RawRulesModule<Req extends Message, Resp extends Message> extends AbstractModule {
+  private final TypeLiteral<RawRules<Req, Resp>> type;
+  private final String location;
+  private final ImmutableList<RawRuleTable.Dimension<Req>> dimensions;
+  private final Req requestPrototype;
+  private final Resp responsePrototype;
+  private final int reloadSeconds;
+
+  /**
+   * @param type Type of the bound rules, which must be fully specified
+   * @param location Rules file, resource, or {@code gs://bucket/object}
+   * @param reloadSeconds Period for reloading changed rules, 0 to never reload
+   */
+  public RawRulesModule(
+      TypeLiteral<RawRules<Req, Resp>> type,
+      String location,
+      List<RawRuleTable.Dimension<Req>> dimensions,
+      Req requestPrototype,
+      Resp responsePrototype,
+      int reloadSeconds) {
+    this.type = checkNotNull(type);
+    this.location = checkNotNull(location);
+    this.dimensions = ImmutableList.copyOf(dimensions);
+    this.requestPrototype = checkNotNull(requestPrototype);
+    this.responsePrototype = checkNotNull(responsePrototype);
+    this.reloadSeconds = reloadSeconds;
+  }
+
+  @Override
+  protected void configure() {
+    final @Nullable Provider<GoogleCloudStorage> cloudStorage =
+        RawRuleSource.isCloudStorage(location) ? getProvider(GoogleCloudStorage.class) : null;
+    bind(type).toProvider(new Provider<RawRules<Req, Resp>>() {
+      @Override public RawRules<Req, Resp> get() {
+        return new RawRules<>(
+            cloudStorage == null
+                ? RawRuleSource.forLocation(location)
+                : RawRuleSource.forCloudStorage(cloudStorage.get(), location),
+            dimensions, requestPrototype, responsePrototype,
+            Scheduler.newFixedDelaySchedule(Math.max(1, reloadSeconds),
+                Math.max(1, reloadSeconds), TimeUnit.SECONDS));
+      }}).in(Scopes.SINGLETON);
+
+    if (reloadSeconds > 0) {
+      Multibinder.newSetBinder(binder(), Service.class).addBinding().to(type);
+    }
+  }
+}
@@ -43,14 +43,14 @@ import javax.inject.Inject;
 public class RawBidInterceptor implements BidInterceptor {
   private static final Logger logger = LoggerFactory.getLogger(RawBidInterceptor.class);
 
-  private final OpenRtb.BidRequest rawRequest;
+  private final RawMessageMatcher<OpenRtb.BidRequest> rawRequest;
   private final OpenRtb.BidResponse rawResponse;
 
   @Inject
   public RawBidInterceptor(
       @RawRequest OpenRtb.BidRequest rawRequest,
       @RawResponse OpenRtb.BidResponse rawResponse) {
-    this.rawRequest = rawRequest;
+    this.rawRequest = RawMessageMatcher.compile(rawRequest);
     this.rawResponse = rawResponse;
 
     logger.debug("Matching request fragment: {}", TextFormat.shortDebugString(rawRequest));
@@ -61,7 +61,7 @@ public class RawBidInterceptor implements BidInterceptor {
   public void execute(InterceptorChain<BidRequest, BidResponse> chain) {
     OpenRtb.BidRequest req = chain.request().openRtb();
 
-    if (RawMessageUtils.matches(req, rawRequest)) {
+    if (rawRequest.matches(req)) {
       OpenRtb.BidResponse.Builder resp = chain.response().openRtb();
       resp.mergeFrom(rawResponse);
 
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding.interceptor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A "raw" message template, compiled once into a tree of per-field predicates.
+ * Matching has the same semantics as {@link RawMessageUtils#matches(Message, Message)}, but
+ * doesn't need to rediscover the template's fields (or copy any lists) for every message:
+ * <ul>
+ *   <li>Singular fields must be present, with an equal value;</li>
+ *   <li>Repeated scalar fields must contain all template values, checked against a hashed
+ *   set of those values;</li>
+ *   <li>Repeated message fields must contain a distinct matching element for each template
+ *   element.</li>
+ * </ul>
+ * Cheaper predicates are evaluated first, so most non-matching messages are rejected
+ * without looking into their nested messages. Instances are immutable and thread-safe.
+ */
+public final class RawMessageMatcher<M extends Message> {
+  private final M template;
+  private final FieldMatcher[] fields;
+
+  private RawMessageMatcher(M template, FieldMatcher[] fields) {
+    this.template = template;
+    this.fields = fields;
+  }
+
+  /**
+   * Compiles a template message.
+   */
+  public static <M extends Message> RawMessageMatcher<M> compile(M template) {
+    List<FieldMatcher> fields = new ArrayList<>();
+    for (Map.Entry<FieldDescriptor, Object> fdo : template.getAllFields().entrySet()) {
+      fields.add(compileField(fdo.getKey(), fdo.getValue()));
+    }
+    Collections.sort(fields, new Comparator<FieldMatcher>() {
+      @Override public int compare(FieldMatcher f1, FieldMatcher f2) {
+        return Integer.compare(f1.cost, f2.cost);
+      }});
+    return new RawMessageMatcher<>(template, fields.toArray(new FieldMatcher[fields.size()]));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static FieldMatcher compileField(FieldDescriptor fd, Object value) {
+    if (fd.getType() == FieldDescriptor.Type.MESSAGE) {
+      if (fd.isRepeated()) {
+        List<RawMessageMatcher<Message>> elements = new ArrayList<>();
+        for (Message element : (Collection<Message>) value) {
+          elements.add(compile(element));
+        }
+        return new RepeatedMessageMatcher(fd, elements);
+      } else {
+        return new MessageMatcher(fd, compile((Message) value));
+      }
+    } else {
+      return fd.isRepeated()
+          ? new RepeatedScalarMatcher(fd, (Collection<?>) value)
+          : new ScalarMatcher(fd, value);
+    }
+  }
+
+  /**
+   * @return The template this matcher was compiled from
+   */
+  public M template() {
+    return template;
+  }
+
+  /**
+   * @return {@code true} if the template has no fields, so it matches every message
+   */
+  public boolean isEmpty() {
+    return fields.length == 0;
+  }
+
+  /**
+   * @return {@code true} if the message matches the template
+   */
+  public boolean matches(M msg) {
+    for (FieldMatcher field : fields) {
+      if (!field.matches(msg)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public String toString() {
+    return template.toString();
+  }
+
+  private abstract static class FieldMatcher {
+    final FieldDescriptor fd;
+    final int cost;
+
+    FieldMatcher(FieldDescriptor fd, int cost) {
+      this.fd = fd;
+      this.cost = cost;
+    }
+
+    abstract boolean matches(Message msg);
+  }
+
+  private static final class ScalarMatcher extends FieldMatcher {
+    private final Object value;
+
+    ScalarMatcher(FieldDescriptor fd, Object value) {
+      super(fd, 0);
+      this.value = checkNotNull(value);
+    }
+
+    @Override boolean matches(Message msg) {
+      return msg.hasField(fd) && value.equals(msg.getField(fd));
+    }
+  }
+
+  private static final class RepeatedScalarMatcher extends FieldMatcher {
+    /** Each distinct template value, mapped to its bit in the "found" mask. */
+    private final ImmutableMap<Object, Integer> values;
+    private final long allFound;
+
+    RepeatedScalarMatcher(FieldDescriptor fd, Collection<?> values) {
+      super(fd, 1);
+      Map<Object, Integer> index = new LinkedHashMap<>();
+      for (Object value : values) {
+        if (!index.containsKey(value)) {
+          index.put(value, index.size());
+        }
+      }
+      this.values = ImmutableMap.copyOf(index);
+      this.allFound = this.values.size() >= Long.SIZE ? -1L : (1L << this.values.size()) - 1;
+    }
+
+    @Override boolean matches(Message msg) {
+      int count = msg.getRepeatedFieldCount(fd);
+      if (count < values.size()) {
+        return false;
+      }
+
+      if (values.size() <= Long.SIZE) {
+        long found = 0;
+        for (int i = 0; i < count; ++i) {
+          Integer bit = values.get(msg.getRepeatedField(fd, i));
+          if (bit != null && (found |= 1L << bit) == allFound) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      Set<Object> found = new HashSet<>();
+      for (int i = 0; i < count; ++i) {
+        Object value = msg.getRepeatedField(fd, i);
+        if (values.containsKey(value) && found.add(value) && found.size() == values.size()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final class MessageMatcher extends FieldMatcher {
+    private final RawMessageMatcher<Message> matcher;
+
+    MessageMatcher(FieldDescriptor fd, RawMessageMatcher<Message> matcher) {
+      super(fd, 2);
+      this.matcher = matcher;
+    }
+
+    @Override boolean matches(Message msg) {
+      return msg.hasField(fd) && matcher.matches((Message) msg.getField(fd));
+    }
+  }
+
+  private static final class RepeatedMessageMatcher extends FieldMatcher {
+    private final ImmutableList<RawMessageMatcher<Message>> elements;
+
+    RepeatedMessageMatcher(FieldDescriptor fd, List<RawMessageMatcher<Message>> elements) {
+      super(fd, 3);
+      this.elements = ImmutableList.copyOf(elements);
+    }
+
+    @Override boolean matches(Message msg) {
+      int count = msg.getRepeatedFieldCount(fd);
+      if (count < elements.size()) {
+        return false;
+      }
+
+      // Each template element consumes the first unused test element that it matches
+      long usedMask = 0;
+      boolean[] used = count <= Long.SIZE ? null : new boolean[count];
+      for (RawMessageMatcher<Message> element : elements) {
+        boolean found = false;
+        for (int i = 0; i < count && !found; ++i) {
+          boolean isUsed = used == null ? (usedMask & (1L << i)) != 0 : used[i];
+          if (!isUsed && element.matches((Message) msg.getRepeatedField(fd, i))) {
+            if (used == null) {
+              usedMask |= 1L << i;
+            } else {
+              used[i] = true;
+            }
+            found = true;
+          }
+        }
+        if (!found) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -32,6 +32,11 @@ import javax.annotation.Nullable;
  */
 public class RawMessageUtils {
 
+  /**
+   * Matches a message against a "raw" template. This walks the template's fields reflectively
+   * on every call; to match many messages against the same template, use
+   * {@link RawMessageMatcher}.
+   */
   public static <M extends Message> boolean matches(M testMsg, M matchMsg) {
     return matches(testMsg, matchMsg, null);
   }
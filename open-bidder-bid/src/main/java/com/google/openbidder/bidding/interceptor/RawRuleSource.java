@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding.interceptor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import com.google.openbidder.cloudstorage.GoogleCloudStorage;
+import com.google.openbidder.cloudstorage.StorageObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import javax.annotation.Nullable;
+
+/**
+ * Where the text of a {@link RawRuleTable} comes from. Sources remember what they last
+ * returned, so periodic reloads are cheap when nothing changed.
+ */
+public abstract class RawRuleSource {
+  private static final String GCS_PREFIX = "gs://";
+
+  /**
+   * @return The rules text, or {@code null} if unchanged since the last successful read
+   */
+  public abstract @Nullable String read() throws IOException;
+
+  /**
+   * @return {@code true} if the location is a Cloud Storage object ({@code gs://bucket/object})
+   */
+  public static boolean isCloudStorage(String location) {
+    return location.startsWith(GCS_PREFIX);
+  }
+
+  /**
+   * @param location A classpath resource (starting with {@code '/'}) if one exists with this
+   * name, otherwise a file
+   */
+  public static RawRuleSource forLocation(String location) {
+    checkArgument(!isCloudStorage(location), "Cloud Storage location: %s", location);
+    return location.startsWith("/") && RawRuleSource.class.getResource(location) != null
+        ? new ResourceSource(location)
+        : new FileSource(new File(location));
+  }
+
+  /**
+   * @param location Cloud Storage object, as {@code gs://bucket/object}
+   */
+  public static RawRuleSource forCloudStorage(GoogleCloudStorage cloudStorage, String location) {
+    checkArgument(isCloudStorage(location), "Not a Cloud Storage location: %s", location);
+    int slash = location.indexOf('/', GCS_PREFIX.length());
+    checkArgument(slash > GCS_PREFIX.length() && slash < location.length() - 1,
+        "Cloud Storage location must be gs://bucket/object: %s", location);
+    return new CloudStorageSource(cloudStorage,
+        location.substring(GCS_PREFIX.length(), slash), location.substring(slash + 1));
+  }
+
+  /**
+   * @return Rules text provided in memory, never changing
+   */
+  public static RawRuleSource forText(final String text) {
+    checkNotNull(text);
+    return new RawRuleSource() {
+      private boolean read;
+      @Override public synchronized String read() {
+        if (read) {
+          return null;
+        }
+        read = true;
+        return text;
+      }
+      @Override public String toString() {
+        return "text";
+      }};
+  }
+
+  static final class FileSource extends RawRuleSource {
+    private final File file;
+    private long lastModified = -1;
+    private long length = -1;
+
+    FileSource(File file) {
+      this.file = file;
+    }
+
+    @Override public synchronized String read() throws IOException {
+      long modified = file.lastModified();
+      long size = file.length();
+      if (modified == lastModified && size == length) {
+        return null;
+      }
+      String text = Files.toString(file, Charsets.UTF_8);
+      lastModified = modified;
+      length = size;
+      return text;
+    }
+
+    @Override public String toString() {
+      return file.getPath();
+    }
+  }
+
+  static final class ResourceSource extends RawRuleSource {
+    private final String resource;
+    private boolean read;
+
+    ResourceSource(String resource) {
+      this.resource = resource;
+    }
+
+    @Override public synchronized String read() throws IOException {
+      if (read) {
+        return null;
+      }
+      try (InputStream is = RawRuleSource.class.getResourceAsStream(resource)) {
+        if (is == null) {
+          throw new IOException("Resource not found: " + resource);
+        }
+        String text = CharStreams.toString(new InputStreamReader(is, Charsets.UTF_8));
+        read = true;
+        return text;
+      }
+    }
+
+    @Override public String toString() {
+      return resource;
+    }
+  }
+
+  static final class CloudStorageSource extends RawRuleSource {
+    private final GoogleCloudStorage cloudStorage;
+    private final String bucket;
+    private final String object;
+    private String etag;
+
+    CloudStorageSource(GoogleCloudStorage cloudStorage, String bucket, String object) {
+      this.cloudStorage = checkNotNull(cloudStorage);
+      this.bucket = bucket;
+      this.object = object;
+    }
+
+    @Override public synchronized String read() throws IOException {
+      StorageObject storageObject = cloudStorage.getObject(bucket, object, null, etag);
+      if (storageObject.getStatus() == StorageObject.Status.NOT_MODIFIED) {
+        return null;
+      }
+      try (InputStream is = storageObject.getInputStream()) {
+        String text = CharStreams.toString(new InputStreamReader(is, Charsets.UTF_8));
+        etag = storageObject.getETag();
+        return text;
+      }
+    }
+
+    @Override public String toString() {
+      return GCS_PREFIX + bucket + '/' + object;
+    }
+  }
+}
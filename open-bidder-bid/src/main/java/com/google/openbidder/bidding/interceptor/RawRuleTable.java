@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding.interceptor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.primitives.Ints;
+import com.google.protobuf.Message;
+import com.google.protobuf.TextFormat;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * A table of "raw" rules: if a request matches a rule's request fragment, the rule's
+ * response fragment should be merged into the response.
+ * <p>
+ * Rules are indexed by a few high-selectivity {@link Dimension}s, so each request only
+ * evaluates the rules that could possibly match it: those indexed by one of the request's
+ * values in some dimension, plus the rules that have no value in any dimension.
+ * Each rule is indexed by the first dimension that its request fragment constrains, so the
+ * dimensions should be listed from most to least selective. Tables are immutable.
+ */
+public final class RawRuleTable<Req extends Message, Resp extends Message> {
+  private final ImmutableList<Dimension<Req>> dimensions;
+  private final ImmutableList<Rule<Req, Resp>> rules;
+  private final ImmutableList<ImmutableMap<Object, int[]>> indexes;
+  private final BitSet unindexed;
+
+  private RawRuleTable(
+      ImmutableList<Dimension<Req>> dimensions,
+      ImmutableList<Rule<Req, Resp>> rules,
+      ImmutableList<ImmutableMap<Object, int[]>> indexes,
+      BitSet unindexed) {
+    this.dimensions = dimensions;
+    this.rules = rules;
+    this.indexes = indexes;
+    this.unindexed = unindexed;
+  }
+
+  /**
+   * Builds a table for some rules, indexed by the given dimensions.
+   */
+  public static <Req extends Message, Resp extends Message> RawRuleTable<Req, Resp> build(
+      List<Dimension<Req>> dimensions, List<Rule<Req, Resp>> rules) {
+    List<ListMultimap<Object, Integer>> indexBuilders = new ArrayList<>();
+    for (int d = 0; d < dimensions.size(); ++d) {
+      indexBuilders.add(ArrayListMultimap.<Object, Integer>create());
+    }
+    BitSet unindexed = new BitSet(rules.size());
+
+    for (int pos = 0; pos < rules.size(); ++pos) {
+      Req request = rules.get(pos).request();
+      boolean indexed = false;
+      for (int d = 0; d < dimensions.size() && !indexed; ++d) {
+        Object key = dimensions.get(d).templateKey(request);
+        if (key != null) {
+          indexBuilders.get(d).put(key, pos);
+          indexed = true;
+        }
+      }
+      if (!indexed) {
+        unindexed.set(pos);
+      }
+    }
+
+    ImmutableList.Builder<ImmutableMap<Object, int[]>> indexes = ImmutableList.builder();
+    for (ListMultimap<Object, Integer> indexBuilder : indexBuilders) {
+      ImmutableMap.Builder<Object, int[]> index = ImmutableMap.builder();
+      for (Map.Entry<Object, Collection<Integer>> entry : indexBuilder.asMap().entrySet()) {
+        index.put(entry.getKey(), Ints.toArray(entry.getValue()));
+      }
+      indexes.add(index.build());
+    }
+
+    return new RawRuleTable<>(ImmutableList.copyOf(dimensions), ImmutableList.copyOf(rules),
+        indexes.build(), unindexed);
+  }
+
+  /**
+   * @return All rules, in table order
+   */
+  public ImmutableList<Rule<Req, Resp>> rules() {
+    return rules;
+  }
+
+  /**
+   * @return Number of rules that are evaluated for every request
+   */
+  public int unindexedCount() {
+    return unindexed.cardinality();
+  }
+
+  /**
+   * @return The response fragments of all rules matching the request, in table order
+   */
+  public List<Resp> match(Req request) {
+    BitSet candidates = (BitSet) unindexed.clone();
+    for (int d = 0; d < indexes.size(); ++d) {
+      ImmutableMap<Object, int[]> index = indexes.get(d);
+      if (!index.isEmpty()) {
+        for (Object key : dimensions.get(d).keys(request)) {
+          int[] positions = index.get(key);
+          if (positions != null) {
+            for (int pos : positions) {
+              candidates.set(pos);
+            }
+          }
+        }
+      }
+    }
+
+    List<Resp> matched = ImmutableList.of();
+    for (int pos = candidates.nextSetBit(0); pos >= 0; pos = candidates.nextSetBit(pos + 1)) {
+      Rule<Req, Resp> rule = rules.get(pos);
+      if (rule.matcher.matches(request)) {
+        if (matched.isEmpty()) {
+          matched = new ArrayList<>();
+        }
+        matched.add(rule.response);
+      }
+    }
+    return matched;
+  }
+
+  /**
+   * Parses rules from text: a sequence of {@code request { ... } response { ... }} pairs,
+   * where each body is a message fragment in protobuf text format. Lines starting with
+   * {@code #} are comments.
+   */
+  public static <Req extends Message, Resp extends Message> List<Rule<Req, Resp>> parse(
+      CharSequence text, Req requestPrototype, Resp responsePrototype)
+      throws TextFormat.ParseException {
+    List<Rule<Req, Resp>> rules = new ArrayList<>();
+    Req request = null;
+    int pos = skipSpace(text, 0);
+
+    while (pos < text.length()) {
+      int nameEnd = pos;
+      while (nameEnd < text.length() && Character.isJavaIdentifierPart(text.charAt(nameEnd))) {
+        ++nameEnd;
+      }
+      String name = text.subSequence(pos, nameEnd).toString();
+      int open = skipSpace(text, nameEnd);
+      if (open < text.length() && text.charAt(open) == ':') {
+        open = skipSpace(text, open + 1);
+      }
+      if (open == text.length() || text.charAt(open) != '{') {
+        throw parseError(text, pos, "Expected 'request {' or 'response {'");
+      }
+      int close = closingBrace(text, open);
+      CharSequence body = text.subSequence(open + 1, close);
+
+      if (request == null && "request".equals(name)) {
+        request = merge(text, open, body, requestPrototype);
+      } else if (request != null && "response".equals(name)) {
+        rules.add(new Rule<>(request, merge(text, open, body, responsePrototype)));
+        request = null;
+      } else {
+        throw parseError(text, pos, "Unexpected '" + name + "'");
+      }
+      pos = skipSpace(text, close + 1);
+    }
+
+    if (request != null) {
+      throw parseError(text, pos, "Missing response for the last request");
+    }
+    return rules;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <M extends Message> M merge(
+      CharSequence text, int pos, CharSequence body, M prototype)
+      throws TextFormat.ParseException {
+    Message.Builder builder = prototype.newBuilderForType();
+    try {
+      TextFormat.merge(body, builder);
+    } catch (TextFormat.ParseException e) {
+      throw parseError(text, pos, e.getMessage());
+    }
+    return (M) builder.buildPartial();
+  }
+
+  private static int skipSpace(CharSequence text, int pos) {
+    while (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (c == '#') {
+        while (pos < text.length() && text.charAt(pos) != '\n') {
+          ++pos;
+        }
+      } else if (Character.isWhitespace(c)) {
+        ++pos;
+      } else {
+        break;
+      }
+    }
+    return pos;
+  }
+
+  private static int closingBrace(CharSequence text, int open) throws TextFormat.ParseException {
+    int depth = 0;
+    char quote = 0;
+    for (int pos = open; pos < text.length(); ++pos) {
+      char c = text.charAt(pos);
+      if (quote != 0) {
+        if (c == '\\') {
+          ++pos;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '#') {
+        while (pos + 1 < text.length() && text.charAt(pos + 1) != '\n') {
+          ++pos;
+        }
+      } else if (c == '{') {
+        ++depth;
+      } else if (c == '}' && --depth == 0) {
+        return pos;
+      }
+    }
+    throw parseError(text, open, "Unbalanced '{'");
+  }
+
+  private static TextFormat.ParseException parseError(CharSequence text, int pos, String msg) {
+    int line = 1;
+    for (int i = 0; i < pos && i < text.length(); ++i) {
+      if (text.charAt(i) == '\n') {
+        ++line;
+      }
+    }
+    return new TextFormat.ParseException("Line " + line + ": " + msg);
+  }
+
+  /**
+   * A rule: request fragment, compiled for matching, and the response fragment to merge.
+   */
+  public static final class Rule<Req extends Message, Resp extends Message> {
+    private final RawMessageMatcher<Req> matcher;
+    private final Resp response;
+
+    public Rule(Req request, Resp response) {
+      this.matcher = RawMessageMatcher.compile(request);
+      this.response = checkNotNull(response);
+    }
+
+    public Req request() {
+      return matcher.template();
+    }
+
+    public Resp response() {
+      return response;
+    }
+  }
+
+  /**
+   * A request attribute that rules can be indexed by.
+   */
+  public interface Dimension<M extends Message> {
+
+    /**
+     * @return A value that every request matching the fragment must contain in this dimension,
+     * or {@code null} if the fragment doesn't constrain this dimension
+     */
+    @Nullable Object templateKey(M fragment);
+
+    /**
+     * @return All values that the request contains in this dimension
+     */
+    Collection<?> keys(M request);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding.interceptor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.protobuf.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A hot-swappable {@link RawRuleTable}, loaded from a {@link RawRuleSource}. The table is
+ * loaded on construction, and when running as a service, reloaded periodically: a new table
+ * replaces the current one atomically, and if the source cannot be read or parsed, the
+ * current table is kept.
+ */
+public class RawRules<Req extends Message, Resp extends Message>
+    extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(RawRules.class);
+
+  private final RawRuleSource source;
+  private final ImmutableList<RawRuleTable.Dimension<Req>> dimensions;
+  private final Req requestPrototype;
+  private final Resp responsePrototype;
+  private final Scheduler scheduler;
+  private volatile RawRuleTable<Req, Resp> table;
+
+  public RawRules(
+      RawRuleSource source,
+      List<RawRuleTable.Dimension<Req>> dimensions,
+      Req requestPrototype,
+      Resp responsePrototype,
+      Scheduler scheduler) {
+    this.source = checkNotNull(source);
+    this.dimensions = ImmutableList.copyOf(dimensions);
+    this.requestPrototype = checkNotNull(requestPrototype);
+    this.responsePrototype = checkNotNull(responsePrototype);
+    this.scheduler = checkNotNull(scheduler);
+
+    try {
+      reload();
+    } catch (IOException e) {
+      throw new IllegalStateException("Rules unreadable: " + source, e);
+    }
+  }
+
+  /**
+   * @return The current rules
+   */
+  public RawRuleTable<Req, Resp> table() {
+    return table;
+  }
+
+  /**
+   * Reloads the rules if the source has changed.
+   *
+   * @return {@code true} if the table was replaced
+   * @throws IOException if the source cannot be read or parsed; the current table is kept
+   */
+  public synchronized boolean reload() throws IOException {
+    String text = source.read();
+    if (text == null) {
+      return false;
+    }
+    table = RawRuleTable.build(dimensions,
+        RawRuleTable.parse(text, requestPrototype, responsePrototype));
+    logger.info("Loaded {} raw rules from {} ({} unindexed)",
+        table.rules().size(), source, table.unindexedCount());
+    return true;
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  protected void runOneIteration() {
+    try {
+      reload();
+    } catch (IOException | RuntimeException e) {
+      // Keep the current rules, and keep the schedule alive for the next attempt
+      logger.error("Failed to reload raw rules from " + source, e);
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding.interceptor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openbidder.api.bidding.BidInterceptor;
+import com.google.openbidder.api.bidding.BidRequest;
+import com.google.openbidder.api.bidding.BidResponse;
+import com.google.openbidder.api.interceptor.InterceptorChain;
+import com.google.openrtb.OpenRtb;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Inject;
+
+/**
+ * Bids by matching a table of "raw" request patterns, merging the "raw" response of every
+ * matching rule. Like {@link RawBidInterceptor}, but for any number of rules, which are
+ * indexed by {@link #DIMENSIONS} and can be reloaded while serving.
+ */
+public class RawRulesBidInterceptor implements BidInterceptor {
+  private static final Logger logger = LoggerFactory.getLogger(RawRulesBidInterceptor.class);
+
+  /**
+   * Index dimensions for OpenRTB requests: publisher ID, banner size, and device country.
+   */
+  public static final ImmutableList<RawRuleTable.Dimension<OpenRtb.BidRequest>> DIMENSIONS =
+      ImmutableList.<RawRuleTable.Dimension<OpenRtb.BidRequest>>of(
+          new Publisher(), new BannerSize(), new Country());
+
+  private final RawRules<OpenRtb.BidRequest, OpenRtb.BidResponse> rules;
+
+  @Inject
+  public RawRulesBidInterceptor(RawRules<OpenRtb.BidRequest, OpenRtb.BidResponse> rules) {
+    this.rules = rules;
+  }
+
+  @Override
+  public void execute(InterceptorChain<BidRequest, BidResponse> chain) {
+    List<OpenRtb.BidResponse> matched = rules.table().match(chain.request().openRtb());
+
+    if (!matched.isEmpty()) {
+      OpenRtb.BidResponse.Builder resp = chain.response().openRtb();
+      for (OpenRtb.BidResponse rawResponse : matched) {
+        resp.mergeFrom(rawResponse);
+      }
+
+      logger.debug("Merged {} responses", matched.size());
+    }
+
+    chain.proceed();
+  }
+
+  static final class Publisher implements RawRuleTable.Dimension<OpenRtb.BidRequest> {
+    @Override public Object templateKey(OpenRtb.BidRequest fragment) {
+      if (fragment.getSite().getPublisher().hasId()) {
+        return fragment.getSite().getPublisher().getId();
+      } else if (fragment.getApp().getPublisher().hasId()) {
+        return fragment.getApp().getPublisher().getId();
+      } else {
+        return null;
+      }
+    }
+
+    @Override public Collection<?> keys(OpenRtb.BidRequest request) {
+      List<String> ids = new ArrayList<>(2);
+      if (request.getSite().getPublisher().hasId()) {
+        ids.add(request.getSite().getPublisher().getId());
+      }
+      if (request.getApp().getPublisher().hasId()) {
+        ids.add(request.getApp().getPublisher().getId());
+      }
+      return ids;
+    }
+  }
+
+  static final class BannerSize implements RawRuleTable.Dimension<OpenRtb.BidRequest> {
+    @Override public Object templateKey(OpenRtb.BidRequest fragment) {
+      if (fragment.getImpCount() != 0) {
+        Imp.Banner banner = fragment.getImp(0).getBanner();
+        if (banner.hasW() && banner.hasH()) {
+          return size(banner);
+        }
+      }
+      return null;
+    }
+
+    @Override public Collection<?> keys(OpenRtb.BidRequest request) {
+      List<Long> sizes = new ArrayList<>(request.getImpCount());
+      for (Imp imp : request.getImpList()) {
+        if (imp.getBanner().hasW() && imp.getBanner().hasH()) {
+          sizes.add(size(imp.getBanner()));
+        }
+      }
+      return sizes;
+    }
+
+    private static Long size(Imp.Banner banner) {
+      return ((long) banner.getW() << 32) | (banner.getH() & 0xFFFFFFFFL);
+    }
+  }
+
+  static final class Country implements RawRuleTable.Dimension<OpenRtb.BidRequest> {
+    @Override public Object templateKey(OpenRtb.BidRequest fragment) {
+      return fragment.getDevice().getGeo().hasCountry()
+          ? fragment.getDevice().getGeo().getCountry()
+          : null;
+    }
+
+    @Override public Collection<?> keys(OpenRtb.BidRequest request) {
+      return request.getDevice().getGeo().hasCountry()
+          ? ImmutableList.of(request.getDevice().getGeo().getCountry())
+          : ImmutableList.of();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding.interceptor;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.User;
+import com.google.openrtb.OpenRtb.ContentCategory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link RawMessageMatcher}.
+ */
+public class RawMessageMatcherTest {
+
+  @Test
+  public void testEmpty() {
+    RawMessageMatcher<BidRequest> matcher =
+        RawMessageMatcher.compile(BidRequest.newBuilder().buildPartial());
+    assertTrue(matcher.isEmpty());
+    assertTrue(matcher.matches(BidRequest.newBuilder().setAllimps(true).buildPartial()));
+  }
+
+  @Test
+  public void testMatchScalar() {
+    RawMessageMatcher<BidRequest> matcher = RawMessageMatcher.compile(
+        BidRequest.newBuilder().setAllimps(true).buildPartial());
+    assertTrue(matcher.matches(BidRequest.newBuilder().setAllimps(true).buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().setAllimps(false).buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().buildPartial()));
+  }
+
+  @Test
+  public void testMatchRepeated() {
+    RawMessageMatcher<BidRequest> matcher = RawMessageMatcher.compile(
+        BidRequest.newBuilder().addAllBcat(asList(
+            ContentCategory.IAB1, ContentCategory.IAB2, ContentCategory.IAB3, ContentCategory.IAB1))
+            .buildPartial());
+    assertTrue(matcher.matches(BidRequest.newBuilder().addAllBcat(asList(
+        ContentCategory.IAB4, ContentCategory.IAB3, ContentCategory.IAB2, ContentCategory.IAB1))
+        .buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().addAllBcat(asList(
+        ContentCategory.IAB1, ContentCategory.IAB2, ContentCategory.IAB4, ContentCategory.IAB5))
+        .buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().buildPartial()));
+  }
+
+  @Test
+  public void testMatchRepeatedLarge() {
+    List<String> keywords = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      keywords.add("k" + i);
+    }
+    RawMessageMatcher<BidRequest> matcher = RawMessageMatcher.compile(BidRequest.newBuilder()
+        .setUser(User.newBuilder().addAllKeywords(keywords)).buildPartial());
+    List<String> testKeywords = new ArrayList<>(keywords);
+    testKeywords.add("x");
+    assertTrue(matcher.matches(BidRequest.newBuilder()
+        .setUser(User.newBuilder().addAllKeywords(testKeywords)).buildPartial()));
+    testKeywords.remove("k50");
+    assertFalse(matcher.matches(BidRequest.newBuilder()
+        .setUser(User.newBuilder().addAllKeywords(testKeywords)).buildPartial()));
+  }
+
+  @Test
+  public void testMatchMessage() {
+    RawMessageMatcher<BidRequest> matcher = RawMessageMatcher.compile(BidRequest.newBuilder()
+        .setUser(User.newBuilder().setId("A").buildPartial()).buildPartial());
+    assertTrue(matcher.matches(BidRequest.newBuilder().setUser(
+        User.newBuilder().setId("A").addKeywords("X").buildPartial()).buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().setUser(
+        User.newBuilder().setId("B").addKeywords("X").buildPartial()).buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().setUser(
+        User.newBuilder().addKeywords("X").buildPartial()).buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().buildPartial()));
+  }
+
+  @Test
+  public void testMatchRepeatedMessage() {
+    Imp i = Imp.newBuilder().setId("1").setInstl(true).buildPartial();
+    Imp i1 = Imp.newBuilder().setId("1").setInstl(true).setTagid("X").buildPartial();
+    Imp i2 = Imp.newBuilder().setId("1").setInstl(false).setTagid("X").buildPartial();
+    Imp i3 = Imp.newBuilder().setId("1").setTagid("X").buildPartial();
+    RawMessageMatcher<BidRequest> matcher =
+        RawMessageMatcher.compile(BidRequest.newBuilder().addImp(i).buildPartial());
+    assertTrue(matcher.matches(BidRequest.newBuilder().addAllImp(asList(i1, i2)).buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().addAllImp(asList(i2, i3)).buildPartial()));
+    assertFalse(matcher.matches(BidRequest.newBuilder().buildPartial()));
+
+    // Each template element needs its own matching element
+    RawMessageMatcher<BidRequest> matcher2 =
+        RawMessageMatcher.compile(BidRequest.newBuilder().addImp(i).addImp(i).buildPartial());
+    assertFalse(matcher2.matches(BidRequest.newBuilder().addAllImp(asList(i1, i2)).buildPartial()));
+    assertTrue(matcher2.matches(
+        BidRequest.newBuilder().addAllImp(asList(i1, i2, i1)).buildPartial()));
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.bidding.interceptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.openrtb.OpenRtb.BidRequest;
+import com.google.openrtb.OpenRtb.BidRequest.Device;
+import com.google.openrtb.OpenRtb.BidRequest.Geo;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+import com.google.openrtb.OpenRtb.BidRequest.Imp.Banner;
+import com.google.openrtb.OpenRtb.BidResponse;
+import com.google.protobuf.TextFormat;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link RawRuleTable} and {@link RawRules}.
+ */
+public class RawRuleTableTest {
+  private static final String RULES =
+      "# Indexed by country\n"
+      + "request { device { geo { country: \"USA\" } } }\n"
+      + "response { id: \"usa\" }\n"
+      + "# Indexed by banner size\n"
+      + "request { imp { banner { w: 300 h: 250 } } }\n"
+      + "response { bidid: \"300x250\" }\n"
+      + "# Not indexed\n"
+      + "request { allimps: true }\n"
+      + "response { customdata: \"allimps\" }\n";
+
+  @Test
+  public void testMatch() throws IOException {
+    RawRuleTable<BidRequest, BidResponse> table = newTable(RULES);
+    assertEquals(3, table.rules().size());
+    assertEquals(1, table.unindexedCount());
+
+    BidRequest request = BidRequest.newBuilder()
+        .setDevice(Device.newBuilder().setGeo(Geo.newBuilder().setCountry("USA")))
+        .addImp(Imp.newBuilder().setId("1").setBanner(Banner.newBuilder().setW(728).setH(90)))
+        .addImp(Imp.newBuilder().setId("2").setBanner(Banner.newBuilder().setW(300).setH(250)))
+        .setAllimps(true)
+        .buildPartial();
+    List<BidResponse> matched = table.match(request);
+    assertEquals(3, matched.size());
+    assertEquals("usa", matched.get(0).getId());
+    assertEquals("300x250", matched.get(1).getBidid());
+    assertEquals("allimps", matched.get(2).getCustomdata());
+
+    assertTrue(table.match(request.toBuilder()
+        .setDevice(Device.newBuilder().setGeo(Geo.newBuilder().setCountry("CAN")))
+        .clearImp()
+        .setAllimps(false)
+        .buildPartial()).isEmpty());
+  }
+
+  @Test
+  public void testNoDimensions() throws IOException {
+    RawRuleTable<BidRequest, BidResponse> table = RawRuleTable.build(
+        new ArrayList<RawRuleTable.Dimension<BidRequest>>(),
+        RawRuleTable.parse(RULES, BidRequest.getDefaultInstance(),
+            BidResponse.getDefaultInstance()));
+    assertEquals(3, table.unindexedCount());
+    assertEquals(1, table.match(BidRequest.newBuilder().setAllimps(true).buildPartial()).size());
+  }
+
+  @Test(expected = TextFormat.ParseException.class)
+  public void testMissingResponse() throws IOException {
+    newTable("request { allimps: true }");
+  }
+
+  @Test(expected = TextFormat.ParseException.class)
+  public void testUnbalanced() throws IOException {
+    newTable("request { allimps: true \n response { }");
+  }
+
+  @Test(expected = TextFormat.ParseException.class)
+  public void testBadFragment() throws IOException {
+    newTable("request { nosuchfield: 1 }\nresponse { }");
+  }
+
+  @Test
+  public void testReload() throws IOException {
+    final List<String> texts = new ArrayList<>();
+    texts.add(RULES);
+    RawRuleSource source = new RawRuleSource() {
+      @Override public String read() {
+        return texts.isEmpty() ? null : texts.remove(0);
+      }};
+    RawRules<BidRequest, BidResponse> rules = new RawRules<>(
+        source, RawRulesBidInterceptor.DIMENSIONS,
+        BidRequest.getDefaultInstance(), BidResponse.getDefaultInstance(),
+        Scheduler.newFixedDelaySchedule(1, 1, TimeUnit.SECONDS));
+    RawRuleTable<BidRequest, BidResponse> table = rules.table();
+    assertEquals(3, table.rules().size());
+
+    assertFalse(rules.reload());
+    assertSame(table, rules.table());
+
+    texts.add("request { allimps: true }");
+    try {
+      rules.reload();
+    } catch (TextFormat.ParseException e) {
+      // Expected: the current rules are kept
+    }
+    assertSame(table, rules.table());
+
+    texts.add("request { allimps: true }\nresponse { id: \"1\" }");
+    assertTrue(rules.reload());
+    assertEquals(1, rules.table().rules().size());
+  }
+
+  private static RawRuleTable<BidRequest, BidResponse> newTable(String text) throws IOException {
+    return RawRuleTable.build(RawRulesBidInterceptor.DIMENSIONS, RawRuleTable.parse(
+        text, BidRequest.getDefaultInstance(), BidResponse.getDefaultInstance()));
+  }
+}
@@ -38,6 +38,7 @@ import com.google.openbidder.bidding.BidModule;
 import com.google.openbidder.config.http.Feature;
 import com.google.openbidder.exchange.doubleclick.config.DoubleClick;
 import com.google.openbidder.exchange.doubleclick.config.DoubleClickBidRequestPath;
+import com.google.openbidder.exchange.doubleclick.impression.DoubleClickPriceDecoder;
 import com.google.openbidder.exchange.doubleclick.server.DoubleClickBidRequestReceiver;
 import com.google.openbidder.exchange.doubleclick.server.OpenBidderExtMapper;
 import com.google.openbidder.http.route.AbstractHttpRouteProvider;
@@ -147,9 +148,10 @@ public class DoubleClickModule extends AbstractModule {
     if (!Strings.isNullOrEmpty(encryptionKey) && !Strings.isNullOrEmpty(integrityKey)) {
       try {
         BaseEncoding base64 = BaseEncoding.base64();
-        bind(DoubleClickCrypto.Keys.class).toInstance(new DoubleClickCrypto.Keys(
+        DoubleClickCrypto.Keys keys = new DoubleClickCrypto.Keys(
             new SecretKeySpec(base64.decode(encryptionKey), DoubleClickCrypto.KEY_ALGORITHM),
-            new SecretKeySpec(base64.decode(integrityKey), DoubleClickCrypto.KEY_ALGORITHM)));
+            new SecretKeySpec(base64.decode(integrityKey), DoubleClickCrypto.KEY_ALGORITHM));
+        bind(DoubleClickCrypto.Keys.class).toInstance(keys);
         logger.info("Setting Encryption and Integrity keys");
       } catch (InvalidKeyException e) {
         throw new IllegalStateException(e);
@@ -165,6 +167,8 @@ public class DoubleClickModule extends AbstractModule {
           .toProvider(Providers.<DoubleClickCrypto.Idfa>of(null));
       bind(DoubleClickCrypto.Price.class)
           .toProvider(Providers.<DoubleClickCrypto.Price>of(null));
+      bind(DoubleClickPriceDecoder.class)
+          .toProvider(Providers.<DoubleClickPriceDecoder>of(null));
     }
   }
 
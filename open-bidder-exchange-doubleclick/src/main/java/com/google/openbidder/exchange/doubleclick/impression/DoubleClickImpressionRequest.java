@@ -18,14 +18,24 @@ import javax.annotation.Nullable;
  */
 public class DoubleClickImpressionRequest extends ImpressionRequest {
   private final DoubleClickCrypto.Price priceCrypto;
+  private final DoubleClickPriceDecoder priceDecoder;
 
   protected DoubleClickImpressionRequest(
       Exchange exchange, HttpRequest httpRequest,
       @Nullable String priceName,
       @Nullable DoubleClickCrypto.Price priceCrypto) {
+    this(exchange, httpRequest, priceName, priceCrypto, null);
+  }
+
+  protected DoubleClickImpressionRequest(
+      Exchange exchange, HttpRequest httpRequest,
+      @Nullable String priceName,
+      @Nullable DoubleClickCrypto.Price priceCrypto,
+      @Nullable DoubleClickPriceDecoder priceDecoder) {
     super(exchange, httpRequest, priceName);
 
     this.priceCrypto = priceCrypto;
+    this.priceDecoder = priceDecoder;
   }
 
   public static Builder newBuilder() {
@@ -38,19 +48,26 @@ public class DoubleClickImpressionRequest extends ImpressionRequest {
         .setExchange(getExchange())
         .setHttpRequest(httpRequest())
         .setPriceName(getPriceName())
-        .setPriceCrypto(priceCrypto);
+        .setPriceCrypto(priceCrypto)
+        .setPriceDecoder(priceDecoder);
   }
 
+  /**
+   * Decodes the price with the {@link DoubleClickPriceDecoder} if set, which is faster;
+   * otherwise with the {@link DoubleClickCrypto.Price}.
+   */
   @Override
   protected double decodePrice(String encodedPrice) {
-    if (priceCrypto == null) {
+    if (priceDecoder == null && priceCrypto == null) {
       throw new IllegalStateException("Not configured for price decryption (missing keys?)");
     }
 
     if (!Strings.isNullOrEmpty(encodedPrice)
         && !DoubleClickConstants.PRICE_UNKNOWN.equals(encodedPrice)) {
       try {
-        return priceCrypto.decodePriceValue(encodedPrice);
+        return priceDecoder == null
+            ? priceCrypto.decodePriceValue(encodedPrice)
+            : priceDecoder.decodePriceValue(encodedPrice);
       } catch (SignatureException e) {
         throw new IllegalStateException(e);
       }
@@ -64,6 +81,7 @@ public class DoubleClickImpressionRequest extends ImpressionRequest {
    */
   public static class Builder extends ImpressionRequest.Builder {
     private DoubleClickCrypto.Price priceCrypto;
+    private DoubleClickPriceDecoder priceDecoder;
 
     protected Builder() {
     }
@@ -85,6 +103,15 @@ public class DoubleClickImpressionRequest extends ImpressionRequest {
       return priceCrypto;
     }
 
+    public Builder setPriceDecoder(@Nullable DoubleClickPriceDecoder priceDecoder) {
+      this.priceDecoder = priceDecoder;
+      return self();
+    }
+
+    public @Nullable DoubleClickPriceDecoder getPriceDecoder() {
+      return priceDecoder;
+    }
+
     // Overrides for covariance
     @Override public Builder setPriceName(@Nullable String priceName) {
       return (Builder) super.setPriceName(priceName);
@@ -101,7 +128,8 @@ public class DoubleClickImpressionRequest extends ImpressionRequest {
           MoreObjects.firstNonNull(getExchange(), defaultExchange()),
           builtHttpRequest(),
           getPriceName(),
-          priceCrypto);
+          priceCrypto,
+          priceDecoder);
     }
   }
 }
@@ -19,15 +19,25 @@ import javax.annotation.Nullable;
 @Singleton
 public class DoubleClickImpressionRequestReceiver extends ImpressionRequestReceiver {
   private final DoubleClickCrypto.Price priceCrypto;
+  private final DoubleClickPriceDecoder priceDecoder;
   private final String priceName;
 
+  public DoubleClickImpressionRequestReceiver(
+      Exchange exchange, MetricRegistry metricRegistry, ImpressionController controller,
+      @Nullable DoubleClickCrypto.Price priceCrypto,
+      @PriceName @Nullable String priceName) {
+    this(exchange, metricRegistry, controller, priceCrypto, null, priceName);
+  }
+
   @Inject
   public DoubleClickImpressionRequestReceiver(
       Exchange exchange, MetricRegistry metricRegistry, ImpressionController controller,
       @Nullable DoubleClickCrypto.Price priceCrypto,
+      @Nullable DoubleClickPriceDecoder priceDecoder,
       @PriceName @Nullable String priceName) {
     super(exchange, metricRegistry, controller);
     this.priceCrypto = priceCrypto;
+    this.priceDecoder = priceDecoder;
     this.priceName = priceName;
   }
 
@@ -37,6 +47,7 @@ public class DoubleClickImpressionRequestReceiver extends ImpressionRequestRecei
         .setExchange(getExchange())
         .setHttpRequest(httpRequest)
         .setPriceCrypto(priceCrypto)
+        .setPriceDecoder(priceDecoder)
         .setPriceName(priceName)
         .build();
   }
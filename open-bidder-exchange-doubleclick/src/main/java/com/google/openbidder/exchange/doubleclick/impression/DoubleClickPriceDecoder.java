@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.exchange.doubleclick.impression;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Longs;
+import com.google.doubleclick.crypto.DoubleClickCrypto;
+
+import java.security.GeneralSecurityException;
+import java.security.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Decodes DoubleClick encrypted winning prices, with the same results as
+ * {@link DoubleClickCrypto.Price#decodePriceValue(String)} but without its setup costs:
+ * each thread keeps its own pair of initialized HMACs, reused for every price, so a decode
+ * costs only the two HMAC computations. This is safe to share by all requests.
+ * <p>
+ * The encrypted price is the web-safe base64 encoding of a 16-byte initialization vector,
+ * the 8-byte price in micros XORed with {@code HMAC(encryptionKey, iv)}, and a 4-byte
+ * signature, the prefix of {@code HMAC(integrityKey, price || iv)}.
+ */
+@Singleton
+public final class DoubleClickPriceDecoder {
+  private static final BaseEncoding BASE64 = BaseEncoding.base64Url();
+  private static final int INITV_SIZE = 16;
+  private static final int PRICE_SIZE = 8;
+  private static final int SIGNATURE_SIZE = 4;
+  private static final int PAYLOAD_SIZE = INITV_SIZE + PRICE_SIZE + SIGNATURE_SIZE;
+
+  private final SecretKey encryptionKey;
+  private final SecretKey integrityKey;
+  private final ThreadLocal<Mac[]> macs = new ThreadLocal<Mac[]>() {
+    @Override protected Mac[] initialValue() {
+      return new Mac[] { createMac(encryptionKey), createMac(integrityKey) };
+    }};
+
+  @Inject
+  public DoubleClickPriceDecoder(DoubleClickCrypto.Keys keys) {
+    this.encryptionKey = checkNotNull(keys.getEncryptionKey());
+    this.integrityKey = checkNotNull(keys.getIntegrityKey());
+  }
+
+  /**
+   * Decodes a price.
+   *
+   * @param encodedPrice Encrypted price, as sent in the {@code WINNING_PRICE} macro
+   * @return Price in the account currency, usually a CPM
+   * @throws SignatureException if the price is malformed, or not signed with our keys
+   */
+  public double decodePriceValue(String encodedPrice) throws SignatureException {
+    return decodePriceMicros(encodedPrice) / 1e6;
+  }
+
+  /**
+   * Decodes a price in micros.
+   *
+   * @see #decodePriceValue(String)
+   */
+  public long decodePriceMicros(String encodedPrice) throws SignatureException {
+    byte[] payload;
+    try {
+      payload = BASE64.decode(encodedPrice);
+    } catch (IllegalArgumentException e) {
+      throw new SignatureException("Invalid price encoding: " + encodedPrice, e);
+    }
+    if (payload.length != PAYLOAD_SIZE) {
+      throw new SignatureException("Invalid price size: " + payload.length);
+    }
+
+    Mac[] macs = this.macs.get();
+    macs[0].update(payload, 0, INITV_SIZE);
+    byte[] pad = macs[0].doFinal();
+    for (int i = 0; i < PRICE_SIZE; ++i) {
+      payload[INITV_SIZE + i] ^= pad[i];
+    }
+
+    macs[1].update(payload, INITV_SIZE, PRICE_SIZE);
+    macs[1].update(payload, 0, INITV_SIZE);
+    byte[] signature = macs[1].doFinal();
+    int mismatch = 0;
+    for (int i = 0; i < SIGNATURE_SIZE; ++i) {
+      mismatch |= signature[i] ^ payload[INITV_SIZE + PRICE_SIZE + i];
+    }
+    if (mismatch != 0) {
+      throw new SignatureException("Price signature mismatch: " + encodedPrice);
+    }
+
+    return Longs.fromBytes(
+        payload[INITV_SIZE], payload[INITV_SIZE + 1],
+        payload[INITV_SIZE + 2], payload[INITV_SIZE + 3],
+        payload[INITV_SIZE + 4], payload[INITV_SIZE + 5],
+        payload[INITV_SIZE + 6], payload[INITV_SIZE + 7]);
+  }
+
+  private static Mac createMac(SecretKey key) {
+    try {
+      Mac mac = Mac.getInstance(DoubleClickCrypto.KEY_ALGORITHM);
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
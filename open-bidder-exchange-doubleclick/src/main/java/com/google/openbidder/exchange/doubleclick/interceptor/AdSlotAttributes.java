@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.exchange.doubleclick.interceptor;
+
+import com.google.doubleclick.DcExt;
+import com.google.openbidder.api.bidding.BidRequest;
+import com.google.openbidder.api.bidding.ImpIndex;
+import com.google.openrtb.OpenRtb.BidRequest.Imp;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * The excluded creative attributes of an impression's DoubleClick ad slot, decoded once per
+ * request into a bitset of attribute codes.
+ */
+public final class AdSlotAttributes {
+  private static final AdSlotAttributes NONE = new AdSlotAttributes(new long[0]);
+
+  /**
+   * Caches the decoded attributes in the request's {@link ImpIndex}.
+   */
+  public static final ImpIndex.Key<AdSlotAttributes> KEY = new ImpIndex.Key<AdSlotAttributes>() {
+    @Override protected AdSlotAttributes compute(Imp imp) {
+      return imp.hasExtension(DcExt.adSlot)
+          ? of(imp.getExtension(DcExt.adSlot).getExcludedAttributeList())
+          : NONE;
+    }};
+
+  private final long[] excluded;
+
+  private AdSlotAttributes(long[] excluded) {
+    this.excluded = excluded;
+  }
+
+  /**
+   * @return Attributes for the impression with the given ID, or {@code null} if not found
+   */
+  public static @Nullable AdSlotAttributes forImp(BidRequest request, String impId) {
+    return request.impIndex().get(impId, KEY);
+  }
+
+  static AdSlotAttributes of(List<Integer> excludedAttributes) {
+    if (excludedAttributes.isEmpty()) {
+      return NONE;
+    }
+    int max = 0;
+    for (int attribute : excludedAttributes) {
+      max = Math.max(max, attribute);
+    }
+    long[] excluded = new long[(max >> 6) + 1];
+    for (int attribute : excludedAttributes) {
+      if (attribute >= 0) {
+        excluded[attribute >> 6] |= 1L << attribute;
+      }
+    }
+    return new AdSlotAttributes(excluded);
+  }
+
+  /**
+   * @return {@code true} if the ad slot excludes creatives with the given attribute
+   */
+  public boolean isExcluded(int attribute) {
+    int word = attribute >> 6;
+    return attribute >= 0 && word < excluded.length && (excluded[word] & (1L << attribute)) != 0;
+  }
+}
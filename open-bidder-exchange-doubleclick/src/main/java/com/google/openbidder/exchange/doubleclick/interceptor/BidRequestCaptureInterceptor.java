@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.exchange.doubleclick.interceptor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.inject.BindingAnnotation;
+import com.google.openbidder.api.bidding.BidInterceptor;
+import com.google.openbidder.api.bidding.BidRequest;
+import com.google.openbidder.api.bidding.BidResponse;
+import com.google.openbidder.api.interceptor.InterceptorChain;
+import com.google.openbidder.api.platform.CompatibleExchanges;
+import com.google.openbidder.exchange.doubleclick.config.DoubleClick;
+import com.google.openbidder.http.capture.CaptureReader;
+import com.google.openbidder.http.capture.CaptureWriter;
+import com.google.protos.adx.NetworkBid;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.inject.Inject;
+
+/**
+ * Captures a sample of the native {@link NetworkBid.BidRequest}s to binary, length-delimited
+ * files, which can be read with {@link CaptureReader} (and replayed by the requester tool).
+ * Unlike {@link BidRequestDumpInterceptor}, the request thread only enqueues the message;
+ * serialization and disk I/O happen in the {@link CaptureWriter}'s background thread.
+ */
+@CompatibleExchanges(DoubleClick.NAME)
+public class BidRequestCaptureInterceptor implements BidInterceptor {
+  private final CaptureWriter captureWriter;
+
+  @Inject
+  public BidRequestCaptureInterceptor(
+      @Capture CaptureWriter captureWriter, MetricRegistry metricRegistry) {
+    this.captureWriter = checkNotNull(captureWriter);
+
+    metricRegistry.register(MetricRegistry.name(getClass(), "captured"), new Gauge<Long>() {
+      @Override public Long getValue() {
+        return BidRequestCaptureInterceptor.this.captureWriter.getWrittenCount();
+      }});
+    metricRegistry.register(MetricRegistry.name(getClass(), "dropped"), new Gauge<Long>() {
+      @Override public Long getValue() {
+        return BidRequestCaptureInterceptor.this.captureWriter.getDroppedCount();
+      }});
+  }
+
+  @Override
+  public void execute(InterceptorChain<BidRequest, BidResponse> chain) {
+    captureWriter.capture(chain.request().<NetworkBid.BidRequest>nativeRequest());
+    chain.proceed();
+  }
+
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface Capture {
+  }
+}
@@ -49,7 +49,8 @@ import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 /**
- * Dumps requests to a file.
+ * Dumps requests to a file, hex-encoded, one per line. This does blocking I/O in the request
+ * thread; prefer {@link BidRequestCaptureInterceptor} for continuous sampling in production.
  */
 @CompatibleExchanges(DoubleClick.NAME)
 public class BidRequestDumpInterceptor implements BidInterceptor {
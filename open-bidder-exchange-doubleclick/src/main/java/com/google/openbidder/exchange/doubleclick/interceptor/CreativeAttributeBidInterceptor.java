@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.exchange.doubleclick.interceptor;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.doubleclick.DcExt;
+import com.google.inject.BindingAnnotation;
+import com.google.openbidder.api.bidding.BidInterceptor;
+import com.google.openbidder.api.bidding.BidRequest;
+import com.google.openbidder.api.bidding.BidResponse;
+import com.google.openbidder.api.bidding.ImpIndex;
+import com.google.openbidder.api.interceptor.InterceptorChain;
+import com.google.openbidder.api.platform.CompatibleExchanges;
+import com.google.openbidder.exchange.doubleclick.DoubleClickConstants;
+import com.google.openbidder.exchange.doubleclick.config.DoubleClick;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+import com.google.protos.adx.NetworkBid.BidResponse.Ad;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.List;
+
+import javax.inject.Inject;
+
+/**
+ * Combines {@link FlashlessBidInterceptor}, {@link SSLBidInterceptor} and
+ * {@link VideoBidInterceptor} in a single pass: all attributes missing from a bid's
+ * {@link Ad} are computed together, and the extension is rebuilt at most once per bid.
+ * Use this instead of (not together with) the individual interceptors, at the beginning
+ * of your bid interceptor chain. The counters keep the names of the individual interceptors,
+ * so existing dashboards keep working.
+ */
+@CompatibleExchanges(DoubleClick.NAME)
+public class CreativeAttributeBidInterceptor implements BidInterceptor {
+  private final boolean flashless;
+  private final boolean ssl;
+  private final boolean video;
+  private final Counter flashlessAdded;
+  private final Counter sslAdded;
+  private final Counter videoFixed;
+
+  @Inject
+  public CreativeAttributeBidInterceptor(
+      MetricRegistry metricRegistry, @Normalizations ImmutableSet<Normalization> normalizations) {
+    this.flashless = normalizations.contains(Normalization.FLASHLESS);
+    this.ssl = normalizations.contains(Normalization.SSL);
+    this.video = normalizations.contains(Normalization.VIDEO);
+    this.flashlessAdded = metricRegistry.counter(
+        MetricRegistry.name(FlashlessBidInterceptor.class, "flashless-added"));
+    this.sslAdded = metricRegistry.counter(
+        MetricRegistry.name(SSLBidInterceptor.class, "ssl-added"));
+    this.videoFixed = metricRegistry.counter(
+        MetricRegistry.name(VideoBidInterceptor.class, "video-fixed"));
+  }
+
+  public CreativeAttributeBidInterceptor(MetricRegistry metricRegistry) {
+    this(metricRegistry, Normalization.ALL);
+  }
+
+  @Override
+  public void execute(final InterceptorChain<BidRequest, BidResponse> chain) {
+    chain.proceed();
+
+    final ImpIndex impIndex = chain.request().impIndex();
+    chain.response().updateBids(new Function<Bid.Builder, Boolean>() {
+      @Override public Boolean apply(Bid.Builder bid) {
+        int pos = impIndex.indexOf(bid.getImpid());
+        if (pos == -1) {
+          return false; // Shouldn't happen... but not this interceptor's problem
+        }
+
+        AdSlotAttributes adSlot = impIndex.get(pos, AdSlotAttributes.KEY);
+        Ad ad = bid.getExtension(DcExt.ad);
+        List<Integer> attrs = ad.getAttributeList();
+        boolean addFlashless = flashless
+            && adSlot.isExcluded(DoubleClickConstants.CREATIVE_FLASH)
+            && !attrs.contains(DoubleClickConstants.CREATIVE_NON_FLASH);
+        boolean addSsl = ssl
+            && adSlot.isExcluded(DoubleClickConstants.CREATIVE_NON_SSL)
+            && !attrs.contains(DoubleClickConstants.CREATIVE_SSL);
+        boolean addVast = video
+            && impIndex.imps().get(pos).hasVideo()
+            && !attrs.contains(DoubleClickConstants.CREATIVE_VAST)
+            && !attrs.contains(DoubleClickConstants.CREATIVE_VPAID_FLASH);
+
+        if (!addFlashless && !addSsl && !addVast) {
+          return false;
+        }
+
+        Ad.Builder adBuilder = ad.toBuilder();
+        if (addFlashless) {
+          adBuilder.addAttribute(DoubleClickConstants.CREATIVE_NON_FLASH);
+          flashlessAdded.inc();
+        }
+        if (addSsl) {
+          adBuilder.addAttribute(DoubleClickConstants.CREATIVE_SSL);
+          sslAdded.inc();
+        }
+        if (addVast) {
+          adBuilder.addAttribute(DoubleClickConstants.CREATIVE_VAST);
+          videoFixed.inc();
+        }
+        bid.setExtension(DcExt.ad, adBuilder.build());
+        return true;
+      }});
+  }
+
+  /**
+   * Attribute normalizations that {@link CreativeAttributeBidInterceptor} can apply.
+   */
+  public static enum Normalization {
+    /**
+     * Adds {@link DoubleClickConstants#CREATIVE_NON_FLASH} if the slot excludes Flash.
+     */
+    FLASHLESS,
+    /**
+     * Adds {@link DoubleClickConstants#CREATIVE_SSL} if the slot excludes non-SSL creatives.
+     */
+    SSL,
+    /**
+     * Adds {@link DoubleClickConstants#CREATIVE_VAST} to video bids missing a video attribute.
+     */
+    VIDEO;
+
+    public static final ImmutableSet<Normalization> ALL =
+        ImmutableSet.copyOf(Normalization.values());
+  }
+
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface Normalizations {
+  }
+}
@@ -16,7 +16,17 @@
 
 package com.google.openbidder.exchange.doubleclick.interceptor;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Enums;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+import com.google.openbidder.bidding.RawRulesModule;
+import com.google.openbidder.bidding.interceptor.RawRules;
+import com.google.openbidder.http.capture.CaptureWriter;
 import com.google.protobuf.Message;
 import com.google.protobuf.TextFormat;
 import com.google.protos.adx.NetworkBid;
@@ -31,6 +41,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Standard DoubleClick interceptors.
@@ -43,6 +57,26 @@ public class DoubleClickInterceptorsModule extends AbstractModule {
       description = "Filename to dump native BidRequest messages")
   private String dumpFilename;
 
+  @Parameter(names = "--doubleclick_capture_dir",
+      description = "Directory to capture a sample of native BidRequest messages")
+  private String captureDir;
+
+  @Parameter(names = "--doubleclick_capture_sample_rate",
+      description = "Capture one in every N requests")
+  private int captureSampleRate = 100;
+
+  @Parameter(names = "--doubleclick_capture_queue",
+      description = "Maximum number of captured requests waiting to be written")
+  private int captureQueue = 4096;
+
+  @Parameter(names = "--doubleclick_capture_file_mb",
+      description = "Maximum size of each capture file, in megabytes")
+  private int captureFileMb = 64;
+
+  @Parameter(names = "--doubleclick_capture_files",
+      description = "Maximum number of capture files to keep (0 = unlimited)")
+  private int captureFiles = 16;
+
   @Parameter(names = "--doubleclick_raw_request",
       description = "Raw BidRequest message resource")
   private String rawRequest = RawBidInterceptor.RawRequest.DEFAULT;
@@ -51,8 +85,36 @@ public class DoubleClickInterceptorsModule extends AbstractModule {
       description = "Raw BidResponse message resource")
   private String rawResponse;
 
+  @Parameter(names = "--doubleclick_raw_rules",
+      description = "Raw BidRequest/BidResponse rules file, resource, or gs://bucket/object"
+          + " (Cloud Storage requires the storage module)")
+  private String rawRules;
+
+  @Parameter(names = "--doubleclick_raw_rules_reload_seconds",
+      description = "Period for reloading changed raw rules (0=disabled)")
+  private int rawRulesReloadSeconds = 60;
+
+  @Parameter(names = "--doubleclick_attribute_normalizations",
+      description = "Comma separated list of creative attribute normalizations "
+          + "(FLASHLESS, SSL, VIDEO) for CreativeAttributeBidInterceptor")
+  private List<String> normalizations = new ArrayList<>(Arrays.asList("FLASHLESS", "SSL", "VIDEO"));
+
   @Override
   protected void configure() {
+    ImmutableSet.Builder<CreativeAttributeBidInterceptor.Normalization> normalizationSet =
+        ImmutableSet.builder();
+    for (String normalization : normalizations) {
+      String name = normalization.trim().toUpperCase(Locale.US);
+      checkArgument(Enums.getIfPresent(
+          CreativeAttributeBidInterceptor.Normalization.class, name).isPresent(),
+          "--doubleclick_attribute_normalizations: unknown normalization %s, expected %s",
+          normalization, CreativeAttributeBidInterceptor.Normalization.ALL);
+      normalizationSet.add(CreativeAttributeBidInterceptor.Normalization.valueOf(name));
+    }
+    bind(new TypeLiteral<ImmutableSet<CreativeAttributeBidInterceptor.Normalization>>() {})
+        .annotatedWith(CreativeAttributeBidInterceptor.Normalizations.class)
+        .toInstance(normalizationSet.build());
+
     if (dumpFilename != null) {
       File file = new File(dumpFilename);
       try {
@@ -62,6 +124,15 @@ public class DoubleClickInterceptorsModule extends AbstractModule {
       bind(File.class).annotatedWith(BidRequestDumpInterceptor.DumpFile.class).toInstance(file);
     }
 
+    if (captureDir != null) {
+      CaptureWriter captureWriter = new CaptureWriter(
+          new File(captureDir), "bidrequest", captureSampleRate, captureQueue,
+          captureFileMb * 1024L * 1024L, captureFiles);
+      bind(CaptureWriter.class).annotatedWith(BidRequestCaptureInterceptor.Capture.class)
+          .toInstance(captureWriter);
+      Multibinder.newSetBinder(binder(), Service.class).addBinding().toInstance(captureWriter);
+    }
+
     if (rawResponse != null) {
       try {
         bind(NetworkBid.BidRequest.class).annotatedWith(RawBidInterceptor.RawRequest.class)
@@ -74,6 +145,14 @@ public class DoubleClickInterceptorsModule extends AbstractModule {
         throw new IllegalStateException("Resource unreadable: " + e);
       }
     }
+
+    if (rawRules != null) {
+      install(new RawRulesModule<>(
+          new TypeLiteral<RawRules<NetworkBid.BidRequest, NetworkBid.BidResponse>>() {},
+          rawRules, RawRulesBidInterceptor.DIMENSIONS,
+          NetworkBid.BidRequest.getDefaultInstance(), NetworkBid.BidResponse.getDefaultInstance(),
+          rawRulesReloadSeconds));
+    }
   }
 
   private static Message readRawMessage(String valueOrResource, Message.Builder builder)
@@ -24,9 +24,7 @@ import com.google.openbidder.api.interceptor.InterceptorChain;
 import com.google.openbidder.api.platform.CompatibleExchanges;
 import com.google.openbidder.exchange.doubleclick.DoubleClickConstants;
 import com.google.openbidder.exchange.doubleclick.config.DoubleClick;
-import com.google.openrtb.OpenRtb.BidRequest.Imp;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
-import com.google.protos.adx.NetworkBid;
 import com.google.protos.adx.NetworkBid.BidResponse.Ad;
 
 import com.codahale.metrics.Counter;
@@ -56,14 +54,12 @@ public class FlashlessBidInterceptor implements BidInterceptor {
     chain.proceed();
 
     for (Bid.Builder bid : chain.response().bids()) {
-      Imp imp = chain.request().impWithId(bid.getImpid());
-      if (imp == null) {
+      AdSlotAttributes adSlot = AdSlotAttributes.forImp(chain.request(), bid.getImpid());
+      if (adSlot == null) {
         continue; // Shoudln't happen... but not this interceptor's problem
       }
 
-      NetworkBid.BidRequest.AdSlot adSlot = imp.getExtension(DcExt.adSlot);
-
-      if (adSlot.getExcludedAttributeList().contains(DoubleClickConstants.CREATIVE_FLASH)) {
+      if (adSlot.isExcluded(DoubleClickConstants.CREATIVE_FLASH)) {
         Ad ad = bid.getExtension(DcExt.ad);
         if (!ad.getAttributeList().contains(DoubleClickConstants.CREATIVE_NON_FLASH)) {
           bid.setExtension(DcExt.ad, ad.toBuilder()
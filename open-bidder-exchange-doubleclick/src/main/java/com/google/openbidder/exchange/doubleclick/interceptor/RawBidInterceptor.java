@@ -27,7 +27,7 @@ import com.google.openbidder.api.bidding.BidRequest;
 import com.google.openbidder.api.bidding.BidResponse;
 import com.google.openbidder.api.interceptor.InterceptorChain;
 import com.google.openbidder.api.platform.CompatibleExchanges;
-import com.google.openbidder.bidding.interceptor.RawMessageUtils;
+import com.google.openbidder.bidding.interceptor.RawMessageMatcher;
 import com.google.openbidder.exchange.doubleclick.config.DoubleClick;
 import com.google.protobuf.TextFormat;
 import com.google.protos.adx.NetworkBid;
@@ -47,14 +47,14 @@ import javax.inject.Inject;
 public class RawBidInterceptor implements BidInterceptor {
   private static final Logger logger = LoggerFactory.getLogger(RawBidInterceptor.class);
 
-  private final NetworkBid.BidRequest rawRequest;
+  private final RawMessageMatcher<NetworkBid.BidRequest> rawRequest;
   private final NetworkBid.BidResponse rawResponse;
 
   @Inject
   public RawBidInterceptor(
       @RawRequest NetworkBid.BidRequest rawRequest,
       @RawResponse NetworkBid.BidResponse rawResponse) {
-    this.rawRequest = rawRequest;
+    this.rawRequest = RawMessageMatcher.compile(rawRequest);
     this.rawResponse = rawResponse;
 
     logger.debug("Matching request fragment: {}", TextFormat.shortDebugString(rawRequest));
@@ -65,7 +65,7 @@ public class RawBidInterceptor implements BidInterceptor {
   public void execute(InterceptorChain<BidRequest, BidResponse> chain) {
     NetworkBid.BidRequest req = chain.request().nativeRequest();
 
-    if (RawMessageUtils.matches(req, rawRequest)) {
+    if (rawRequest.matches(req)) {
       NetworkBid.BidResponse.Builder resp = chain.response().nativeResponse();
       resp.mergeFrom(rawResponse);
 
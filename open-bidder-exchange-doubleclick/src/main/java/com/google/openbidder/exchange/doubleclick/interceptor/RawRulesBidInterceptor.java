@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.exchange.doubleclick.interceptor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openbidder.api.bidding.BidInterceptor;
+import com.google.openbidder.api.bidding.BidRequest;
+import com.google.openbidder.api.bidding.BidResponse;
+import com.google.openbidder.api.interceptor.InterceptorChain;
+import com.google.openbidder.api.platform.CompatibleExchanges;
+import com.google.openbidder.bidding.interceptor.RawRuleTable;
+import com.google.openbidder.bidding.interceptor.RawRules;
+import com.google.openbidder.exchange.doubleclick.config.DoubleClick;
+import com.google.protos.adx.NetworkBid;
+import com.google.protos.adx.NetworkBid.BidRequest.AdSlot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Inject;
+
+/**
+ * Bids by matching a table of "raw" request patterns, merging the "raw" response of every
+ * matching rule. Like {@link RawBidInterceptor}, but for any number of rules, which are
+ * indexed by {@link #DIMENSIONS} and can be reloaded while serving.
+ */
+@CompatibleExchanges(DoubleClick.NAME)
+public class RawRulesBidInterceptor implements BidInterceptor {
+  private static final Logger logger = LoggerFactory.getLogger(RawRulesBidInterceptor.class);
+
+  /**
+   * Index dimensions for DoubleClick requests: seller network, ad slot width,
+   * and geographic criteria.
+   */
+  public static final ImmutableList<RawRuleTable.Dimension<NetworkBid.BidRequest>> DIMENSIONS =
+      ImmutableList.<RawRuleTable.Dimension<NetworkBid.BidRequest>>of(
+          new SellerNetwork(), new AdSlotWidth(), new GeoCriteria());
+
+  private final RawRules<NetworkBid.BidRequest, NetworkBid.BidResponse> rules;
+
+  @Inject
+  public RawRulesBidInterceptor(RawRules<NetworkBid.BidRequest, NetworkBid.BidResponse> rules) {
+    this.rules = rules;
+  }
+
+  @Override
+  public void execute(InterceptorChain<BidRequest, BidResponse> chain) {
+    NetworkBid.BidRequest req = chain.request().nativeRequest();
+    List<NetworkBid.BidResponse> matched = rules.table().match(req);
+
+    if (!matched.isEmpty()) {
+      NetworkBid.BidResponse.Builder resp = chain.response().nativeResponse();
+      for (NetworkBid.BidResponse rawResponse : matched) {
+        resp.mergeFrom(rawResponse);
+      }
+
+      logger.debug("Merged {} native responses", matched.size());
+    }
+
+    chain.proceed();
+  }
+
+  static final class SellerNetwork implements RawRuleTable.Dimension<NetworkBid.BidRequest> {
+    @Override public Object templateKey(NetworkBid.BidRequest fragment) {
+      return fragment.hasSellerNetworkId() ? fragment.getSellerNetworkId() : null;
+    }
+
+    @Override public Collection<?> keys(NetworkBid.BidRequest request) {
+      return request.hasSellerNetworkId()
+          ? ImmutableList.of(request.getSellerNetworkId())
+          : ImmutableList.of();
+    }
+  }
+
+  /**
+   * Only the width: a fragment's widths and heights are matched independently.
+   */
+  static final class AdSlotWidth implements RawRuleTable.Dimension<NetworkBid.BidRequest> {
+    @Override public Object templateKey(NetworkBid.BidRequest fragment) {
+      return fragment.getAdslotCount() != 0 && fragment.getAdslot(0).getWidthCount() != 0
+          ? fragment.getAdslot(0).getWidth(0)
+          : null;
+    }
+
+    @Override public Collection<?> keys(NetworkBid.BidRequest request) {
+      List<Integer> widths = new ArrayList<>();
+      for (AdSlot adSlot : request.getAdslotList()) {
+        widths.addAll(adSlot.getWidthList());
+      }
+      return widths;
+    }
+  }
+
+  static final class GeoCriteria implements RawRuleTable.Dimension<NetworkBid.BidRequest> {
+    @Override public Object templateKey(NetworkBid.BidRequest fragment) {
+      return fragment.hasGeoCriteriaId() ? fragment.getGeoCriteriaId() : null;
+    }
+
+    @Override public Collection<?> keys(NetworkBid.BidRequest request) {
+      return request.hasGeoCriteriaId()
+          ? ImmutableList.of(request.getGeoCriteriaId())
+          : ImmutableList.of();
+    }
+  }
+}
@@ -25,9 +25,7 @@ import com.google.openbidder.api.interceptor.InterceptorChain;
 import com.google.openbidder.api.platform.CompatibleExchanges;
 import com.google.openbidder.exchange.doubleclick.DoubleClickConstants;
 import com.google.openbidder.exchange.doubleclick.config.DoubleClick;
-import com.google.openrtb.OpenRtb.BidRequest.Imp;
 import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
-import com.google.protos.adx.NetworkBid;
 import com.google.protos.adx.NetworkBid.BidResponse.Ad;
 
 import com.codahale.metrics.Counter;
@@ -58,13 +56,12 @@ public class SSLBidInterceptor implements BidInterceptor {
 
     chain.response().updateBids(new Function<Bid.Builder, Boolean>() {
       @Override public Boolean apply(Bid.Builder bid) {
-        Imp imp = chain.request().impWithId(bid.getImpid());
-        if (imp == null) {
+        AdSlotAttributes adSlot = AdSlotAttributes.forImp(chain.request(), bid.getImpid());
+        if (adSlot == null) {
           return false; // Shouldn't happen... but not this interceptor's problem
         }
 
-        NetworkBid.BidRequest.AdSlot adSlot = imp.getExtension(DcExt.adSlot);
-        if (!adSlot.getExcludedAttributeList().contains(DoubleClickConstants.CREATIVE_NON_SSL)) {
+        if (!adSlot.isExcluded(DoubleClickConstants.CREATIVE_NON_SSL)) {
           return false;
         }
 
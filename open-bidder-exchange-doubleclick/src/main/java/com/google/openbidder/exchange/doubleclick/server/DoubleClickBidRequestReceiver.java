@@ -31,6 +31,7 @@ import com.google.openbidder.exchange.doubleclick.DoubleClickConstants;
 import com.google.openbidder.http.HttpReceiverContext;
 import com.google.openbidder.http.HttpRequest;
 import com.google.openbidder.http.HttpResponse;
+import com.google.openbidder.http.trace.RequestTrace;
 import com.google.openbidder.util.Clock;
 import com.google.openrtb.OpenRtb;
 import com.google.openrtb.mapper.OpenRtbMapper;
@@ -102,6 +103,7 @@ public class DoubleClickBidRequestReceiver
     try {
       long start = clock.nanoTime();
       BidRequest request = newRequest(ctx.httpRequest(), helpers).build();
+      RequestTrace.markCurrent("request-mapping");
 
       if (logger.isDebugEnabled()) {
         NetworkBid.BidRequest dcRequest = request.nativeRequest();
@@ -135,6 +137,7 @@ public class DoubleClickBidRequestReceiver
       } finally {
         helpers.osw.close();
       }
+      RequestTrace.markCurrent("response-serialization");
       ctx.httpResponse().setStatusOk();
       ctx.httpResponse().setMediaType(MediaType.OCTET_STREAM);
       unhandledException = false;
@@ -172,7 +175,9 @@ public class DoubleClickBidRequestReceiver
           openrtbResponse.setId(openrtbRequest.getId());
         }
         snippetProcessor.process(openrtbRequest, openrtbResponse);
+        RequestTrace.markCurrent("snippet-processing");
         dcResponse = mapper.toExchangeBidResponse(openrtbRequest, openrtbResponse.build());
+        RequestTrace.markCurrent("response-mapping");
       } else { // NATIVE or NONE
         dcResponse = (NetworkBid.BidResponse.Builder) response.nativeResponse();
       }
@@ -21,6 +21,7 @@ import com.google.openbidder.api.snippet.StandardSnippetProcessor;
 import com.google.openbidder.config.bid.CallbackUrl;
 import com.google.openbidder.config.bid.ClickUrl;
 import com.google.openbidder.config.bid.ImpressionUrl;
+import com.google.openbidder.config.bid.SnippetTemplateCacheSize;
 import com.google.openrtb.snippet.OpenRtbMacros;
 import com.google.openrtb.snippet.SnippetMacroType;
 import com.google.openrtb.snippet.SnippetProcessor;
@@ -35,18 +36,23 @@ import javax.inject.Singleton;
 @Singleton
 public class DoubleClickSnippetProcessor extends StandardSnippetProcessor {
   public static final DoubleClickSnippetProcessor DC_NULL =
-      new DoubleClickSnippetProcessor(null, null, null) {
+      new DoubleClickSnippetProcessor(null, null, null, 0) {
     @Override public String process(SnippetProcessorContext ctx, String snippet) {
       return SnippetProcessor.NULL.process(ctx, snippet);
     }
   };
 
+  public DoubleClickSnippetProcessor(String callbackUrl, String impressionUrl, String clickUrl) {
+    super(callbackUrl, impressionUrl, clickUrl);
+  }
+
   @Inject
   public DoubleClickSnippetProcessor(
       @CallbackUrl String callbackUrl,
       @ImpressionUrl String impressionUrl,
-      @ClickUrl String clickUrl) {
-    super(callbackUrl, impressionUrl, clickUrl);
+      @ClickUrl String clickUrl,
+      @SnippetTemplateCacheSize Integer templateCacheSize) {
+    super(callbackUrl, impressionUrl, clickUrl, templateCacheSize);
   }
 
   @Override protected void processMacroAt(SnippetProcessorContext ctx,
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.exchange.doubleclick.impression;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.doubleclick.crypto.DoubleClickCrypto;
+import com.google.openbidder.config.impression.PriceName;
+import com.google.openbidder.exchange.doubleclick.testing.DoubleClickTestUtil;
+import com.google.openbidder.exchange.doubleclick.testing.TestImpressionRequestBuilder;
+
+import org.junit.Test;
+
+import java.security.SignatureException;
+import java.util.Date;
+
+/**
+ * Tests for {@link DoubleClickPriceDecoder}.
+ */
+public class DoubleClickPriceDecoderTest {
+  private final DoubleClickCrypto.Price priceCrypto = DoubleClickTestUtil.zeroPriceCrypto();
+  private final DoubleClickPriceDecoder decoder =
+      new DoubleClickPriceDecoder(DoubleClickTestUtil.ZERO_KEYS);
+
+  @Test
+  public void testDecode() throws SignatureException {
+    for (long micros : new long[]{ 0, 1, 1_200_000, 987_654_321, Long.MAX_VALUE }) {
+      String encoded = priceCrypto.encodePriceMicros(
+          micros, priceCrypto.createInitVector(new Date(micros), (int) micros));
+      assertEquals(micros, decoder.decodePriceMicros(encoded));
+      assertEquals(priceCrypto.decodePriceValue(encoded),
+          decoder.decodePriceValue(encoded), 1e-9);
+    }
+  }
+
+  @Test(expected = SignatureException.class)
+  public void testBadSignature() throws SignatureException {
+    // Flips a character inside the encrypted price
+    char[] encoded = priceCrypto.encodePriceValue(1.2, null).toCharArray();
+    encoded[24] = encoded[24] == 'A' ? 'B' : 'A';
+    decoder.decodePriceValue(new String(encoded));
+  }
+
+  @Test(expected = SignatureException.class)
+  public void testBadSize() throws SignatureException {
+    decoder.decodePriceValue("AAAA");
+  }
+
+  @Test(expected = SignatureException.class)
+  public void testBadEncoding() throws SignatureException {
+    decoder.decodePriceValue("!!!!");
+  }
+
+  @Test
+  public void testRequest() {
+    DoubleClickImpressionRequest req = TestImpressionRequestBuilder.create()
+        .setPrice(0.1)
+        .setPriceCrypto(null)
+        .setPriceDecoder(decoder)
+        .build();
+    assertEquals(0.1, req.getPriceValue(), 1e-9);
+    assertEquals(0.1, req.getPriceValue(PriceName.DEFAULT), 1e-9);
+  }
+}
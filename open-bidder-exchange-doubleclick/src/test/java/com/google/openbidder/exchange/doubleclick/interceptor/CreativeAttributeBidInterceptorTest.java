@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.exchange.doubleclick.interceptor;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.doubleclick.DcExt;
+import com.google.openbidder.api.bidding.BidController;
+import com.google.openbidder.api.bidding.BidRequest;
+import com.google.openbidder.api.bidding.BidResponse;
+import com.google.openbidder.api.testing.bidding.BiddingTestUtil;
+import com.google.openbidder.api.testing.bidding.SimpleBidInterceptor;
+import com.google.openbidder.exchange.doubleclick.DoubleClickConstants;
+import com.google.openbidder.exchange.doubleclick.interceptor.CreativeAttributeBidInterceptor.Normalization;
+import com.google.openbidder.exchange.doubleclick.testing.TestBidRequestBuilder;
+import com.google.openbidder.exchange.doubleclick.testing.TestBidResponseBuilder;
+import com.google.protos.adx.NetworkBid;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CreativeAttributeBidInterceptor}.
+ */
+public class CreativeAttributeBidInterceptorTest {
+
+  @Test
+  public void testAllNormalizations() {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    BidResponse response = execute(
+        new CreativeAttributeBidInterceptor(metricRegistry), metricRegistry,
+        TestBidRequestBuilder.create().setNativeRequest(newRequest()).build());
+    assertEquals(
+        asList(DoubleClickConstants.CREATIVE_NON_FLASH, DoubleClickConstants.CREATIVE_SSL,
+            DoubleClickConstants.CREATIVE_VAST),
+        response.bidWithId("1").getExtension(DcExt.ad).getAttributeList());
+    assertEquals(1, counter(metricRegistry, FlashlessBidInterceptor.class, "flashless-added"));
+    assertEquals(1, counter(metricRegistry, SSLBidInterceptor.class, "ssl-added"));
+    assertEquals(1, counter(metricRegistry, VideoBidInterceptor.class, "video-fixed"));
+  }
+
+  @Test
+  public void testSelectedNormalizations() {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    BidResponse response = execute(
+        new CreativeAttributeBidInterceptor(metricRegistry, ImmutableSet.of(Normalization.SSL)),
+        metricRegistry,
+        TestBidRequestBuilder.create().setNativeRequest(newRequest()).build());
+    assertEquals(
+        asList(DoubleClickConstants.CREATIVE_SSL),
+        response.bidWithId("1").getExtension(DcExt.ad).getAttributeList());
+    assertEquals(0, counter(metricRegistry, FlashlessBidInterceptor.class, "flashless-added"));
+    assertEquals(1, counter(metricRegistry, SSLBidInterceptor.class, "ssl-added"));
+    assertEquals(0, counter(metricRegistry, VideoBidInterceptor.class, "video-fixed"));
+  }
+
+  @Test
+  public void testNothingToAdd() {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    BidResponse response = execute(
+        new CreativeAttributeBidInterceptor(metricRegistry), metricRegistry,
+        TestBidRequestBuilder.create().setRequest("1", 1, 1, 100).build());
+    assertEquals(0, response.bidWithId("1").getExtension(DcExt.ad).getAttributeCount());
+    assertEquals(0, counter(metricRegistry, FlashlessBidInterceptor.class, "flashless-added"));
+    assertEquals(0, counter(metricRegistry, SSLBidInterceptor.class, "ssl-added"));
+    assertEquals(0, counter(metricRegistry, VideoBidInterceptor.class, "video-fixed"));
+  }
+
+  private static BidResponse execute(CreativeAttributeBidInterceptor interceptor,
+      MetricRegistry metricRegistry, BidRequest request) {
+    BidResponse response = TestBidResponseBuilder.create().build();
+    BidController controller = BiddingTestUtil.newBidController(
+        metricRegistry, interceptor, new SimpleBidInterceptor());
+    controller.onRequest(request, response);
+    return response;
+  }
+
+  private static long counter(MetricRegistry metricRegistry, Class<?> klass, String name) {
+    return metricRegistry.getCounters().get(MetricRegistry.name(klass, name)).getCount();
+  }
+
+  private static NetworkBid.BidRequest.Builder newRequest() {
+    NetworkBid.BidRequest.Builder request = VideoBidInterceptorTest.newVideoRequest();
+    request.getAdslotBuilder(0).addAllExcludedAttribute(asList(
+        DoubleClickConstants.CREATIVE_FLASH, DoubleClickConstants.CREATIVE_NON_SSL));
+    return request;
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.cloudstorage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.openbidder.cloudstorage.model.ListBucketResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+
+/**
+ * Bulk operations over {@link GoogleCloudStorage}: paginated listing, and per-object operations
+ * run concurrently with bounded parallelism. Failures are collected per object, so one bad
+ * object doesn't abort the others; callers decide what to do with them.
+ */
+public class BulkCloudStorage {
+  public static final int DEFAULT_PARALLELISM = 16;
+  private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("gcs-bulk-%d").setDaemon(true).build());
+
+  private final GoogleCloudStorage cloudStorage;
+  private final Executor executor;
+  private final int parallelism;
+
+  /**
+   * Uses a shared executor, with the default parallelism.
+   */
+  public BulkCloudStorage(GoogleCloudStorage cloudStorage) {
+    this(cloudStorage, DEFAULT_EXECUTOR, DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * @param executor Executor for the operations; should not be bounded below {@code parallelism}
+   * @param parallelism Maximum concurrent operations per bulk call
+   */
+  public BulkCloudStorage(GoogleCloudStorage cloudStorage, Executor executor, int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+    this.cloudStorage = checkNotNull(cloudStorage);
+    this.executor = checkNotNull(executor);
+    this.parallelism = parallelism;
+  }
+
+  public GoogleCloudStorage getCloudStorage() {
+    return cloudStorage;
+  }
+
+  /**
+   * Lists all objects in a bucket, following pagination.
+   *
+   * @param objectNamePrefix Prefix string to filter for in the keys
+   * @throws HttpResponseException If any response is not HTTP 2xx
+   */
+  public List<ListBucketResult.Content> listAll(
+      String bucketName, @Nullable String objectNamePrefix) throws HttpResponseException {
+    List<ListBucketResult.Content> contents = new ArrayList<>();
+    String marker = null;
+    ListBucketResult page;
+    do {
+      page = cloudStorage.listObjectsInBucket(bucketName, objectNamePrefix, marker);
+      contents.addAll(page.getContents());
+      marker = page.getNextMarker();
+    } while (page.isTruncated() && marker != null);
+    return contents;
+  }
+
+  /**
+   * Returns the keys of all objects in a bucket, following pagination.
+   *
+   * @throws HttpResponseException If any response is not HTTP 2xx
+   */
+  public List<String> listAllKeys(String bucketName, @Nullable String objectNamePrefix)
+      throws HttpResponseException {
+    List<String> keys = new ArrayList<>();
+    for (ListBucketResult.Content content : listAll(bucketName, objectNamePrefix)) {
+      keys.add(content.getKey());
+    }
+    return keys;
+  }
+
+  /**
+   * Reads objects concurrently. Objects that are not found are omitted from the results.
+   */
+  public <R> Result<R> getObjects(
+      final String bucketName, Iterable<String> objectNames, final ObjectReader<R> reader) {
+    return execute(objectNames, new ObjectFunction<R>() {
+      @Override public @Nullable R apply(String objectName) throws Exception {
+        StorageObject object;
+        try {
+          object = cloudStorage.getObject(bucketName, objectName, null);
+        } catch (HttpResponseException e) {
+          if (e.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+            return null;
+          }
+          throw e;
+        }
+        return reader.read(object);
+      }});
+  }
+
+  /**
+   * Removes objects concurrently.
+   */
+  public Result<Boolean> removeObjects(final String bucketName, Iterable<String> objectNames) {
+    return execute(objectNames, new ObjectFunction<Boolean>() {
+      @Override public Boolean apply(String objectName) throws Exception {
+        return cloudStorage.removeObject(bucketName, objectName);
+      }});
+  }
+
+  /**
+   * Runs a function for each object name, with at most {@code parallelism} running at once.
+   * Blocks until all are complete.
+   */
+  public <R> Result<R> execute(Iterable<String> objectNames, final ObjectFunction<R> function) {
+    final List<String> names = ImmutableList.copyOf(objectNames);
+    final Map<String, R> results = new ConcurrentHashMap<>();
+    final Map<String, Exception> failures = new ConcurrentHashMap<>();
+    final Semaphore permits = new Semaphore(parallelism);
+
+    try {
+      for (final String name : names) {
+        permits.acquire();
+        try {
+          executor.execute(new Runnable() {
+            @Override public void run() {
+              try {
+                R result = function.apply(name);
+                if (result != null) {
+                  results.put(name, result);
+                }
+              } catch (Exception e) {
+                failures.put(name, e);
+              } finally {
+                permits.release();
+              }
+            }});
+        } catch (RejectedExecutionException e) {
+          permits.release();
+          failures.put(name, e);
+        }
+      }
+      // Wait for the tasks still running
+      permits.acquire(parallelism);
+      permits.release(parallelism);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GoogleCloudStorageException("Interrupted bulk operation", e);
+    }
+
+    // Keep the order of the input
+    Map<String, R> orderedResults = new LinkedHashMap<>();
+    Map<String, Exception> orderedFailures = new LinkedHashMap<>();
+    for (String name : names) {
+      R result = results.get(name);
+      if (result != null) {
+        orderedResults.put(name, result);
+      }
+      Exception failure = failures.get(name);
+      if (failure != null) {
+        orderedFailures.put(name, failure);
+      }
+    }
+    return new Result<>(names.size(), orderedResults, orderedFailures);
+  }
+
+  /**
+   * An operation on a single object.
+   *
+   * @param <R> Result type
+   */
+  public interface ObjectFunction<R> {
+    /**
+     * @return Result of the operation, or {@code null} for no result
+     */
+    @Nullable R apply(String objectName) throws Exception;
+  }
+
+  /**
+   * Reads the contents of an object.
+   *
+   * @param <R> Result type
+   */
+  public interface ObjectReader<R> {
+    @Nullable R read(StorageObject object) throws Exception;
+  }
+
+  /**
+   * Results of a bulk operation: the non-{@code null} results and the failures, both keyed by
+   * object name in the order of the input.
+   *
+   * @param <R> Result type
+   */
+  public static final class Result<R> {
+    private final int count;
+    private final ImmutableMap<String, R> results;
+    private final ImmutableMap<String, Exception> failures;
+
+    Result(int count, Map<String, R> results, Map<String, Exception> failures) {
+      this.count = count;
+      this.results = ImmutableMap.copyOf(results);
+      this.failures = ImmutableMap.copyOf(failures);
+    }
+
+    public ImmutableMap<String, R> getResults() {
+      return results;
+    }
+
+    public ImmutableMap<String, Exception> getFailures() {
+      return failures;
+    }
+
+    public boolean isSuccessful() {
+      return failures.isEmpty();
+    }
+
+    /**
+     * Throws if any object failed.
+     *
+     * @return this result
+     * @throws GoogleCloudStorageException with the first failure as the cause
+     */
+    public Result<R> checkSuccessful() {
+      if (!failures.isEmpty()) {
+        Map.Entry<String, Exception> first = failures.entrySet().iterator().next();
+        throw new GoogleCloudStorageException(String.format(
+            "%d of %d objects failed, first: %s", failures.size(), count, first.getKey()),
+            first.getValue());
+      }
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("count", count)
+          .add("results", results.size())
+          .add("failures", failures.keySet())
+          .toString();
+    }
+  }
+}
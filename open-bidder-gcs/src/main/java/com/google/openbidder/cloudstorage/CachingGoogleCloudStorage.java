@@ -0,0 +1,534 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.cloudstorage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.Hashing;
+import com.google.openbidder.cloudstorage.model.ListAllMyBucketsResult;
+import com.google.openbidder.cloudstorage.model.ListBucketResult;
+import com.google.openbidder.util.Clock;
+
+import org.joda.time.Instant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link GoogleCloudStorage} decorator that keeps downloaded objects in a local directory.
+ * Each read still goes to Cloud Storage, but as a conditional GET on the cached ETag, so an
+ * unchanged object costs a 304 instead of a download; its content is then served from a
+ * memory-mapped file. The cache survives restarts, and is bounded in bytes with least recently
+ * used objects evicted first.
+ *
+ * <p>Conditions passed by the caller are evaluated against the cached copy, so a cache miss
+ * always downloads the object. Custom metadata of objects cached by a previous process is
+ * restored as strings.
+ */
+public class CachingGoogleCloudStorage implements GoogleCloudStorage {
+  private static final Logger logger = LoggerFactory.getLogger(CachingGoogleCloudStorage.class);
+  private static final String DATA_SUFFIX = ".data";
+  private static final String META_SUFFIX = ".meta";
+  private static final String TEMP_PREFIX = "tmp-";
+  private static final String BUCKET = "bucket";
+  private static final String OBJECT = "object";
+  private static final String ETAG = "etag";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final String CONTENT_TYPE = "contentType";
+  private static final String SIZE = "size";
+  private static final String METADATA_PREFIX = "metadata.";
+
+  private final GoogleCloudStorage delegate;
+  private final Path directory;
+  private final Clock clock;
+  private final long maxBytes;
+  // Guarded by this; in access order, so the eldest entry is the least recently used.
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes;
+
+  /**
+   * Opens the cache, picking up the objects already stored in {@code directory}.
+   *
+   * @param maxBytes Maximum total size of the cached objects
+   * @param clock Clock for the access times, which order the eviction after a restart
+   */
+  public CachingGoogleCloudStorage(
+      GoogleCloudStorage delegate, Path directory, long maxBytes, Clock clock)
+      throws IOException {
+    checkArgument(maxBytes > 0, "maxBytes must be positive: %s", maxBytes);
+    this.delegate = checkNotNull(delegate);
+    this.directory = checkNotNull(directory);
+    this.clock = checkNotNull(clock);
+    this.maxBytes = maxBytes;
+    Files.createDirectories(directory);
+    load();
+  }
+
+  public GoogleCloudStorage getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @return Total size of the cached objects
+   */
+  public synchronized long getCachedBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * @return Number of cached objects
+   */
+  public synchronized int getCachedObjects() {
+    return entries.size();
+  }
+
+  @Override
+  public ListAllMyBucketsResult listBuckets() throws HttpResponseException {
+    return delegate.listBuckets();
+  }
+
+  @Override
+  public ListBucketResult listObjectsInBucket(
+      String bucketName, @Nullable String objectNamePrefix) throws HttpResponseException {
+    return delegate.listObjectsInBucket(bucketName, objectNamePrefix);
+  }
+
+  @Override
+  public ListBucketResult listObjectsInBucket(
+      String bucketName, @Nullable String objectNamePrefix, @Nullable String marker)
+      throws HttpResponseException {
+    return delegate.listObjectsInBucket(bucketName, objectNamePrefix, marker);
+  }
+
+  @Override
+  public boolean bucketExists(String bucketName) throws HttpResponseException {
+    return delegate.bucketExists(bucketName);
+  }
+
+  @Override
+  public void putBucket(String bucketName) throws HttpResponseException {
+    delegate.putBucket(bucketName);
+  }
+
+  @Override
+  public StorageObject getObject(
+      String bucketName, String objectName, @Nullable Instant ifModifiedSince)
+      throws HttpResponseException {
+    return getObject(bucketName, objectName, ifModifiedSince, null);
+  }
+
+  @Override
+  public StorageObject getObject(String bucketName, String objectName,
+      @Nullable Instant ifModifiedSince, @Nullable String ifNoneMatch)
+      throws HttpResponseException {
+    String key = cacheKey(bucketName, objectName);
+    Entry cached = get(key);
+
+    StorageObject response;
+    try {
+      response = delegate.getObject(
+          bucketName, objectName, null, cached == null ? null : cached.etag);
+    } catch (HttpResponseException e) {
+      if (e.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+        invalidate(key);
+      }
+      throw e;
+    }
+
+    if (response.getStatus() == StorageObject.Status.NOT_MODIFIED && cached != null) {
+      StorageObject storageObject = respondCached(key, ifModifiedSince, ifNoneMatch);
+      if (storageObject != null) {
+        touch(key);
+        return storageObject;
+      }
+      // Evicted or invalidated concurrently; fall back to a plain read.
+      logger.debug("Cached copy of {}/{} unavailable", bucketName, objectName);
+      return delegate.getObject(bucketName, objectName, ifModifiedSince, ifNoneMatch);
+    } else if (response.getStatus() != StorageObject.Status.OK || response.getETag() == null) {
+      return response;
+    }
+
+    try {
+      return store(key, bucketName, objectName, response, ifModifiedSince, ifNoneMatch);
+    } catch (IOException e) {
+      throw new GoogleCloudStorageException(
+          "Error caching object " + bucketName + "/" + objectName, e);
+    }
+  }
+
+  @Override
+  public StorageObject describeObject(String bucketName, String objectName)
+      throws HttpResponseException {
+    return delegate.describeObject(bucketName, objectName);
+  }
+
+  @Override
+  public StorageObject putObject(String bucketName, String objectName, HttpContent httpContent,
+      @Nullable Map<String, Object> customMetadata) throws HttpResponseException {
+    invalidate(cacheKey(bucketName, objectName));
+    return delegate.putObject(bucketName, objectName, httpContent, customMetadata);
+  }
+
+  @Override
+  public boolean removeObject(String bucketName, String objectName) throws HttpResponseException {
+    invalidate(cacheKey(bucketName, objectName));
+    return delegate.removeObject(bucketName, objectName);
+  }
+
+  /**
+   * Responds from the current cache entry. Files only change under the lock, and the content
+   * is opened before releasing it, so the metadata and content always belong together even if
+   * a concurrent read replaces the entry right after.
+   *
+   * @return {@code null} if the object is no longer cached
+   */
+  private synchronized @Nullable StorageObject respondCached(String key,
+      @Nullable Instant ifModifiedSince, @Nullable String ifNoneMatch) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      return respond(entry, dataFile(key), ifModifiedSince, ifNoneMatch);
+    } catch (IOException e) {
+      logger.debug("Can't read cached object {}: {}", dataFile(key), e.toString());
+      invalidate(key);
+      return null;
+    }
+  }
+
+  private static StorageObject respond(Entry entry, Path file,
+      @Nullable Instant ifModifiedSince, @Nullable String ifNoneMatch) throws IOException {
+    StorageObject storageObject = new StorageObject();
+    storageObject.setLastModified(entry.lastModified);
+    storageObject.setETag(entry.etag);
+
+    if ((ifModifiedSince != null && !ifModifiedSince.isBefore(entry.lastModified))
+        || entry.etag.equals(ifNoneMatch)) {
+      storageObject.setStatus(StorageObject.Status.NOT_MODIFIED);
+    } else {
+      storageObject.setInputStream(open(file, entry.size));
+      storageObject.setContentLength(entry.size);
+      storageObject.setContentType(entry.contentType);
+      storageObject.setCustomMetadata(entry.customMetadata);
+      storageObject.setStatus(StorageObject.Status.OK);
+    }
+    return storageObject;
+  }
+
+  /**
+   * Downloads the response's content into the cache. The data file is only moved in place once
+   * complete, and the metadata file is written last, so a crash never leaves a partial object
+   * that looks valid.
+   */
+  private StorageObject store(String key, String bucketName, String objectName,
+      StorageObject response, @Nullable Instant ifModifiedSince, @Nullable String ifNoneMatch)
+      throws IOException {
+    Path temp = Files.createTempFile(directory, TEMP_PREFIX, DATA_SUFFIX);
+    try {
+      long size;
+      try (InputStream in = response.getInputStream()) {
+        size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+      }
+      Entry entry = new Entry(key, bucketName, objectName, response.getETag(),
+          response.getLastModified() == null ? new Instant(0) : response.getLastModified(),
+          response.getContentType(), size, response.getCustomMetadata() == null
+              ? ImmutableMap.<String, Object>of()
+              : response.getCustomMetadata());
+
+      if (size > maxBytes) {
+        // Too large to keep: serve it once from the temporary file.
+        return respond(entry, temp, ifModifiedSince, ifNoneMatch);
+      }
+
+      synchronized (this) {
+        Files.deleteIfExists(metaFile(key));
+        Files.move(temp, dataFile(key),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeMeta(entry);
+        put(entry);
+        return respond(entry, dataFile(key), ifModifiedSince, ifNoneMatch);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private synchronized @Nullable Entry get(String key) {
+    return entries.get(key);
+  }
+
+  private synchronized void put(Entry entry) {
+    Entry old = entries.put(entry.key, entry);
+    totalBytes += entry.size - (old == null ? 0 : old.size);
+    evict();
+  }
+
+  private synchronized void invalidate(String key) {
+    Entry old = entries.remove(key);
+    if (old != null) {
+      totalBytes -= old.size;
+      delete(key);
+    }
+  }
+
+  private synchronized void evict() {
+    Iterator<Entry> iter = entries.values().iterator();
+    while (totalBytes > maxBytes && iter.hasNext()) {
+      Entry eldest = iter.next();
+      iter.remove();
+      totalBytes -= eldest.size;
+      delete(eldest.key);
+      logger.debug("Evicted {}/{} from the storage cache", eldest.bucketName, eldest.objectName);
+    }
+  }
+
+  private void touch(String key) {
+    // Persists the access order across restarts.
+    try {
+      Files.setLastModifiedTime(metaFile(key), FileTime.fromMillis(clock.now().getMillis()));
+    } catch (IOException e) {
+      logger.debug("Can't touch {}: {}", metaFile(key), e.toString());
+    }
+  }
+
+  private void delete(String key) {
+    try {
+      Files.deleteIfExists(metaFile(key));
+      Files.deleteIfExists(dataFile(key));
+    } catch (IOException e) {
+      logger.warn("Can't delete cached object {}: {}", dataFile(key), e.toString());
+    }
+  }
+
+  private synchronized void load() throws IOException {
+    final Map<Entry, FileTime> accessTimes = new LinkedHashMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(TEMP_PREFIX)) {
+          Files.deleteIfExists(file);
+        } else if (name.endsWith(META_SUFFIX)) {
+          String key = name.substring(0, name.length() - META_SUFFIX.length());
+          Entry entry = readMeta(key);
+          if (entry == null) {
+            delete(key);
+          } else {
+            accessTimes.put(entry, Files.getLastModifiedTime(file));
+          }
+        }
+      }
+    }
+
+    List<Entry> loaded = new ArrayList<>(accessTimes.keySet());
+    Collections.sort(loaded, new Comparator<Entry>() {
+      @Override public int compare(Entry a, Entry b) {
+        return accessTimes.get(a).compareTo(accessTimes.get(b));
+      }
+    });
+    for (Entry entry : loaded) {
+      put(entry);
+    }
+
+    // Data files whose metadata was never written.
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + DATA_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (!entries.containsKey(name.substring(0, name.length() - DATA_SUFFIX.length()))) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+    logger.info("Storage cache {}: {} objects, {} bytes", directory, entries.size(), totalBytes);
+  }
+
+  private void writeMeta(Entry entry) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(BUCKET, entry.bucketName);
+    properties.setProperty(OBJECT, entry.objectName);
+    properties.setProperty(ETAG, entry.etag);
+    properties.setProperty(LAST_MODIFIED, String.valueOf(entry.lastModified.getMillis()));
+    properties.setProperty(SIZE, String.valueOf(entry.size));
+    if (entry.contentType != null) {
+      properties.setProperty(CONTENT_TYPE, entry.contentType);
+    }
+    for (Map.Entry<String, Object> metadata : entry.customMetadata.entrySet()) {
+      Object value = metadata.getValue() instanceof Collection<?>
+          ? Iterables.getFirst((Collection<?>) metadata.getValue(), "")
+          : metadata.getValue();
+      properties.setProperty(METADATA_PREFIX + metadata.getKey(), String.valueOf(value));
+    }
+
+    Path temp = Files.createTempFile(directory, TEMP_PREFIX, META_SUFFIX);
+    try {
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        properties.store(out, null);
+      }
+      Files.move(temp, metaFile(entry.key),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private @Nullable Entry readMeta(String key) {
+    Properties properties = new Properties();
+    try {
+      try (InputStream in = Files.newInputStream(metaFile(key))) {
+        properties.load(in);
+      }
+      long size = Long.parseLong(properties.getProperty(SIZE));
+      if (Files.size(dataFile(key)) != size
+          || !key.equals(cacheKey(properties.getProperty(BUCKET), properties.getProperty(OBJECT)))
+          || properties.getProperty(ETAG) == null) {
+        return null;
+      }
+
+      ImmutableMap.Builder<String, Object> customMetadata = ImmutableMap.builder();
+      for (String name : properties.stringPropertyNames()) {
+        if (name.startsWith(METADATA_PREFIX)) {
+          customMetadata.put(
+              name.substring(METADATA_PREFIX.length()), properties.getProperty(name));
+        }
+      }
+      return new Entry(key, properties.getProperty(BUCKET), properties.getProperty(OBJECT),
+          properties.getProperty(ETAG),
+          new Instant(Long.parseLong(properties.getProperty(LAST_MODIFIED))),
+          properties.getProperty(CONTENT_TYPE), size, customMetadata.build());
+    } catch (IOException | RuntimeException e) {
+      logger.info("Dropping unreadable cache entry {}: {}", key, e.toString());
+      return null;
+    }
+  }
+
+  private Path dataFile(String key) {
+    return directory.resolve(key + DATA_SUFFIX);
+  }
+
+  private Path metaFile(String key) {
+    return directory.resolve(key + META_SUFFIX);
+  }
+
+  static String cacheKey(@Nullable String bucketName, @Nullable String objectName) {
+    return Hashing.sha1().hashString(bucketName + '/' + objectName, Charsets.UTF_8).toString();
+  }
+
+  private static InputStream open(Path file, long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      return Files.newInputStream(file);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed, and after the file is deleted.
+      return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  /**
+   * A cached object.
+   */
+  private static final class Entry {
+    final String key;
+    final String bucketName;
+    final String objectName;
+    final String etag;
+    final Instant lastModified;
+    final @Nullable String contentType;
+    final long size;
+    final Map<String, Object> customMetadata;
+
+    Entry(String key, String bucketName, String objectName, String etag, Instant lastModified,
+        @Nullable String contentType, long size, Map<String, Object> customMetadata) {
+      this.key = key;
+      this.bucketName = bucketName;
+      this.objectName = objectName;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.contentType = contentType;
+      this.size = size;
+      this.customMetadata = customMetadata;
+    }
+  }
+
+  /**
+   * Reads a (memory-mapped) buffer.
+   */
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      } else if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
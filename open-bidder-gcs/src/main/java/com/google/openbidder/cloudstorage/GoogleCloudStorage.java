@@ -53,6 +53,19 @@ public interface GoogleCloudStorage {
   ListBucketResult listObjectsInBucket(String bucketName, @Nullable String objectNamePrefix)
       throws HttpResponseException;
 
+  /**
+   * Retrieves one page of the list of objects in a bucket. If the result is truncated, the
+   * next page starts after {@link ListBucketResult#getNextMarker()}.
+   *
+   * @param objectNamePrefix Prefix string to filter for in the keys
+   * @param marker (Optional) lists only objects whose keys are after this one
+   * @return List of objects in the bucket
+   * @throws HttpResponseException If response is not HTTP 2xx
+   */
+  ListBucketResult listObjectsInBucket(
+      String bucketName, @Nullable String objectNamePrefix, @Nullable String marker)
+      throws HttpResponseException;
+
   /**
    * Checks if a bucket exists.
    *
@@ -82,6 +95,20 @@ public interface GoogleCloudStorage {
   StorageObject getObject(String bucketName, String objectName, @Nullable Instant ifModifiedSince)
       throws HttpResponseException;
 
+  /**
+   * Retrieves an object from a cloud storage bucket, unless it still has a known entity tag.
+   *
+   * @param bucketName Name of the bucket
+   * @param objectName Name of the object
+   * @param ifModifiedSince (Optional) filters only objects that have been modified after this time
+   * @param ifNoneMatch (Optional) filters only objects whose ETag differs from this one
+   * @return Contents of the object, or a {@link StorageObject.Status#NOT_MODIFIED} description
+   * @throws HttpResponseException If response is not HTTP 2xx
+   */
+  StorageObject getObject(String bucketName, String objectName,
+      @Nullable Instant ifModifiedSince, @Nullable String ifNoneMatch)
+      throws HttpResponseException;
+
   /**
    * Describe an object without returning its contents.
    *
@@ -24,6 +24,7 @@ public class GoogleCloudStorageConstants {
   public static final String API_VERSION = "2";
   public static final String API_VERSION_HEADER = "x-goog-api-version";
   public static final String HTTP_SCHEME = "https";
+  public static final String MARKER_PARAMETER = "marker";
   public static final String PREFIX_PARAMETER = "prefix";
   public static final String PROJECT_ID_HEADER = "x-goog-project-id";
 }
@@ -18,6 +18,7 @@ package com.google.openbidder.cloudstorage;
 
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
+import com.google.common.base.Strings;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.multibindings.Multibinder;
@@ -25,10 +26,16 @@ import com.google.openbidder.cloudstorage.config.StorageOAuth2Scope;
 import com.google.openbidder.cloudstorage.config.StorageRequestInitializers;
 import com.google.openbidder.config.googleapi.ApiProjectNumber;
 import com.google.openbidder.oauth.OAuth2CredentialFactory;
+import com.google.openbidder.util.Clock;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Set;
 
 import javax.inject.Singleton;
@@ -38,12 +45,23 @@ import javax.inject.Singleton;
  */
 @Parameters(separators = "=")
 public class GoogleCloudStorageModule extends AbstractModule {
+  private static final Logger logger = LoggerFactory.getLogger(GoogleCloudStorageModule.class);
 
   @Parameter(names = "--storage_oauth2_scope",
       description = "Google Cloud Storage OAuth 2.0 scope",
       required = false)
   private String storageOAuth2Scope = StorageOAuth2Scope.DEFAULT;
 
+  @Parameter(names = "--storage_cache_dir",
+      description = "Local directory for caching Cloud Storage objects (empty disables the cache)",
+      required = false)
+  private String storageCacheDir = "";
+
+  @Parameter(names = "--storage_cache_max_mb",
+      description = "Maximum size of the local Cloud Storage cache, in megabytes",
+      required = false)
+  private long storageCacheMaxMb = 1024;
+
   @Override
   protected void configure() {
     bind(String.class).annotatedWith(StorageOAuth2Scope.class).toInstance(storageOAuth2Scope);
@@ -58,13 +76,26 @@ public class GoogleCloudStorageModule extends AbstractModule {
       OAuth2CredentialFactory oauth2CredentialFactory,
       @ApiProjectNumber long apiProjectNumber,
       @StorageOAuth2Scope String storageOAuth2Scope,
-      @StorageRequestInitializers Set<HttpRequestInitializer> requestInitializers) {
+      @StorageRequestInitializers Set<HttpRequestInitializer> requestInitializers,
+      Clock clock) {
 
-    return GoogleCloudStorageFactory.newFactory()
+    GoogleCloudStorage cloudStorage = GoogleCloudStorageFactory.newFactory()
         .setHttpTransport(httpTransport)
         .setApiProjectNumber(apiProjectNumber)
         .setCredential(oauth2CredentialFactory.retrieveCredential(storageOAuth2Scope))
         .setRequestInitializers(requestInitializers)
         .build();
+
+    if (Strings.isNullOrEmpty(storageCacheDir)) {
+      return cloudStorage;
+    }
+    try {
+      return new CachingGoogleCloudStorage(
+          cloudStorage, Paths.get(storageCacheDir), storageCacheMaxMb * 1024 * 1024, clock);
+    } catch (IOException e) {
+      logger.warn("Can't open storage cache {}, reading directly: {}",
+          storageCacheDir, e.toString());
+      return cloudStorage;
+    }
   }
 }
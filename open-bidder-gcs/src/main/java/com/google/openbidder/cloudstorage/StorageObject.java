@@ -41,6 +41,7 @@ public class StorageObject {
   private Long contentLength;
   private String contentType;
   private Instant lastModified;
+  private String etag;
   private Status status;
   private Map<String, Object> customMetadata;
 
@@ -88,6 +89,17 @@ public class StorageObject {
     this.lastModified = lastModified;
   }
 
+  /**
+   * @return Entity tag of the object's current content
+   */
+  public final String getETag() {
+    return etag;
+  }
+
+  public final void setETag(String etag) {
+    this.etag = etag;
+  }
+
   /**
    * @return Status of the retrieve operation
    */
@@ -116,6 +128,7 @@ public class StorageObject {
         .add("contentLength", contentLength)
         .add("contentType", contentType)
         .add("lastModified", lastModified)
+        .add("etag", etag)
         .add("status", status)
         .add("customMetadata", customMetadata)
         .toString();
@@ -99,10 +99,22 @@ public class GoogleCloudStorageImpl implements GoogleCloudStorage {
       String bucketName,
       @Nullable String objectNamePrefix) throws HttpResponseException {
 
+    return listObjectsInBucket(bucketName, objectNamePrefix, null);
+  }
+
+  @Override
+  public ListBucketResult listObjectsInBucket(
+      String bucketName,
+      @Nullable String objectNamePrefix,
+      @Nullable String marker) throws HttpResponseException {
+
     GenericUrl bucketUrl = buildObjectListUrl(bucketName);
     if (!Strings.isNullOrEmpty(objectNamePrefix)) {
       bucketUrl.put(GoogleCloudStorageConstants.PREFIX_PARAMETER, objectNamePrefix);
     }
+    if (!Strings.isNullOrEmpty(marker)) {
+      bucketUrl.put(GoogleCloudStorageConstants.MARKER_PARAMETER, marker);
+    }
 
     return executeRequest(bucketUrl, new HttpRequestFunction<ListBucketResult>() {
       @Override public ListBucketResult apply(GenericUrl url) throws IOException {
@@ -145,7 +157,17 @@ public class GoogleCloudStorageImpl implements GoogleCloudStorage {
   public StorageObject getObject(
       String bucketName,
       String objectName,
-      final @Nullable Instant ifModifiedSince) throws HttpResponseException {
+      @Nullable Instant ifModifiedSince) throws HttpResponseException {
+
+    return getObject(bucketName, objectName, ifModifiedSince, null);
+  }
+
+  @Override
+  public StorageObject getObject(
+      String bucketName,
+      String objectName,
+      final @Nullable Instant ifModifiedSince,
+      final @Nullable String ifNoneMatch) throws HttpResponseException {
 
     GenericUrl objectUrl = buildObjectUrl(bucketName, objectName);
 
@@ -161,6 +183,9 @@ public class GoogleCloudStorageImpl implements GoogleCloudStorage {
               com.google.common.net.HttpHeaders.IF_MODIFIED_SINCE,
               asList(GoogleCloudStorageUtil.instantToLastModifiedString(ifModifiedSince)));
         }
+        if (ifNoneMatch != null) {
+          request.getHeaders().setIfNoneMatch(ifNoneMatch);
+        }
 
         try {
           return buildStorageObject(execute(request));
@@ -312,6 +337,7 @@ public class GoogleCloudStorageImpl implements GoogleCloudStorage {
     storageObject.setStatus(StorageObject.Status.NOT_MODIFIED);
     storageObject.setLastModified(
         GoogleCloudStorageUtil.parseLastModified(httpHeaders.getLastModified()));
+    storageObject.setETag(httpHeaders.getETag());
     return storageObject;
   }
 
@@ -332,6 +358,7 @@ public class GoogleCloudStorageImpl implements GoogleCloudStorage {
     storageObject.setCustomMetadata(GoogleCloudStorageUtil.getCustomMetadata(httpHeaders));
     storageObject.setLastModified(
         GoogleCloudStorageUtil.parseLastModified(httpHeaders.getLastModified()));
+    storageObject.setETag(httpHeaders.getETag());
     storageObject.setStatus(StorageObject.Status.OK);
     return storageObject;
   }
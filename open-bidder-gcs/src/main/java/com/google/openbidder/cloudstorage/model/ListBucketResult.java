@@ -49,6 +49,12 @@ public class ListBucketResult {
   @Key("Prefix")
   private String prefix;
 
+  @Key("Marker")
+  private String marker;
+
+  @Key("NextMarker")
+  private String nextMarker;
+
   public final List<Content> getContents() {
     return contents;
   }
@@ -81,6 +87,28 @@ public class ListBucketResult {
     this.prefix = prefix;
   }
 
+  public final @Nullable String getMarker() {
+    return marker;
+  }
+
+  public final void setMarker(@Nullable String marker) {
+    this.marker = marker;
+  }
+
+  /**
+   * Returns the marker to request the next page of a truncated result: the service's
+   * NextMarker if provided, otherwise the last key in this page.
+   */
+  public final @Nullable String getNextMarker() {
+    return nextMarker != null || contents.isEmpty()
+        ? nextMarker
+        : contents.get(contents.size() - 1).getKey();
+  }
+
+  public final void setNextMarker(@Nullable String nextMarker) {
+    this.nextMarker = nextMarker;
+  }
+
   @Override
   public boolean equals(@Nullable Object obj) {
     if (obj == this) {
@@ -92,13 +120,15 @@ public class ListBucketResult {
     ListBucketResult other = (ListBucketResult) obj;
     return equal(name, other.name)
         && equal(prefix, other.prefix)
+        && equal(marker, other.marker)
+        && equal(nextMarker, other.nextMarker)
         && isTruncated == other.isTruncated
         && equal(contents, other.contents);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(name, prefix, isTruncated, contents);
+    return Objects.hashCode(name, prefix, marker, nextMarker, isTruncated, contents);
   }
 
   @Override
@@ -106,6 +136,8 @@ public class ListBucketResult {
     return MoreObjects.toStringHelper(this).omitNullValues()
         .add("name", name)
         .add("prefix", prefix)
+        .add("marker", marker)
+        .add("nextMarker", nextMarker)
         .add("isTruncated", isTruncated)
         .add("contents", contents)
         .toString();
@@ -124,6 +156,9 @@ public class ListBucketResult {
     @Key("Size")
     private Long size;
 
+    @Key("ETag")
+    private String etag;
+
     public final String getKey() {
       return key;
     }
@@ -148,6 +183,17 @@ public class ListBucketResult {
       this.size = size;
     }
 
+    /**
+     * Returns the object's entity tag, which changes whenever its content changes.
+     */
+    public final @Nullable String getETag() {
+      return etag;
+    }
+
+    public final void setETag(@Nullable String etag) {
+      this.etag = etag;
+    }
+
     @Override public boolean equals(@Nullable Object obj) {
       if (obj == this) {
         return true;
@@ -158,11 +204,12 @@ public class ListBucketResult {
       Content other = (Content) obj;
       return equal(key, other.key)
           && equal(lastModified, other.lastModified)
-          && equal(size, other.size);
+          && equal(size, other.size)
+          && equal(etag, other.etag);
     }
 
     @Override public int hashCode() {
-      return Objects.hashCode(key, lastModified, size);
+      return Objects.hashCode(key, lastModified, size, etag);
     }
 
     @Override public String toString() {
@@ -170,6 +217,7 @@ public class ListBucketResult {
           .add("key", key)
           .add("lastModified", lastModified)
           .add("size", size)
+          .add("etag", etag)
           .toString();
     }
   }
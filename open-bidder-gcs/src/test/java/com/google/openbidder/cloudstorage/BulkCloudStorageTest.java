@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.cloudstorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.HttpResponseException;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.openbidder.cloudstorage.testing.FakeGoogleCloudStorage;
+import com.google.openbidder.util.testing.FakeClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests for {@link BulkCloudStorage}.
+ */
+public class BulkCloudStorageTest {
+  private static final String BUCKET = "test-bucket";
+  private static final ImmutableList<String> NAMES = ImmutableList.of("a", "b", "c", "d", "e");
+
+  private FakeGoogleCloudStorage cloudStorage;
+  private ExecutorService executor;
+  private BulkCloudStorage bulk;
+
+  @Before
+  public void setUp() throws HttpResponseException {
+    cloudStorage = new FakeGoogleCloudStorage(new FakeClock());
+    cloudStorage.putBucket(BUCKET);
+    for (String name : NAMES) {
+      cloudStorage.putObject(BUCKET, name, new ByteArrayContent(
+          "text/plain", name.toUpperCase().getBytes(Charsets.UTF_8)), null);
+    }
+    executor = Executors.newFixedThreadPool(4);
+    bulk = new BulkCloudStorage(cloudStorage, executor, 2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testListAllPaginated() throws HttpResponseException {
+    cloudStorage.setMaxKeys(2);
+    assertTrue(cloudStorage.listObjectsInBucket(BUCKET, null).isTruncated());
+    assertEquals(NAMES, bulk.listAllKeys(BUCKET, null));
+    assertEquals(ImmutableList.of("c"), bulk.listAllKeys(BUCKET, "c"));
+  }
+
+  @Test
+  public void testGetObjects() {
+    BulkCloudStorage.Result<String> result = bulk.getObjects(
+        BUCKET, ImmutableList.of("e", "missing", "a", "c"),
+        new BulkCloudStorage.ObjectReader<String>() {
+          @Override public String read(StorageObject object) throws IOException {
+            return new String(ByteStreams.toByteArray(object.getInputStream()), Charsets.UTF_8);
+          }});
+
+    assertTrue(result.isSuccessful());
+    assertEquals(ImmutableList.of("e", "a", "c"), result.getResults().keySet().asList());
+    assertEquals(ImmutableList.of("E", "A", "C"), result.getResults().values().asList());
+  }
+
+  @Test
+  public void testRemoveObjects() throws HttpResponseException {
+    BulkCloudStorage.Result<Boolean> result = bulk.removeObjects(BUCKET, NAMES);
+    assertTrue(result.checkSuccessful().isSuccessful());
+    assertTrue(bulk.listAllKeys(BUCKET, null).isEmpty());
+  }
+
+  @Test(expected = GoogleCloudStorageException.class)
+  public void testFailures() {
+    BulkCloudStorage.Result<String> result = bulk.execute(NAMES,
+        new BulkCloudStorage.ObjectFunction<String>() {
+          @Override public String apply(String objectName) throws IOException {
+            if (objectName.equals("b") || objectName.equals("d")) {
+              throw new IOException(objectName);
+            }
+            return objectName;
+          }});
+
+    assertFalse(result.isSuccessful());
+    assertEquals(ImmutableList.of("a", "c", "e"), result.getResults().keySet().asList());
+    assertEquals(ImmutableList.of("b", "d"), result.getFailures().keySet().asList());
+    result.checkSuccessful();
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.cloudstorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.HttpResponseException;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.openbidder.cloudstorage.testing.FakeGoogleCloudStorage;
+import com.google.openbidder.util.testing.FakeClock;
+
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link CachingGoogleCloudStorage}.
+ */
+public class CachingGoogleCloudStorageTest {
+  private static final String BUCKET = "bucket";
+
+  private File directory;
+  private RecordingCloudStorage cloudStorage;
+  private FakeClock clock;
+
+  @Before
+  public void setUp() throws HttpResponseException {
+    directory = Files.createTempDir();
+    clock = new FakeClock();
+    cloudStorage = new RecordingCloudStorage();
+    cloudStorage.putBucket(BUCKET);
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testConditionalRead() throws IOException {
+    CachingGoogleCloudStorage cache = newCache(1000);
+    put(cloudStorage, "a", "first");
+
+    assertEquals("first", read(cache, "a"));
+    assertEquals("first", read(cache, "a"));
+    assertEquals(2, cloudStorage.statuses.size());
+    assertEquals(StorageObject.Status.OK, cloudStorage.statuses.get(0));
+    assertEquals(StorageObject.Status.NOT_MODIFIED, cloudStorage.statuses.get(1));
+    assertEquals(1, cache.getCachedObjects());
+    assertEquals(5, cache.getCachedBytes());
+
+    put(cloudStorage, "a", "second");
+    assertEquals("second", read(cache, "a"));
+    assertEquals(StorageObject.Status.OK, cloudStorage.statuses.get(2));
+    assertEquals(6, cache.getCachedBytes());
+  }
+
+  @Test
+  public void testCallerConditions() throws IOException {
+    CachingGoogleCloudStorage cache = newCache(1000);
+    put(cloudStorage, "a", "first");
+    StorageObject storageObject = cache.getObject(BUCKET, "a", null);
+    assertEquals("first", read(storageObject));
+
+    assertEquals(StorageObject.Status.NOT_MODIFIED,
+        cache.getObject(BUCKET, "a", null, storageObject.getETag()).getStatus());
+    assertEquals(StorageObject.Status.NOT_MODIFIED,
+        cache.getObject(BUCKET, "a", storageObject.getLastModified()).getStatus());
+    assertEquals(StorageObject.Status.OK,
+        cache.getObject(BUCKET, "a", new Instant(0)).getStatus());
+  }
+
+  @Test
+  public void testRestart() throws IOException {
+    put(cloudStorage, "a", "first");
+    put(cloudStorage, "b", "second");
+    CachingGoogleCloudStorage cache = newCache(1000);
+    read(cache, "a");
+    read(cache, "b");
+
+    cache = newCache(1000);
+    assertEquals(2, cache.getCachedObjects());
+    cloudStorage.statuses.clear();
+    assertEquals("first", read(cache, "a"));
+    assertEquals(StorageObject.Status.NOT_MODIFIED, cloudStorage.statuses.get(0));
+
+    new File(directory, CachingGoogleCloudStorage.cacheKey(BUCKET, "b") + ".data").delete();
+    assertEquals(1, newCache(1000).getCachedObjects());
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    CachingGoogleCloudStorage cache = newCache(10);
+    put(cloudStorage, "a", "aaaa");
+    put(cloudStorage, "b", "bbbb");
+    put(cloudStorage, "c", "cccc");
+    put(cloudStorage, "big", "0123456789abc");
+
+    read(cache, "a");
+    read(cache, "b");
+    read(cache, "a");
+    read(cache, "c");
+    assertEquals(2, cache.getCachedObjects());
+    assertEquals(8, cache.getCachedBytes());
+
+    cloudStorage.statuses.clear();
+    read(cache, "b");
+    assertEquals(StorageObject.Status.OK, cloudStorage.statuses.get(0));
+
+    assertEquals("0123456789abc", read(cache, "big"));
+    assertEquals(2, cache.getCachedObjects());
+  }
+
+  @Test
+  public void testRestartEvictionOrder() throws IOException {
+    put(cloudStorage, "a", "aaaa");
+    put(cloudStorage, "b", "bbbb");
+    put(cloudStorage, "c", "cccc");
+    CachingGoogleCloudStorage cache = newCache(10);
+    read(cache, "a");
+    read(cache, "b");
+    // Hits record the clock's time, here older than the files just written
+    clock.setNow(new Instant(1000));
+    read(cache, "a");
+
+    cache = newCache(10);
+    read(cache, "c");
+    assertEquals(2, cache.getCachedObjects());
+    cloudStorage.statuses.clear();
+    read(cache, "b");
+    read(cache, "a");
+    assertEquals(StorageObject.Status.NOT_MODIFIED, cloudStorage.statuses.get(0));
+    assertEquals(StorageObject.Status.OK, cloudStorage.statuses.get(1));
+  }
+
+  @Test
+  public void testInvalidation() throws IOException {
+    CachingGoogleCloudStorage cache = newCache(1000);
+    put(cloudStorage, "a", "first");
+    put(cloudStorage, "b", "second");
+    read(cache, "a");
+    read(cache, "b");
+
+    cache.removeObject(BUCKET, "a");
+    assertEquals(1, cache.getCachedObjects());
+
+    cloudStorage.removeObject(BUCKET, "b");
+    try {
+      read(cache, "b");
+      fail("Expected HttpResponseException");
+    } catch (HttpResponseException e) {
+      assertEquals(404, e.getStatusCode());
+    }
+    assertEquals(0, cache.getCachedObjects());
+    assertEquals(0, cache.getCachedBytes());
+    assertFalse(new File(directory, CachingGoogleCloudStorage.cacheKey(BUCKET, "b") + ".data")
+        .exists());
+
+    put(cache, "a", "third");
+    assertEquals("third", read(cache, "a"));
+    assertEquals(1, cache.getCachedObjects());
+  }
+
+  private CachingGoogleCloudStorage newCache(long maxBytes) throws IOException {
+    return new CachingGoogleCloudStorage(cloudStorage, directory.toPath(), maxBytes, clock);
+  }
+
+  private static void put(GoogleCloudStorage cloudStorage, String objectName, String content)
+      throws HttpResponseException {
+    cloudStorage.putObject(BUCKET, objectName,
+        new ByteArrayContent("text/plain", content.getBytes(Charsets.UTF_8)), null);
+  }
+
+  private static String read(GoogleCloudStorage cloudStorage, String objectName)
+      throws IOException {
+    return read(cloudStorage.getObject(BUCKET, objectName, null));
+  }
+
+  private static String read(StorageObject storageObject) throws IOException {
+    return new String(ByteStreams.toByteArray(storageObject.getInputStream()), Charsets.UTF_8);
+  }
+
+  /**
+   * Records the status of each read that reaches the underlying storage.
+   */
+  static class RecordingCloudStorage extends FakeGoogleCloudStorage {
+    final List<StorageObject.Status> statuses = new ArrayList<>();
+
+    RecordingCloudStorage() {
+      super(new FakeClock());
+    }
+
+    @Override
+    public synchronized StorageObject getObject(String bucketName, String objectName,
+        @Nullable Instant ifModifiedSince, @Nullable String ifNoneMatch)
+        throws HttpResponseException {
+      StorageObject storageObject =
+          super.getObject(bucketName, objectName, ifModifiedSince, ifNoneMatch);
+      statuses.add(storageObject.getStatus());
+      return storageObject;
+    }
+  }
+}
@@ -23,10 +23,12 @@ import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpStatusCodes;
 import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import com.google.openbidder.cloudstorage.GoogleCloudStorage;
 import com.google.openbidder.cloudstorage.GoogleCloudStorageException;
 import com.google.openbidder.cloudstorage.StorageObject;
@@ -50,8 +52,11 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import javax.annotation.Nullable;
+
 /**
  * A fully-functional mock for {@link GoogleCloudStorage}; keeps all data in memory.
+ * Thread-safe, so it can be used with concurrent bulk operations.
  */
 @javax.annotation.ParametersAreNonnullByDefault
 public class FakeGoogleCloudStorage implements GoogleCloudStorage {
@@ -60,16 +65,24 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
   private final SortedMap<String, MockBucket> buckets = new TreeMap<>();
   private int forceHttpErrorCount;
   private int forceHttpErrorStatus;
+  private int maxKeys = Integer.MAX_VALUE;
 
   public FakeGoogleCloudStorage(Clock clock) {
     this.clock = clock;
   }
 
-  public void forceHttpError(int status, int countdownOps) {
+  public synchronized void forceHttpError(int status, int countdownOps) {
     this.forceHttpErrorStatus = status;
     this.forceHttpErrorCount = countdownOps;
   }
 
+  /**
+   * Sets the maximum number of objects per page of object listings.
+   */
+  public synchronized void setMaxKeys(int maxKeys) {
+    this.maxKeys = maxKeys;
+  }
+
   private void failHttp() throws HttpResponseException {
     if (forceHttpErrorCount > 0 && --forceHttpErrorCount == 0) {
       throw newHttpResponseException(forceHttpErrorStatus);
@@ -77,7 +90,7 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
   }
 
   @Override
-  public ListAllMyBucketsResult listBuckets() throws HttpResponseException {
+  public synchronized ListAllMyBucketsResult listBuckets() throws HttpResponseException {
     failHttp();
     return toListAllMyBucketsResult(toBuckets(Lists.newArrayList(
         Iterables.transform(buckets.values(), new Function<MockBucket, Bucket>() {
@@ -90,29 +103,47 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
   }
 
   @Override
-  public ListBucketResult listObjectsInBucket(String bucketName, String objectNamePrefix)
+  public synchronized ListBucketResult listObjectsInBucket(
+      String bucketName, String objectNamePrefix) throws HttpResponseException {
+    return listObjectsInBucket(bucketName, objectNamePrefix, null);
+  }
+
+  @Override
+  public synchronized ListBucketResult listObjectsInBucket(
+      String bucketName, String objectNamePrefix, @Nullable final String marker)
       throws HttpResponseException {
     failHttp();
     MockBucket bucket = requireBucket(bucketName);
 
-    return toListBucketResult(bucketName, objectNamePrefix, Lists.newArrayList(
-        Iterables.transform(bucket.objects(objectNamePrefix), new Function<MockObject, Content> () {
+    List<Content> contents = Lists.newArrayList(Iterables.transform(
+        Iterables.filter(bucket.objects(objectNamePrefix), new Predicate<MockObject>() {
+          @Override public boolean apply(MockObject object) {
+            assert object != null;
+            return marker == null || object.name.compareTo(marker) > 0;
+          }
+        }),
+        new Function<MockObject, Content> () {
           @Override public Content apply(MockObject object) {
             assert object != null;
             return object.toContent();
           }
-        })
-    ));
+        }));
+    boolean truncated = contents.size() > maxKeys;
+    ListBucketResult ret = toListBucketResult(bucketName, objectNamePrefix,
+        truncated ? Lists.newArrayList(contents.subList(0, maxKeys)) : contents);
+    ret.setMarker(marker);
+    ret.setTruncated(truncated);
+    return ret;
   }
 
   @Override
-  public boolean bucketExists(String bucketName) throws HttpResponseException {
+  public synchronized boolean bucketExists(String bucketName) throws HttpResponseException {
     failHttp();
     return buckets.containsKey(bucketName);
   }
 
   @Override
-  public void putBucket(String bucketName) throws HttpResponseException {
+  public synchronized void putBucket(String bucketName) throws HttpResponseException {
     if (bucketExists(bucketName)) {
       throw newHttpResponseException(409); // CONFLICT
     }
@@ -123,6 +154,13 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
   @Override
   public StorageObject getObject(String bucketName,
       String objectName, final Instant ifModifiedSince) throws HttpResponseException {
+    return getObject(bucketName, objectName, ifModifiedSince, null);
+  }
+
+  @Override
+  public synchronized StorageObject getObject(String bucketName, String objectName,
+      @Nullable Instant ifModifiedSince, @Nullable String ifNoneMatch)
+      throws HttpResponseException {
     failHttp();
     MockObject object = requireBucket(bucketName).objects.get(objectName);
 
@@ -133,7 +171,9 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
     StorageObject storageObject = new StorageObject();
     // Last modified on objects are truncated to the nearest second.
     storageObject.setLastModified(new Instant((object.timestamp.getMillis() / 1000) * 1000));
-    if (ifModifiedSince != null && !ifModifiedSince.isBefore(storageObject.getLastModified())) {
+    storageObject.setETag(object.etag);
+    if ((ifModifiedSince != null && !ifModifiedSince.isBefore(storageObject.getLastModified()))
+        || object.etag.equals(ifNoneMatch)) {
       storageObject.setStatus(StorageObject.Status.NOT_MODIFIED);
     } else {
       storageObject.setInputStream(new ByteArrayInputStream(object.data));
@@ -145,7 +185,7 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
   }
 
   @Override
-  public StorageObject describeObject(
+  public synchronized StorageObject describeObject(
       String bucketName,
       String objectName) throws HttpResponseException {
     failHttp();
@@ -157,6 +197,7 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
 
     StorageObject storageObject = new StorageObject();
     storageObject.setLastModified(object.timestamp);
+    storageObject.setETag(object.etag);
     storageObject.setContentLength((long) object.data.length);
     storageObject.setContentType("binary/octet-stream");
     storageObject.setStatus(StorageObject.Status.OK);
@@ -164,7 +205,7 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
   }
 
   @Override
-  public StorageObject putObject(
+  public synchronized StorageObject putObject(
       String bucketName,
       String objectName,
       HttpContent httpContent,
@@ -183,6 +224,7 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
     requireBucket(bucketName).objects.put(objectName, object);
     StorageObject storageObject = new StorageObject();
     storageObject.setLastModified(object.timestamp);
+    storageObject.setETag(object.etag);
     storageObject.setContentLength((long) object.data.length);
     storageObject.setContentType("binary/octet-stream");
     storageObject.setStatus(StorageObject.Status.OK);
@@ -190,7 +232,8 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
   }
 
   @Override
-  public boolean removeObject(String bucketName, String objectName) throws HttpResponseException {
+  public synchronized boolean removeObject(String bucketName, String objectName)
+      throws HttpResponseException {
     failHttp();
     return requireBucket(bucketName).objects.remove(objectName) != null;
   }
@@ -263,9 +306,8 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
     public Iterable<MockObject> objects(String prefix) {
       return Strings.isNullOrEmpty(prefix)
           ? objects.values()
-          : objects.subMap(prefix,
-              prefix.substring(0, prefix.length() - 1) + (prefix.charAt(prefix.length() - 1) + 1))
-              .values();
+          : objects.subMap(prefix, prefix.substring(0, prefix.length() - 1)
+              + (char) (prefix.charAt(prefix.length() - 1) + 1)).values();
     }
 
     @Override public String toString() {
@@ -285,11 +327,13 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
     public final String name;
     public final Instant timestamp;
     public final byte[] data;
+    public final String etag;
     public final Map<String, Object> metadata;
 
     public MockObject(String name, byte[] data, Instant timestamp, Map<String, Object> metadata) {
       this.name = name;
       this.data = data;
+      this.etag = '"' + Hashing.md5().hashBytes(data).toString() + '"';
       this.timestamp = timestamp;
       this.metadata = metadata == null
           ? ImmutableMap.<String, Object>of()
@@ -301,6 +345,7 @@ public class FakeGoogleCloudStorage implements GoogleCloudStorage {
       ret.setKey(name);
       ret.setLastModified(new DateTime(timestamp.getMillis()));
       ret.setSize((long) data.length);
+      ret.setETag(etag);
       return ret;
     }
 
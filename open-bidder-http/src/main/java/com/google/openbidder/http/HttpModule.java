@@ -17,16 +17,41 @@
 package com.google.openbidder.http;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.multibindings.Multibinder;
 import com.google.openbidder.config.http.HttpOptionsReceiver;
 import com.google.openbidder.http.receiver.OptionsHttpReceiver;
 import com.google.openbidder.http.route.HttpRoute;
+import com.google.openbidder.http.trace.RequestTracer;
+import com.google.openbidder.util.Clock;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
 
 /**
  * HTTP bindings.
  */
+@Parameters(separators = "=")
 public class HttpModule extends AbstractModule {
+  private static final Logger logger = LoggerFactory.getLogger(HttpModule.class);
+
+  @Parameter(names = "--trace_sample_rate",
+      description = "Trace one in every N requests (0 = tracing disabled)")
+  private int traceSampleRate = 0;
+
+  @Parameter(names = "--trace_slow_ms",
+      description = "Retain traces for sampled requests taking at least this many milliseconds")
+  private long traceSlowMs = 10;
+
+  @Parameter(names = "--trace_buffer_size",
+      description = "Number of slow request traces to retain")
+  private int traceBufferSize = 100;
 
   @Override
   protected void configure() {
@@ -34,4 +59,13 @@ public class HttpModule extends AbstractModule {
         .to(OptionsHttpReceiver.class).in(Scopes.SINGLETON);
     Multibinder.newSetBinder(binder(), HttpRoute.class);
   }
+
+  @Provides
+  @Singleton
+  public RequestTracer provideRequestTracer(Clock clock) {
+    RequestTracer tracer = new RequestTracer(
+        clock, traceSampleRate, traceSlowMs, traceBufferSize);
+    logger.info("Request tracing: {}", tracer);
+    return tracer;
+  }
 }
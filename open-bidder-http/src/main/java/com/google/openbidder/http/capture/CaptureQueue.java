@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.capture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * Bounded, lock-free queue for many producers and a single consumer. Producers never block:
+ * {@link #offer(Object)} fails immediately if the queue is full.
+ *
+ * @param <E> Element type
+ */
+final class CaptureQueue<E> {
+  private final AtomicReferenceArray<E> slots;
+  private final int mask;
+  /** Next sequence to be claimed by a producer. */
+  private final AtomicLong head = new AtomicLong();
+  /** Next sequence to be consumed. Only written by the consumer. */
+  private final AtomicLong tail = new AtomicLong();
+
+  CaptureQueue(int capacity) {
+    checkArgument(capacity > 0, "Capacity must be > 0: %s", capacity);
+    int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Adds an element, if there is room for it. Safe to call from any thread.
+   *
+   * @return {@code true} if the element was queued, {@code false} if the queue is full
+   */
+  boolean offer(E element) {
+    checkNotNull(element);
+    while (true) {
+      long seq = head.get();
+      if (seq - tail.get() >= slots.length()) {
+        return false;
+      } else if (head.compareAndSet(seq, seq + 1)) {
+        slots.lazySet((int) seq & mask, element);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest element. Must only be called by the single consumer thread.
+   *
+   * @return the oldest element, or {@code null} if the queue is empty (or the oldest element's
+   * producer has claimed its slot but not yet published the element)
+   */
+  @Nullable E poll() {
+    long seq = tail.get();
+    int index = (int) seq & mask;
+    E element = slots.get(index);
+    if (element != null) {
+      slots.lazySet(index, null);
+      tail.lazySet(seq + 1);
+    }
+    return element;
+  }
+
+  int capacity() {
+    return slots.length();
+  }
+
+  int size() {
+    return (int) Math.max(0, head.get() - tail.get());
+  }
+}
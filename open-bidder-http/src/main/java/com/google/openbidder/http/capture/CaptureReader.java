@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.capture;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Parser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads back the records written by {@link CaptureWriter}, from a single capture file or
+ * from all capture files in a directory (in the order they were written).
+ */
+public class CaptureReader implements Closeable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Iterator<File> files;
+  private InputStream in;
+  private CodedInputStream cis;
+
+  public CaptureReader(File fileOrDirectory) throws FileNotFoundException {
+    this.files = captureFiles(fileOrDirectory).iterator();
+  }
+
+  /**
+   * Returns the capture files for a path: the path itself if it's a file, or the capture files
+   * it contains (sorted by name, which is also the writing order) if it's a directory.
+   */
+  public static ImmutableList<File> captureFiles(File fileOrDirectory)
+      throws FileNotFoundException {
+    checkNotNull(fileOrDirectory);
+    if (fileOrDirectory.isFile()) {
+      return ImmutableList.of(fileOrDirectory);
+    }
+    File[] files = fileOrDirectory.listFiles(new FilenameFilter() {
+      @Override public boolean accept(File dir, String name) {
+        return name.endsWith(CaptureWriter.SUFFIX);
+      }});
+    if (files == null) {
+      throw new FileNotFoundException("Capture not found: " + fileOrDirectory);
+    }
+    Arrays.sort(files);
+    return ImmutableList.copyOf(files);
+  }
+
+  /**
+   * Returns the next record's raw bytes, or {@code null} at the end of the capture.
+   */
+  public @Nullable byte[] next() throws IOException {
+    while (true) {
+      if (cis == null) {
+        if (!files.hasNext()) {
+          return null;
+        }
+        in = new BufferedInputStream(new FileInputStream(files.next()), BUFFER_SIZE);
+        cis = CodedInputStream.newInstance(in);
+      }
+
+      if (cis.isAtEnd()) {
+        close();
+      } else {
+        int size = cis.readRawVarint32();
+        byte[] record = cis.readRawBytes(size);
+        cis.resetSizeCounter();
+        return record;
+      }
+    }
+  }
+
+  /**
+   * Returns the next record parsed as a message, or {@code null} at the end of the capture.
+   */
+  public @Nullable <M> M next(Parser<M> parser) throws IOException {
+    byte[] record = next();
+    return record == null ? null : parser.parseFrom(record);
+  }
+
+  /**
+   * Closes the current file. Reading can be resumed with the next file.
+   */
+  @Override
+  public void close() throws IOException {
+    InputStream in = this.in;
+    this.in = null;
+    this.cis = null;
+    if (in != null) {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.capture;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+
+/**
+ * Captures a sample of messages to disk without blocking the caller. Request threads only
+ * enqueue a reference to the (immutable) message in a lock-free ring buffer; a background
+ * thread serializes them as length-delimited records (the format of
+ * {@link MessageLite#writeDelimitedTo(OutputStream)}), rotating to a new file when the
+ * current one reaches the size limit. When the buffer is full, messages are dropped.
+ * <p>
+ * Use {@link CaptureReader} to read the files back.
+ */
+public class CaptureWriter extends AbstractExecutionThreadService {
+  private static final Logger logger = LoggerFactory.getLogger(CaptureWriter.class);
+  public static final String SUFFIX = ".capture";
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File directory;
+  private final String prefix;
+  private final int sampleRate;
+  private final long maxFileBytes;
+  private final int maxFiles;
+  private final CaptureQueue<MessageLite> queue;
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong writtenCount = new AtomicLong();
+  private volatile boolean accepting;
+
+  // Only touched by the writer thread
+  private final Deque<File> files = new ArrayDeque<>();
+  private OutputStream out;
+  private CodedOutputStream cos;
+  private long fileBytes;
+  private int fileSequence;
+
+  /**
+   * @param directory Directory for the capture files, created if necessary
+   * @param prefix Prefix for the capture file names
+   * @param sampleRate Capture one in every {@code sampleRate} messages
+   * @param queueCapacity Maximum number of messages waiting to be written
+   * @param maxFileBytes Rotate to a new file after this many bytes
+   * @param maxFiles Keep only this many files, deleting the oldest; zero for no limit
+   */
+  public CaptureWriter(File directory, String prefix, int sampleRate, int queueCapacity,
+      long maxFileBytes, int maxFiles) {
+    checkArgument(sampleRate > 0, "Sample rate must be > 0: %s", sampleRate);
+    checkArgument(maxFileBytes > 0, "Maximum file size must be > 0: %s", maxFileBytes);
+    checkArgument(maxFiles >= 0, "Maximum file count must be >= 0: %s", maxFiles);
+    this.directory = checkNotNull(directory);
+    this.prefix = checkNotNull(prefix);
+    this.sampleRate = sampleRate;
+    this.maxFileBytes = maxFileBytes;
+    this.maxFiles = maxFiles;
+    this.queue = new CaptureQueue<>(queueCapacity);
+  }
+
+  /**
+   * Offers a message for capture. Never blocks; the message is ignored if it's not sampled,
+   * if the writer is not running, or if the buffer is full.
+   *
+   * @return {@code true} if the message was queued for writing
+   */
+  public boolean capture(MessageLite message) {
+    if (!accepting
+        || (sampleRate != 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+      return false;
+    } else if (queue.offer(message)) {
+      return true;
+    } else {
+      droppedCount.incrementAndGet();
+      return false;
+    }
+  }
+
+  /**
+   * Returns the number of sampled messages dropped because the buffer was full or
+   * because of a write error.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Returns the number of messages written to disk.
+   */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * Returns the number of messages waiting to be written.
+   */
+  public int getPendingCount() {
+    return queue.size();
+  }
+
+  @Override
+  protected void startUp() throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create capture directory: " + directory);
+    }
+    logger.info("Capturing to {}: {}", directory.getCanonicalPath(), this);
+    accepting = true;
+  }
+
+  @Override
+  protected void run() {
+    while (isRunning()) {
+      if (!drain()) {
+        flush();
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  @Override
+  protected void shutDown() {
+    accepting = false;
+    drain();
+    closeFile();
+    logger.info("Capture stopped: {} written, {} dropped", writtenCount, droppedCount);
+  }
+
+  /**
+   * Writes all queued messages.
+   *
+   * @return {@code true} if any message was written
+   */
+  private boolean drain() {
+    boolean drained = false;
+    for (MessageLite message = queue.poll(); message != null; message = queue.poll()) {
+      write(message);
+      drained = true;
+    }
+    return drained;
+  }
+
+  private void write(MessageLite message) {
+    try {
+      if (cos == null || fileBytes >= maxFileBytes) {
+        rotate();
+      }
+      int size = message.getSerializedSize();
+      cos.writeRawVarint32(size);
+      message.writeTo(cos);
+      fileBytes += CodedOutputStream.computeRawVarint32Size(size) + size;
+      writtenCount.incrementAndGet();
+    } catch (IOException e) {
+      logger.warn("Capture write error, restarting in a new file: {}", e.toString());
+      droppedCount.incrementAndGet();
+      closeFile();
+    }
+  }
+
+  private void rotate() throws IOException {
+    closeFile();
+    File file = new File(directory, String.format("%s-%d-%04d%s",
+        prefix, System.currentTimeMillis(), fileSequence++ % 10000, SUFFIX));
+    out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+    cos = CodedOutputStream.newInstance(out, BUFFER_SIZE);
+    fileBytes = 0;
+    files.addLast(file);
+
+    while (maxFiles != 0 && files.size() > maxFiles) {
+      File oldest = files.removeFirst();
+      if (!oldest.delete()) {
+        logger.warn("Cannot delete old capture file: {}", oldest);
+      }
+    }
+  }
+
+  private void flush() {
+    if (cos != null) {
+      try {
+        cos.flush();
+        out.flush();
+      } catch (IOException e) {
+        logger.warn("Capture flush error, restarting in a new file: {}", e.toString());
+        closeFile();
+      }
+    }
+  }
+
+  private void closeFile() {
+    OutputStream out = this.out;
+    CodedOutputStream cos = this.cos;
+    this.out = null;
+    this.cos = null;
+
+    if (out != null) {
+      try {
+        cos.flush();
+      } catch (IOException e) {
+        logger.warn("Capture flush error: {}", e.toString());
+      } finally {
+        closeQuietly(out);
+      }
+    }
+  }
+
+  private static void closeQuietly(@Nullable OutputStream out) {
+    try {
+      if (out != null) {
+        out.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Capture close error: {}", e.toString());
+    }
+  }
+
+  @Override
+  protected String serviceName() {
+    return "CaptureWriter[" + prefix + "]";
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("prefix", prefix)
+        .add("sampleRate", sampleRate)
+        .add("queueCapacity", queue.capacity())
+        .add("maxFileBytes", maxFileBytes)
+        .add("maxFiles", maxFiles)
+        .toString();
+  }
+}
@@ -27,6 +27,7 @@ import com.google.openbidder.config.http.HttpOptionsReceiver;
 import com.google.openbidder.http.HttpReceiver;
 import com.google.openbidder.http.HttpReceiverContext;
 import com.google.openbidder.http.HttpRequest;
+import com.google.openbidder.http.trace.RequestTrace;
 
 import org.apache.http.HttpStatus;
 import org.slf4j.Logger;
@@ -103,8 +104,8 @@ public class HttpRouter implements HttpReceiver {
         if ("OPTIONS".equals(ctx.httpRequest().getMethod())) {
           ctx.attributes().put("allowedMethods", getAllowedMethods(requestPath));
         }
-       
 
+        RequestTrace.markCurrent("route");
         httpReceiver.receive(ctx);
         return;
       }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.trace;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.openbidder.util.Clock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Timeline of a single sampled request: a sequence of named stage boundaries, each with the
+ * nanosecond timestamp when it was reached. Traces are created by {@link RequestTracer#start()};
+ * code that handles the request records stages with {@link #markCurrent(String)}, which is
+ * a no-op for the vast majority of requests that are not sampled.
+ * <p>
+ * A trace is only written by the thread currently handling its request (handing off between
+ * threads must happen-before, as Netty's pipeline guarantees), so it needs no synchronization.
+ */
+public final class RequestTrace {
+  static final int MAX_STAGES = 64;
+  private static final ThreadLocal<RequestTrace> current = new ThreadLocal<>();
+
+  private final Clock clock;
+  private final long startMillis;
+  private final long startNanos;
+  private final String[] stages = new String[MAX_STAGES];
+  private final long[] stageNanos = new long[MAX_STAGES];
+  private int size;
+  private int dropped;
+  private long endNanos;
+  private String name = "";
+
+  RequestTrace(Clock clock) {
+    this.clock = checkNotNull(clock);
+    this.startMillis = clock.now().getMillis();
+    this.startNanos = clock.nanoTime();
+  }
+
+  /**
+   * Returns the trace attached to the current thread, or {@code null} if the request currently
+   * being handled by this thread is not sampled.
+   */
+  public static @Nullable RequestTrace current() {
+    return current.get();
+  }
+
+  /**
+   * Records a stage boundary in the current thread's trace, if any.
+   */
+  public static void markCurrent(String stage) {
+    RequestTrace trace = current.get();
+    if (trace != null) {
+      trace.mark(stage);
+    }
+  }
+
+  /**
+   * Attaches this trace to the current thread, so {@link #markCurrent(String)} will record
+   * stages into it.
+   */
+  public void attach() {
+    current.set(this);
+  }
+
+  /**
+   * Detaches any trace from the current thread.
+   */
+  public static void detach() {
+    current.remove();
+  }
+
+  /**
+   * Records that the request has reached the end of some stage. Stages beyond
+   * {@value #MAX_STAGES} are counted but not stored.
+   */
+  public void mark(String stage) {
+    if (size < MAX_STAGES) {
+      stages[size] = checkNotNull(stage);
+      stageNanos[size] = clock.nanoTime();
+      ++size;
+    } else {
+      ++dropped;
+    }
+  }
+
+  void finish() {
+    endNanos = clock.nanoTime();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = checkNotNull(name);
+  }
+
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * Returns the total time of this request, from start to finish (or to the last recorded stage,
+   * if the trace is not finished yet).
+   */
+  public long getElapsedNanos() {
+    return (endNanos != 0 ? endNanos : size == 0 ? startNanos : stageNanos[size - 1])
+        - startNanos;
+  }
+
+  public int getStageCount() {
+    return size;
+  }
+
+  public String getStage(int index) {
+    checkIndex(index);
+    return stages[index];
+  }
+
+  /**
+   * Returns the time elapsed from the start of the request until the indexed stage boundary.
+   */
+  public long getStageOffsetNanos(int index) {
+    checkIndex(index);
+    return stageNanos[index] - startNanos;
+  }
+
+  /**
+   * Returns the time spent between the previous stage boundary (or the start) and this one.
+   */
+  public long getStageNanos(int index) {
+    checkIndex(index);
+    return stageNanos[index] - (index == 0 ? startNanos : stageNanos[index - 1]);
+  }
+
+  /**
+   * Prints this trace in a human-readable format, one stage per line.
+   */
+  public void print(PrintWriter writer) {
+    writer.format("%s: %.3f ms, started at %tFT%<tT.%<tL%n",
+        name, toMillis(getElapsedNanos()), startMillis);
+    for (int i = 0; i < size; ++i) {
+      writer.format("  %10.3f ms  +%9.3f ms  %s%n",
+          toMillis(getStageOffsetNanos(i)), toMillis(getStageNanos(i)), stages[i]);
+    }
+    if (dropped != 0) {
+      writer.format("  (%d more stages not recorded)%n", dropped);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index + " not in [0.." + size + ")");
+    }
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
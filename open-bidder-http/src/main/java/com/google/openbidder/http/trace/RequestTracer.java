@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.trace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.openbidder.util.Clock;
+import com.google.openbidder.util.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+/**
+ * Samples one in every N requests for stage-level tracing, and keeps the most recent
+ * traces that were slower than a threshold in a lock-free ring buffer.
+ */
+public class RequestTracer {
+  public static final RequestTracer DISABLED = new RequestTracer(new SystemClock(), 0, 0, 1);
+
+  private final Clock clock;
+  private final int sampleRate;
+  private final long slowThresholdNanos;
+  private final AtomicReferenceArray<RequestTrace> slowTraces;
+  private final AtomicLong slowTraceCount = new AtomicLong();
+
+  /**
+   * @param clock Clock used to timestamp the traces
+   * @param sampleRate Trace one in every {@code sampleRate} requests; zero disables tracing
+   * @param slowThresholdMs Only retain traces that take at least this many milliseconds
+   * @param bufferSize Number of slow traces to retain
+   */
+  public RequestTracer(Clock clock, int sampleRate, long slowThresholdMs, int bufferSize) {
+    checkArgument(sampleRate >= 0, "Sample rate must be >= 0: %s", sampleRate);
+    checkArgument(slowThresholdMs >= 0, "Slow threshold must be >= 0: %s", slowThresholdMs);
+    checkArgument(bufferSize > 0, "Buffer size must be > 0: %s", bufferSize);
+    this.clock = checkNotNull(clock);
+    this.sampleRate = sampleRate;
+    this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+    this.slowTraces = new AtomicReferenceArray<>(bufferSize);
+  }
+
+  public final boolean isEnabled() {
+    return sampleRate != 0;
+  }
+
+  /**
+   * Decides if the request should be traced. Sampling uses a thread-local random generator,
+   * so there is no shared state touched on the common path.
+   *
+   * @return a new trace, or {@code null} if the request is not sampled
+   */
+  public @Nullable RequestTrace start() {
+    if (sampleRate == 0
+        || (sampleRate != 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+      return null;
+    }
+    return new RequestTrace(clock);
+  }
+
+  /**
+   * Completes a trace, retaining it if it was slow.
+   */
+  public void finish(@Nullable RequestTrace trace) {
+    if (trace != null) {
+      trace.finish();
+      if (trace.getElapsedNanos() >= slowThresholdNanos) {
+        long slot = slowTraceCount.getAndIncrement();
+        slowTraces.set((int) (slot % slowTraces.length()), trace);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of slow traces seen so far, including those already evicted.
+   */
+  public long getSlowTraceCount() {
+    return slowTraceCount.get();
+  }
+
+  /**
+   * Returns the retained slow traces, most recent first.
+   */
+  public ImmutableList<RequestTrace> getSlowTraces() {
+    int length = slowTraces.length();
+    long last = slowTraceCount.get();
+    List<RequestTrace> traces = new ArrayList<>(length);
+    Set<RequestTrace> seen = Sets.newIdentityHashSet();
+    for (long slot = last - 1; slot >= 0 && slot >= last - length; --slot) {
+      RequestTrace trace = slowTraces.get((int) (slot % length));
+      if (trace != null && seen.add(trace)) {
+        traces.add(trace);
+      }
+    }
+    return ImmutableList.copyOf(traces);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("sampleRate", sampleRate)
+        .add("slowThresholdNanos", slowThresholdNanos)
+        .add("bufferSize", slowTraces.length())
+        .toString();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link CaptureQueue}.
+ */
+public class CaptureQueueTest {
+
+  @Test
+  public void testCapacity() {
+    assertEquals(1, new CaptureQueue<String>(1).capacity());
+    assertEquals(4, new CaptureQueue<String>(3).capacity());
+    assertEquals(4, new CaptureQueue<String>(4).capacity());
+    assertEquals(8, new CaptureQueue<String>(5).capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadCapacity() {
+    new CaptureQueue<String>(0);
+  }
+
+  @Test
+  public void testOfferPoll() {
+    CaptureQueue<String> queue = new CaptureQueue<>(2);
+    assertNull(queue.poll());
+    assertTrue(queue.offer("a"));
+    assertTrue(queue.offer("b"));
+    assertFalse(queue.offer("c"));
+    assertEquals(2, queue.size());
+    assertEquals("a", queue.poll());
+    assertTrue(queue.offer("d"));
+    assertEquals("b", queue.poll());
+    assertEquals("d", queue.poll());
+    assertNull(queue.poll());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException {
+    final CaptureQueue<Integer> queue = new CaptureQueue<>(1024);
+    final int producers = 4;
+    final int perProducer = 10000;
+    final CountDownLatch done = new CountDownLatch(producers);
+    final AtomicInteger dropped = new AtomicInteger();
+
+    for (int p = 0; p < producers; ++p) {
+      new Thread() {
+        @Override public void run() {
+          for (int i = 0; i < perProducer; ++i) {
+            if (!queue.offer(i)) {
+              dropped.incrementAndGet();
+            }
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+
+    int consumed = 0;
+    while (done.getCount() != 0 || queue.size() != 0) {
+      if (queue.poll() != null) {
+        ++consumed;
+      }
+    }
+    assertEquals(producers * perProducer, consumed + dropped.get());
+  }
+}
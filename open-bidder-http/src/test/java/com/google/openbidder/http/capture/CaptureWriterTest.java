@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.Files;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests for {@link CaptureWriter} and {@link CaptureReader}.
+ */
+public class CaptureWriterTest {
+  private File directory;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testWriteRead() throws IOException {
+    CaptureWriter writer = new CaptureWriter(directory, "test", 1, 100, 20, 0);
+    assertFalse(writer.capture(message(0)));
+    writer.startAsync().awaitRunning();
+    for (int i = 1; i <= 10; ++i) {
+      assertTrue(writer.capture(message(i)));
+    }
+    writer.stopAsync().awaitTerminated();
+    assertEquals(10, writer.getWrittenCount());
+    assertEquals(0, writer.getDroppedCount());
+    assertTrue(CaptureReader.captureFiles(directory).size() > 1);
+
+    try (CaptureReader reader = new CaptureReader(directory)) {
+      for (int i = 1; i <= 10; ++i) {
+        assertEquals(message(i), reader.next(FileDescriptorProto.PARSER));
+      }
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void testMaxFiles() throws IOException {
+    CaptureWriter writer = new CaptureWriter(directory, "test", 1, 100, 1, 2);
+    writer.startAsync().awaitRunning();
+    for (int i = 1; i <= 5; ++i) {
+      writer.capture(message(i));
+    }
+    writer.stopAsync().awaitTerminated();
+    assertEquals(2, CaptureReader.captureFiles(directory).size());
+  }
+
+  private static FileDescriptorProto message(int i) {
+    return FileDescriptorProto.newBuilder().setName("file" + i).build();
+  }
+}
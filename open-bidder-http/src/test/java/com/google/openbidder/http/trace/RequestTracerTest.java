@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.http.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.openbidder.util.testing.FakeClock;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link RequestTracer} and {@link RequestTrace}.
+ */
+public class RequestTracerTest {
+  private final FakeClock clock = new FakeClock();
+
+  @Test
+  public void testDisabled() {
+    RequestTracer tracer = new RequestTracer(clock, 0, 0, 1);
+    assertFalse(tracer.isEnabled());
+    assertNull(tracer.start());
+    tracer.finish(null);
+    assertTrue(tracer.getSlowTraces().isEmpty());
+    assertNull(RequestTracer.DISABLED.start());
+  }
+
+  @Test
+  public void testStages() {
+    RequestTracer tracer = new RequestTracer(clock, 1, 0, 1);
+    RequestTrace trace = tracer.start();
+    assertNotNull(trace);
+    trace.setName("POST /bid");
+    trace.attach();
+    try {
+      assertSame(trace, RequestTrace.current());
+      RequestTrace.markCurrent("decode");
+      RequestTrace.markCurrent("route");
+    } finally {
+      RequestTrace.detach();
+    }
+    RequestTrace.markCurrent("ignored");
+    assertNull(RequestTrace.current());
+    tracer.finish(trace);
+
+    assertEquals(2, trace.getStageCount());
+    assertEquals("decode", trace.getStage(0));
+    assertEquals("route", trace.getStage(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1), trace.getStageNanos(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(2), trace.getStageOffsetNanos(1));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(3), trace.getElapsedNanos());
+
+    StringWriter out = new StringWriter();
+    trace.print(new PrintWriter(out));
+    assertTrue(out.toString().startsWith("POST /bid: "));
+    assertTrue(out.toString().contains("route"));
+  }
+
+  @Test
+  public void testStageOverflow() {
+    RequestTrace trace = new RequestTracer(clock, 1, 0, 1).start();
+    for (int i = 0; i <= RequestTrace.MAX_STAGES; ++i) {
+      trace.mark("stage" + i);
+    }
+    assertEquals(RequestTrace.MAX_STAGES, trace.getStageCount());
+    StringWriter out = new StringWriter();
+    trace.print(new PrintWriter(out));
+    assertTrue(out.toString().contains("(1 more stages not recorded)"));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testBadStage() {
+    new RequestTracer(clock, 1, 0, 1).start().getStage(0);
+  }
+
+  @Test
+  public void testSlowTraces() {
+    RequestTracer tracer = new RequestTracer(clock, 1, 2, 2);
+
+    RequestTrace fast = tracer.start();
+    tracer.finish(fast);
+    assertEquals(0, tracer.getSlowTraceCount());
+
+    RequestTrace slow1 = slowTrace(tracer);
+    RequestTrace slow2 = slowTrace(tracer);
+    RequestTrace slow3 = slowTrace(tracer);
+    assertEquals(3, tracer.getSlowTraceCount());
+    assertEquals(ImmutableList.of(slow3, slow2), tracer.getSlowTraces());
+    assertFalse(tracer.getSlowTraces().contains(slow1));
+  }
+
+  private static RequestTrace slowTrace(RequestTracer tracer) {
+    RequestTrace trace = tracer.start();
+    trace.mark("work");
+    trace.mark("more work");
+    tracer.finish(trace);
+    return trace;
+  }
+}
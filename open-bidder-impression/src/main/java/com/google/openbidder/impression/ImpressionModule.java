@@ -17,6 +17,7 @@
 package com.google.openbidder.impression;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
 import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
@@ -24,6 +25,7 @@ import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
+import com.google.inject.multibindings.OptionalBinder;
 import com.google.openbidder.api.impression.ImpressionController;
 import com.google.openbidder.api.impression.ImpressionInterceptor;
 import com.google.openbidder.config.http.Feature;
@@ -33,6 +35,11 @@ import com.google.openbidder.config.impression.ImpressionPath;
 import com.google.openbidder.config.impression.PriceName;
 import com.google.openbidder.http.route.AbstractHttpRouteProvider;
 import com.google.openbidder.http.route.HttpRoute;
+import com.google.openbidder.impression.interceptor.AggregatingImpressionInterceptor;
+import com.google.openbidder.impression.rollup.ImpressionAggregator;
+import com.google.openbidder.impression.rollup.ImpressionRollupFlusher;
+import com.google.openbidder.impression.rollup.ImpressionRollupSink;
+import com.google.openbidder.impression.rollup.LoggingImpressionRollupSink;
 import com.google.openbidder.util.GuiceUtils;
 
 import com.beust.jcommander.Parameter;
@@ -44,6 +51,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -67,6 +75,26 @@ public class ImpressionModule extends AbstractModule {
       description = "Parameter name for the winning price")
   private String priceName = PriceName.DEFAULT;
 
+  @Parameter(names = "--impression_campaign_param",
+      description = "AggregatingImpressionInterceptor: Parameter name for the campaign")
+  private String campaignParameter = AggregatingImpressionInterceptor.CampaignParameter.DEFAULT;
+
+  @Parameter(names = "--impression_creative_param",
+      description = "AggregatingImpressionInterceptor: Parameter name for the creative")
+  private String creativeParameter = AggregatingImpressionInterceptor.CreativeParameter.DEFAULT;
+
+  @Parameter(names = "--impression_rollup_seconds",
+      description = "AggregatingImpressionInterceptor: Rollup window (0=no flushing)")
+  private int rollupSeconds = 60;
+
+  @Parameter(names = "--impression_rollup_max_pending",
+      description = "AggregatingImpressionInterceptor: Maximum rollups kept for retrying")
+  private int rollupMaxPending = 100000;
+
+  @Parameter(names = "--impression_rollup_max_keys",
+      description = "AggregatingImpressionInterceptor: Maximum campaign/creative pairs tracked")
+  private int rollupMaxKeys = ImpressionAggregator.MaxKeys.DEFAULT;
+
   @Override
   protected void configure() {
     logger.info("Impression interceptors: {}", interceptors);
@@ -75,6 +103,14 @@ public class ImpressionModule extends AbstractModule {
     bind(new TypeLiteral<ImmutableList<String>>() {}).annotatedWith(ImpressionInterceptors.class)
         .toInstance(ImmutableList.copyOf(interceptors));
     bind(String.class).annotatedWith(PriceName.class).toInstance(priceName);
+    bind(String.class).annotatedWith(AggregatingImpressionInterceptor.CampaignParameter.class)
+        .toInstance(campaignParameter);
+    bind(String.class).annotatedWith(AggregatingImpressionInterceptor.CreativeParameter.class)
+        .toInstance(creativeParameter);
+    bind(int.class).annotatedWith(ImpressionAggregator.MaxKeys.class)
+        .toInstance(rollupMaxKeys);
+    OptionalBinder.newOptionalBinder(binder(), ImpressionRollupSink.class)
+        .setDefault().to(LoggingImpressionRollupSink.class);
     if (hasImpression) {
       logger.info("Binding impression requests to: {}", path);
       bind(String.class).annotatedWith(ImpressionPath.class).toInstance(path);
@@ -83,6 +119,9 @@ public class ImpressionModule extends AbstractModule {
       Multibinder.newSetBinder(binder(), Feature.class).addBinding().toInstance(Feature.IMPRESSION);
       Multibinder.newSetBinder(binder(), HttpRoute.class).addBinding()
           .toProvider(ImpressionHttpRouteProvider.class).in(Scopes.SINGLETON);
+      if (rollupSeconds > 0) {
+        install(new RollupModule());
+      }
     } else {
       logger.info("Impression request handling not installed");
     }
@@ -107,6 +146,21 @@ public class ImpressionModule extends AbstractModule {
     return new ImpressionController(interceptors, metricRegistry);
   }
 
+  private class RollupModule extends AbstractModule {
+    @Override protected void configure() {
+      Multibinder.newSetBinder(binder(), Service.class).addBinding()
+          .to(ImpressionRollupFlusher.class);
+    }
+
+    @Provides @Singleton
+    public ImpressionRollupFlusher provideImpressionRollupFlusher(
+        ImpressionAggregator aggregator, ImpressionRollupSink sink) {
+      return new ImpressionRollupFlusher(aggregator, sink,
+          Scheduler.newFixedRateSchedule(rollupSeconds, rollupSeconds, TimeUnit.SECONDS),
+          rollupMaxPending);
+    }
+  }
+
   protected static class ImpressionHttpRouteProvider extends AbstractHttpRouteProvider {
     @Inject
     private ImpressionHttpRouteProvider(
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.impression.interceptor;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.common.base.Strings;
+import com.google.inject.BindingAnnotation;
+import com.google.openbidder.api.impression.ImpressionInterceptor;
+import com.google.openbidder.api.impression.ImpressionRequest;
+import com.google.openbidder.api.impression.ImpressionResponse;
+import com.google.openbidder.api.interceptor.InterceptorChain;
+import com.google.openbidder.impression.rollup.ImpressionAggregator;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.inject.Inject;
+
+/**
+ * Aggregates the impressions and winning prices per campaign and creative, which are
+ * identified by parameters of the impression URL. The price is decoded once per request;
+ * the totals are periodically flushed as rollups, see
+ * {@link com.google.openbidder.impression.rollup.ImpressionRollupFlusher}.
+ */
+public class AggregatingImpressionInterceptor implements ImpressionInterceptor {
+  private static final Logger logger =
+      LoggerFactory.getLogger(AggregatingImpressionInterceptor.class);
+
+  private final ImpressionAggregator aggregator;
+  private final String campaignParameter;
+  private final String creativeParameter;
+  private final Counter priceErrors = new Counter();
+
+  @Inject
+  public AggregatingImpressionInterceptor(
+      ImpressionAggregator aggregator,
+      MetricRegistry metricRegistry,
+      @CampaignParameter String campaignParameter,
+      @CreativeParameter String creativeParameter) {
+    this.aggregator = aggregator;
+    this.campaignParameter = campaignParameter;
+    this.creativeParameter = creativeParameter;
+    metricRegistry.register(MetricRegistry.name(getClass(), "price-errors"), priceErrors);
+  }
+
+  @Override
+  public void execute(InterceptorChain<ImpressionRequest, ImpressionResponse> chain) {
+    ImpressionRequest request = chain.request();
+    long priceMicros = 0;
+
+    if (request.hasPrice()) {
+      try {
+        priceMicros = Math.round(request.getPriceValue() * 1e6);
+      } catch (RuntimeException e) {
+        priceErrors.inc();
+        logger.debug("Bad price, counting as zero: {}", e.toString());
+      }
+    }
+
+    aggregator.record(
+        Strings.nullToEmpty(request.httpRequest().getParameter(campaignParameter)),
+        Strings.nullToEmpty(request.httpRequest().getParameter(creativeParameter)),
+        priceMicros);
+
+    chain.proceed();
+  }
+
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface CampaignParameter {
+    String DEFAULT = "campaign";
+  }
+
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface CreativeParameter {
+    String DEFAULT = "creative";
+  }
+}
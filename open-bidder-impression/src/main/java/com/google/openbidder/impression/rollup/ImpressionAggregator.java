@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.impression.rollup;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.BindingAnnotation;
+import com.google.openbidder.util.Clock;
+import com.google.openbidder.util.StripedCounter;
+
+import org.joda.time.Instant;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Aggregates impressions by campaign and creative. Recording is lock-free and contention-free
+ * (it only adds to {@link StripedCounter}s), so it can be called for every impression;
+ * {@link #drain()} collects the totals since the previous drain as rollups.
+ * <p>
+ * A drain is not an atomic snapshot: an impression recorded concurrently with a drain may
+ * have its count in one window and its price in the next one. Nothing is lost or counted
+ * twice, so totals over multiple windows are exact.
+ * <p>
+ * Campaigns and creatives come from the impression URL, so the number of keys is capped: once
+ * {@code maxKeys} are tracked, impressions for new keys are recorded under {@link #OVERFLOW}.
+ * Keys without impressions in a window are removed by the drain. Their counters are still
+ * checked by the next drain, so an impression recorded while its key was being removed is
+ * not lost either.
+ */
+@Singleton
+public class ImpressionAggregator {
+  /** Campaign and creative of the impressions recorded after the key limit is reached. */
+  public static final String OVERFLOW = "(other)";
+  private static final Key OVERFLOW_KEY = new Key(OVERFLOW, OVERFLOW);
+
+  private final ConcurrentMap<Key, Totals> totals = new ConcurrentHashMap<>();
+  private final Clock clock;
+  private final int maxKeys;
+  private Instant windowStart;
+  private Map<Key, Totals> retired = ImmutableMap.of();
+
+  @Inject
+  public ImpressionAggregator(Clock clock, @MaxKeys int maxKeys) {
+    checkArgument(maxKeys > 0, "maxKeys must be positive: %s", maxKeys);
+    this.clock = checkNotNull(clock);
+    this.maxKeys = maxKeys;
+    this.windowStart = clock.now();
+  }
+
+  public ImpressionAggregator(Clock clock) {
+    this(clock, MaxKeys.DEFAULT);
+  }
+
+  /**
+   * Records one impression.
+   *
+   * @param priceMicros Winning price, in micros of the currency unit
+   */
+  public void record(String campaign, String creative, long priceMicros) {
+    Key key = new Key(campaign, creative);
+    Totals keyTotals = totals.get(key);
+    if (keyTotals == null) {
+      // Racing threads may overshoot the limit a little, which is harmless
+      keyTotals = totalsFor(totals.size() < maxKeys ? key : OVERFLOW_KEY);
+    }
+    keyTotals.impressions.increment();
+    keyTotals.priceMicros.add(priceMicros);
+  }
+
+  private Totals totalsFor(Key key) {
+    Totals keyTotals = totals.get(key);
+    if (keyTotals == null) {
+      Totals newTotals = new Totals();
+      keyTotals = totals.putIfAbsent(key, newTotals);
+      if (keyTotals == null) {
+        keyTotals = newTotals;
+      }
+    }
+    return keyTotals;
+  }
+
+  /**
+   * @return Number of campaign and creative keys currently tracked
+   */
+  public int getKeyCount() {
+    return totals.size();
+  }
+
+  /**
+   * @return Rollups for all campaigns and creatives with impressions since the previous drain
+   */
+  public synchronized ImmutableList<ImpressionRollup> drain() {
+    Instant windowEnd = clock.now();
+    Map<Key, long[]> sums = new LinkedHashMap<>();
+    // Impressions that raced with the removal of their key in the previous drain
+    for (Map.Entry<Key, Totals> entry : retired.entrySet()) {
+      entry.getValue().drainTo(sums, entry.getKey());
+    }
+
+    Map<Key, Totals> idle = new HashMap<>();
+    for (Map.Entry<Key, Totals> entry : totals.entrySet()) {
+      if (!entry.getValue().drainTo(sums, entry.getKey())
+          && totals.remove(entry.getKey(), entry.getValue())) {
+        idle.put(entry.getKey(), entry.getValue());
+      }
+    }
+    retired = idle;
+
+    ImmutableList.Builder<ImpressionRollup> rollups = ImmutableList.builder();
+    for (Map.Entry<Key, long[]> entry : sums.entrySet()) {
+      rollups.add(new ImpressionRollup(entry.getKey().campaign, entry.getKey().creative,
+          windowStart, windowEnd, entry.getValue()[0], entry.getValue()[1]));
+    }
+    windowStart = windowEnd;
+    return rollups.build();
+  }
+
+  private static final class Key {
+    final String campaign;
+    final String creative;
+
+    Key(String campaign, String creative) {
+      this.campaign = checkNotNull(campaign);
+      this.creative = checkNotNull(creative);
+    }
+
+    @Override public int hashCode() {
+      return campaign.hashCode() * 31 + creative.hashCode();
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      } else if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return campaign.equals(other.campaign) && creative.equals(other.creative);
+    }
+  }
+
+  private static final class Totals {
+    final StripedCounter impressions = new StripedCounter();
+    final StripedCounter priceMicros = new StripedCounter();
+
+    /**
+     * Adds the totals since the last drain to {@code sums}, and resets them.
+     *
+     * @return {@code false} if there was nothing to add
+     */
+    boolean drainTo(Map<Key, long[]> sums, Key key) {
+      long impressionCount = impressions.sumThenReset();
+      long priceTotal = priceMicros.sumThenReset();
+      if (impressionCount == 0 && priceTotal == 0) {
+        return false;
+      }
+      long[] sum = sums.get(key);
+      if (sum == null) {
+        sums.put(key, new long[] { impressionCount, priceTotal });
+      } else {
+        sum[0] += impressionCount;
+        sum[1] += priceTotal;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Maximum number of campaign and creative keys tracked at once.
+   */
+  @BindingAnnotation
+  @Target({ FIELD, PARAMETER, METHOD })
+  @Retention(RUNTIME)
+  public @interface MaxKeys {
+    int DEFAULT = 10000;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.impression.rollup;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+
+import org.joda.time.Instant;
+
+/**
+ * Totals of the impressions for one campaign and creative, within a time window.
+ */
+public final class ImpressionRollup {
+  private final String campaign;
+  private final String creative;
+  private final Instant windowStart;
+  private final Instant windowEnd;
+  private final long impressions;
+  private final long priceMicros;
+
+  public ImpressionRollup(String campaign, String creative,
+      Instant windowStart, Instant windowEnd, long impressions, long priceMicros) {
+    this.campaign = checkNotNull(campaign);
+    this.creative = checkNotNull(creative);
+    this.windowStart = checkNotNull(windowStart);
+    this.windowEnd = checkNotNull(windowEnd);
+    this.impressions = impressions;
+    this.priceMicros = priceMicros;
+  }
+
+  public String getCampaign() {
+    return campaign;
+  }
+
+  public String getCreative() {
+    return creative;
+  }
+
+  public Instant getWindowStart() {
+    return windowStart;
+  }
+
+  public Instant getWindowEnd() {
+    return windowEnd;
+  }
+
+  public long getImpressions() {
+    return impressions;
+  }
+
+  /**
+   * @return Sum of the winning prices, in micros of the currency unit. Prices are CPM,
+   * so the actual spend is a thousandth of this
+   */
+  public long getPriceMicros() {
+    return priceMicros;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("campaign", campaign)
+        .add("creative", creative)
+        .add("windowStart", windowStart)
+        .add("windowEnd", windowEnd)
+        .add("impressions", impressions)
+        .add("priceMicros", priceMicros)
+        .toString();
+  }
+}
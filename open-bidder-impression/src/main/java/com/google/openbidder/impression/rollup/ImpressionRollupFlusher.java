@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.impression.rollup;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Periodically drains an {@link ImpressionAggregator}, writing the rollups to an
+ * {@link ImpressionRollupSink} from the service's own thread, off the request path.
+ * Rollups that the sink fails to write are retried with the next window, up to a limit
+ * (then the oldest are dropped). The last window is flushed on shutdown.
+ */
+public class ImpressionRollupFlusher extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(ImpressionRollupFlusher.class);
+  private final ImpressionAggregator aggregator;
+  private final ImpressionRollupSink sink;
+  private final Scheduler scheduler;
+  private final int maxPending;
+  private final Deque<ImpressionRollup> pending = new ArrayDeque<>();
+
+  /**
+   * @param maxPending Maximum number of rollups to keep for retrying
+   */
+  public ImpressionRollupFlusher(ImpressionAggregator aggregator, ImpressionRollupSink sink,
+      Scheduler scheduler, int maxPending) {
+    checkArgument(maxPending > 0, "maxPending must be positive: %s", maxPending);
+    this.aggregator = checkNotNull(aggregator);
+    this.sink = checkNotNull(sink);
+    this.scheduler = checkNotNull(scheduler);
+    this.maxPending = maxPending;
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  protected void runOneIteration() {
+    flush();
+  }
+
+  @Override
+  protected void shutDown() {
+    flush();
+  }
+
+  /**
+   * Drains the aggregator, and writes all pending rollups.
+   *
+   * @return {@code true} if the sink accepted the rollups
+   */
+  public synchronized boolean flush() {
+    pending.addAll(aggregator.drain());
+    if (pending.isEmpty()) {
+      return true;
+    }
+
+    try {
+      sink.write(ImmutableList.copyOf(pending));
+      pending.clear();
+      return true;
+    } catch (IOException | RuntimeException e) {
+      int dropped = 0;
+      while (pending.size() > maxPending) {
+        pending.removeFirst();
+        ++dropped;
+      }
+      logger.error("Failed to write impression rollups ({} pending, {} dropped)",
+          pending.size(), dropped, e);
+      return false;
+    }
+  }
+}
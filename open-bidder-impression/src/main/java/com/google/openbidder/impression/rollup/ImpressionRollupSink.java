@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.impression.rollup;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of the impression rollups, written by {@link ImpressionRollupFlusher}.
+ * The default sink only logs them; bind a different implementation to store them.
+ */
+public interface ImpressionRollupSink {
+
+  /**
+   * Writes some rollups. If this fails, the same rollups will be retried with the next window.
+   */
+  void write(List<ImpressionRollup> rollups) throws IOException;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.impression.rollup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * The default {@link ImpressionRollupSink}, which just logs the rollups.
+ */
+public class LoggingImpressionRollupSink implements ImpressionRollupSink {
+  private static final Logger logger = LoggerFactory.getLogger(LoggingImpressionRollupSink.class);
+
+  @Override
+  public void write(List<ImpressionRollup> rollups) {
+    for (ImpressionRollup rollup : rollups) {
+      logger.info("Impressions: {}", rollup);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.impression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.openbidder.api.impression.ImpressionController;
+import com.google.openbidder.api.testing.impression.ImpressionTestUtil;
+import com.google.openbidder.api.testing.impression.TestImpressionRequestBuilder;
+import com.google.openbidder.api.testing.impression.TestImpressionResponseBuilder;
+import com.google.openbidder.impression.interceptor.AggregatingImpressionInterceptor;
+import com.google.openbidder.impression.rollup.ImpressionAggregator;
+import com.google.openbidder.impression.rollup.ImpressionRollup;
+import com.google.openbidder.impression.rollup.ImpressionRollupFlusher;
+import com.google.openbidder.impression.rollup.ImpressionRollupSink;
+import com.google.openbidder.util.SystemClock;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link AggregatingImpressionInterceptor} and its rollups.
+ */
+public class AggregatingImpressionInterceptorTest {
+  private ImpressionAggregator aggregator;
+  private ImpressionController controller;
+
+  @Before
+  public void setUp() {
+    aggregator = new ImpressionAggregator(new SystemClock());
+    MetricRegistry metricRegistry = new MetricRegistry();
+    controller = ImpressionTestUtil.newImpressionController(metricRegistry,
+        new AggregatingImpressionInterceptor(aggregator, metricRegistry,
+            AggregatingImpressionInterceptor.CampaignParameter.DEFAULT,
+            AggregatingImpressionInterceptor.CreativeParameter.DEFAULT));
+  }
+
+  @After
+  public void tearDown() {
+    if (controller != null) {
+      controller.stopAsync().awaitTerminated();
+    }
+  }
+
+  @Test
+  public void testAggregation() {
+    impression("c1", "cr1", 1.5);
+    impression("c1", "cr1", 0.5);
+    impression("c1", "cr2", 2.0);
+    controller.onRequest(
+        TestImpressionRequestBuilder.create().build(),
+        TestImpressionResponseBuilder.create().build());
+
+    List<ImpressionRollup> rollups = aggregator.drain();
+    assertEquals(3, rollups.size());
+    assertEquals(2, rollup(rollups, "c1", "cr1").getImpressions());
+    assertEquals(2000000, rollup(rollups, "c1", "cr1").getPriceMicros());
+    assertEquals(1, rollup(rollups, "c1", "cr2").getImpressions());
+    assertEquals(2000000, rollup(rollups, "c1", "cr2").getPriceMicros());
+    assertEquals(1, rollup(rollups, "", "").getImpressions());
+    assertEquals(0, rollup(rollups, "", "").getPriceMicros());
+
+    assertTrue(aggregator.drain().isEmpty());
+    impression("c1", "cr1", 1.0);
+    rollups = aggregator.drain();
+    assertEquals(1, rollups.size());
+    assertEquals(1000000, rollup(rollups, "c1", "cr1").getPriceMicros());
+  }
+
+  @Test
+  public void testIdleKeysRemoved() {
+    aggregator.record("c1", "cr1", 1000000);
+    aggregator.record("c2", "cr2", 1000000);
+    assertEquals(2, aggregator.drain().size());
+    assertEquals(2, aggregator.getKeyCount());
+
+    aggregator.record("c1", "cr1", 1000000);
+    assertEquals(1, aggregator.drain().size());
+    assertEquals(1, aggregator.getKeyCount());
+    assertTrue(aggregator.drain().isEmpty());
+    assertEquals(0, aggregator.getKeyCount());
+
+    aggregator.record("c2", "cr2", 3000000);
+    List<ImpressionRollup> rollups = aggregator.drain();
+    assertEquals(1, rollups.size());
+    assertEquals(3000000, rollup(rollups, "c2", "cr2").getPriceMicros());
+  }
+
+  @Test
+  public void testMaxKeys() {
+    aggregator = new ImpressionAggregator(new SystemClock(), 2);
+    aggregator.record("c1", "cr1", 1000000);
+    aggregator.record("c2", "cr2", 1000000);
+    aggregator.record("c3", "cr3", 1000000);
+    aggregator.record("c4", "cr4", 1000000);
+    aggregator.record("c1", "cr1", 1000000);
+    assertEquals(3, aggregator.getKeyCount());
+
+    List<ImpressionRollup> rollups = aggregator.drain();
+    assertEquals(3, rollups.size());
+    assertEquals(2, rollup(rollups, "c1", "cr1").getImpressions());
+    assertEquals(1, rollup(rollups, "c2", "cr2").getImpressions());
+    assertEquals(2, rollup(rollups,
+        ImpressionAggregator.OVERFLOW, ImpressionAggregator.OVERFLOW).getImpressions());
+  }
+
+  @Test
+  public void testFlusherRetries() {
+    final List<ImpressionRollup> written = new ArrayList<>();
+    final boolean[] fail = { true };
+    ImpressionRollupFlusher flusher = new ImpressionRollupFlusher(aggregator,
+        new ImpressionRollupSink() {
+          @Override public void write(List<ImpressionRollup> rollups) throws IOException {
+            if (fail[0]) {
+              throw new IOException("unavailable");
+            }
+            written.addAll(rollups);
+          }},
+        Scheduler.newFixedRateSchedule(1, 1, TimeUnit.HOURS), 100);
+
+    impression("c1", "cr1", 1.0);
+    assertFalse(flusher.flush());
+    assertTrue(written.isEmpty());
+
+    fail[0] = false;
+    impression("c1", "cr1", 2.0);
+    assertTrue(flusher.flush());
+    assertEquals(2, written.size());
+    assertEquals(1000000, written.get(0).getPriceMicros());
+    assertEquals(2000000, written.get(1).getPriceMicros());
+
+    assertTrue(flusher.flush());
+    assertEquals(2, written.size());
+  }
+
+  private void impression(String campaign, String creative, double price) {
+    controller.onRequest(
+        TestImpressionRequestBuilder.create()
+            .setPrice(price)
+            .addParameters(
+                AggregatingImpressionInterceptor.CampaignParameter.DEFAULT, campaign,
+                AggregatingImpressionInterceptor.CreativeParameter.DEFAULT, creative)
+            .build(),
+        TestImpressionResponseBuilder.create().build());
+  }
+
+  private static ImpressionRollup rollup(
+      List<ImpressionRollup> rollups, String campaign, String creative) {
+    for (ImpressionRollup rollup : rollups) {
+      if (rollup.getCampaign().equals(campaign) && rollup.getCreative().equals(creative)) {
+        return rollup;
+      }
+    }
+    throw new AssertionError("No rollup for " + campaign + "/" + creative);
+  }
+}
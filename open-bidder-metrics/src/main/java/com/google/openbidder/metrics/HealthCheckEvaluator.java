@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.openbidder.util.Clock;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Evaluates all {@link HealthCheck}s in the background, at a fixed period, and caches the
+ * results. Health check requests only read the last snapshot, so they are as cheap as a ping
+ * and cannot be stalled by a slow check. Each check runs in its own thread with a timeout;
+ * a check that doesn't finish in time is reported unhealthy for that round. A check is not
+ * resubmitted while its previous run is still going (because it ignored the interrupt), so a
+ * stuck check holds at most one thread.
+ */
+public class HealthCheckEvaluator extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(HealthCheckEvaluator.class);
+
+  private final HealthCheckRegistry healthCheckRegistry;
+  private final Clock clock;
+  private final long periodMs;
+  private final long timeoutMs;
+  private final ExecutorService executor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("healthcheck-%d").setDaemon(true).build());
+  private final Set<String> running = Sets.newConcurrentHashSet();
+  private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+  public HealthCheckEvaluator(
+      HealthCheckRegistry healthCheckRegistry, Clock clock, long periodMs, long timeoutMs) {
+    checkArgument(periodMs > 0, "periodMs must be positive: %s", periodMs);
+    checkArgument(timeoutMs > 0, "timeoutMs must be positive: %s", timeoutMs);
+    this.healthCheckRegistry = checkNotNull(healthCheckRegistry);
+    this.clock = checkNotNull(clock);
+    this.periodMs = periodMs;
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * @return Results of the last evaluation, empty if no evaluation has completed yet
+   */
+  public SortedMap<String, HealthCheck.Result> getResults() {
+    return snapshot.results;
+  }
+
+  /**
+   * @return {@code true} if at least one evaluation has completed and all checks were healthy
+   */
+  public boolean isHealthy() {
+    return snapshot.healthy;
+  }
+
+  /**
+   * @return Time of the last completed evaluation in milliseconds, or 0 if none yet
+   */
+  public long getLastEvaluationMillis() {
+    return snapshot.timeMillis;
+  }
+
+  /**
+   * @return {@code true} if the last evaluation is older than a few periods, meaning the
+   * evaluator itself is stuck or not running
+   */
+  public boolean isStale() {
+    long timeMillis = snapshot.timeMillis;
+    return timeMillis == 0
+        || clock.now().getMillis() - timeMillis > 3 * periodMs + timeoutMs;
+  }
+
+  /**
+   * Runs all health checks and updates the cached results.
+   */
+  public synchronized void evaluate() {
+    ImmutableSortedMap.Builder<String, HealthCheck.Result> results =
+        ImmutableSortedMap.naturalOrder();
+    boolean healthy = true;
+    List<Run> runs = new ArrayList<>();
+    for (String name : healthCheckRegistry.getNames()) {
+      if (!running.add(name)) {
+        logger.warn("Health check {} is still running from a previous evaluation", name);
+        results.put(name, HealthCheck.Result.unhealthy("Still running from a previous evaluation"));
+        healthy = false;
+        continue;
+      }
+      Run run = new Run(name);
+      try {
+        run.future = executor.submit(run);
+      } catch (RejectedExecutionException e) {
+        running.remove(name);
+        throw e;
+      }
+      runs.add(run);
+    }
+
+    long deadline = clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    for (Run run : runs) {
+      HealthCheck.Result result = run.await(deadline);
+      healthy &= result.isHealthy();
+      results.put(run.name, result);
+    }
+
+    snapshot = new Snapshot(results.build(), healthy, clock.now().getMillis());
+  }
+
+  @Override
+  protected void runOneIteration() {
+    try {
+      evaluate();
+    } catch (RuntimeException e) {
+      // Never let the scheduler die, or the cached results would go stale forever
+      logger.warn("Health check evaluation failed", e);
+    }
+  }
+
+  @Override
+  protected void shutDown() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return Scheduler.newFixedDelaySchedule(0, periodMs, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  protected String serviceName() {
+    return getClass().getSimpleName();
+  }
+
+  /**
+   * One submission of a health check. Whoever flips {@code started} first, the worker thread
+   * or a cancellation before the check began, owns releasing the check in {@code running}.
+   */
+  private final class Run implements Callable<HealthCheck.Result> {
+    final String name;
+    final AtomicBoolean started = new AtomicBoolean();
+    Future<HealthCheck.Result> future;
+
+    Run(String name) {
+      this.name = name;
+    }
+
+    @Override public HealthCheck.Result call() {
+      if (!started.compareAndSet(false, true)) {
+        return HealthCheck.Result.unhealthy("Cancelled");
+      }
+      try {
+        return healthCheckRegistry.runHealthCheck(name);
+      } finally {
+        running.remove(name);
+      }
+    }
+
+    HealthCheck.Result await(long deadline) {
+      try {
+        return future.get(Math.max(0, deadline - clock.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        cancel();
+        logger.warn("Health check {} timed out after {}ms", name, timeoutMs);
+        return HealthCheck.Result.unhealthy("Timed out after " + timeoutMs + "ms");
+      } catch (ExecutionException e) {
+        return HealthCheck.Result.unhealthy(e.getCause());
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        return HealthCheck.Result.unhealthy("Interrupted");
+      }
+    }
+
+    private void cancel() {
+      future.cancel(true);
+      if (started.compareAndSet(false, true)) {
+        running.remove(name);
+      }
+    }
+  }
+
+  private static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(
+        ImmutableSortedMap.<String, HealthCheck.Result>of(), false, 0);
+
+    final SortedMap<String, HealthCheck.Result> results;
+    final boolean healthy;
+    final long timeMillis;
+
+    Snapshot(SortedMap<String, HealthCheck.Result> results, boolean healthy, long timeMillis) {
+      this.results = results;
+      this.healthy = healthy;
+      this.timeMillis = timeMillis;
+    }
+  }
+}
@@ -18,6 +18,7 @@ package com.google.openbidder.metrics;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
@@ -31,14 +32,24 @@ import com.google.openbidder.http.template.TemplateEngine;
 import com.google.openbidder.http.util.HttpUtil;
 import com.google.openbidder.metrics.config.BasePath;
 import com.google.openbidder.metrics.config.HealthCheckPath;
+import com.google.openbidder.metrics.config.LivenessPath;
 import com.google.openbidder.metrics.config.MetricsPath;
 import com.google.openbidder.metrics.config.PingPath;
+import com.google.openbidder.metrics.config.ProfilePath;
+import com.google.openbidder.metrics.config.ReadinessPath;
 import com.google.openbidder.metrics.config.ThreadsPath;
+import com.google.openbidder.metrics.config.TracesPath;
 import com.google.openbidder.metrics.http.AdminHttpReceiver;
 import com.google.openbidder.metrics.http.HealthCheckHttpReceiver;
+import com.google.openbidder.metrics.http.LivenessHttpReceiver;
 import com.google.openbidder.metrics.http.MetricsHttpReceiver;
 import com.google.openbidder.metrics.http.PingHttpReceiver;
+import com.google.openbidder.metrics.http.ProfileHttpReceiver;
+import com.google.openbidder.metrics.http.ReadinessHttpReceiver;
+import com.google.openbidder.metrics.http.RequestTracesHttpReceiver;
 import com.google.openbidder.metrics.http.ThreadDumpHttpReceiver;
+import com.google.openbidder.metrics.profile.StackProfiler;
+import com.google.openbidder.util.Clock;
 import com.google.openbidder.util.ReflectionUtils;
 
 import com.beust.jcommander.Parameter;
@@ -53,7 +64,10 @@ import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -82,10 +96,46 @@ public class MetricsModule extends AbstractModule {
       description = "Metrics health check Web page path under context root")
   private String healthCheckPath = HealthCheckPath.DEFAULT;
 
+  @Parameter(names = "--liveness_path",
+      description = "Liveness probe path under context root")
+  private String livenessPath = LivenessPath.DEFAULT;
+
+  @Parameter(names = "--readiness_path",
+      description = "Readiness probe path under context root")
+  private String readinessPath = ReadinessPath.DEFAULT;
+
+  @Parameter(names = "--health_check_period_ms",
+      description = "Period for background evaluation of health checks, in milliseconds")
+  private long healthCheckPeriodMs = 1000;
+
+  @Parameter(names = "--health_check_timeout_ms",
+      description = "Timeout for each health check, in milliseconds")
+  private long healthCheckTimeoutMs = 500;
+
   @Parameter(names = "--threads_path",
       description = "Metrics threads Web page path under context root")
   private String threadsPath = ThreadsPath.DEFAULT;
 
+  @Parameter(names = "--traces_path",
+      description = "Slow request traces Web page path under context root")
+  private String tracesPath = TracesPath.DEFAULT;
+
+  @Parameter(names = "--profile_path",
+      description = "Stack profiling Web page path under context root")
+  private String profilePath = ProfilePath.DEFAULT;
+
+  @Parameter(names = "--profile_threads",
+      description = "Regular expression for the names of threads sampled by the profiler")
+  private String profileThreads = "(workerGroup|userGroup)-\\d+-\\d+";
+
+  @Parameter(names = "--profile_max_seconds",
+      description = "Maximum duration of a profiling session, in seconds")
+  private int profileMaxSeconds = 60;
+
+  @Parameter(names = "--profile_max_depth",
+      description = "Maximum stack depth sampled by the profiler")
+  private int profileMaxDepth = 128;
+
   @Parameter(names = "--ping_path",
       description = "Metrics ping Web page path under context root")
   private String pingPath = PingPath.DEFAULT;
@@ -108,11 +158,19 @@ public class MetricsModule extends AbstractModule {
       String metricsPath = HttpUtil.concatPaths(metricsBasePath, this.metricsPath);
       String healthCheckPath = HttpUtil.concatPaths(metricsBasePath, this.healthCheckPath);
       String threadsPath = HttpUtil.concatPaths(metricsBasePath, this.threadsPath);
+      String tracesPath = HttpUtil.concatPaths(metricsBasePath, this.tracesPath);
       String pingPath = HttpUtil.concatPaths(metricsBasePath, this.pingPath);
+      String profilePath = HttpUtil.concatPaths(metricsBasePath, this.profilePath);
+      String livenessPath = HttpUtil.concatPaths(metricsBasePath, this.livenessPath);
+      String readinessPath = HttpUtil.concatPaths(metricsBasePath, this.readinessPath);
       bind(String.class).annotatedWith(MetricsPath.class).toInstance(metricsPath);
       bind(String.class).annotatedWith(HealthCheckPath.class).toInstance(healthCheckPath);
       bind(String.class).annotatedWith(ThreadsPath.class).toInstance(threadsPath);
+      bind(String.class).annotatedWith(TracesPath.class).toInstance(tracesPath);
       bind(String.class).annotatedWith(PingPath.class).toInstance(pingPath);
+      bind(String.class).annotatedWith(ProfilePath.class).toInstance(profilePath);
+      bind(String.class).annotatedWith(LivenessPath.class).toInstance(livenessPath);
+      bind(String.class).annotatedWith(ReadinessPath.class).toInstance(readinessPath);
       bind(String.class).annotatedWith(AdminTemplate.class).toInstance(adminTemplate);
       bind(Template.class).annotatedWith(AdminTemplate.class)
           .toProvider(AdminTemplateProvider.class).in(Scopes.SINGLETON);
@@ -122,7 +180,14 @@ public class MetricsModule extends AbstractModule {
       routeBinder.addBinding().toProvider(MetricsHttpRouteProvider.class).in(Scopes.SINGLETON);
       routeBinder.addBinding().toProvider(PingHttpRouteProvider.class).in(Scopes.SINGLETON);
       routeBinder.addBinding().toProvider(HealthCheckHttpRouteProvider.class).in(Scopes.SINGLETON);
+      routeBinder.addBinding().toProvider(LivenessHttpRouteProvider.class).in(Scopes.SINGLETON);
+      routeBinder.addBinding().toProvider(ReadinessHttpRouteProvider.class).in(Scopes.SINGLETON);
       routeBinder.addBinding().toProvider(ThreadDumpHttpRouteProvider.class).in(Scopes.SINGLETON);
+      routeBinder.addBinding().toProvider(RequestTracesHttpRouteProvider.class)
+          .in(Scopes.SINGLETON);
+      routeBinder.addBinding().toProvider(ProfileHttpRouteProvider.class).in(Scopes.SINGLETON);
+      Multibinder.newSetBinder(binder(), Service.class).addBinding()
+          .to(HealthCheckEvaluator.class);
       Multibinder.newSetBinder(binder(), Feature.class).addBinding().toInstance(Feature.ADMIN);
       Multibinder.newSetBinder(binder(), Feature.class).addBinding().toInstance(Feature.OTHER);
     } else {
@@ -144,6 +209,22 @@ public class MetricsModule extends AbstractModule {
     return healthCheckRegistry;
   }
 
+  @Provides
+  @Singleton
+  public HealthCheckEvaluator provideHealthCheckEvaluator(
+      HealthCheckRegistry healthCheckRegistry, Clock clock) {
+    return new HealthCheckEvaluator(
+        healthCheckRegistry, clock, healthCheckPeriodMs, healthCheckTimeoutMs);
+  }
+
+  @Provides
+  @Singleton
+  public StackProfiler provideStackProfiler(Clock clock) {
+    return new StackProfiler(ManagementFactory.getThreadMXBean(), clock,
+        Pattern.compile(profileThreads), profileMaxDepth,
+        TimeUnit.SECONDS.toMillis(profileMaxSeconds));
+  }
+
   public static class AdminHttpRouteProvider extends AbstractHttpRouteProvider {
     @Inject
     private AdminHttpRouteProvider(@BasePath String path, AdminHttpReceiver receiver) {
@@ -174,6 +255,22 @@ public class MetricsModule extends AbstractModule {
     }
   }
 
+  public static class LivenessHttpRouteProvider extends AbstractHttpRouteProvider {
+    @Inject
+    private LivenessHttpRouteProvider(@LivenessPath String path, LivenessHttpReceiver receiver) {
+      super(HttpRoute.get("admin_liveness", path, receiver, Feature.ADMIN, Feature.OTHER));
+    }
+  }
+
+  public static class ReadinessHttpRouteProvider extends AbstractHttpRouteProvider {
+    @Inject
+    private ReadinessHttpRouteProvider(
+        @ReadinessPath String path,
+        ReadinessHttpReceiver receiver) {
+      super(HttpRoute.get("admin_readiness", path, receiver, Feature.ADMIN, Feature.OTHER));
+    }
+  }
+
   public static class ThreadDumpHttpRouteProvider extends AbstractHttpRouteProvider {
     @Inject
     private ThreadDumpHttpRouteProvider(@ThreadsPath String path, ThreadDumpHttpReceiver receiver) {
@@ -181,6 +278,22 @@ public class MetricsModule extends AbstractModule {
     }
   }
 
+  public static class RequestTracesHttpRouteProvider extends AbstractHttpRouteProvider {
+    @Inject
+    private RequestTracesHttpRouteProvider(
+        @TracesPath String path,
+        RequestTracesHttpReceiver receiver) {
+      super(HttpRoute.get("admin_traces", path, receiver, Feature.ADMIN));
+    }
+  }
+
+  public static class ProfileHttpRouteProvider extends AbstractHttpRouteProvider {
+    @Inject
+    private ProfileHttpRouteProvider(@ProfilePath String path, ProfileHttpReceiver receiver) {
+      super(HttpRoute.get("admin_profile", path, receiver, Feature.ADMIN));
+    }
+  }
+
   public static class AdminTemplateProvider implements Provider<Template> {
     private final TemplateEngine templateEngine;
     private final String adminTemplate;
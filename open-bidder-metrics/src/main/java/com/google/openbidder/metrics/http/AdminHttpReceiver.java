@@ -26,6 +26,7 @@ import com.google.openbidder.metrics.config.HealthCheckPath;
 import com.google.openbidder.metrics.config.MetricsPath;
 import com.google.openbidder.metrics.config.PingPath;
 import com.google.openbidder.metrics.config.ThreadsPath;
+import com.google.openbidder.metrics.config.TracesPath;
 
 import javax.inject.Inject;
 
@@ -37,6 +38,7 @@ public class AdminHttpReceiver implements HttpReceiver {
   private static final String PARAM_PING_PATH = "pingPath";
   private static final String PARAM_THREADS_PATH = "threadsPath";
   private static final String PARAM_HEALTH_CHECK_PATH = "healthCheckPath";
+  private static final String PARAM_TRACES_PATH = "tracesPath";
 
   private final String content;
 
@@ -46,13 +48,15 @@ public class AdminHttpReceiver implements HttpReceiver {
       @MetricsPath String metricsPath,
       @PingPath String pingPath,
       @ThreadsPath String threadsPath,
-      @HealthCheckPath String healthCheckPath) {
+      @HealthCheckPath String healthCheckPath,
+      @TracesPath String tracesPath) {
 
     content = adminTemplate.process(ImmutableMap.<String, Object>of(
         PARAM_METRICS_PATH, metricsPath,
         PARAM_PING_PATH, pingPath,
         PARAM_THREADS_PATH, threadsPath,
-        PARAM_HEALTH_CHECK_PATH, healthCheckPath
+        PARAM_HEALTH_CHECK_PATH, healthCheckPath,
+        PARAM_TRACES_PATH, tracesPath
     ));
   }
 
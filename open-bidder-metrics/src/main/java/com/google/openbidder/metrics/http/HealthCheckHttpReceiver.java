@@ -21,9 +21,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.net.MediaType;
 import com.google.openbidder.http.HttpReceiver;
 import com.google.openbidder.http.HttpReceiverContext;
+import com.google.openbidder.metrics.HealthCheckEvaluator;
 
 import com.codahale.metrics.health.HealthCheck;
-import com.codahale.metrics.health.HealthCheckRegistry;
 
 import org.apache.http.HttpStatus;
 
@@ -33,19 +33,19 @@ import java.util.Map;
 import javax.inject.Inject;
 
 /**
- * Processes health check request.
+ * Processes health check request, reporting the results cached by {@link HealthCheckEvaluator}.
  */
 public class HealthCheckHttpReceiver implements HttpReceiver {
-  private final HealthCheckRegistry healthCheckRegistry;
+  private final HealthCheckEvaluator healthCheckEvaluator;
 
   @Inject
-  public HealthCheckHttpReceiver(HealthCheckRegistry healthCheckRegistry) {
-    this.healthCheckRegistry = checkNotNull(healthCheckRegistry);
+  public HealthCheckHttpReceiver(HealthCheckEvaluator healthCheckEvaluator) {
+    this.healthCheckEvaluator = checkNotNull(healthCheckEvaluator);
   }
 
   @Override
   public void receive(HttpReceiverContext ctx) {
-    Map<String, HealthCheck.Result> results = healthCheckRegistry.runHealthChecks();
+    Map<String, HealthCheck.Result> results = healthCheckEvaluator.getResults();
     ctx.httpResponse()
         .setStatusOk()
         .setMediaType(MediaType.PLAIN_TEXT_UTF_8)
@@ -53,6 +53,11 @@ public class HealthCheckHttpReceiver implements HttpReceiver {
 
     PrintWriter writer = ctx.httpResponse().contentWriter();
 
+    if (healthCheckEvaluator.isStale()) {
+      ctx.httpResponse().setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+      writer.println("! Health check results are stale or not available yet");
+    }
+
     for (Map.Entry<String, HealthCheck.Result> entry : results.entrySet()) {
       HealthCheck.Result result = entry.getValue();
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.net.MediaType;
+import com.google.openbidder.http.HttpReceiver;
+import com.google.openbidder.http.HttpReceiverContext;
+import com.google.openbidder.metrics.profile.Profile;
+import com.google.openbidder.metrics.profile.ProfileMode;
+import com.google.openbidder.metrics.profile.StackProfiler;
+
+import org.apache.http.HttpStatus;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+/**
+ * Processes stack profiling requests. {@code ?seconds=N[&interval_ms=M][&mode=cpu|alloc]}
+ * starts a background session; without parameters, returns the last completed profile in
+ * collapsed-stack format, ready for {@code flamegraph.pl}.
+ */
+public class ProfileHttpReceiver implements HttpReceiver {
+  private static final long DEFAULT_INTERVAL_MS = 10;
+
+  private final StackProfiler profiler;
+
+  @Inject
+  public ProfileHttpReceiver(StackProfiler profiler) {
+    this.profiler = checkNotNull(profiler);
+  }
+
+  @Override
+  public void receive(HttpReceiverContext ctx) {
+    ctx.httpResponse()
+        .setStatusOk()
+        .setMediaType(MediaType.PLAIN_TEXT_UTF_8)
+        .setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+
+    PrintWriter writer = ctx.httpResponse().contentWriter();
+    String seconds = ctx.httpRequest().getParameter("seconds");
+
+    if (seconds != null) {
+      start(ctx, writer, seconds);
+    } else if (profiler.isRunning()) {
+      ctx.httpResponse().setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+      writer.println("Profiling in progress");
+    } else {
+      Profile profile = profiler.getLastProfile();
+      if (profile == null) {
+        ctx.httpResponse().setStatusCode(HttpStatus.SC_NOT_FOUND);
+        writer.format("No profile yet; start one with ?seconds=N[&interval_ms=M][&mode=%s]\n",
+            profiler.isAllocationSupported() ? "cpu|alloc" : "cpu");
+      } else {
+        profile.writeCollapsed(writer);
+      }
+    }
+
+    writer.flush();
+  }
+
+  private void start(HttpReceiverContext ctx, PrintWriter writer, String seconds) {
+    long durationMs;
+    long intervalMs;
+    ProfileMode mode;
+    try {
+      durationMs = TimeUnit.SECONDS.toMillis(Long.parseLong(seconds));
+      intervalMs = parseLong(ctx.httpRequest().getParameter("interval_ms"), DEFAULT_INTERVAL_MS);
+      mode = "alloc".equals(ctx.httpRequest().getParameter("mode"))
+          ? ProfileMode.ALLOCATION
+          : ProfileMode.CPU;
+      if (!profiler.start(durationMs, intervalMs, mode)) {
+        ctx.httpResponse().setStatusCode(HttpStatus.SC_CONFLICT);
+        writer.println("Profiling already in progress");
+        return;
+      }
+    } catch (IllegalArgumentException e) {
+      ctx.httpResponse().setStatusCode(HttpStatus.SC_BAD_REQUEST);
+      writer.println(e.getMessage());
+      return;
+    }
+
+    ctx.httpResponse().setStatusCode(HttpStatus.SC_ACCEPTED);
+    writer.format("Profiling %s for %dms every %dms; fetch this page without parameters "
+        + "when done\n", mode, Math.min(durationMs, profiler.getMaxDurationMillis()), intervalMs);
+  }
+
+  private static long parseLong(@Nullable String value, long defaultValue) {
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.net.MediaType;
+import com.google.openbidder.http.HttpReceiver;
+import com.google.openbidder.http.HttpReceiverContext;
+import com.google.openbidder.metrics.HealthCheckEvaluator;
+
+import org.apache.http.HttpStatus;
+
+import javax.inject.Inject;
+
+/**
+ * Processes readiness probes from the cached health check results: ready only if the last
+ * evaluation is recent and all checks passed.
+ */
+public class ReadinessHttpReceiver implements HttpReceiver {
+  private final HealthCheckEvaluator healthCheckEvaluator;
+
+  @Inject
+  public ReadinessHttpReceiver(HealthCheckEvaluator healthCheckEvaluator) {
+    this.healthCheckEvaluator = checkNotNull(healthCheckEvaluator);
+  }
+
+  @Override
+  public void receive(HttpReceiverContext ctx) {
+    boolean ready = healthCheckEvaluator.isHealthy() && !healthCheckEvaluator.isStale();
+    ctx.httpResponse()
+        .setStatusCode(ready ? HttpStatus.SC_OK : HttpStatus.SC_SERVICE_UNAVAILABLE)
+        .setMediaType(MediaType.PLAIN_TEXT_UTF_8)
+        .setHeader("Cache-Control", "must-revalidate,no-cache,no-store")
+        .printContent(ready ? "ready" : "not ready");
+  }
+}
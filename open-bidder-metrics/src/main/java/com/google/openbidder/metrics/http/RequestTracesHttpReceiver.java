@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.MediaType;
+import com.google.openbidder.http.HttpReceiver;
+import com.google.openbidder.http.HttpReceiverContext;
+import com.google.openbidder.http.trace.RequestTrace;
+import com.google.openbidder.http.trace.RequestTracer;
+
+import java.io.PrintWriter;
+
+import javax.inject.Inject;
+
+/**
+ * Processes request traces request: shows the most recent slow traces sampled by
+ * {@link RequestTracer}.
+ */
+public class RequestTracesHttpReceiver implements HttpReceiver {
+  private final RequestTracer tracer;
+
+  @Inject
+  public RequestTracesHttpReceiver(RequestTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
+  @Override
+  public void receive(HttpReceiverContext ctx) {
+    ctx.httpResponse()
+        .setStatusOk()
+        .setMediaType(MediaType.PLAIN_TEXT_UTF_8)
+        .setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+
+    PrintWriter writer = ctx.httpResponse().contentWriter();
+
+    if (tracer.isEnabled()) {
+      ImmutableList<RequestTrace> traces = tracer.getSlowTraces();
+      writer.format("%s\nSlow traces: %d total, showing %d most recent\n\n",
+          tracer, tracer.getSlowTraceCount(), traces.size());
+
+      for (RequestTrace trace : traces) {
+        trace.print(writer);
+        writer.println();
+      }
+    } else {
+      writer.println("Request tracing disabled; enable with --trace_sample_rate");
+    }
+
+    writer.flush();
+  }
+}
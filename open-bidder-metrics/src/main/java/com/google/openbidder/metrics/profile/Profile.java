@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.profile;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Ordering;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Result of a profiling session: aggregated stacks in the collapsed format used by
+ * FlameGraph, one {@code frame;frame;...;frame weight} line per distinct stack.
+ */
+public final class Profile {
+  private static final Ordering<Entry<String, Long>> HEAVIEST_FIRST =
+      new Ordering<Entry<String, Long>>() {
+        @Override public int compare(Entry<String, Long> left, Entry<String, Long> right) {
+          int cmp = Long.compare(right.getValue(), left.getValue());
+          return cmp == 0 ? left.getKey().compareTo(right.getKey()) : cmp;
+        }
+      };
+
+  private final ProfileMode mode;
+  private final long startMillis;
+  private final long durationMillis;
+  private final int samples;
+  private final ImmutableMap<String, Long> stacks;
+
+  Profile(ProfileMode mode, long startMillis, long durationMillis, int samples,
+      Map<String, Long> stacks) {
+    this.mode = checkNotNull(mode);
+    this.startMillis = startMillis;
+    this.durationMillis = durationMillis;
+    this.samples = samples;
+    ImmutableMap.Builder<String, Long> sorted = ImmutableMap.builder();
+    for (Entry<String, Long> entry : HEAVIEST_FIRST.sortedCopy(stacks.entrySet())) {
+      sorted.put(entry);
+    }
+    this.stacks = sorted.build();
+  }
+
+  public ProfileMode getMode() {
+    return mode;
+  }
+
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  public long getDurationMillis() {
+    return durationMillis;
+  }
+
+  public int getSamples() {
+    return samples;
+  }
+
+  /**
+   * @return Weight of each collapsed stack, heaviest first
+   */
+  public ImmutableMap<String, Long> getStacks() {
+    return stacks;
+  }
+
+  /**
+   * Writes the stacks in collapsed format, ready for {@code flamegraph.pl}.
+   */
+  public void writeCollapsed(PrintWriter writer) {
+    for (Entry<String, Long> entry : stacks.entrySet()) {
+      writer.print(entry.getKey());
+      writer.print(' ');
+      writer.println(entry.getValue());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("mode", mode)
+        .add("startMillis", startMillis)
+        .add("durationMillis", durationMillis)
+        .add("samples", samples)
+        .add("stacks", stacks.size())
+        .toString();
+  }
+}
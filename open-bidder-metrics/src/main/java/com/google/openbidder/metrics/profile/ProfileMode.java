@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.profile;
+
+/**
+ * What each stack sample is weighted by.
+ */
+public enum ProfileMode {
+  /**
+   * One unit per sample of a {@code RUNNABLE} thread.
+   */
+  CPU,
+  /**
+   * Bytes allocated by the thread since its previous sample, attributed to the current stack.
+   * This is approximate (allocations between samples are charged to the stack seen at the
+   * end of the interval), but converges on the hot allocation sites with enough samples.
+   */
+  ALLOCATION
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.profile;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.openbidder.util.Clock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs bounded stack sampling sessions on a dedicated daemon thread, so an admin request
+ * only starts a session and later fetches its {@link Profile}; no request thread is held
+ * for the duration of the sampling. At most one session runs at a time.
+ */
+public class StackProfiler {
+  private static final Logger logger = LoggerFactory.getLogger(StackProfiler.class);
+
+  private final ThreadMXBean threadMXBean;
+  private final Clock clock;
+  private final Pattern threadNames;
+  private final int maxDepth;
+  private final long maxDurationMillis;
+  private final AtomicBoolean running = new AtomicBoolean();
+  private volatile Profile lastProfile;
+
+  public StackProfiler(ThreadMXBean threadMXBean, Clock clock, Pattern threadNames,
+      int maxDepth, long maxDurationMillis) {
+    checkArgument(maxDurationMillis > 0,
+        "maxDurationMillis must be positive: %s", maxDurationMillis);
+    this.threadMXBean = checkNotNull(threadMXBean);
+    this.clock = checkNotNull(clock);
+    this.threadNames = checkNotNull(threadNames);
+    this.maxDepth = maxDepth;
+    this.maxDurationMillis = maxDurationMillis;
+  }
+
+  /**
+   * Starts a profiling session in the background.
+   *
+   * @param durationMillis Session length, capped to the configured maximum
+   * @param intervalMillis Time between samples
+   * @return {@code false} if a session is already running
+   * @throws IllegalArgumentException if the mode is not supported by this JVM
+   */
+  public boolean start(long durationMillis, long intervalMillis, ProfileMode mode) {
+    checkArgument(durationMillis > 0, "durationMillis must be positive: %s", durationMillis);
+    checkArgument(intervalMillis > 0, "intervalMillis must be positive: %s", intervalMillis);
+    final StackSampler sampler = new StackSampler(threadMXBean, threadNames, maxDepth, mode);
+    final long duration = Math.min(durationMillis, maxDurationMillis);
+    final long interval = intervalMillis;
+
+    if (!running.compareAndSet(false, true)) {
+      return false;
+    }
+
+    Thread thread = new Thread("stack-profiler") {
+      @Override public void run() {
+        try {
+          lastProfile = sample(sampler, duration, interval);
+        } catch (RuntimeException e) {
+          logger.warn("Profiling session failed", e);
+        } finally {
+          running.set(false);
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+    return true;
+  }
+
+  private Profile sample(StackSampler sampler, long durationMillis, long intervalMillis) {
+    long startMillis = clock.now().getMillis();
+    long startNanos = clock.nanoTime();
+    long endNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+    for (long now = startNanos; now < endNanos; now = clock.nanoTime()) {
+      sampler.sample();
+      try {
+        Thread.sleep(intervalMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+
+    return sampler.build(startMillis,
+        TimeUnit.NANOSECONDS.toMillis(clock.nanoTime() - startNanos));
+  }
+
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  public boolean isAllocationSupported() {
+    return StackSampler.isAllocationSupported(threadMXBean);
+  }
+
+  /**
+   * @return Result of the last completed session, or {@code null} if none completed yet
+   */
+  public @Nullable Profile getLastProfile() {
+    return lastProfile;
+  }
+
+  public long getMaxDurationMillis() {
+    return maxDurationMillis;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("threadNames", threadNames)
+        .add("maxDepth", maxDepth)
+        .add("maxDurationMillis", maxDurationMillis)
+        .add("running", running.get())
+        .toString();
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.profile;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * One profiling session: takes stack samples of the threads whose names match a pattern and
+ * aggregates them by collapsed stack. The matching thread ids are resolved up front and every
+ * {@link #REFRESH_SAMPLES} samples after that, so each sample only walks the stacks of the
+ * profiled threads. Not thread-safe; owned by a single sampling thread.
+ */
+class StackSampler {
+  static final int REFRESH_SAMPLES = 100;
+  private static final Pattern THREAD_NUMBER = Pattern.compile("-\\d+$");
+
+  private final ThreadMXBean threadMXBean;
+  private final Pattern threadNames;
+  private final int maxDepth;
+  private final ProfileMode mode;
+  private final Map<String, long[]> stacks = new HashMap<>();
+  private final Map<Long, Long> lastAllocated = new HashMap<>();
+  private final StringBuilder sb = new StringBuilder();
+  private long[] threadIds;
+  private int samples;
+
+  StackSampler(ThreadMXBean threadMXBean, Pattern threadNames, int maxDepth, ProfileMode mode) {
+    checkArgument(maxDepth > 0, "maxDepth must be positive: %s", maxDepth);
+    checkArgument(mode != ProfileMode.ALLOCATION || isAllocationSupported(threadMXBean),
+        "Thread allocation accounting not supported by this JVM");
+    this.threadMXBean = checkNotNull(threadMXBean);
+    this.threadNames = checkNotNull(threadNames);
+    this.maxDepth = maxDepth;
+    this.mode = checkNotNull(mode);
+
+    if (mode == ProfileMode.ALLOCATION) {
+      com.sun.management.ThreadMXBean allocMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (!allocMXBean.isThreadAllocatedMemoryEnabled()) {
+        allocMXBean.setThreadAllocatedMemoryEnabled(true);
+      }
+    }
+  }
+
+  static boolean isAllocationSupported(ThreadMXBean threadMXBean) {
+    return threadMXBean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported();
+  }
+
+  /**
+   * Takes one sample of all matching threads.
+   */
+  void sample() {
+    if (samples++ % REFRESH_SAMPLES == 0) {
+      threadIds = matchingThreadIds();
+    }
+    if (threadIds.length == 0) {
+      return;
+    }
+
+    for (ThreadInfo info : threadMXBean.getThreadInfo(threadIds, maxDepth)) {
+      if (info == null) {
+        continue;  // Thread died since the last refresh
+      }
+
+      long weight = weight(info);
+      if (weight > 0) {
+        String stack = collapse(info);
+        long[] total = stacks.get(stack);
+        if (total == null) {
+          stacks.put(stack, new long[] { weight });
+        } else {
+          total[0] += weight;
+        }
+      }
+    }
+  }
+
+  private long[] matchingThreadIds() {
+    long[] allIds = threadMXBean.getAllThreadIds();
+    long[] ids = new long[allIds.length];
+    int count = 0;
+    // Without a depth argument, no stack is taken
+    for (ThreadInfo info : threadMXBean.getThreadInfo(allIds)) {
+      if (info != null && threadNames.matcher(info.getThreadName()).matches()) {
+        ids[count++] = info.getThreadId();
+      }
+    }
+    return Arrays.copyOf(ids, count);
+  }
+
+  private long weight(ThreadInfo info) {
+    if (mode == ProfileMode.CPU) {
+      return info.getThreadState() == Thread.State.RUNNABLE ? 1 : 0;
+    }
+
+    long threadId = info.getThreadId();
+    long allocated = ((com.sun.management.ThreadMXBean) threadMXBean)
+        .getThreadAllocatedBytes(threadId);
+    Long last = lastAllocated.put(threadId, allocated);
+    // The first sample of each thread only establishes its baseline
+    return last == null || allocated < 0 ? 0 : allocated - last;
+  }
+
+  private String collapse(ThreadInfo info) {
+    sb.setLength(0);
+    sb.append(THREAD_NUMBER.matcher(info.getThreadName()).replaceFirst("").replace(';', '_')
+        .replace(' ', '_'));
+    StackTraceElement[] frames = info.getStackTrace();
+    for (int i = frames.length - 1; i >= 0; --i) {
+      sb.append(';').append(frames[i].getClassName()).append('.')
+          .append(frames[i].getMethodName());
+    }
+    return sb.toString();
+  }
+
+  Profile build(long startMillis, long durationMillis) {
+    Map<String, Long> totals = new HashMap<>();
+    for (Map.Entry<String, long[]> entry : stacks.entrySet()) {
+      totals.put(entry.getKey(), entry.getValue()[0]);
+    }
+    return new Profile(mode, startMillis, durationMillis, samples, totals);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.openbidder.util.SystemClock;
+import com.google.openbidder.util.testing.FakeClock;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link HealthCheckEvaluator}.
+ */
+public class HealthCheckEvaluatorTest {
+  private final CountDownLatch release = new CountDownLatch(1);
+  private HealthCheckRegistry registry;
+
+  @Before
+  public void setUp() {
+    registry = new HealthCheckRegistry();
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+  }
+
+  @Test
+  public void testNotEvaluated() {
+    HealthCheckEvaluator evaluator = new HealthCheckEvaluator(
+        registry, new SystemClock(), 1000, 100);
+    assertTrue(evaluator.getResults().isEmpty());
+    assertFalse(evaluator.isHealthy());
+    assertTrue(evaluator.isStale());
+  }
+
+  @Test
+  public void testEvaluate() {
+    registry.register("good", new HealthCheck() {
+      @Override protected Result check() {
+        return Result.healthy();
+      }
+    });
+    HealthCheckEvaluator evaluator = new HealthCheckEvaluator(
+        registry, new SystemClock(), 1000, 100);
+    evaluator.evaluate();
+    assertTrue(evaluator.isHealthy());
+    assertFalse(evaluator.isStale());
+
+    registry.register("bad", new HealthCheck() {
+      @Override protected Result check() {
+        return Result.unhealthy("down");
+      }
+    });
+    evaluator.evaluate();
+    assertFalse(evaluator.isHealthy());
+    assertEquals(2, evaluator.getResults().size());
+    assertTrue(evaluator.getResults().get("good").isHealthy());
+    assertEquals("down", evaluator.getResults().get("bad").getMessage());
+  }
+
+  @Test
+  public void testTimeout() {
+    registry.register("slow", new HealthCheck() {
+      @Override protected Result check() throws InterruptedException {
+        release.await();
+        return Result.healthy();
+      }
+    });
+    HealthCheckEvaluator evaluator = new HealthCheckEvaluator(
+        registry, new SystemClock(), 1000, 50);
+    evaluator.evaluate();
+    HealthCheck.Result result = evaluator.getResults().get("slow");
+    assertFalse(result.isHealthy());
+    assertEquals("Timed out after 50ms", result.getMessage());
+  }
+
+  @Test
+  public void testStuckCheckNotResubmitted() throws InterruptedException {
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch finished = new CountDownLatch(1);
+    registry.register("stuck", new HealthCheck() {
+      @Override protected Result check() {
+        calls.incrementAndGet();
+        while (release.getCount() != 0) {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            // Ignore the cancellation, like a check blocked in uninterruptible I/O
+          }
+        }
+        finished.countDown();
+        return Result.healthy();
+      }
+    });
+    HealthCheckEvaluator evaluator = new HealthCheckEvaluator(
+        registry, new SystemClock(), 1000, 50);
+    evaluator.evaluate();
+    assertEquals("Timed out after 50ms", evaluator.getResults().get("stuck").getMessage());
+    evaluator.evaluate();
+    assertEquals("Still running from a previous evaluation",
+        evaluator.getResults().get("stuck").getMessage());
+    assertEquals(1, calls.get());
+
+    release.countDown();
+    finished.await();
+    while (calls.get() == 1) {
+      evaluator.evaluate();
+    }
+    assertTrue(evaluator.getResults().get("stuck").isHealthy());
+  }
+
+  @Test
+  public void testStale() {
+    FakeClock clock = new FakeClock(new Instant(1000), Duration.ZERO);
+    HealthCheckEvaluator evaluator = new HealthCheckEvaluator(registry, clock, 1000, 100);
+    evaluator.evaluate();
+    assertTrue(evaluator.isHealthy());
+    assertFalse(evaluator.isStale());
+    clock.setNow(1000 + 3 * 1000 + 101);
+    assertTrue(evaluator.isStale());
+  }
+}
@@ -29,6 +29,7 @@ import com.google.inject.Stage;
 import com.google.inject.TypeLiteral;
 import com.google.inject.util.Types;
 import com.google.openbidder.config.server.BidderAdminPort;
+import com.google.openbidder.http.HttpModule;
 import com.google.openbidder.http.route.HttpRoute;
 import com.google.openbidder.http.template.TemplateModule;
 import com.google.openbidder.http.template.mustache.MustacheModule;
@@ -65,6 +66,7 @@ public class MetricsModuleTest {
           }
         },
         new MetricsModule(),
+        new HttpModule(),
         new FasterxmlJsonModule(),
         new MustacheModule(),
         new TemplateModule()
@@ -78,7 +80,7 @@ public class MetricsModuleTest {
       @SuppressWarnings("unchecked")
       Set<HttpRoute> httpRoutes = (Set<HttpRoute>)
       injector.getInstance(Key.get(TypeLiteral.get(Types.setOf(HttpRoute.class))));
-      assertEquals(5, Iterables.size(httpRoutes));
+      assertEquals(9, Iterables.size(httpRoutes));
     }
   }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.metrics.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for {@link StackSampler} and {@link Profile}.
+ */
+public class StackSamplerTest {
+  private final List<Thread> busyThreads = new ArrayList<>();
+  private volatile boolean spinning = true;
+  // Publishing the loop result keeps the JIT from eliminating the loop
+  private volatile long sink;
+
+  @Before
+  public void setUp() {
+    startBusy("busy-7");
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    spinning = false;
+    for (Thread busy : busyThreads) {
+      busy.join();
+    }
+  }
+
+  private void startBusy(String name) {
+    Thread busy = new Thread(name) {
+      @Override public void run() {
+        spin();
+      }
+    };
+    busy.setDaemon(true);
+    busy.start();
+    busyThreads.add(busy);
+  }
+
+  private void spin() {
+    long x = 0;
+    while (spinning) {
+      x += System.nanoTime();
+    }
+    sink = x;
+  }
+
+  @Test
+  public void testCpuSamples() {
+    StackSampler sampler = new StackSampler(
+        ManagementFactory.getThreadMXBean(), Pattern.compile("busy-\\d+"), 64, ProfileMode.CPU);
+    for (int i = 0; i < 20; ++i) {
+      sampler.sample();
+    }
+    Profile profile = sampler.build(1000, 200);
+
+    assertEquals(ProfileMode.CPU, profile.getMode());
+    assertEquals(20, profile.getSamples());
+    assertFalse(profile.getStacks().isEmpty());
+    long total = 0;
+    for (Map.Entry<String, Long> entry : profile.getStacks().entrySet()) {
+      assertTrue(entry.getKey(), entry.getKey().startsWith("busy;"));
+      total += entry.getValue();
+    }
+    assertTrue(total <= 20);
+  }
+
+  @Test
+  public void testRefreshThreads() {
+    StackSampler sampler = new StackSampler(
+        ManagementFactory.getThreadMXBean(), Pattern.compile("late-\\d+"), 64, ProfileMode.CPU);
+    sampler.sample();
+    startBusy("late-1");
+    for (int i = 1; i < StackSampler.REFRESH_SAMPLES; ++i) {
+      sampler.sample();
+    }
+    assertTrue(sampler.build(1000, 200).getStacks().isEmpty());
+
+    for (int i = 0; i < 20; ++i) {
+      sampler.sample();
+    }
+    Profile profile = sampler.build(1000, 200);
+    assertEquals(StackSampler.REFRESH_SAMPLES + 20, profile.getSamples());
+    assertFalse(profile.getStacks().isEmpty());
+    for (String stack : profile.getStacks().keySet()) {
+      assertTrue(stack, stack.startsWith("late;"));
+    }
+  }
+
+  @Test
+  public void testCollapsedFormat() {
+    Profile profile = new Profile(ProfileMode.CPU, 0, 10, 5, ImmutableMap.of(
+        "main;a.B.c", 1L,
+        "main;a.B.d", 3L,
+        "main;a.B.b", 1L));
+    assertEquals(ImmutableList.of("main;a.B.d", "main;a.B.b", "main;a.B.c"),
+        profile.getStacks().keySet().asList());
+
+    StringWriter out = new StringWriter();
+    PrintWriter writer = new PrintWriter(out);
+    profile.writeCollapsed(writer);
+    writer.flush();
+    assertEquals(
+        "main;a.B.d 3" + System.lineSeparator()
+        + "main;a.B.b 1" + System.lineSeparator()
+        + "main;a.B.c 1" + System.lineSeparator(),
+        out.toString());
+  }
+}
@@ -23,6 +23,7 @@ import com.google.openbidder.http.HttpRequest;
 import com.google.openbidder.http.Protocol;
 import com.google.openbidder.http.message.ContentHolder;
 import com.google.openbidder.http.request.AbstractHttpRequest;
+import com.google.openbidder.http.trace.RequestTrace;
 import com.google.openbidder.http.util.HttpUtil;
 
 import org.apache.http.NameValuePair;
@@ -44,6 +45,8 @@ import java.net.URISyntaxException;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 /**
  * Netty-optimized {@link com.google.openbidder.http.HttpRequest} implementation.
  */
@@ -55,6 +58,7 @@ public final class NettyHttpRequest extends AbstractHttpRequest {
   private ImmutableMultimap<String, String> headers;
   private ImmutableMultimap<String, String> parameters;
   private ImmutableMultimap<String, Cookie> cookies;
+  private RequestTrace trace;
 
   public NettyHttpRequest(FullHttpRequest netty, InetSocketAddress remoteAddr) {
     this.netty = netty;
@@ -71,6 +75,17 @@ public final class NettyHttpRequest extends AbstractHttpRequest {
     return netty;
   }
 
+  /**
+   * Returns the trace for this request, or {@code null} if the request was not sampled.
+   */
+  public @Nullable RequestTrace trace() {
+    return trace;
+  }
+
+  public void setTrace(@Nullable RequestTrace trace) {
+    this.trace = trace;
+  }
+
   public static FullHttpRequest getNettyRequest(
       HttpRequest httpRequest, ByteBufAllocator allocator) {
     try {
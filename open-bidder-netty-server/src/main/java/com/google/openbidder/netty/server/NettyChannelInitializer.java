@@ -16,12 +16,15 @@
 
 package com.google.openbidder.netty.server;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.collect.ImmutableMap;
 import com.google.openbidder.config.server.BidderAdminPort;
 import com.google.openbidder.config.server.BidderListenPort;
 import com.google.openbidder.config.server.MaxContentLength;
 import com.google.openbidder.config.server.ServerLogging;
 import com.google.openbidder.http.route.HttpRouter;
+import com.google.openbidder.http.trace.RequestTracer;
 import com.google.openbidder.netty.common.NettyErrorHandler;
 import com.google.openbidder.netty.server.config.UserGroup;
 
@@ -42,9 +45,11 @@ import javax.inject.Inject;
 public class NettyChannelInitializer extends ChannelInitializer<SocketChannel> {
   private static final LoggingHandler loggingHandler = new LoggingHandler();
   private final ImmutableMap<Integer, NettyHttpRouter> httpRouters;
+  private final int listenPort;
   private final int maxContentLength;
   private final boolean serverLogging;
   private final EventExecutorGroup userGroup;
+  private final RequestTracer tracer;
 
   @Inject
   public NettyChannelInitializer(
@@ -54,14 +59,17 @@ public class NettyChannelInitializer extends ChannelInitializer<SocketChannel> {
       @BidderAdminPort HttpRouter adminRouter,
       @UserGroup @Nullable EventExecutorGroup userGroup,
       @MaxContentLength int maxContentLength,
-      @ServerLogging boolean serverLogging) {
+      @ServerLogging boolean serverLogging,
+      RequestTracer tracer) {
 
     this.httpRouters = ImmutableMap.of(
-        listenPort, new NettyHttpRouter(listenRouter),
+        listenPort, new NettyHttpRouter(listenRouter, tracer),
         adminPort, new NettyHttpRouter(adminRouter));
+    this.listenPort = listenPort;
     this.userGroup = userGroup;
     this.maxContentLength = maxContentLength;
     this.serverLogging = serverLogging;
+    this.tracer = checkNotNull(tracer);
   }
 
   @Override
@@ -72,11 +80,13 @@ public class NettyChannelInitializer extends ChannelInitializer<SocketChannel> {
     }
     pipeline.addLast("http", new HttpServerCodec());
     pipeline.addLast("aggregate", new HttpObjectAggregator(maxContentLength));
-    pipeline.addLast("obHttp", new NettyHttpServerCodec());
     int port = ch.localAddress() == null
         // Parent will be a ServerSocketChannel; no need to look further up
         ? ch.parent().localAddress().getPort()
         : ch.localAddress().getPort();
+    // Only the listen port is traced; admin requests would just pollute the slow traces
+    pipeline.addLast("obHttp", new NettyHttpServerCodec(
+        port == listenPort ? tracer : RequestTracer.DISABLED));
     if (userGroup == null) {
       pipeline.addLast("router", httpRouters.get(port));
     } else {
@@ -22,6 +22,8 @@ import com.google.openbidder.http.HttpRequest;
 import com.google.openbidder.http.receiver.DefaultHttpReceiverContext;
 import com.google.openbidder.http.route.HttpRoute;
 import com.google.openbidder.http.route.HttpRouter;
+import com.google.openbidder.http.trace.RequestTrace;
+import com.google.openbidder.http.trace.RequestTracer;
 import com.google.openbidder.netty.common.NettyHttpRequest;
 import com.google.openbidder.netty.common.NettyHttpResponse;
 import com.google.openbidder.netty.common.NettyHttpResponseBuilder;
@@ -54,9 +56,15 @@ public class NettyHttpRouter extends ChannelInboundHandlerAdapter {
   static final String PENDING = "PENDING";
 
   private final HttpRouter httpRouter;
+  private final RequestTracer tracer;
 
   public NettyHttpRouter(HttpRouter httpRouter) {
+    this(httpRouter, RequestTracer.DISABLED);
+  }
+
+  public NettyHttpRouter(HttpRouter httpRouter, RequestTracer tracer) {
     this.httpRouter = checkNotNull(httpRouter);
+    this.tracer = checkNotNull(tracer);
   }
 
   @SuppressWarnings("unused")
@@ -65,25 +73,44 @@ public class NettyHttpRouter extends ChannelInboundHandlerAdapter {
     if (msg instanceof HttpRequest) {
       HttpRequest httpRequest = (HttpRequest) msg;
       NettyHttpResponseBuilder httpRespBuilder = new NettyHttpResponseBuilder(ctx.alloc());
+      RequestTrace trace = httpRequest instanceof NettyHttpRequest
+          ? ((NettyHttpRequest) httpRequest).trace()
+          : null;
+      if (trace != null) {
+        trace.mark("dispatch");
+        trace.attach();
+      }
 
       try {
         httpRouter.receive(new DefaultHttpReceiverContext(httpRequest, httpRespBuilder));
       } finally {
-        if (httpRequest instanceof NettyHttpRequest) {
-          ((NettyHttpRequest) httpRequest).netty().content().release();
-        }
+        try {
+          if (httpRequest instanceof NettyHttpRequest) {
+            ((NettyHttpRequest) httpRequest).netty().content().release();
+          }
 
-        int status = httpRespBuilder.getStatusCode();
-        if (!httpRespBuilder.getHeaders().containsKey(Names.CONTENT_LENGTH)
-            && (!(status >= 100 && status <= 199) && status != 204 && status != 304)
-            && (HEAD_CONTENT_LENGTH || !HttpMethod.HEAD.name().equals(httpRequest.getMethod()))) {
-          httpRespBuilder.setHeader(Names.CONTENT_LENGTH, PENDING);
-        }
+          int status = httpRespBuilder.getStatusCode();
+          if (!httpRespBuilder.getHeaders().containsKey(Names.CONTENT_LENGTH)
+              && (!(status >= 100 && status <= 199) && status != 204 && status != 304)
+              && (HEAD_CONTENT_LENGTH
+                  || !HttpMethod.HEAD.name().equals(httpRequest.getMethod()))) {
+            httpRespBuilder.setHeader(Names.CONTENT_LENGTH, PENDING);
+          }
 
-        NettyHttpResponse httpResp = httpRespBuilder.build();
-        ctx.write(httpResp);
-        ctx.flush();
-        ReferenceCountUtil.release(msg);
+          NettyHttpResponse httpResp = httpRespBuilder.build();
+          ctx.write(httpResp);
+          ctx.flush();
+          ReferenceCountUtil.release(msg);
+          if (trace != null) {
+            trace.mark("write");
+          }
+        } finally {
+          // Never leave the trace attached to the event loop thread
+          if (trace != null) {
+            RequestTrace.detach();
+            tracer.finish(trace);
+          }
+        }
       }
     } else if (logger.isDebugEnabled()) {
       logger.debug("Received unexpected message type {}", msg);
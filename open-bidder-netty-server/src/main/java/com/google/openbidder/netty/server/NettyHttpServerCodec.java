@@ -16,8 +16,12 @@
 
 package com.google.openbidder.netty.server;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.openbidder.http.HttpRequest;
 import com.google.openbidder.http.HttpResponse;
+import com.google.openbidder.http.trace.RequestTrace;
+import com.google.openbidder.http.trace.RequestTracer;
 import com.google.openbidder.netty.common.NettyHttpRequest;
 import com.google.openbidder.netty.common.NettyHttpResponse;
 
@@ -41,22 +45,38 @@ import java.net.InetSocketAddress;
  * outgoing {@link HttpResponse}s into {@link FullHttpResponse}.
  */
 public class NettyHttpServerCodec extends ChannelDuplexHandler {
+  private final RequestTracer tracer;
   private boolean keepAlive = true;
 
+  public NettyHttpServerCodec() {
+    this(RequestTracer.DISABLED);
+  }
+
+  public NettyHttpServerCodec(RequestTracer tracer) {
+    this.tracer = checkNotNull(tracer);
+  }
+
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
     if (msg instanceof FullHttpRequest) {
       try {
+        RequestTrace trace = tracer.start();
         FullHttpRequest nettyRequest = (FullHttpRequest) msg;
         if (HttpHeaders.is100ContinueExpected(nettyRequest)) {
           ctx.write(new DefaultFullHttpResponse(
               nettyRequest.getProtocolVersion(), HttpResponseStatus.CONTINUE));
         }
         keepAlive = HttpHeaders.isKeepAlive(nettyRequest);
-        ctx.fireChannelRead(new NettyHttpRequest(
+        NettyHttpRequest httpRequest = new NettyHttpRequest(
             nettyRequest,
             // The SocketAddress below will always be a InetSocketAddress
-            (InetSocketAddress)ctx.channel().remoteAddress()));
+            (InetSocketAddress)ctx.channel().remoteAddress());
+        if (trace != null) {
+          trace.setName(nettyRequest.getMethod().name() + ' ' + nettyRequest.getUri());
+          trace.mark("decode");
+          httpRequest.setTrace(trace);
+        }
+        ctx.fireChannelRead(httpRequest);
       } finally {
         ReferenceCountUtil.release(msg);
       }
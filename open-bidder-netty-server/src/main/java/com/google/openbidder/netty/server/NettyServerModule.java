@@ -49,6 +49,7 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.EventExecutorGroup;
 import io.netty.util.internal.SystemPropertyUtil;
 
@@ -164,7 +165,7 @@ public class NettyServerModule extends AbstractModule {
   @BossGroup
   public EventLoopGroup provideBossGroup(@BossGroup int bossGroupSize) {
     logger.info("Boss group size: {}", bossGroupSize);
-    return newEventLoopGroup(bossGroupSize);
+    return newEventLoopGroup(bossGroupSize, "bossGroup");
   }
 
   @Provides
@@ -172,7 +173,7 @@ public class NettyServerModule extends AbstractModule {
   @WorkerGroup
   public EventLoopGroup provideWorkerGroup(@WorkerGroup int workerGroupSize) {
     logger.info("Worker group size: {}", workerGroupSize);
-    return newEventLoopGroup(workerGroupSize);
+    return newEventLoopGroup(workerGroupSize, "workerGroup");
   }
 
   @Provides
@@ -184,7 +185,7 @@ public class NettyServerModule extends AbstractModule {
       return null;
     } else {
       logger.info("User group size: {}", userGroupSize);
-      return new DefaultEventExecutorGroup(userGroupSize);
+      return new DefaultEventExecutorGroup(userGroupSize, new DefaultThreadFactory("userGroup"));
     }
   }
 
@@ -194,10 +195,15 @@ public class NettyServerModule extends AbstractModule {
         : absolute;
   }
 
-  private EventLoopGroup newEventLoopGroup(int groupSize) {
+  /**
+   * Creates an event loop group whose threads are named {@code <poolName>-<pool>-<thread>}, so
+   * tools like the stack profiler can tell the groups apart.
+   */
+  private EventLoopGroup newEventLoopGroup(int groupSize, String poolName) {
+    DefaultThreadFactory threadFactory = new DefaultThreadFactory(poolName);
     return nativeEpoll
-        ? new EpollEventLoopGroup(groupSize)
-        : new NioEventLoopGroup(groupSize);
+        ? new EpollEventLoopGroup(groupSize, threadFactory)
+        : new NioEventLoopGroup(groupSize, threadFactory);
   }
 
   /**
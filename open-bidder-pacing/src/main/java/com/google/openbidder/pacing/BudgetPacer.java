@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.math.LongMath;
+import com.google.openbidder.util.Clock;
+import com.google.openbidder.util.StripedCounter;
+
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Paces the spend of campaign budgets. Each budget is spread evenly over a period (aligned to
+ * the epoch, so a one-day period starts at midnight UTC): a campaign can bid while its
+ * {@link TokenBucket} has tokens, and each won impression charges the bucket with its cost.
+ * The refill rate is the remaining budget over the remaining period, recomputed on each
+ * {@link #sync(PacingCoordinator)}; so the spend between syncs is bounded by the burst,
+ * and a campaign stops bidding once the known spend reaches its budget.
+ * <p>
+ * {@link #allowBid(String)} and {@link #recordSpend(String, long)} are lock-free and O(1),
+ * so they can be invoked for every bid and impression. All amounts are in micros of the
+ * account currency, and campaigns without a budget are not paced.
+ */
+public class BudgetPacer {
+  private final Clock clock;
+  private final long periodMillis;
+  private final ImmutableMap<String, CampaignBudget> budgets;
+  private long periodStart = Long.MIN_VALUE;
+
+  /**
+   * @param budgetMicros Budget per period, for each paced campaign
+   * @param period Budget period
+   * @param burst Time of refill that can be spent in a burst
+   */
+  public BudgetPacer(
+      Clock clock, Map<String, Long> budgetMicros, Duration period, Duration burst) {
+    checkArgument(period.getMillis() > 0, "period must be positive: %s", period);
+    checkArgument(burst.getMillis() > 0, "burst must be positive: %s", burst);
+    this.clock = checkNotNull(clock);
+    this.periodMillis = period.getMillis();
+
+    long nowNanos = clock.nanoTime();
+    long burstNanos = TimeUnit.MILLISECONDS.toNanos(burst.getMillis());
+    ImmutableMap.Builder<String, CampaignBudget> budgets = ImmutableMap.builder();
+    for (Map.Entry<String, Long> budget : budgetMicros.entrySet()) {
+      checkArgument(budget.getValue() >= 0, "Negative budget: %s", budget);
+      budgets.put(budget.getKey(),
+          new CampaignBudget(budget.getValue(), new TokenBucket(0, burstNanos, nowNanos)));
+    }
+    this.budgets = budgets.build();
+
+    Instant now = clock.now();
+    startPeriod(now);
+    repace(now);
+  }
+
+  /**
+   * Returns the campaigns with a budget.
+   */
+  public ImmutableMap<String, Long> getBudgets() {
+    ImmutableMap.Builder<String, Long> ret = ImmutableMap.builder();
+    for (Map.Entry<String, CampaignBudget> budget : budgets.entrySet()) {
+      ret.put(budget.getKey(), budget.getValue().budgetMicros);
+    }
+    return ret.build();
+  }
+
+  /**
+   * Returns {@code true} if the campaign can bid now: it has no budget, or it's not spending
+   * ahead of its pace.
+   */
+  public boolean allowBid(@Nullable String campaign) {
+    CampaignBudget budget = campaign == null ? null : budgets.get(campaign);
+    return budget == null || budget.allowBid(clock.nanoTime());
+  }
+
+  /**
+   * Records spend for a campaign, typically the cost of a won impression.
+   */
+  public void recordSpend(@Nullable String campaign, long spendMicros) {
+    CampaignBudget budget = campaign == null ? null : budgets.get(campaign);
+    if (budget != null && spendMicros > 0) {
+      budget.recordSpend(spendMicros, clock.nanoTime());
+    }
+  }
+
+  /**
+   * Returns the spend of a campaign in the current period: the total known from the last
+   * sync, plus the spend recorded locally since then.
+   */
+  public long getSpendMicros(String campaign) {
+    CampaignBudget budget = budgets.get(campaign);
+    return budget == null ? 0 : budget.spendMicros();
+  }
+
+  /**
+   * Exchanges the local spend with the coordinator, and recomputes the pace of all budgets.
+   * Spend is attributed to the period in which it's synced. If the exchange fails, the local
+   * spend is kept for the next sync, and the pace is recomputed from the local information.
+   *
+   * @throws IOException if the coordinator failed
+   */
+  public synchronized void sync(PacingCoordinator coordinator) throws IOException {
+    Instant now = clock.now();
+    startPeriod(now);
+
+    ImmutableMap.Builder<String, Long> newSpend = ImmutableMap.builder();
+    for (Map.Entry<String, CampaignBudget> budget : budgets.entrySet()) {
+      long spend = budget.getValue().pendingMicros.sumThenReset();
+      if (spend != 0) {
+        budget.getValue().syncingMicros = spend;
+        newSpend.put(budget.getKey(), spend);
+      }
+    }
+
+    try {
+      Map<String, Long> totals = coordinator.exchange(new Instant(periodStart), newSpend.build());
+      for (Map.Entry<String, CampaignBudget> budget : budgets.entrySet()) {
+        CampaignBudget campaignBudget = budget.getValue();
+        Long total = totals.get(budget.getKey());
+        campaignBudget.syncedMicros = total == null
+            ? campaignBudget.syncedMicros + campaignBudget.syncingMicros
+            : total;
+        campaignBudget.syncingMicros = 0;
+      }
+    } catch (IOException | RuntimeException e) {
+      for (CampaignBudget budget : budgets.values()) {
+        budget.pendingMicros.add(budget.syncingMicros);
+        budget.syncingMicros = 0;
+      }
+      throw e;
+    } finally {
+      repace(now);
+    }
+  }
+
+  private void startPeriod(Instant now) {
+    long start = now.getMillis() - LongMath.mod(now.getMillis(), periodMillis);
+    if (start != periodStart) {
+      periodStart = start;
+      long nowNanos = clock.nanoTime();
+      for (CampaignBudget budget : budgets.values()) {
+        budget.syncedMicros = 0;
+        budget.bucket.reset(nowNanos);
+      }
+    }
+  }
+
+  private void repace(Instant now) {
+    long remainingNanos = TimeUnit.MILLISECONDS.toNanos(
+        Math.max(1, periodStart + periodMillis - now.getMillis()));
+    for (CampaignBudget budget : budgets.values()) {
+      budget.repace(remainingNanos);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("periodStart", new Instant(periodStart))
+        .add("budgets", budgets)
+        .toString();
+  }
+
+  /**
+   * Pacing state of a single campaign.
+   */
+  private static final class CampaignBudget {
+    final long budgetMicros;
+    final TokenBucket bucket;
+    final StripedCounter pendingMicros = new StripedCounter();
+    volatile long syncedMicros;
+    volatile long syncingMicros;
+    volatile boolean exhausted;
+
+    CampaignBudget(long budgetMicros, TokenBucket bucket) {
+      this.budgetMicros = budgetMicros;
+      this.bucket = bucket;
+    }
+
+    boolean allowBid(long nowNanos) {
+      return !exhausted && bucket.hasTokens(nowNanos);
+    }
+
+    void recordSpend(long spendMicros, long nowNanos) {
+      pendingMicros.add(spendMicros);
+      bucket.charge(spendMicros, nowNanos);
+    }
+
+    long spendMicros() {
+      return syncedMicros + syncingMicros + pendingMicros.sum();
+    }
+
+    void repace(long remainingNanos) {
+      long remainingMicros = budgetMicros - spendMicros();
+      exhausted = remainingMicros <= 0;
+      bucket.setRate(exhausted
+          ? 0
+          : remainingMicros * (double) TimeUnit.SECONDS.toNanos(1) / remainingNanos);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("budgetMicros", budgetMicros)
+          .add("spendMicros", spendMicros())
+          .add("exhausted", exhausted)
+          .add("bucket", bucket)
+          .toString();
+    }
+  }
+}
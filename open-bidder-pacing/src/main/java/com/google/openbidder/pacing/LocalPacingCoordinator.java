@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.joda.time.Instant;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+/**
+ * In-process {@link PacingCoordinator}, which only knows the spend of its own node. This is
+ * the default for a single bidder, and a stand-in for a shared coordinator in tests.
+ */
+@Singleton
+public class LocalPacingCoordinator implements PacingCoordinator {
+  private final Map<String, Long> totals = new HashMap<>();
+  private Instant periodStart = new Instant(Long.MIN_VALUE);
+
+  @Override
+  public synchronized ImmutableMap<String, Long> exchange(
+      Instant periodStart, Map<String, Long> spendMicros) {
+    if (periodStart.isAfter(this.periodStart)) {
+      this.periodStart = periodStart;
+      totals.clear();
+    }
+
+    for (Map.Entry<String, Long> spend : spendMicros.entrySet()) {
+      Long total = totals.get(spend.getKey());
+      totals.put(spend.getKey(), total == null ? spend.getValue() : total + spend.getValue());
+    }
+
+    return ImmutableMap.copyOf(totals);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import org.joda.time.Instant;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Shares the campaign spend between bidder nodes that pace the same budgets. Each node
+ * periodically sends the spend that it observed since its last exchange, and receives the
+ * total spend of all nodes; so the pacing decisions for each bid stay local, and only these
+ * periodic totals cross the network.
+ *
+ * @see LocalPacingCoordinator
+ */
+public interface PacingCoordinator {
+
+  /**
+   * Adds this node's new spend to the totals, and returns the totals.
+   *
+   * @param periodStart Start of the budget period the spend belongs to. The totals are reset
+   * when a new period starts
+   * @param spendMicros New spend observed by this node, per campaign; campaigns without
+   * new spend may be omitted
+   * @return Total spend of all nodes in the period, per campaign. Campaigns missing from this
+   * map keep their previous totals, plus the spend just sent
+   * @throws IOException if the exchange failed; the same spend will be sent again later
+   */
+  Map<String, Long> exchange(Instant periodStart, Map<String, Long> spendMicros)
+      throws IOException;
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.multibindings.OptionalBinder;
+import com.google.openbidder.util.Clock;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+/**
+ * Binds the {@link BudgetPacer}, shared by the pacing bid and impression interceptors, and
+ * the service that syncs its spend with a {@link PacingCoordinator} and recomputes its pace.
+ * The coordinator is the {@link LocalPacingCoordinator} unless another module sets it, with
+ * {@code OptionalBinder.newOptionalBinder(binder(), PacingCoordinator.class).setBinding()}.
+ */
+@Parameters(separators = "=")
+public class PacingModule extends AbstractModule {
+  private static final Logger logger = LoggerFactory.getLogger(PacingModule.class);
+  private static final Splitter BUDGET_SPLITTER = Splitter.on('=').trimResults();
+
+  @Parameter(names = "--pacing_budgets",
+      description = "Campaign budgets to pace, as campaign=micros per period")
+  private List<String> budgets = new ArrayList<>();
+
+  @Parameter(names = "--pacing_period_minutes",
+      description = "Period of the pacing budgets, aligned to midnight UTC")
+  private int periodMinutes = 24 * 60;
+
+  @Parameter(names = "--pacing_burst_seconds",
+      description = "Seconds of paced spend that can be bid in a burst")
+  private int burstSeconds = 60;
+
+  @Parameter(names = "--pacing_sync_seconds",
+      description = "Period for syncing spend with the pacing coordinator, and recomputing "
+          + "the pace of the budgets")
+  private int syncSeconds = 10;
+
+  @Override
+  protected void configure() {
+    checkArgument(periodMinutes > 0, "--pacing_period_minutes must be greater than 0");
+    checkArgument(burstSeconds > 0, "--pacing_burst_seconds must be greater than 0");
+    // The sync also starts new periods and stops exhausted campaigns, so it can't be disabled
+    checkArgument(syncSeconds > 0, "--pacing_sync_seconds must be greater than 0");
+    OptionalBinder.newOptionalBinder(binder(), PacingCoordinator.class)
+        .setDefault().to(LocalPacingCoordinator.class);
+    Multibinder.newSetBinder(binder(), Service.class).addBinding()
+        .to(PacingSyncService.class);
+  }
+
+  @Provides @Singleton
+  public BudgetPacer provideBudgetPacer(Clock clock) {
+    ImmutableMap<String, Long> budgetMicros = parseBudgets(budgets);
+    logger.info("Pacing budgets: {}", budgetMicros);
+    return new BudgetPacer(clock, budgetMicros,
+        Duration.standardMinutes(periodMinutes), Duration.standardSeconds(burstSeconds));
+  }
+
+  @Provides @Singleton
+  public PacingSyncService providePacingSyncService(
+      BudgetPacer pacer, PacingCoordinator coordinator) {
+    return new PacingSyncService(pacer, coordinator,
+        Scheduler.newFixedDelaySchedule(syncSeconds, syncSeconds, TimeUnit.SECONDS));
+  }
+
+  static ImmutableMap<String, Long> parseBudgets(List<String> specs) {
+    ImmutableMap.Builder<String, Long> budgetMicros = ImmutableMap.builder();
+    for (String spec : specs) {
+      List<String> parts = BUDGET_SPLITTER.splitToList(spec);
+      checkArgument(parts.size() == 2 && !parts.get(0).isEmpty(),
+          "Bad budget, expected campaign=micros: %s", spec);
+      try {
+        budgetMicros.put(parts.get(0), Long.parseLong(parts.get(1)));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Bad budget, expected campaign=micros: " + spec, e);
+      }
+    }
+    return budgetMicros.build();
+  }
+}
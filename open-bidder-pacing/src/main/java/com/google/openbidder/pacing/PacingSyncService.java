@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Periodically syncs a {@link BudgetPacer} with a {@link PacingCoordinator}, from the
+ * service's own thread. If the coordinator is unavailable, the pacer keeps pacing with its
+ * local spend until a later sync succeeds. The last spend is synced on shutdown.
+ */
+public class PacingSyncService extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(PacingSyncService.class);
+  private final BudgetPacer pacer;
+  private final PacingCoordinator coordinator;
+  private final Scheduler scheduler;
+
+  public PacingSyncService(
+      BudgetPacer pacer, PacingCoordinator coordinator, Scheduler scheduler) {
+    this.pacer = checkNotNull(pacer);
+    this.coordinator = checkNotNull(coordinator);
+    this.scheduler = checkNotNull(scheduler);
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  protected void runOneIteration() {
+    sync();
+  }
+
+  @Override
+  protected void shutDown() {
+    sync();
+  }
+
+  /**
+   * Syncs the pacer.
+   *
+   * @return {@code true} if the coordinator accepted the spend
+   */
+  public boolean sync() {
+    try {
+      pacer.sync(coordinator);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      logger.error("Failed to sync budget pacing, pacing with local spend", e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket. This is implemented as a generic cell rate algorithm, so the
+ * whole state is a single "theoretical arrival time": checking for tokens is one volatile
+ * read, and charging tokens is one CAS (retried only on contention).
+ * <p>
+ * Tokens refill at the current rate, up to the amount refilled in the burst time. Charges
+ * are always accepted, even if they put the bucket in debt; {@link #hasTokens(long)} will
+ * only return {@code true} again after the debt is refilled. When the rate changes, any
+ * debt is kept as refill time, not as tokens.
+ */
+public final class TokenBucket {
+  private static final long MAX_DEBT_NANOS = TimeUnit.DAYS.toNanos(365);
+
+  private final long burstNanos;
+  private final AtomicLong arrival;
+  private volatile double nanosPerToken;
+
+  /**
+   * Creates a full bucket.
+   *
+   * @param tokensPerSecond Refill rate, zero for no refill
+   * @param burstNanos Refill time that the bucket can hold
+   * @param nowNanos Current time, from a monotonic source like {@link System#nanoTime()}
+   */
+  public TokenBucket(double tokensPerSecond, long burstNanos, long nowNanos) {
+    checkArgument(burstNanos > 0, "burstNanos must be positive: %s", burstNanos);
+    this.burstNanos = burstNanos;
+    this.arrival = new AtomicLong(nowNanos);
+    setRate(tokensPerSecond);
+  }
+
+  /**
+   * Changes the refill rate.
+   *
+   * @param tokensPerSecond Refill rate, zero for no refill
+   */
+  public void setRate(double tokensPerSecond) {
+    checkArgument(tokensPerSecond >= 0, "tokensPerSecond must not be negative: %s",
+        tokensPerSecond);
+    nanosPerToken = tokensPerSecond == 0
+        ? Double.POSITIVE_INFINITY
+        : TimeUnit.SECONDS.toNanos(1) / tokensPerSecond;
+  }
+
+  /**
+   * Returns the refill rate, in tokens per second.
+   */
+  public double getRate() {
+    return TimeUnit.SECONDS.toNanos(1) / nanosPerToken;
+  }
+
+  /**
+   * Returns {@code true} if the bucket is not empty (and not in debt).
+   */
+  public boolean hasTokens(long nowNanos) {
+    return arrival.get() - nowNanos < burstNanos;
+  }
+
+  /**
+   * Takes tokens from the bucket, even if that puts it in debt.
+   */
+  public void charge(long tokens, long nowNanos) {
+    long cost = (long) Math.min(tokens * nanosPerToken, MAX_DEBT_NANOS);
+    long current;
+    do {
+      current = arrival.get();
+    } while (!arrival.compareAndSet(current, Math.max(current, nowNanos) + cost));
+  }
+
+  /**
+   * Refills the bucket completely, forgiving any debt.
+   */
+  public void reset(long nowNanos) {
+    arrival.set(nowNanos);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("rate", getRate())
+        .add("burstNanos", burstNanos)
+        .toString();
+  }
+}
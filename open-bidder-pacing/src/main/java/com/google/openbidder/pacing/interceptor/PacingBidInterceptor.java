@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing.interceptor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Predicate;
+import com.google.openbidder.api.bidding.BidInterceptor;
+import com.google.openbidder.api.bidding.BidRequest;
+import com.google.openbidder.api.bidding.BidResponse;
+import com.google.openbidder.api.interceptor.InterceptorChain;
+import com.google.openbidder.pacing.BudgetPacer;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import javax.inject.Inject;
+
+/**
+ * Removes the bids of campaigns that are spending ahead of their budget pace. The campaign
+ * is the bid's {@code cid}; bids without a campaign are not paced. This should be the first
+ * interceptor, so it sees the bids from all the others. Only OpenRTB responses are paced.
+ */
+public class PacingBidInterceptor implements BidInterceptor {
+  private final BudgetPacer pacer;
+  private final Counter throttled = new Counter();
+  private final Predicate<Bid.Builder> paced = new Predicate<Bid.Builder>() {
+    @Override public boolean apply(Bid.Builder bid) {
+      assert bid != null;
+      if (!bid.hasCid() || pacer.allowBid(bid.getCid())) {
+        return true;
+      }
+      throttled.inc();
+      return false;
+    }};
+
+  @Inject
+  public PacingBidInterceptor(BudgetPacer pacer, MetricRegistry metricRegistry) {
+    this.pacer = checkNotNull(pacer);
+    metricRegistry.register(MetricRegistry.name(getClass(), "throttled"), throttled);
+  }
+
+  @Override
+  public void execute(InterceptorChain<BidRequest, BidResponse> chain) {
+    chain.proceed();
+
+    BidResponse response = chain.response();
+    if (response.getResponseMode() == BidResponse.ResponseMode.OPENRTB) {
+      response.filterBids(paced);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing.interceptor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.openbidder.api.impression.ImpressionInterceptor;
+import com.google.openbidder.api.impression.ImpressionRequest;
+import com.google.openbidder.api.impression.ImpressionResponse;
+import com.google.openbidder.api.interceptor.InterceptorChain;
+import com.google.openbidder.impression.interceptor.AggregatingImpressionInterceptor;
+import com.google.openbidder.pacing.BudgetPacer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+
+/**
+ * Records the cost of each won impression against its campaign's budget. The campaign is
+ * identified by the same impression URL parameter used for rollups (see
+ * {@link AggregatingImpressionInterceptor.CampaignParameter}); the cost is the winning
+ * price, a CPM, divided by 1000.
+ */
+public class PacingImpressionInterceptor implements ImpressionInterceptor {
+  private static final Logger logger = LoggerFactory.getLogger(PacingImpressionInterceptor.class);
+
+  private final BudgetPacer pacer;
+  private final String campaignParameter;
+  private final Counter priceErrors = new Counter();
+
+  @Inject
+  public PacingImpressionInterceptor(
+      BudgetPacer pacer,
+      MetricRegistry metricRegistry,
+      @AggregatingImpressionInterceptor.CampaignParameter String campaignParameter) {
+    this.pacer = checkNotNull(pacer);
+    this.campaignParameter = checkNotNull(campaignParameter);
+    metricRegistry.register(MetricRegistry.name(getClass(), "price-errors"), priceErrors);
+  }
+
+  @Override
+  public void execute(InterceptorChain<ImpressionRequest, ImpressionResponse> chain) {
+    ImpressionRequest request = chain.request();
+    String campaign = request.httpRequest().getParameter(campaignParameter);
+
+    if (campaign != null && request.hasPrice()) {
+      try {
+        pacer.recordSpend(campaign, Math.round(request.getPriceValue() * 1000));
+      } catch (RuntimeException e) {
+        priceErrors.inc();
+        logger.debug("Bad price, not recording spend: {}", e.toString());
+      }
+    }
+
+    chain.proceed();
+  }
+}
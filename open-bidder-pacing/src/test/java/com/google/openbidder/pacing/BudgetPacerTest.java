@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.openbidder.util.testing.FakeClock;
+
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Tests for {@link BudgetPacer}.
+ */
+public class BudgetPacerTest {
+  // 1000 micros/s over the hour, so the 10s burst holds 10000 micros
+  private static final long BUDGET = 3_600_000;
+
+  private FakeClock clock;
+  private BudgetPacer pacer;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock(new Instant(0), Duration.ZERO);
+    pacer = new BudgetPacer(clock, ImmutableMap.of("c1", BUDGET),
+        Duration.standardHours(1), Duration.standardSeconds(10));
+  }
+
+  @Test
+  public void testThrottle() {
+    assertTrue(pacer.allowBid("c1"));
+    assertTrue(pacer.allowBid("unpaced"));
+    assertTrue(pacer.allowBid(null));
+
+    pacer.recordSpend("c1", 4_000);
+    assertTrue(pacer.allowBid("c1"));
+    pacer.recordSpend("c1", 6_000);
+    assertFalse(pacer.allowBid("c1"));
+    pacer.recordSpend("unpaced", 1_000_000);
+    assertTrue(pacer.allowBid("unpaced"));
+
+    clock.setNow(1);
+    assertTrue(pacer.allowBid("c1"));
+    pacer.recordSpend("c1", 5_000);
+    assertFalse(pacer.allowBid("c1"));
+    clock.setNow(5_000);
+    assertFalse(pacer.allowBid("c1"));
+    clock.setNow(5_001);
+    assertTrue(pacer.allowBid("c1"));
+    assertEquals(15_000, pacer.getSpendMicros("c1"));
+  }
+
+  @Test
+  public void testSharedSpend() throws IOException {
+    PacingCoordinator coordinator = new LocalPacingCoordinator();
+    coordinator.exchange(new Instant(0), ImmutableMap.of("c1", BUDGET - 1_000));
+    pacer.recordSpend("c1", 1_000);
+    pacer.sync(coordinator);
+    assertEquals(BUDGET, pacer.getSpendMicros("c1"));
+    assertFalse(pacer.allowBid("c1"));
+
+    clock.setNow(Duration.standardHours(1).getMillis());
+    assertFalse(pacer.allowBid("c1"));
+    pacer.sync(coordinator);
+    assertEquals(0, pacer.getSpendMicros("c1"));
+    assertTrue(pacer.allowBid("c1"));
+  }
+
+  @Test
+  public void testSyncFailure() throws IOException {
+    final LocalPacingCoordinator local = new LocalPacingCoordinator();
+    final boolean[] fail = { true };
+    PacingCoordinator coordinator = new PacingCoordinator() {
+      @Override public Map<String, Long> exchange(
+          Instant periodStart, Map<String, Long> spendMicros) throws IOException {
+        if (fail[0]) {
+          throw new IOException("unavailable");
+        }
+        return local.exchange(periodStart, spendMicros);
+      }};
+
+    pacer.recordSpend("c1", 1_000);
+    try {
+      pacer.sync(coordinator);
+      fail("IOException expected");
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(1_000, pacer.getSpendMicros("c1"));
+
+    fail[0] = false;
+    pacer.recordSpend("c1", 2_000);
+    pacer.sync(coordinator);
+    assertEquals(3_000, pacer.getSpendMicros("c1"));
+    assertEquals(ImmutableMap.of("c1", 3_000L),
+        local.exchange(new Instant(0), ImmutableMap.<String, Long>of()));
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.CreationException;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.google.inject.TypeLiteral;
+
+import com.beust.jcommander.JCommander;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link PacingModule}.
+ */
+public class PacingModuleTest {
+
+  @Test
+  public void testModule() {
+    Injector injector = createInjector("--pacing_budgets=c1=1000000", "--pacing_budgets=c2=0");
+    assertEquals(ImmutableMap.of("c1", 1_000_000L, "c2", 0L),
+        injector.getInstance(BudgetPacer.class).getBudgets());
+    Set<Service> services = injector.getInstance(Key.get(new TypeLiteral<Set<Service>>() {}));
+    assertTrue(services.contains(injector.getInstance(PacingSyncService.class)));
+  }
+
+  @Test(expected = CreationException.class)
+  public void testSyncRequired() {
+    createInjector("--pacing_sync_seconds=0");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadBudget() {
+    PacingModule.parseBudgets(Arrays.asList("c1=10", "c2"));
+  }
+
+  private static Injector createInjector(String... args) {
+    List<Module> modules = ImmutableList.<Module>of(new PacingModule());
+    new JCommander(modules).parse(args);
+    return Guice.createInjector(Stage.DEVELOPMENT, modules);
+  }
+}
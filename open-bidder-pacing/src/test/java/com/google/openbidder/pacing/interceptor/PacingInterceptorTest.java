@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.pacing.interceptor;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.openbidder.api.bidding.BidController;
+import com.google.openbidder.api.bidding.BidResponse;
+import com.google.openbidder.api.impression.ImpressionController;
+import com.google.openbidder.api.testing.bidding.BiddingTestUtil;
+import com.google.openbidder.api.testing.bidding.TestBidRequestBuilder;
+import com.google.openbidder.api.testing.bidding.TestBidResponseBuilder;
+import com.google.openbidder.api.testing.impression.ImpressionTestUtil;
+import com.google.openbidder.api.testing.impression.TestImpressionRequestBuilder;
+import com.google.openbidder.api.testing.impression.TestImpressionResponseBuilder;
+import com.google.openbidder.impression.interceptor.AggregatingImpressionInterceptor;
+import com.google.openbidder.pacing.BudgetPacer;
+import com.google.openbidder.util.testing.FakeClock;
+import com.google.openrtb.OpenRtb.BidResponse.SeatBid.Bid;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PacingBidInterceptor} and {@link PacingImpressionInterceptor}.
+ */
+public class PacingInterceptorTest {
+  private BidController bidController;
+  private ImpressionController impressionController;
+
+  @Before
+  public void setUp() {
+    // 1000 micros/s, the 10s burst holds 10000 micros (impressions of 10 CPM)
+    BudgetPacer pacer = new BudgetPacer(new FakeClock(new Instant(0), Duration.ZERO),
+        ImmutableMap.of("c1", 3_600_000L), Duration.standardHours(1),
+        Duration.standardSeconds(10));
+    MetricRegistry metricRegistry = new MetricRegistry();
+    bidController = BiddingTestUtil.newBidController(
+        new PacingBidInterceptor(pacer, metricRegistry));
+    impressionController = ImpressionTestUtil.newImpressionController(metricRegistry,
+        new PacingImpressionInterceptor(pacer, metricRegistry,
+            AggregatingImpressionInterceptor.CampaignParameter.DEFAULT));
+  }
+
+  @After
+  public void tearDown() {
+    bidController.stopAsync().awaitTerminated();
+    impressionController.stopAsync().awaitTerminated();
+  }
+
+  @Test
+  public void testPacing() {
+    BiddingTestUtil.assertBidAmounts(bid(), 1.0, 2.0, 3.0);
+
+    impression("c2", 10.0);
+    impression("c1", 5.0);
+    BiddingTestUtil.assertBidAmounts(bid(), 1.0, 2.0, 3.0);
+
+    impression("c1", 5.0);
+    BiddingTestUtil.assertBidAmounts(bid(), 2.0, 3.0);
+  }
+
+  private BidResponse bid() {
+    BidResponse response = TestBidResponseBuilder.create().build()
+        .addBid(Bid.newBuilder().setId("1").setImpid("1").setPrice(1.0).setCid("c1"))
+        .addBid(Bid.newBuilder().setId("2").setImpid("1").setPrice(2.0).setCid("c2"))
+        .addBid(Bid.newBuilder().setId("3").setImpid("1").setPrice(3.0));
+    bidController.onRequest(TestBidRequestBuilder.create().setRequest("1", 1, 1, 1.0).build(),
+        response);
+    return response;
+  }
+
+  private void impression(String campaign, double price) {
+    impressionController.onRequest(
+        TestImpressionRequestBuilder.create()
+            .setPrice(price)
+            .addParameters(AggregatingImpressionInterceptor.CampaignParameter.DEFAULT, campaign)
+            .build(),
+        TestImpressionResponseBuilder.create().build());
+  }
+}
@@ -16,8 +16,14 @@
 
 package com.google.openbidder.remarketing.services;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
 import com.google.openbidder.remarketing.services.impl.RemarketingServiceImpl;
 
 import com.beust.jcommander.Parameter;
@@ -25,6 +31,7 @@ import com.beust.jcommander.Parameters;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
@@ -38,6 +45,19 @@ public class RemarketingModule extends AbstractModule {
       description = "The name of the Google Cloud Storage Bucket")
   private String bucketName;
 
+  @Parameter(names = "--remarketing_flush_seconds",
+      description = "Period for appending targeted user changes to the bucket (0=disabled)")
+  private int flushSeconds = 30;
+
+  @Parameter(names = "--remarketing_compact_minutes",
+      description = "Period for compacting targeted user changes into the full list")
+  private int compactMinutes = 60;
+
+  @Parameter(names = "--remarketing_compactor", arity = 1,
+      description = "Whether this bidder compacts targeted user changes; "
+          + "enable on exactly one bidder sharing the bucket")
+  private boolean compactor = false;
+
   @Override
   public void configure() {
     if (!Strings.isNullOrEmpty(bucketName)) {
@@ -45,6 +65,24 @@ public class RemarketingModule extends AbstractModule {
       bind(ExecutorService.class).annotatedWith(RemarketingBucket.class)
           .toInstance(Executors.newFixedThreadPool(2));
       bind(RemarketingService.class).to(RemarketingServiceImpl.class).in(Singleton.class);
+      if (flushSeconds > 0) {
+        checkArgument(compactMinutes > 0, "--remarketing_compact_minutes must be greater than 0");
+        install(new WriterModule());
+      }
+    }
+  }
+
+  private class WriterModule extends AbstractModule {
+    @Override protected void configure() {
+      Multibinder.newSetBinder(binder(), Service.class).addBinding()
+          .to(TargetedUsersWriter.class);
+    }
+
+    @Provides @Singleton
+    public TargetedUsersWriter provideTargetedUsersWriter(RemarketingService remarketingService) {
+      return new TargetedUsersWriter(remarketingService,
+          Scheduler.newFixedDelaySchedule(flushSeconds, flushSeconds, TimeUnit.SECONDS),
+          compactor ? Math.max(1, compactMinutes * 60 / flushSeconds) : 0);
     }
   }
 }
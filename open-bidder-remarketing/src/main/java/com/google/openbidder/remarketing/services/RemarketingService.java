@@ -51,10 +51,27 @@ public interface RemarketingService {
   TargetedUser getTargetedUser(String pubUserId);
 
   /**
-   * Store the local data in the data storage. Should be called periodically.
+   * Store the local data in the data storage: flushes the pending changes, then compacts the
+   * stored changes into the full targeted users list.
+   * <p>
+   * This compacts, so like {@link #compactTargetedUsers()} it must only be called on the one
+   * bidder that compacts; concurrent compactions lose each other's changes.
    */
   void storeTargetedUsers();
 
+  /**
+   * Append the targeted user changes made since the last flush to the data storage, as a small
+   * delta object. The cost is proportional to the changes, so this can be called frequently.
+   */
+  void flushTargetedUsers();
+
+  /**
+   * Fold the delta objects in the data storage into the full targeted users list. This should be
+   * called periodically, in the background, on a single bidder: concurrent compactions lose each
+   * other's changes.
+   */
+  void compactTargetedUsers();
+
   /**
    * Delete an action from a users list.
    *
@@ -78,8 +95,9 @@ public interface RemarketingService {
   void reloadActions();
 
   /**
-   * Merge the targeted users that are in memory and in external storage and then update the
-   * external storage. This should be called periodically.
+   * Merge the targeted users that are in memory and in external storage and then flush the
+   * changes to the external storage. This should be called periodically, and is safe to call
+   * on every bidder, since it doesn't compact.
    */
   void updateTargetedUsers();
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.remarketing.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind persistence for the targeted users of a {@link RemarketingService}: periodically
+ * flushes the changed users as a delta, and every few flushes compacts the deltas into the full
+ * list. Pending changes are flushed on shutdown. Compactions are not coordinated, so only one
+ * of the bidders sharing a bucket should compact; the others only flush.
+ */
+public class TargetedUsersWriter extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(TargetedUsersWriter.class);
+  private final RemarketingService remarketingService;
+  private final Scheduler scheduler;
+  private final int flushesPerCompaction;
+  private int flushes;
+
+  /**
+   * @param flushesPerCompaction Number of flushes between compactions, 0 to never compact
+   */
+  public TargetedUsersWriter(
+      RemarketingService remarketingService, Scheduler scheduler, int flushesPerCompaction) {
+    checkArgument(flushesPerCompaction >= 0,
+        "flushesPerCompaction must be >= 0: %s", flushesPerCompaction);
+    this.remarketingService = checkNotNull(remarketingService);
+    this.scheduler = checkNotNull(scheduler);
+    this.flushesPerCompaction = flushesPerCompaction;
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  protected void runOneIteration() {
+    try {
+      remarketingService.flushTargetedUsers();
+      if (flushesPerCompaction != 0 && ++flushes % flushesPerCompaction == 0) {
+        remarketingService.compactTargetedUsers();
+      }
+    } catch (RuntimeException e) {
+      // Changes stay pending, and the schedule alive for the next attempt
+      logger.error("Failed to write targeted users", e);
+    }
+  }
+
+  @Override
+  protected void shutDown() {
+    remarketingService.flushTargetedUsers();
+  }
+}
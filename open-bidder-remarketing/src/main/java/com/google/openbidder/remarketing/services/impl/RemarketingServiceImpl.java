@@ -19,28 +19,41 @@ package com.google.openbidder.remarketing.services.impl;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Function;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.openbidder.remarketing.model.Remarketing.Action;
 import com.google.openbidder.remarketing.model.Remarketing.TargetedUser;
+import com.google.openbidder.remarketing.model.Remarketing.TargetedUserLog;
 import com.google.openbidder.remarketing.services.RemarketingBucket;
 import com.google.openbidder.remarketing.services.RemarketingService;
 import com.google.openbidder.storage.dao.Dao;
 import com.google.protobuf.MessageLite;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -49,9 +62,23 @@ import javax.inject.Singleton;
 
 /**
  * The remarketing service implementation.
+ * <p>
+ * Targeted users are persisted write-behind: mutations only mark the user as changed, and
+ * {@link #flushTargetedUsers()} appends the changed users' current state as a small
+ * {@link TargetedUserLog} delta object. {@link #compactTargetedUsers()} folds the deltas, in name
+ * order, into the full {@link #TARGETED_USERS_OBJECT} list, and removes them. Loading replays the
+ * deltas on top of the full list. Delta names start with the flush time, so deltas from several
+ * bidders interleave in time order and the last flushed state of a user wins.
+ * <p>
+ * Compaction streams the full list through the folded deltas and back into storage, so only the
+ * changed users are held in memory. Compactions are not coordinated between bidders, and two
+ * concurrent ones can lose each other's deltas, so only one bidder may compact: only that one
+ * may call {@link #compactTargetedUsers()} or {@link #storeTargetedUsers()}. The other methods,
+ * including {@link #updateTargetedUsers()}, only flush deltas and are safe on every bidder.
  */
 @Singleton
 public class RemarketingServiceImpl implements RemarketingService {
+  private static final Logger logger = LoggerFactory.getLogger(RemarketingServiceImpl.class);
 
   public static final Function<Action, String> GET_ACTION_ID = new Function<Action, String>() {
     @Override public String apply(Action action) {
@@ -61,6 +88,7 @@ public class RemarketingServiceImpl implements RemarketingService {
 
   private static final String ACTION_OBJECT = "action";
   private static final String TARGETED_USERS_OBJECT = "targeted-users";
+  private static final String TARGETED_USERS_DELTA_PREFIX = TARGETED_USERS_OBJECT + "-delta-";
 
   /**
    * Lock for write operations on the index structures {@link #users}, {@link #userIdLookup}.
@@ -69,7 +97,7 @@ public class RemarketingServiceImpl implements RemarketingService {
    */
   private final Lock indexWriteLock = new ReentrantLock();
   /**
-   * Lock for write operations on the DAO, for {@link #TARGETED_USERS_OBJECT}.
+   * Lock for write operations on the DAO, for {@link #TARGETED_USERS_OBJECT} and its deltas.
    * Must be acquired AFTER {@link #indexWriteLock}, if both are acquired.
    */
   private final Lock daoWriteUsersLock = new ReentrantLock();
@@ -85,6 +113,14 @@ public class RemarketingServiceImpl implements RemarketingService {
    * Maps googleGid->pubUserId.
    */
   private final ConcurrentMap<String, String> userIdLookup = new ConcurrentHashMap<>();
+  /**
+   * pubUserIds changed since the last flush. A user is marked after its index entry is updated,
+   * and unmarked before its state is read for the flush, so no change is lost.
+   */
+  private final Set<String> changedUsers =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final String deltaSuffix = UUID.randomUUID().toString().substring(0, 8);
+  private final AtomicLong deltaSequence = new AtomicLong();
   private final String bucketName;
 
   @Inject
@@ -111,6 +147,7 @@ public class RemarketingServiceImpl implements RemarketingService {
     } finally {
       indexWriteLock.unlock();
     }
+    changedUsers.add(user.getPubUserId());
   }
 
   @Override
@@ -122,6 +159,7 @@ public class RemarketingServiceImpl implements RemarketingService {
       }
     }
     users.remove(pubUserId);
+    changedUsers.add(pubUserId);
   }
 
   @Override
@@ -129,6 +167,7 @@ public class RemarketingServiceImpl implements RemarketingService {
     daoWriteUsersLock.lock();
     try {
       dao.deleteObject(bucketName, TARGETED_USERS_OBJECT);
+      dao.deleteObjects(findDeltas().keySet(), bucketName);
     } finally {
       daoWriteUsersLock.unlock();
     }
@@ -136,6 +175,7 @@ public class RemarketingServiceImpl implements RemarketingService {
     // Benign-racy delete. Just make sure we remove first the googleGid->pubUserId map.
     userIdLookup.clear();
     users.clear();
+    changedUsers.clear();
   }
 
   @Override
@@ -145,9 +185,58 @@ public class RemarketingServiceImpl implements RemarketingService {
 
   @Override
   public void storeTargetedUsers() {
+    flushTargetedUsers();
+    compactTargetedUsers();
+  }
+
+  @Override
+  public void flushTargetedUsers() {
     daoWriteUsersLock.lock();
     try {
-      dao.createObjectList(ImmutableList.copyOf(users.values()), bucketName, TARGETED_USERS_OBJECT);
+      if (changedUsers.isEmpty()) {
+        return;
+      }
+
+      List<String> pubUserIds = new ArrayList<>(changedUsers);
+      TargetedUserLog.Builder delta = TargetedUserLog.newBuilder();
+      for (String pubUserId : pubUserIds) {
+        changedUsers.remove(pubUserId);
+        TargetedUser user = users.get(pubUserId);
+        if (user == null) {
+          delta.addDeletedPubUserId(pubUserId);
+        } else {
+          delta.addUpsert(user);
+        }
+      }
+
+      try {
+        dao.createObject(delta.build(), bucketName, String.format("%s%013d-%s-%06d",
+            TARGETED_USERS_DELTA_PREFIX, System.currentTimeMillis(), deltaSuffix,
+            deltaSequence.incrementAndGet()));
+      } catch (RuntimeException e) {
+        // Retry with the next flush
+        changedUsers.addAll(pubUserIds);
+        throw e;
+      }
+    } finally {
+      daoWriteUsersLock.unlock();
+    }
+  }
+
+  @Override
+  public void compactTargetedUsers() {
+    daoWriteUsersLock.lock();
+    try {
+      Map<String, TargetedUserLog> deltas = findDeltas();
+      if (deltas.isEmpty()) {
+        return;
+      }
+
+      StoredUsers storedUsers = new StoredUsers(deltas);
+      dao.createObjectList(storedUsers, bucketName, TARGETED_USERS_OBJECT);
+      dao.deleteObjects(deltas.keySet(), bucketName);
+      logger.info("Compacted {} targeted user deltas into {} users",
+          deltas.size(), storedUsers.lastCount);
     } finally {
       daoWriteUsersLock.unlock();
     }
@@ -170,6 +259,7 @@ public class RemarketingServiceImpl implements RemarketingService {
               .addAllGoogleGid(user.getGoogleGidList())
               .setPubUserId(user.getPubUserId())
               .build());
+          changedUsers.add(pubUserId);
         } else { // delete the user since they have no actions
           deleteTargetedUser(pubUserId);
         }
@@ -211,21 +301,90 @@ public class RemarketingServiceImpl implements RemarketingService {
 
   @Override
   public void updateTargetedUsers() {
-    Iterable<TargetedUser> storedUsers = dao.getObjectList(
-        TargetedUser.class, bucketName, TARGETED_USERS_OBJECT);
+    StoredUsers storedUsers = new StoredUsers(findDeltas());
 
-    if (storedUsers != null) {
-      indexWriteLock.lock();
-      try {
-        for (TargetedUser storedUser : storedUsers) {
-          TargetedUser indexUser = users.get(storedUser.getPubUserId());
-          indexUser(indexUser == null ? storedUser : mergeUsers(indexUser, storedUser));
+    indexWriteLock.lock();
+    try {
+      for (TargetedUser storedUser : storedUsers) {
+        TargetedUser indexUser = users.get(storedUser.getPubUserId());
+        if (indexUser == null) {
+          indexUser(storedUser);
+        } else {
+          TargetedUser mergedUser = mergeUsers(indexUser, storedUser);
+          indexUser(mergedUser);
+          if (!mergedUser.equals(storedUser)) {
+            changedUsers.add(mergedUser.getPubUserId());
+          }
         }
-      } finally {
-        indexWriteLock.unlock();
       }
-      storeTargetedUsers();
+    } finally {
+      indexWriteLock.unlock();
     }
+    flushTargetedUsers();
+  }
+
+  /**
+   * The full targeted users list with deltas replayed on top of it, read lazily. Only the users
+   * changed by the deltas are kept in memory; each iteration streams the full list again, so the
+   * users can be uploaded straight back to storage, even if the upload is retried.
+   */
+  private final class StoredUsers implements Iterable<TargetedUser> {
+    /** Last state of each user changed by the deltas, {@code null} if deleted. */
+    private final Map<String, TargetedUser> changes = new LinkedHashMap<>();
+    /** Number of users returned by the last complete iteration. */
+    volatile int lastCount;
+
+    StoredUsers(Map<String, TargetedUserLog> deltas) {
+      for (TargetedUserLog delta : deltas.values()) {
+        for (TargetedUser user : delta.getUpsertList()) {
+          changes.put(user.getPubUserId(), user);
+        }
+        for (String pubUserId : delta.getDeletedPubUserIdList()) {
+          changes.put(pubUserId, null);
+        }
+      }
+    }
+
+    @Override public Iterator<TargetedUser> iterator() {
+      final Iterator<TargetedUser> baseUsers = dao.getObjectIterator(
+          TargetedUser.class, bucketName, TARGETED_USERS_OBJECT);
+      final Set<String> pending = new HashSet<>(changes.keySet());
+      final Iterator<TargetedUser> addedUsers = Iterators.filter(
+          changes.values().iterator(), new Predicate<TargetedUser>() {
+            @Override public boolean apply(TargetedUser user) {
+              return user != null && pending.contains(user.getPubUserId());
+            }});
+
+      return new AbstractIterator<TargetedUser>() {
+        int count;
+
+        @Override protected TargetedUser computeNext() {
+          while (baseUsers.hasNext()) {
+            TargetedUser user = baseUsers.next();
+            if (!changes.containsKey(user.getPubUserId())) {
+              ++count;
+              return user;
+            } else if (pending.remove(user.getPubUserId())) {
+              TargetedUser changedUser = changes.get(user.getPubUserId());
+              if (changedUser != null) {
+                ++count;
+                return changedUser;
+              }
+            }
+          }
+          if (addedUsers.hasNext()) {
+            ++count;
+            return addedUsers.next();
+          }
+          lastCount = count;
+          return endOfData();
+        }
+      };
+    }
+  }
+
+  private Map<String, TargetedUserLog> findDeltas() {
+    return dao.findAllNamed(TargetedUserLog.class, TARGETED_USERS_DELTA_PREFIX, bucketName);
   }
 
   /**
@@ -248,9 +407,8 @@ public class RemarketingServiceImpl implements RemarketingService {
       @Override public void run() {
         indexWriteLock.lock();
         try {
-          for (TargetedUser user : dao.getObjectList(
-              TargetedUser.class, bucketName, TARGETED_USERS_OBJECT)) {
-            indexUser(user);
+          for (TargetedUser storedUser : new StoredUsers(findDeltas())) {
+            indexUser(storedUser);
           }
         } finally {
           indexWriteLock.unlock();
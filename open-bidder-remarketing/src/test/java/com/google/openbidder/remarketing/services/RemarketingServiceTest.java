@@ -27,11 +27,13 @@ import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.openbidder.cloudstorage.GoogleCloudStorage;
 import com.google.openbidder.cloudstorage.testing.FakeGoogleCloudStorage;
 import com.google.openbidder.remarketing.model.Remarketing.Action;
 import com.google.openbidder.remarketing.model.Remarketing.TargetedUser;
+import com.google.openbidder.remarketing.model.Remarketing.TargetedUserLog;
 import com.google.openbidder.remarketing.services.impl.RemarketingServiceImpl;
 import com.google.openbidder.storage.dao.CloudStorageDao;
 import com.google.openbidder.storage.dao.Dao;
@@ -468,6 +470,7 @@ public class RemarketingServiceTest {
 
     remarketingService.addTargetedUser(newUser);
     remarketingService.updateTargetedUsers();
+    remarketingService.compactTargetedUsers();
 
     assertEquals(user, remarketingService.getTargetedUser("pub123"));
     assertEquals(newUser, remarketingService.getTargetedUser("pub321"));
@@ -495,6 +498,7 @@ public class RemarketingServiceTest {
 
     remarketingService.addTargetedUser(newUser);
     remarketingService.updateTargetedUsers();
+    remarketingService.compactTargetedUsers();
 
     TargetedUser expectedMergedUser = TargetedUser.newBuilder()
         .setPubUserId("pub123")
@@ -507,4 +511,130 @@ public class RemarketingServiceTest {
     assertEquals(singleton(expectedMergedUser), ImmutableSet.copyOf(dao.getObjectList(
         TargetedUser.class, BUCKET_NAME, TARGETED_USERS_NAME)));
   }
+
+  @Test
+  public void updateTargetedUsers_notCompactor_deltasKept() {
+    TargetedUser userA = user("pubA", "001");
+    dao.createObjectList(singletonList(userA), BUCKET_NAME, TARGETED_USERS_NAME);
+    remarketingService = new RemarketingServiceImpl(dao, executorService, BUCKET_NAME);
+
+    // Another bidder's change, not compacted yet
+    RemarketingService otherService =
+        new RemarketingServiceImpl(dao, executorService, BUCKET_NAME);
+    otherService.addTargetedUser(user("pubB", "001"));
+    otherService.flushTargetedUsers();
+
+    remarketingService.addTargetedUser(user("pubC", "001"));
+    remarketingService.updateTargetedUsers();
+
+    assertEquals(user("pubB", "001"), remarketingService.getTargetedUser("pubB"));
+    assertEquals(singletonList(userA),
+        dao.getObjectList(TargetedUser.class, BUCKET_NAME, TARGETED_USERS_NAME));
+    Map<String, TargetedUserLog> deltas = dao.findAllNamed(
+        TargetedUserLog.class, TARGETED_USERS_NAME + "-delta-", BUCKET_NAME);
+    assertEquals(2, deltas.size());
+
+    RemarketingService reloadedService =
+        new RemarketingServiceImpl(dao, executorService, BUCKET_NAME);
+    assertEquals(user("pubB", "001"), reloadedService.getTargetedUser("pubB"));
+    assertEquals(user("pubC", "001"), reloadedService.getTargetedUser("pubC"));
+  }
+
+  @Test
+  public void flushTargetedUsers_changes_deltaStoredAndReplayed() {
+    TargetedUser userA = TargetedUser.newBuilder()
+        .setPubUserId("pub123")
+        .addGoogleGid("goog123")
+        .addAllActionId(asList("001", "002"))
+        .build();
+
+    TargetedUser userB = TargetedUser.newBuilder()
+        .setPubUserId("pub321")
+        .addGoogleGid("goog321")
+        .addActionId("001")
+        .build();
+
+    dao.createObjectList(singletonList(userA), BUCKET_NAME, TARGETED_USERS_NAME);
+    remarketingService = new RemarketingServiceImpl(dao, executorService, BUCKET_NAME);
+
+    remarketingService.addTargetedUser(userB);
+    remarketingService.deleteActionForUser("pub123", "002");
+    remarketingService.flushTargetedUsers();
+    remarketingService.flushTargetedUsers(); // nothing changed, no new delta
+
+    TargetedUser updatedUserA = userA.toBuilder().clearActionId().addActionId("001").build();
+    Map<String, TargetedUserLog> deltas = dao.findAllNamed(
+        TargetedUserLog.class, TARGETED_USERS_NAME + "-delta-", BUCKET_NAME);
+    assertEquals(1, deltas.size());
+    assertEquals(ImmutableSet.of(updatedUserA, userB),
+        ImmutableSet.copyOf(Iterables.getOnlyElement(deltas.values()).getUpsertList()));
+    assertEquals(singletonList(userA),
+        dao.getObjectList(TargetedUser.class, BUCKET_NAME, TARGETED_USERS_NAME));
+
+    remarketingService.deleteTargetedUser("pub321");
+    remarketingService.flushTargetedUsers();
+
+    RemarketingService reloadedService =
+        new RemarketingServiceImpl(dao, executorService, BUCKET_NAME);
+    assertEquals(updatedUserA, reloadedService.getTargetedUser("pub123"));
+    assertNull(reloadedService.getTargetedUser("pub321"));
+  }
+
+  @Test
+  public void compactTargetedUsers_deltas_foldedIntoTargetedUsers() {
+    TargetedUser userA = TargetedUser.newBuilder()
+        .setPubUserId("pub123")
+        .addGoogleGid("goog123")
+        .addActionId("001")
+        .build();
+
+    TargetedUser userB = TargetedUser.newBuilder()
+        .setPubUserId("pub321")
+        .addGoogleGid("goog321")
+        .addActionId("001")
+        .build();
+
+    remarketingService.addTargetedUser(userA);
+    remarketingService.flushTargetedUsers();
+    remarketingService.addTargetedUser(userB);
+    remarketingService.flushTargetedUsers();
+    remarketingService.deleteTargetedUser("pub123");
+    remarketingService.flushTargetedUsers();
+    remarketingService.compactTargetedUsers();
+
+    assertEquals(singletonList(userB),
+        dao.getObjectList(TargetedUser.class, BUCKET_NAME, TARGETED_USERS_NAME));
+    assertEquals(emptySet(), dao.findAllNamed(
+        TargetedUserLog.class, TARGETED_USERS_NAME + "-delta-", BUCKET_NAME).keySet());
+  }
+
+  @Test
+  public void compactTargetedUsers_storedUsers_deltasMergedInOrder() {
+    TargetedUser userA = user("pubA", "001");
+    TargetedUser userB = user("pubB", "001");
+    TargetedUser userC = user("pubC", "001");
+    dao.createObjectList(asList(userA, userB, userC), BUCKET_NAME, TARGETED_USERS_NAME);
+    remarketingService = new RemarketingServiceImpl(dao, executorService, BUCKET_NAME);
+
+    remarketingService.addTargetedUser(user("pubB", "002"));
+    remarketingService.deleteTargetedUser("pubC");
+    remarketingService.flushTargetedUsers();
+    remarketingService.addTargetedUser(user("pubD", "001"));
+    remarketingService.flushTargetedUsers();
+    remarketingService.compactTargetedUsers();
+
+    assertEquals(
+        asList(userA, user("pubB", "001", "002"), user("pubD", "001")),
+        dao.getObjectList(TargetedUser.class, BUCKET_NAME, TARGETED_USERS_NAME));
+    assertEquals(emptySet(), dao.findAllNamed(
+        TargetedUserLog.class, TARGETED_USERS_NAME + "-delta-", BUCKET_NAME).keySet());
+  }
+
+  private static TargetedUser user(String pubUserId, String... actionIds) {
+    return TargetedUser.newBuilder()
+        .setPubUserId(pubUserId)
+        .addGoogleGid("goog-" + pubUserId)
+        .addAllActionId(asList(actionIds))
+        .build();
+  }
 }
@@ -20,6 +20,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 
 import io.netty.channel.ChannelInitializer;
@@ -31,8 +32,13 @@ import io.netty.channel.socket.SocketChannel;
 @Parameters(separators = "=")
 public class RequesterModule extends AbstractModule {
 
+  @Parameter(names = "--replay_capture",
+      description = "Capture file or directory with bid requests to replay")
+  private String replayCapture = "";
+
   @Override
   protected void configure() {
+    bind(String.class).annotatedWith(ReplayCapture.class).toInstance(replayCapture);
     bind(new TypeLiteral<ChannelInitializer<SocketChannel>>() {})
         .to(RequesterChannelInitializer.class)
         .in(Scopes.SINGLETON);
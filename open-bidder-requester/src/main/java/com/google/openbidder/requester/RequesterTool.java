@@ -18,11 +18,13 @@ package com.google.openbidder.requester;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Module;
 import com.google.inject.Stage;
 import com.google.openbidder.client.ClientModule;
 import com.google.openbidder.flags.FlagsModuleBuilder;
 import com.google.openbidder.http.HttpModule;
+import com.google.openbidder.http.capture.CaptureReader;
 import com.google.openbidder.netty.client.NettyClient;
 import com.google.openbidder.netty.client.NettyClientModule;
 import com.google.openbidder.system.SystemModule;
@@ -33,6 +35,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.ConnectException;
 import java.util.Arrays;
 import java.util.List;
@@ -91,7 +95,12 @@ public class RequesterTool {
             responses / (now - start) * 1000.0d);
       }},
       1, 1, TimeUnit.SECONDS);
-    client.send(randomBidRequest());
+    String replayCapture = injector.getInstance(Key.get(String.class, ReplayCapture.class));
+    if (replayCapture.isEmpty()) {
+      client.send(randomBidRequest());
+    } else {
+      replay(client, new File(replayCapture));
+    }
     logger.info("Stopping");
     clientFactory.stopAsync().awaitTerminated();
   }
@@ -106,6 +115,16 @@ public class RequesterTool {
     );
   }
 
+  private static void replay(NettyClient<BidRequest> client, File capture) throws IOException {
+    logger.info("Replaying capture: {}", capture);
+    try (CaptureReader reader = new CaptureReader(capture)) {
+      for (BidRequest request = reader.next(BidRequest.PARSER); request != null;
+          request = reader.next(BidRequest.PARSER)) {
+        client.send(request);
+      }
+    }
+  }
+
   private BidRequest randomBidRequest() {
     return BidRequest.newBuilder()
         .setId(randomId())
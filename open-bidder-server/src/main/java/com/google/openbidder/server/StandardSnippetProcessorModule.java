@@ -6,6 +6,7 @@ import com.google.openbidder.api.snippet.StandardSnippetProcessor;
 import com.google.openbidder.config.bid.CallbackUrl;
 import com.google.openbidder.config.bid.ClickUrl;
 import com.google.openbidder.config.bid.ImpressionUrl;
+import com.google.openbidder.config.bid.SnippetTemplateCacheSize;
 import com.google.openrtb.snippet.SnippetProcessor;
 
 import javax.inject.Singleton;
@@ -25,7 +26,8 @@ public class StandardSnippetProcessorModule extends AbstractModule {
   public SnippetProcessor provideSnippetProcessor (
       @CallbackUrl String callbackUrl,
       @ImpressionUrl String impressionUrl,
-      @ClickUrl String clickUrl) {
-    return new StandardSnippetProcessor(callbackUrl, impressionUrl, clickUrl);
+      @ClickUrl String clickUrl,
+      @SnippetTemplateCacheSize Integer templateCacheSize) {
+    return new StandardSnippetProcessor(callbackUrl, impressionUrl, clickUrl, templateCacheSize);
   }
 }
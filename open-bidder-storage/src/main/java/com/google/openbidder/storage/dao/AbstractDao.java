@@ -18,6 +18,7 @@ package com.google.openbidder.storage.dao;
 
 import com.google.common.collect.Iterables;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -37,7 +38,7 @@ public abstract class AbstractDao<T> implements Dao<T> {
   }
 
   @Override
-  public void createObjectList(List<? extends T> objects, Iterable<String> path) {
+  public void createObjectList(Iterable<? extends T> objects, Iterable<String> path) {
     createObjectList(objects, Iterables.toArray(path, String.class));
   }
 
@@ -51,6 +52,11 @@ public abstract class AbstractDao<T> implements Dao<T> {
     return getObjectList(klass, Iterables.toArray(path, String.class));
   }
 
+  @Override
+  public <U extends T> Iterator<U> getObjectIterator(Class<U> klass, Iterable<String> path) {
+    return getObjectIterator(klass, Iterables.toArray(path, String.class));
+  }
+
   @Override
   public void updateObject(T updatedObject, Iterable<String> path) {
     updateObject(updatedObject, Iterables.toArray(path, String.class));
@@ -80,4 +86,10 @@ public abstract class AbstractDao<T> implements Dao<T> {
   public <U extends T> Iterable<U> findAll(Class<U> klass, String condition, Iterable<String> path) {
     return findAll(klass, condition, Iterables.toArray(path, String.class));
   }
+
+  @Override
+  public <U extends T> Map<String, U> findAllNamed(
+      Class<U> klass, String condition, Iterable<String> path) {
+    return findAllNamed(klass, condition, Iterables.toArray(path, String.class));
+  }
 }
@@ -18,20 +18,27 @@ package com.google.openbidder.storage.dao;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.client.http.AbstractHttpContent;
 import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.HttpContent;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpStatusCodes;
+import com.google.common.collect.ImmutableList;
+import com.google.openbidder.cloudstorage.BulkCloudStorage;
 import com.google.openbidder.cloudstorage.GoogleCloudStorage;
 import com.google.openbidder.cloudstorage.GoogleCloudStorageException;
 import com.google.openbidder.cloudstorage.StorageObject;
-import com.google.openbidder.cloudstorage.model.ListBucketResult;
 import com.google.openbidder.storage.utils.Converter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,20 +46,30 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 /**
- * A generalized DAO that handles communication with Cloud Storage.
+ * A generalized DAO that handles communication with Cloud Storage. Operations on multiple
+ * objects run concurrently through a {@link BulkCloudStorage}, and listings follow pagination.
+ * Object lists are streamed both ways, so they never need to fit in memory as a single buffer.
  */
 public class CloudStorageDao<T> extends AbstractDao<T> {
   private static final Logger logger = LoggerFactory.getLogger(CloudStorageDao.class);
 
+  private static final String CONTENT_TYPE = "binary/octet-stream";
+
   private static final String PATH_ONE_VALUE = "path should be: bucketName";
   private static final String PATH_TWO_VALUES = "path should be: bucketName, objectName";
 
   private final GoogleCloudStorage cloudStorage;
+  private final BulkCloudStorage bulk;
   private final Converter<T> converter;
 
   @Inject
   public CloudStorageDao(GoogleCloudStorage cloudStorage, Converter<T> converter) {
-    this.cloudStorage = checkNotNull(cloudStorage);
+    this(new BulkCloudStorage(cloudStorage), converter);
+  }
+
+  public CloudStorageDao(BulkCloudStorage bulk, Converter<T> converter) {
+    this.bulk = checkNotNull(bulk);
+    this.cloudStorage = bulk.getCloudStorage();
     this.converter = checkNotNull(converter);
   }
 
@@ -61,22 +78,22 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
     if (path.length == 2) {
       String bucketName = path[0];
       String objectName = path[1];
-      byte[] objectAsBytes = converter.serialize(object).array();
+      ByteBuffer objectAsBytes = converter.serialize(object);
 
-      storeObject(bucketName, objectName, ByteBuffer.wrap(objectAsBytes));
+      storeObject(bucketName, objectName, new ByteArrayContent(CONTENT_TYPE,
+          objectAsBytes.array(),
+          objectAsBytes.arrayOffset() + objectAsBytes.position(), objectAsBytes.remaining()));
     } else {
       throw new InvalidPathException(PATH_TWO_VALUES);
     }
   }
 
   @Override
-  public void createObjectList(List<? extends T> objects, String... path) {
+  public void createObjectList(Iterable<? extends T> objects, String... path) {
     if (path.length == 2) {
       String bucketName = path[0];
       String objectName = path[1];
-      byte[] objectAsBytes = converter.serializeList(objects).array();
-
-      storeObject(bucketName, objectName, ByteBuffer.wrap(objectAsBytes));
+      storeObject(bucketName, objectName, new ListContent<T>(converter, objects));
     } else {
       throw new InvalidPathException(PATH_TWO_VALUES);
     }
@@ -85,11 +102,14 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
   @Override
   public void createObjects(Map<String, ? extends T> objects, String... path) {
     if (path.length == 1) {
-      String bucketName = path[0];
-
-      for (Map.Entry<String, ? extends T> entry : objects.entrySet()) {
-        createObject(entry.getValue(), bucketName, entry.getKey());
-      }
+      final String bucketName = path[0];
+      final Map<String, ? extends T> values = objects;
+
+      bulk.execute(objects.keySet(), new BulkCloudStorage.ObjectFunction<Void>() {
+        @Override public @Nullable Void apply(String objectName) {
+          createObject(values.get(objectName), bucketName, objectName);
+          return null;
+        }}).checkSuccessful();
     } else {
       throw new InvalidPathException(PATH_ONE_VALUE);
     }
@@ -129,6 +149,23 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
     return new ArrayList<>();
   }
 
+  @Override
+  public <U extends T> Iterator<U> getObjectIterator(Class<U> klass, String... path) {
+    if (path.length == 2) {
+      String bucketName = path[0];
+      String objectName = path[1];
+      StorageObject storageObject = getStorageObject(bucketName, objectName);
+
+      if (storageObject != null) {
+        return converter.deserializeIterator(klass, storageObject.getInputStream());
+      }
+    } else {
+      throw new InvalidPathException(PATH_TWO_VALUES);
+    }
+
+    return ImmutableList.<U>of().iterator();
+  }
+
   @Override
   public void updateObject(T updatedObject, String... path) {
     if (path.length == 2) {
@@ -145,11 +182,14 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
   @Override
   public void updateObjects(Map<String, ? extends T> updatedObjects, String... path) {
     if (path.length == 1) {
-      String bucketName = path[0];
-
-      for (Map.Entry<String, ? extends T> entry : updatedObjects.entrySet()) {
-        updateObject(entry.getValue(), bucketName, entry.getKey());
-      }
+      final String bucketName = path[0];
+      final Map<String, ? extends T> values = updatedObjects;
+
+      bulk.execute(updatedObjects.keySet(), new BulkCloudStorage.ObjectFunction<Void>() {
+        @Override public @Nullable Void apply(String objectName) {
+          updateObject(values.get(objectName), bucketName, objectName);
+          return null;
+        }}).checkSuccessful();
     } else {
       throw new InvalidPathException(PATH_ONE_VALUE);
     }
@@ -174,11 +214,7 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
   @Override
   public void deleteObjects(Iterable<String> objectNames, String... path) {
     if (path.length == 1) {
-      String bucketName = path[0];
-
-      for (String objectName : objectNames) {
-        deleteObject(bucketName, objectName);
-      }
+      deleteObjects(path[0], objectNames);
     } else {
       throw new InvalidPathException(PATH_ONE_VALUE);
     }
@@ -190,10 +226,7 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
       String bucketName = path[0];
 
       try {
-        ListBucketResult bucketList = cloudStorage.listObjectsInBucket(bucketName, null);
-        for (ListBucketResult.Content content : bucketList.getContents()) {
-          deleteObject(bucketName, content.getKey());
-        }
+        deleteObjects(bucketName, bulk.listAllKeys(bucketName, null));
       } catch (HttpResponseException e) {
         throw new GoogleCloudStorageException(e);
       }
@@ -204,23 +237,57 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
 
   @Override
   public <U extends T> Iterable<U> findAll(Class<U> klass, String condition, String... path) {
-    List<U> objects = new ArrayList<>();
+    return new ArrayList<>(findAllNamed(klass, condition, path).values());
+  }
 
+  @Override
+  public <U extends T> Map<String, U> findAllNamed(
+      final Class<U> klass, String condition, String... path) {
     if (path.length == 1) {
       String bucketName = path[0];
 
       try {
-        ListBucketResult bucketList = cloudStorage.listObjectsInBucket(bucketName, condition);
-        for (ListBucketResult.Content content : bucketList.getContents()) {
-          objects.add(getObject(klass, bucketName, content.getKey()));
-        }
+        // Objects deleted between the listing and the read are skipped
+        return new LinkedHashMap<>(bulk.getObjects(
+            bucketName,
+            bulk.listAllKeys(bucketName, condition),
+            new BulkCloudStorage.ObjectReader<U>() {
+              @Override public U read(StorageObject object) {
+                return converter.deserialize(klass, object.getInputStream());
+              }})
+            .checkSuccessful().getResults());
       } catch (HttpResponseException e) {
         throw new GoogleCloudStorageException(e);
       }
     } else {
       throw new InvalidPathException(PATH_ONE_VALUE);
     }
-    return objects;
+  }
+
+  /**
+   * Deletes objects concurrently. Objects already gone are ignored, and other HTTP errors are
+   * logged, like {@link #deleteObject(String...)} does; any other failure is rethrown.
+   */
+  private void deleteObjects(String bucketName, Iterable<String> objectNames) {
+    BulkCloudStorage.Result<Boolean> result = bulk.removeObjects(bucketName, objectNames);
+    Map.Entry<String, Exception> unexpected = null;
+    for (Map.Entry<String, Exception> failure : result.getFailures().entrySet()) {
+      if (!(failure.getValue() instanceof HttpResponseException)) {
+        if (unexpected == null) {
+          unexpected = failure;
+        }
+      } else if (((HttpResponseException) failure.getValue()).getStatusCode()
+          == HttpStatusCodes.STATUS_CODE_NOT_FOUND) {
+        logger.info("Object {} already deleted from {}", failure.getKey(), bucketName);
+      } else {
+        logger.warn("Failed to delete object {} from {}: {}",
+            failure.getKey(), bucketName, failure.getValue().getMessage());
+      }
+    }
+    if (unexpected != null) {
+      throw new GoogleCloudStorageException(String.format("Failed to delete object %s from %s",
+          unexpected.getKey(), bucketName), unexpected.getValue());
+    }
   }
 
   private @Nullable StorageObject getStorageObject(String bucketName, String objectName) {
@@ -235,15 +302,42 @@ public class CloudStorageDao<T> extends AbstractDao<T> {
     return storageObject;
   }
 
-  private void storeObject(String bucketName, String objectName, ByteBuffer object) {
+  private void storeObject(String bucketName, String objectName, HttpContent content) {
     try {
       cloudStorage.putObject(
           bucketName,
           objectName,
-          new ByteArrayContent("binary/octet-stream", object.array()),
+          content,
            /* custom metadata */ null);
     } catch (HttpResponseException e) {
       throw new GoogleCloudStorageException(e);
     }
   }
+
+  /**
+   * Upload content that serializes a list of objects straight into the request body. The length
+   * is left unknown so the body is sent chunked instead of being serialized twice; the content
+   * can be written again if the request is retried, by iterating the objects again.
+   */
+  private static final class ListContent<T> extends AbstractHttpContent {
+    private final Converter<T> converter;
+    private final Iterable<? extends T> objects;
+
+    ListContent(Converter<T> converter, Iterable<? extends T> objects) {
+      super(CONTENT_TYPE);
+      this.converter = converter;
+      this.objects = objects;
+    }
+
+    @Override
+    public long getLength() {
+      return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      converter.serializeList(objects, out);
+      out.flush();
+    }
+  }
 }
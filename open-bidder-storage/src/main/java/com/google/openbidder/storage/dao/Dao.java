@@ -16,6 +16,7 @@
 
 package com.google.openbidder.storage.dao;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -53,16 +54,18 @@ public interface Dao<T> {
   /**
    * Create and stores the given objects together in the same path.
    *
-   * @param objects list of objects that will be places in the same path
+   * @param objects objects that will be placed in the same path. They are iterated while they
+   * are stored, and again if storing is retried, so a lazy iterable is never held in memory.
    */
-  void createObjectList(List<? extends T> objects, String... path);
+  void createObjectList(Iterable<? extends T> objects, String... path);
 
   /**
    * Create and stores the given objects together in the same path.
    *
-   * @param objects list of objects that will be places in the same path
+   * @param objects objects that will be placed in the same path. They are iterated while they
+   * are stored, and again if storing is retried, so a lazy iterable is never held in memory.
    */
-  void createObjectList(List<? extends T> objects, Iterable<String> path);
+  void createObjectList(Iterable<? extends T> objects, Iterable<String> path);
 
   /**
    * Lookup at an arbitrary object by a unique path.
@@ -85,6 +88,16 @@ public interface Dao<T> {
    */
   <U extends T> List<U> getObjectList(Class<U> klass, Iterable<String> path);
 
+  /**
+   * Lazily read a list of arbitrary objects in a path, one object at a time.
+   */
+  <U extends T> Iterator<U> getObjectIterator(Class<U> klass, String... path);
+
+  /**
+   * Lazily read a list of arbitrary objects in a path, one object at a time.
+   */
+  <U extends T> Iterator<U> getObjectIterator(Class<U> klass, Iterable<String> path);
+
   /**
    * Update an object in some path.
    */
@@ -144,4 +157,15 @@ public interface Dao<T> {
    * Find all the objects in a path that match a condition.
    */
   <U extends T> Iterable<U> findAll(Class<U> klass, String condition, Iterable<String> path);
+
+  /**
+   * Find all the objects in a path that match a condition, keyed and ordered by name.
+   */
+  <U extends T> Map<String, U> findAllNamed(Class<U> klass, String condition, String... path);
+
+  /**
+   * Find all the objects in a path that match a condition, keyed and ordered by name.
+   */
+  <U extends T> Map<String, U> findAllNamed(
+      Class<U> klass, String condition, Iterable<String> path);
 }
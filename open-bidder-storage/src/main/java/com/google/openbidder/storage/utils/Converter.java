@@ -16,8 +16,11 @@
 
 package com.google.openbidder.storage.utils;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -39,6 +42,12 @@ public interface Converter<T> {
    */
   <U extends T> List<U> deserializeList(Class<U> klass, InputStream in);
 
+  /**
+   * Lazily deserialize a stream of delimited objects. Objects are read one at a time as the
+   * iterator advances, and the stream is closed once it is exhausted or fails to parse.
+   */
+  <U extends T> Iterator<U> deserializeIterator(Class<U> klass, InputStream in);
+
   /**
    * Serialize an object.
    */
@@ -48,4 +57,9 @@ public interface Converter<T> {
    * Serialize a list of delimited objects.
    */
   ByteBuffer serializeList(List<? extends T> obj);
+
+  /**
+   * Serialize delimited objects directly into an output stream, without buffering them.
+   */
+  void serializeList(Iterable<? extends T> obj, OutputStream out) throws IOException;
 }
@@ -16,35 +16,41 @@
 
 package com.google.openbidder.storage.utils;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Method;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A converter utility that handles protocol buffer serialization and deserialization.
  * <p>
- * This converter works with any protobuf {@link MessageLite} that implements the methods:
- * <code>parseFrom(InputStream)</code>, <code>parseFrom(ByteBuffer)</code>,
- * and <code>parseDelimitedFrom(InputStream)</code>. Any protoc-generated message
- * ({@link com.google.protobuf.MessageLite}) will implement these methods.
+ * This converter works with any protoc-generated {@link MessageLite}: it looks up the
+ * message's {@link Parser} once per class, through <code>getDefaultInstance()</code>, and
+ * uses it directly afterwards. Delimited lists are read through a single
+ * {@link CodedInputStream}, so {@link #deserializeIterator(Class, InputStream)} can walk
+ * arbitrarily large lists without materializing them.
  */
 public class ProtobufConverter implements Converter<MessageLite> {
+  private static final ConcurrentMap<Class<?>, Parser<?>> parsers = new ConcurrentHashMap<>();
 
   @Override
   public <M extends MessageLite> M deserialize(Class<M> klass, InputStream in) {
     try {
-      Method method = klass.getMethod("parseFrom", InputStream.class);
-      @SuppressWarnings("unchecked")
-      M result = (M) method.invoke(null, in);
-      return result;
-    } catch (ReflectiveOperationException e) {
+      return parserFor(klass).parseFrom(in);
+    } catch (IOException e) {
       throw new IllegalStateException("Error parsing proto", e);
     }
   }
@@ -52,30 +58,24 @@ public class ProtobufConverter implements Converter<MessageLite> {
   @Override
   public <M extends MessageLite> M deserialize(Class<M> klass, ByteBuffer in) {
     try {
-      Method method = klass.getMethod("parseFrom", ByteString.class);
-      @SuppressWarnings("unchecked")
-      M result = (M) method.invoke(null, ByteString.copyFrom(in));
-      return result;
-    } catch (ReflectiveOperationException e) {
+      Parser<M> parser = parserFor(klass);
+      return in.hasArray()
+          ? parser.parseFrom(in.array(), in.arrayOffset() + in.position(), in.remaining())
+          : parser.parseFrom(ByteString.copyFrom(in));
+    } catch (IOException e) {
       throw new IllegalStateException("Error parsing proto", e);
     }
   }
 
   @Override
   public <M extends MessageLite> List<M> deserializeList(Class<M> klass, InputStream in) {
-    try {
-      List<M> result = new ArrayList<>();
-      Method method = klass.getMethod("parseDelimitedFrom", InputStream.class);
-      Object obj;
-      while ((obj = method.invoke(null, in)) != null) {
-        @SuppressWarnings("unchecked")
-        M entry = (M) obj;
-        result.add(entry);
-      }
-      return result;
-    } catch (ReflectiveOperationException e) {
-      throw new IllegalStateException("Error parsing delimited proto", e);
-    }
+    return Lists.newArrayList(deserializeIterator(klass, in));
+  }
+
+  @Override
+  public <M extends MessageLite> Iterator<M> deserializeIterator(
+      Class<M> klass, InputStream in) {
+    return new DelimitedIterator<>(parserFor(klass), in);
   }
 
   @Override
@@ -85,16 +85,85 @@ public class ProtobufConverter implements Converter<MessageLite> {
 
   @Override
   public ByteBuffer serializeList(List<? extends MessageLite> objects) {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int size = 0;
+    for (MessageLite msg : objects) {
+      int msgSize = msg.getSerializedSize();
+      size += CodedOutputStream.computeRawVarint32Size(msgSize) + msgSize;
+    }
 
+    byte[] bytes = new byte[size];
     try {
-      for (MessageLite msg : objects) {
-        msg.writeDelimitedTo(out);
-      }
+      writeDelimited(objects, CodedOutputStream.newInstance(bytes));
     } catch (IOException e) {
       throw new IllegalStateException("Error writing delimited proto", e);
     }
+    return ByteBuffer.wrap(bytes);
+  }
+
+  @Override
+  public void serializeList(Iterable<? extends MessageLite> objects, OutputStream out)
+      throws IOException {
+    CodedOutputStream coded = CodedOutputStream.newInstance(out);
+    writeDelimited(objects, coded);
+    coded.flush();
+  }
+
+  private static void writeDelimited(
+      Iterable<? extends MessageLite> objects, CodedOutputStream coded) throws IOException {
+    for (MessageLite msg : objects) {
+      coded.writeRawVarint32(msg.getSerializedSize());
+      msg.writeTo(coded);
+    }
+  }
 
-    return ByteBuffer.wrap(out.toByteArray());
+  private static <M extends MessageLite> Parser<M> parserFor(Class<M> klass) {
+    Parser<?> parser = parsers.get(klass);
+    if (parser == null) {
+      try {
+        MessageLite prototype = (MessageLite) klass.getMethod("getDefaultInstance").invoke(null);
+        parser = prototype.getParserForType();
+      } catch (ReflectiveOperationException | ClassCastException e) {
+        throw new IllegalStateException("Not a generated proto: " + klass.getName(), e);
+      }
+      parsers.putIfAbsent(klass, parser);
+    }
+    @SuppressWarnings("unchecked")
+    Parser<M> typedParser = (Parser<M>) parser;
+    return typedParser;
+  }
+
+  /**
+   * Reads length-delimited messages, as written by {@link MessageLite#writeDelimitedTo},
+   * one at a time from a shared {@link CodedInputStream}.
+   */
+  private static final class DelimitedIterator<M> extends AbstractIterator<M> {
+    private final Parser<M> parser;
+    private final InputStream in;
+    private final CodedInputStream coded;
+
+    DelimitedIterator(Parser<M> parser, InputStream in) {
+      this.parser = parser;
+      this.in = in;
+      this.coded = CodedInputStream.newInstance(in);
+    }
+
+    @Override
+    protected M computeNext() {
+      try {
+        if (coded.isAtEnd()) {
+          in.close();
+          return endOfData();
+        }
+        // The size limit protects against a single corrupt message, not the whole stream.
+        coded.resetSizeCounter();
+        int oldLimit = coded.pushLimit(coded.readRawVarint32());
+        M message = parser.parseFrom(coded);
+        coded.popLimit(oldLimit);
+        return message;
+      } catch (IOException e) {
+        Closeables.closeQuietly(in);
+        throw new IllegalStateException("Error parsing delimited proto", e);
+      }
+    }
   }
-}
\ No newline at end of file
+}
@@ -17,6 +17,7 @@
 package com.google.openbidder.storage.dao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -96,6 +97,30 @@ public class DaoTest {
         entries, dao.getObjectList(StorageTestModel.FirstMessage.class, "fake-bucket", "ob2"));
   }
 
+  @Test
+  public void getObjectIterator_objectList_objectsStreamed() {
+    StorageTestModel.FirstMessage entryA = StorageTestModel.FirstMessage.newBuilder()
+        .setFirstField("first field")
+        .addSecondField("some data")
+        .setThirdField(true)
+        .build();
+
+    StorageTestModel.FirstMessage entryB = StorageTestModel.FirstMessage.newBuilder()
+        .setFirstField("some other field")
+        .addSecondField("some other data")
+        .setThirdField(false)
+        .build();
+
+    List<StorageTestModel.FirstMessage> entries = ImmutableList.of(entryA, entryB);
+
+    dao.createObjectList(entries, "fake-bucket", "ob");
+
+    assertEquals(entries, ImmutableList.copyOf(
+        dao.getObjectIterator(StorageTestModel.FirstMessage.class, "fake-bucket", "ob")));
+    assertFalse(
+        dao.getObjectIterator(StorageTestModel.FirstMessage.class, "fake-bucket", "ob1").hasNext());
+  }
+
   @Test
   public void createObjects_objects_objectsStored() {
     StorageTestModel.FirstMessage entryA = StorageTestModel.FirstMessage.newBuilder()
@@ -18,6 +18,7 @@ package com.google.openbidder.storage.utils;
 
 import static org.junit.Assert.assertEquals;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.openbidder.storage.model.StorageTestModel;
 
@@ -25,8 +26,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -81,4 +86,35 @@ public class ConverterTest {
 
     assertEquals(entries, deserializedList);
   }
+
+  @Test
+  public void serializeDeserializeIterator_protobuf_sameValue() throws IOException {
+    List<StorageTestModel.FirstMessage> entries = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      entries.add(StorageTestModel.FirstMessage.newBuilder()
+          .setFirstField("field " + i)
+          .addSecondField(Strings.repeat("x", i))
+          .setThirdField(i % 2 == 0)
+          .build());
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    converter.serializeList(entries, out);
+    byte[] streamed = out.toByteArray();
+    assertEquals(converter.serializeList(entries), ByteBuffer.wrap(streamed));
+
+    Iterator<StorageTestModel.FirstMessage> deserialized = converter.deserializeIterator(
+        StorageTestModel.FirstMessage.class, new ByteArrayInputStream(streamed));
+    assertEquals(entries, ImmutableList.copyOf(deserialized));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void deserializeIterator_truncated_fails() {
+    ByteBuffer serialized = converter.serializeList(ImmutableList.of(
+        StorageTestModel.FirstMessage.newBuilder().setFirstField("first field").build()));
+    InputStream inputStream = new ByteArrayInputStream(
+        serialized.array(), 0, serialized.remaining() - 1);
+
+    converter.deserializeIterator(StorageTestModel.FirstMessage.class, inputStream).next();
+  }
 }
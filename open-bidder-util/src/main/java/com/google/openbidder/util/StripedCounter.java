@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter for heavily concurrent updates. Additions are spread over several cells, each
+ * in its own cache line, picked by the updating thread; so concurrent threads rarely contend
+ * for the same cell. Reading the total is slower, since it adds up all cells.
+ * This is a simpler take on Java 8's {@code LongAdder}, with a fixed number of cells.
+ */
+public final class StripedCounter {
+  /** Cells are spaced one 64-byte cache line apart, to avoid false sharing. */
+  private static final int SPACING = 8;
+  private static final int DEFAULT_STRIPES = Runtime.getRuntime().availableProcessors();
+
+  private final AtomicLongArray cells;
+  private final int mask;
+
+  public StripedCounter() {
+    this(DEFAULT_STRIPES);
+  }
+
+  /**
+   * @param stripes Number of cells, rounded up to a power of two
+   */
+  public StripedCounter(int stripes) {
+    checkArgument(stripes > 0, "stripes must be positive: %s", stripes);
+    int cellCount = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    this.cells = new AtomicLongArray(cellCount * SPACING);
+    this.mask = cellCount - 1;
+  }
+
+  public void add(long x) {
+    cells.addAndGet(cellIndex(), x);
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  /**
+   * @return Current total. Not an atomic snapshot: concurrent additions may or may not
+   * be included
+   */
+  public long sum() {
+    long sum = 0;
+    for (int i = 0; i < cells.length(); i += SPACING) {
+      sum += cells.get(i);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the current total and resets the counter. Each concurrent addition is
+   * included either in the returned total or in the next one, never lost or counted twice.
+   */
+  public long sumThenReset() {
+    long sum = 0;
+    for (int i = 0; i < cells.length(); i += SPACING) {
+      sum += cells.getAndSet(i, 0);
+    }
+    return sum;
+  }
+
+  private int cellIndex() {
+    int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+    return ((h ^ (h >>> 16)) & mask) * SPACING;
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(sum());
+  }
+}
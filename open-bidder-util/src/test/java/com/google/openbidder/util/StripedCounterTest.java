@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link StripedCounter}.
+ */
+public class StripedCounterTest {
+
+  @Test
+  public void testSingleThread() {
+    StripedCounter counter = new StripedCounter(3);
+    counter.add(5);
+    counter.increment();
+    assertEquals(6, counter.sum());
+    assertEquals(6, counter.sumThenReset());
+    assertEquals(0, counter.sum());
+    assertEquals("0", counter.toString());
+  }
+
+  @Test
+  public void testConcurrent() throws InterruptedException {
+    final StripedCounter counter = new StripedCounter();
+    final int perThread = 100000;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; ++i) {
+      threads.add(new Thread() {
+        @Override public void run() {
+          for (int j = 0; j < perThread; ++j) {
+            counter.increment();
+          }
+        }});
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    long drained = 0;
+    for (Thread thread : threads) {
+      drained += counter.sumThenReset();
+      thread.join();
+    }
+    assertEquals(8L * perThread, drained + counter.sum());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoStripes() {
+    new StripedCounter(0);
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A thread-safe count-min sketch: estimates the frequency of keys in constant space, never
+ * underestimating. Counts can be halved periodically so estimates follow recent traffic.
+ */
+final class CountMinSketch {
+  private final int depth;
+  private final int mask;
+  private final AtomicIntegerArray counters;
+
+  /**
+   * @param depth Number of hash rows; more rows make overestimates less likely
+   * @param width Counters per row, rounded up to a power of two; more counters make
+   * overestimates smaller
+   */
+  CountMinSketch(int depth, int width) {
+    checkArgument(depth > 0 && width > 0 && width <= (1 << 30),
+        "Bad depth (%s) or width (%s)", depth, width);
+    this.depth = depth;
+    this.mask = (width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1) - 1;
+    this.counters = new AtomicIntegerArray(depth * (mask + 1));
+  }
+
+  /**
+   * Counts one occurrence of a key.
+   *
+   * @return Updated frequency estimate for the key
+   */
+  int add(Object key) {
+    int hash = key.hashCode();
+    int min = Integer.MAX_VALUE;
+    for (int row = 0; row < depth; ++row) {
+      min = Math.min(min, counters.incrementAndGet(index(hash, row)));
+    }
+    return min;
+  }
+
+  /**
+   * Returns the frequency estimate for a key.
+   */
+  int estimate(Object key) {
+    int hash = key.hashCode();
+    int min = Integer.MAX_VALUE;
+    for (int row = 0; row < depth; ++row) {
+      min = Math.min(min, counters.get(index(hash, row)));
+    }
+    return min;
+  }
+
+  /**
+   * Halves all counts, so older occurrences weigh less than recent ones.
+   */
+  void decay() {
+    for (int i = 0; i < counters.length(); ++i) {
+      int count;
+      do {
+        count = counters.get(i);
+      } while (count != 0 && !counters.compareAndSet(i, count, count >>> 1));
+    }
+  }
+
+  private int index(int hash, int row) {
+    // Murmur3 finalizer, seeded per row
+    int h = hash + row * 0x9E3779B9;
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    h *= 0xC2B2AE35;
+    h ^= h >>> 16;
+    return row * (mask + 1) + (h & mask);
+  }
+}
@@ -19,6 +19,7 @@ package com.google.openbidder.weather;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Function;
+import com.google.common.collect.Ordering;
 import com.google.openbidder.weather.model.Weather.WeatherBiddingRule;
 import com.google.openbidder.weather.model.Weather.WeatherConditions;
 import com.google.openbidder.weather.model.Weather.WeatherRules;
@@ -33,60 +34,90 @@ import javax.annotation.Nullable;
 /**
  * A function that uses a set of weather targeting rules (possibly overlapping)
  * to make a bidding decision for a specific weather condition.
+ * <p>
+ * The rules are compiled to primitive arrays, sorted by multiplier descending, with missing
+ * bounds replaced by sentinels that always match. Evaluation is then a scan of a few arrays
+ * that stops at the first matching rule, without any protobuf access.
  */
 public class WeatherBiddingFunction implements Function<WeatherConditions, Double> {
   private static final Logger logger = LoggerFactory.getLogger(WeatherBiddingFunction.class);
+  private static final Ordering<WeatherBiddingRule> BY_MULTIPLIER_DESC =
+      new Ordering<WeatherBiddingRule>() {
+        @Override public int compare(WeatherBiddingRule left, WeatherBiddingRule right) {
+          return Double.compare(right.getMultiplier(), left.getMultiplier());
+        }};
   private final WeatherRules rules;
+  private final WeatherBiddingRule[] sortedRules;
+  /** Per rule: minTemp, maxTemp, minWind, maxWind. */
+  private final int[] intBounds;
+  /** Per rule: minHumidity, maxHumidity. */
+  private final double[] humidityBounds;
+  private final double[] multipliers;
 
   public WeatherBiddingFunction(WeatherRules rules) {
     this.rules = checkNotNull(rules);
+    // Stable sort: among rules with the same multiplier, the first one still wins
+    this.sortedRules = BY_MULTIPLIER_DESC.sortedCopy(rules.getRulesList())
+        .toArray(new WeatherBiddingRule[rules.getRulesCount()]);
+    this.intBounds = new int[sortedRules.length * 4];
+    this.humidityBounds = new double[sortedRules.length * 2];
+    this.multipliers = new double[sortedRules.length];
+
+    for (int i = 0; i < sortedRules.length; ++i) {
+      WeatherTarget target = sortedRules[i].getTarget();
+      intBounds[i * 4] = target.hasMinTemp() ? target.getMinTemp() : Integer.MIN_VALUE;
+      intBounds[i * 4 + 1] = target.hasMaxTemp() ? target.getMaxTemp() : Integer.MAX_VALUE;
+      intBounds[i * 4 + 2] = target.hasMinWind() ? target.getMinWind() : Integer.MIN_VALUE;
+      intBounds[i * 4 + 3] = target.hasMaxWind() ? target.getMaxWind() : Integer.MAX_VALUE;
+      humidityBounds[i * 2] = target.hasMinHumidity()
+          ? target.getMinHumidity()
+          : Double.NEGATIVE_INFINITY;
+      humidityBounds[i * 2 + 1] = target.hasMaxHumidity()
+          ? target.getMaxHumidity()
+          : Double.POSITIVE_INFINITY;
+      multipliers[i] = sortedRules[i].getMultiplier();
+    }
+  }
+
+  public WeatherRules getRules() {
+    return rules;
   }
 
   @Override
   @Nullable
   public Double apply(WeatherConditions conditions) {
-    // Rules don't have to be all mutually exclusive; it's possible that more than one rule
-    // matches the current weather conditions. If this happen, we will select the highest bid.
-
-    WeatherBiddingRule bestRule = null;
-
-    for (WeatherBiddingRule rule : rules.getRulesList()) {
-      if (apply(rule.getTarget(), conditions)
-          && (bestRule == null || bestRule.getMultiplier() < rule.getMultiplier())) {
-        bestRule = rule;
-      }
-    }
-
-    if (logger.isDebugEnabled()) {
-      logger.debug("Weather conditions: {}", TextFormat.shortDebugString(conditions));
-      if (bestRule != null) {
-        logger.debug("Matching rule: {}", TextFormat.shortDebugString(bestRule));
-      }
-    }
-
-    return bestRule == null ? null : bestRule.getMultiplier();
+    int rule = match(
+        conditions.getTempFahrenheit(), conditions.getWindMph(), conditions.getHumidityPercent());
+    return rule == -1 ? null : multipliers[rule];
   }
 
-  private static boolean apply(WeatherTarget target, WeatherConditions cond) {
-    boolean ret =
-           (!target.hasMinTemp()     || target.getMinTemp()     <= cond.getTempFahrenheit())
-        && (!target.hasMaxTemp()     || target.getMaxTemp()     >= cond.getTempFahrenheit())
-        && (!target.hasMinWind()     || target.getMinWind()     <= cond.getWindMph())
-        && (!target.hasMaxWind()     || target.getMaxWind()     >= cond.getWindMph())
-        && (!target.hasMinHumidity() || target.getMinHumidity() <= cond.getHumidityPercent())
-        && (!target.hasMaxHumidity() || target.getMaxHumidity() >= cond.getHumidityPercent());
+  /**
+   * Returns the bid multiplier for some weather conditions, or {@code noMatch} if no rule
+   * matches them. Rules don't have to be all mutually exclusive; if more than one rule
+   * matches, the highest multiplier wins.
+   */
+  public double apply(int tempFahrenheit, int windMph, double humidityPercent, double noMatch) {
+    int rule = match(tempFahrenheit, windMph, humidityPercent);
+    return rule == -1 ? noMatch : multipliers[rule];
+  }
 
-    if (ret && logger.isDebugEnabled()) {
-      logger.debug(
-          "Condition: (T={}, W={}, H={}) passes rule: (T=[{}, {}], W=[{}, {}], H=[{}, {}])",
-          cond.getTempFahrenheit(), cond.getWindMph(), cond.getHumidityPercent(),
-          target.getMinTemp(), target.getMaxTemp(),
-          target.getMinWind(), target.getMaxWind(),
-          target.getMinHumidity(), target.getMaxHumidity()
-      );
+  private int match(int temp, int wind, double humidity) {
+    final int[] intBounds = this.intBounds;
+    final double[] humidityBounds = this.humidityBounds;
+
+    for (int i = 0, j = 0, k = 0; i < multipliers.length; ++i, j += 4, k += 2) {
+      if (intBounds[j] <= temp && temp <= intBounds[j + 1]
+          && intBounds[j + 2] <= wind && wind <= intBounds[j + 3]
+          && humidityBounds[k] <= humidity && humidity <= humidityBounds[k + 1]) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Condition: (T={}, W={}, H={}) passes rule: {}",
+              temp, wind, humidity, TextFormat.shortDebugString(sortedRules[i]));
+        }
+        return i;
+      }
     }
 
-    return ret;
+    return -1;
   }
 
   @Override
@@ -16,8 +16,14 @@
 
 package com.google.openbidder.weather;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.api.client.http.ByteArrayContent;
 import com.google.api.client.http.HttpResponseException;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.openbidder.cloudstorage.BulkCloudStorage;
 import com.google.openbidder.cloudstorage.GoogleCloudStorage;
 import com.google.openbidder.cloudstorage.StorageObject;
 import com.google.openbidder.cloudstorage.model.ListBucketResult;
@@ -27,22 +33,48 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Stores Weather rules in Google Cloud Storage.  The storage scheme is simple: a single
  * bucket is used; it has one object per {@link WeatherRules}, where the object name is based
  * on the rules' ownerId and the value is its protobuf serialized form.
+ * <p>
+ * {@link #listRules()} is incremental: objects whose version (ETag, or last-modified time and
+ * size) didn't change since the previous call are not fetched again, and the others are
+ * fetched in parallel. If the listing or some fetch fails, the last good rules are kept.
  */
 public final class WeatherDaoCloudStorage implements WeatherDao {
   private static final Logger logger = LoggerFactory.getLogger(WeatherDaoCloudStorage.class);
   private final GoogleCloudStorage cloudStorage;
+  private final BulkCloudStorage bulk;
   private final String storageBucket;
+  private final ExecutorService fetchExecutor;
+  private ImmutableMap<String, VersionedRules> loaded = ImmutableMap.of();
 
   public WeatherDaoCloudStorage(GoogleCloudStorage cloudStorage, String storageBucket) {
+    this(cloudStorage, storageBucket, MoreExecutors.newDirectExecutorService());
+  }
+
+  /**
+   * @param fetchExecutor Executor for fetching changed objects; its size bounds the number of
+   * concurrent requests to Cloud Storage
+   */
+  public WeatherDaoCloudStorage(
+      GoogleCloudStorage cloudStorage, String storageBucket, ExecutorService fetchExecutor) {
     this.cloudStorage = cloudStorage;
+    this.bulk = new BulkCloudStorage(cloudStorage);
     this.storageBucket = storageBucket;
+    this.fetchExecutor = checkNotNull(fetchExecutor);
   }
 
   @Override
@@ -65,17 +97,82 @@ public final class WeatherDaoCloudStorage implements WeatherDao {
   }
 
   @Override
-  public List<WeatherRules> listRules() {
-    List<WeatherRules> rules = new ArrayList<>();
+  public synchronized List<WeatherRules> listRules() {
+    List<ListBucketResult.Content> items;
     try {
-      ListBucketResult items = cloudStorage.listObjectsInBucket(storageBucket, null);
-      for (ListBucketResult.Content item : items.getContents()) {
-        StorageObject rule = cloudStorage.getObject(storageBucket, item.getKey(), null);
-        rules.add(WeatherRules.parseFrom(rule.getInputStream()));
-      }
+      items = bulk.listAll(storageBucket, null);
     } catch (IOException e) {
-      logger.error("Failed to read weather rules", e);
+      logger.error("Failed to list weather rules, keeping {} previously loaded: {}",
+          loaded.size(), e.toString());
+      return rulesOf(loaded.values());
+    }
+
+    Map<String, Future<VersionedRules>> pending = new LinkedHashMap<>();
+    int fetched = 0;
+    for (ListBucketResult.Content item : items) {
+      final String key = item.getKey();
+      final String version = version(item);
+      VersionedRules previous = loaded.get(key);
+
+      if (previous != null && previous.version.equals(version)) {
+        pending.put(key, Futures.immediateFuture(previous));
+      } else {
+        ++fetched;
+        pending.put(key, fetchExecutor.submit(new Callable<VersionedRules>() {
+          @Override public VersionedRules call() throws IOException {
+            StorageObject rule = cloudStorage.getObject(storageBucket, key, null);
+            try (InputStream is = rule.getInputStream()) {
+              return new VersionedRules(version, WeatherRules.parseFrom(is));
+            }
+          }}));
+      }
+    }
+
+    ImmutableMap.Builder<String, VersionedRules> current = ImmutableMap.builder();
+    for (Map.Entry<String, Future<VersionedRules>> entry : pending.entrySet()) {
+      try {
+        current.put(entry.getKey(), entry.getValue().get());
+      } catch (ExecutionException | InterruptedException e) {
+        if (e instanceof InterruptedException) {
+          Thread.currentThread().interrupt();
+        }
+        logger.error("Failed to read weather rules {}: {}", entry.getKey(), e.toString());
+        VersionedRules previous = loaded.get(entry.getKey());
+        if (previous != null) {
+          current.put(entry.getKey(), previous);
+        }
+      }
+    }
+    ImmutableMap<String, VersionedRules> newLoaded = current.build();
+
+    if (fetched != 0 || newLoaded.size() != loaded.size()) {
+      logger.info("Weather rules: {} objects, {} fetched", newLoaded.size(), fetched);
+    }
+    loaded = newLoaded;
+    return rulesOf(newLoaded.values());
+  }
+
+  private static String version(ListBucketResult.Content item) {
+    return item.getETag() != null
+        ? item.getETag()
+        : item.getLastModified().getMillis() + "/" + item.getSize();
+  }
+
+  private static List<WeatherRules> rulesOf(Collection<VersionedRules> values) {
+    List<WeatherRules> rules = new ArrayList<>(values.size());
+    for (VersionedRules value : values) {
+      rules.add(value.rules);
     }
     return rules;
   }
+
+  private static final class VersionedRules {
+    final String version;
+    final WeatherRules rules;
+
+    VersionedRules(String version, WeatherRules rules) {
+      this.version = version;
+      this.rules = rules;
+    }
+  }
 }
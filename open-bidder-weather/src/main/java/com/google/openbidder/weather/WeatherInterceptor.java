@@ -31,34 +31,64 @@ import com.google.protobuf.TextFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 /**
  * An interceptor that prices bids based on the weather conditions at the target location.
  * This can be useful for services that depend on weather, such as an amusement park.
+ * The rules can be reloaded while serving with {@link #reloadRules()}.
  */
+@Singleton
 public class WeatherInterceptor implements BidInterceptor {
   private static final Logger logger = LoggerFactory.getLogger(WeatherInterceptor.class);
-  private ImmutableMap<String, WeatherBiddingFunction> weatherFunctions;
+  private static final double NO_MATCH_MULTIPLIER = 0.2;
+  private volatile ImmutableMap<String, WeatherBiddingFunction> weatherFunctions =
+      ImmutableMap.of();
   private final WeatherDao weatherDao;
   private final WeatherService weatherService;
+  private final @Nullable WeatherPrefetcher prefetcher;
+  private final @Nullable WeatherServiceCache cache;
 
-  @Inject
   public WeatherInterceptor(WeatherDao weatherDao, WeatherService weatherService) {
+    this(weatherDao, weatherService, null);
+  }
+
+  @Inject
+  public WeatherInterceptor(
+      WeatherDao weatherDao,
+      WeatherService weatherService,
+      @Nullable WeatherPrefetcher prefetcher) {
     this.weatherDao = weatherDao;
     this.weatherService = weatherService;
+    this.prefetcher = prefetcher;
+    this.cache = weatherService instanceof WeatherServiceCache
+        ? (WeatherServiceCache) weatherService
+        : null;
   }
 
   @PostConstruct
   public void postConstruct() {
+    reloadRules();
+    logger.info("Initialized with {} rules", weatherFunctions.size());
+  }
+
+  /**
+   * Loads all rules from the DAO, and atomically replaces the current ones. Rules that didn't
+   * change keep their compiled {@link WeatherBiddingFunction}.
+   */
+  public synchronized void reloadRules() {
+    ImmutableMap<String, WeatherBiddingFunction> previous = weatherFunctions;
     ImmutableMap.Builder<String, WeatherBiddingFunction> map = ImmutableMap.builder();
     for (WeatherRules rules : weatherDao.listRules()) {
-      map.put(rules.getOwnerId(), new WeatherBiddingFunction(rules));
+      WeatherBiddingFunction function = previous.get(rules.getOwnerId());
+      map.put(rules.getOwnerId(), function != null && function.getRules().equals(rules)
+          ? function
+          : new WeatherBiddingFunction(rules));
     }
     weatherFunctions = map.build();
-
-    logger.info("Initialized with {} rules", weatherFunctions.size());
   }
 
   @Override
@@ -67,9 +97,26 @@ public class WeatherInterceptor implements BidInterceptor {
     chain.proceed();
 
     Geo geo = chain.request().openRtb().getDevice().getGeo();
-    final WeatherConditions cond = geo.hasCity() && geo.hasCountry()
-        ? weatherService.getWeatherConditions(geo.getCity() + ',' + geo.getCountry())
-        : null;
+    final WeatherConditions cond;
+    if (geo.hasCity() && geo.hasCountry()) {
+      String location = geo.getCity() + ',' + geo.getCountry();
+      // Normalize once, for both the prefetcher and the cache
+      String key = cache == null ? location : cache.normalize(location);
+      if (prefetcher != null) {
+        prefetcher.record(key);
+      }
+      cond = cache == null
+          ? weatherService.getWeatherConditions(key)
+          : cache.getNormalizedConditions(key);
+    } else {
+      cond = null;
+    }
+
+    final ImmutableMap<String, WeatherBiddingFunction> weatherFunctions = this.weatherFunctions;
+    // Read the conditions once, not for every bid
+    final int temp = cond == null ? 0 : cond.getTempFahrenheit();
+    final int wind = cond == null ? 0 : cond.getWindMph();
+    final double humidity = cond == null ? 0 : cond.getHumidityPercent();
 
     chain.response().updateBids(new Function<Bid.Builder, Boolean>() {
       @Override public Boolean apply(Bid.Builder bid) {
@@ -77,9 +124,10 @@ public class WeatherInterceptor implements BidInterceptor {
         WeatherBiddingFunction function = bid.hasCid() ? weatherFunctions.get(bid.getCid()) : null;
 
         if (function != null) {
-          Double multiplier = cond == null ? null : function.apply(cond);
           // No weather data or applicable rules for this location? Make the bid very cheap
-          multiplier = multiplier == null ? 0.2 : multiplier;
+          double multiplier = cond == null
+              ? NO_MATCH_MULTIPLIER
+              : function.apply(temp, wind, humidity, NO_MATCH_MULTIPLIER);
           double updatedPrice = multiplier * bid.getPrice();
 
           if (logger.isDebugEnabled()) {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.RateLimiter;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps weather data for the most frequent locations fresh, so lookups from the bid path
+ * don't miss or wait for a refresh.
+ * <p>
+ * {@link #record(String)} counts each requested location in a {@link CountMinSketch}; locations
+ * whose estimate reaches the last top-K threshold become candidates. Each iteration ranks the
+ * candidates, keeps the top K, and refreshes those whose data will be due for refresh within
+ * the horizon, at a limited request rate. Counts are halved every iteration, so the ranking
+ * follows recent traffic.
+ */
+public class WeatherPrefetcher extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(WeatherPrefetcher.class);
+  private final WeatherServiceCache cache;
+  private final Scheduler scheduler;
+  private final int topK;
+  private final long horizonMs;
+  private final RateLimiter rateLimiter;
+  private final CountMinSketch sketch;
+  private final Set<String> candidates =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final int maxCandidates;
+  private final Meter prefetches;
+  private volatile int threshold = 1;
+  private volatile ImmutableList<String> topLocations = ImmutableList.of();
+
+  /**
+   * @param topK Number of locations to keep fresh
+   * @param horizonMs Refresh data that will be due for refresh within this time; should be
+   * longer than the scheduler's period
+   * @param requestsPerSecond Maximum rate of refreshes
+   */
+  public WeatherPrefetcher(
+      WeatherServiceCache cache,
+      Scheduler scheduler,
+      MetricRegistry metricRegistry,
+      int topK,
+      long horizonMs,
+      double requestsPerSecond) {
+    checkArgument(topK > 0, "topK must be positive: %s", topK);
+    this.cache = checkNotNull(cache);
+    this.scheduler = checkNotNull(scheduler);
+    this.topK = topK;
+    this.horizonMs = horizonMs;
+    this.rateLimiter = RateLimiter.create(requestsPerSecond);
+    // Sized so the top K stand out from the noise of the long tail
+    this.sketch = new CountMinSketch(4, Math.max(1024, topK * 16));
+    this.maxCandidates = topK * 4;
+    this.prefetches = metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "Prefetch"));
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Counts one lookup for a location. Cheap enough to call for every request.
+   *
+   * @param key Location normalized by {@link WeatherServiceCache#normalize(String)}
+   */
+  public void record(String key) {
+    if (sketch.add(key) >= threshold
+        && candidates.size() < maxCandidates && !candidates.contains(key)) {
+      candidates.add(key);
+    }
+  }
+
+  /**
+   * Returns the locations kept fresh, most frequent first, as of the last iteration.
+   */
+  public ImmutableList<String> getTopLocations() {
+    return topLocations;
+  }
+
+  @Override
+  protected void runOneIteration() {
+    final Map<String, Integer> estimates = new HashMap<>();
+    for (String location : candidates) {
+      estimates.put(location, sketch.estimate(location));
+    }
+    List<String> ranked = new ArrayList<>(estimates.keySet());
+    Collections.sort(ranked, new Comparator<String>() {
+      @Override public int compare(String o1, String o2) {
+        return estimates.get(o2).compareTo(estimates.get(o1));
+      }});
+    List<String> top = ranked.subList(0, Math.min(topK, ranked.size()));
+    candidates.retainAll(top);
+    topLocations = ImmutableList.copyOf(top);
+
+    // Counts are halved below, so the next threshold is half the current K-th count
+    threshold = top.size() < topK ? 1 : Math.max(1, estimates.get(top.get(topK - 1)) / 2);
+    sketch.decay();
+
+    int refreshed = 0;
+    for (String location : topLocations) {
+      if (state() == State.STOPPING) {
+        break;
+      }
+      if (cache.isExpiring(location, horizonMs)) {
+        rateLimiter.acquire();
+        cache.refresh(location);
+        prefetches.mark();
+        ++refreshed;
+      }
+    }
+
+    logger.debug("Prefetched weather for {} of the top {} locations",
+        refreshed, topLocations.size());
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).omitNullValues()
+        .add("topK", topK)
+        .add("horizonMs", horizonMs)
+        .add("rate", rateLimiter.getRate())
+        .toString();
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically reloads the rules of a {@link WeatherInterceptor}, so rule changes are picked
+ * up without a restart.
+ */
+public class WeatherRulesReloader extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(WeatherRulesReloader.class);
+  private final WeatherInterceptor interceptor;
+  private final Scheduler scheduler;
+
+  public WeatherRulesReloader(WeatherInterceptor interceptor, Scheduler scheduler) {
+    this.interceptor = checkNotNull(interceptor);
+    this.scheduler = checkNotNull(scheduler);
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  protected void runOneIteration() {
+    try {
+      interceptor.reloadRules();
+    } catch (RuntimeException e) {
+      // Keep the current rules, and keep the schedule alive for the next attempt
+      logger.error("Failed to reload weather rules", e);
+    }
+  }
+}
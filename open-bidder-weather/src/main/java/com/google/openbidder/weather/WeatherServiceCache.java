@@ -16,21 +16,36 @@
 
 package com.google.openbidder.weather;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Ascii;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.Futures;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.openbidder.util.Clock;
 import com.google.openbidder.weather.model.Weather.WeatherConditions;
+import com.google.openbidder.weather.model.Weather.WeatherSnapshotEntry;
 import com.google.protobuf.TextFormat;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.Callable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -40,62 +55,301 @@ import javax.annotation.Nullable;
 /**
  * Caches weather lookup to avoid latency during requests.
  * <p>
- * The implementation here is too simple for a production service: we just populate the cache
- * on demand, the first time each location is requested. Entries are expired after some time,
- * because weather conditions change.  Ideally, we should also preload the weather conditions
- * for all locations we're expected to serve, so the very first request to each location
- * wouldn't pay the price of a slow call to the weather-reporting service.
+ * Locations are normalized (case, whitespace) and interned, so spelling variants share one
+ * entry. Lookups never wait for the weather-reporting service unless a deadline is configured
+ * and there's no data at all for the location: an entry older than the refresh period is
+ * still served while a background refresh runs, until it reaches the maximum staleness.
+ * Failed lookups are cached for a short time, so a failing service isn't hammered but is
+ * retried soon. Loads run on a bounded executor; when it's saturated, the load is dropped and
+ * counted, and retried on a later request.
  */
 public class WeatherServiceCache implements WeatherService {
   private static final Logger logger = LoggerFactory.getLogger(WeatherServiceCache.class);
-  private final Integer deadlineMs;
-  private final LoadingCache<String, Future<WeatherConditions>> cache;
+  private final WeatherService weatherSource;
+  private final Executor executor;
+  private final Clock clock;
+  private final int deadlineMs;
+  private final long refreshMs;
+  private final long maxStaleMs;
+  private final long negativeTtlMs;
+  private final Cache<String, Entry> cache;
+  private final ConcurrentMap<String, SettableFuture<Entry>> loading = new ConcurrentHashMap<>();
+  private final Interner<String> locations = Interners.newWeakInterner();
+  private final Meter hits;
+  private final Meter negativeHits;
+  private final Meter staleHits;
+  private final Meter misses;
+  private final Meter failures;
+  private final Meter rejections;
 
+  /**
+   * @param deadlineMs Maximum time to block on a location without any data; {@code null}
+   * or zero to never block (but still use the result if it's available immediately)
+   * @param refreshMs Age after which an entry is refreshed in the background
+   * @param maxStaleMs Age after which an entry is no longer served, even if a refresh failed
+   * @param negativeTtlMs Time before retrying a location whose lookup failed
+   * @param maximumSize Maximum number of locations cached
+   */
   public WeatherServiceCache(
-      Integer deadlineMs, final WeatherService weatherSource, final ExecutorService executor) {
-    this.deadlineMs = deadlineMs;
+      WeatherService weatherSource,
+      Executor executor,
+      Clock clock,
+      MetricRegistry metricRegistry,
+      @Nullable Integer deadlineMs,
+      long refreshMs,
+      long maxStaleMs,
+      long negativeTtlMs,
+      long maximumSize) {
+    checkArgument(refreshMs > 0 && maxStaleMs >= refreshMs,
+        "Need 0 < refreshMs (%s) <= maxStaleMs (%s)", refreshMs, maxStaleMs);
+    checkArgument(negativeTtlMs > 0, "negativeTtlMs must be positive: %s", negativeTtlMs);
+    this.weatherSource = checkNotNull(weatherSource);
+    this.executor = checkNotNull(executor);
+    this.clock = checkNotNull(clock);
+    this.deadlineMs = deadlineMs == null ? 0 : deadlineMs;
+    this.refreshMs = refreshMs;
+    this.maxStaleMs = maxStaleMs;
+    this.negativeTtlMs = negativeTtlMs;
     this.cache = CacheBuilder.newBuilder()
-        .refreshAfterWrite(2, TimeUnit.HOURS)
-        .maximumSize(1000000)
-        .build(new CacheLoader<String, Future<WeatherConditions>>() {
-          @Override public Future<WeatherConditions> load(final String location) {
-            try {
-              return executor.submit(new Callable<WeatherConditions>() {
-                @Override public WeatherConditions call() throws Exception {
-                  return weatherSource.getWeatherConditions(location);
-              }});
-            } catch (RejectedExecutionException e) {
-              logger.warn("{}: {}", location, e.toString());
-              return Futures.immediateFuture(null);
-            }
-          }});
+        .maximumSize(maximumSize)
+        .expireAfterWrite(maxStaleMs, TimeUnit.MILLISECONDS)
+        .build();
+    this.hits = metricRegistry.meter(MetricRegistry.name(WeatherInterceptor.class, "CacheHit"));
+    this.negativeHits = metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheNegativeHit"));
+    this.staleHits = metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheStaleHit"));
+    this.misses = metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheMiss"));
+    this.failures = metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheLoadFailure"));
+    this.rejections = metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheRejected"));
   }
 
   public long size() {
     return cache.size();
   }
 
+  /**
+   * Writes all cached conditions as length-delimited {@link WeatherSnapshotEntry}s.
+   * Failed lookups are not written.
+   *
+   * @return Number of entries written
+   */
+  public int writeSnapshot(OutputStream out) throws IOException {
+    WeatherSnapshotEntry.Builder builder = WeatherSnapshotEntry.newBuilder();
+    int count = 0;
+    for (Map.Entry<String, Entry> mapEntry : cache.asMap().entrySet()) {
+      Entry entry = mapEntry.getValue();
+      if (entry.conditions != null) {
+        builder.clear()
+            .setLocation(mapEntry.getKey())
+            .setConditions(entry.conditions)
+            .setFetchedMillis(entry.fetchedMillis)
+            .build().writeDelimitedTo(out);
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Preloads conditions from a snapshot written by {@link #writeSnapshot(OutputStream)}.
+   * Entries older than the maximum staleness are skipped, and entries that are not fresh
+   * anymore will be refreshed on their first use.
+   *
+   * @return Number of entries loaded
+   */
+  public int readSnapshot(InputStream in) throws IOException {
+    long now = clock.now().getMillis();
+    int count = 0;
+    for (WeatherSnapshotEntry snapshotEntry = WeatherSnapshotEntry.PARSER.parseDelimitedFrom(in);
+        snapshotEntry != null;
+        snapshotEntry = WeatherSnapshotEntry.PARSER.parseDelimitedFrom(in)) {
+      if (preload(snapshotEntry.getLocation(), snapshotEntry.getConditions(),
+          snapshotEntry.getFetchedMillis(), now)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private boolean preload(
+      String location, WeatherConditions conditions, long fetchedMillis, long now) {
+    if (now - fetchedMillis >= maxStaleMs) {
+      return false;
+    }
+    Entry entry = new Entry(conditions, fetchedMillis, fetchedMillis + refreshMs);
+    return cache.asMap().putIfAbsent(normalize(location), entry) == null;
+  }
+
   @Override
   public @Nullable WeatherConditions getWeatherConditions(String location) {
-    try {
-      Stopwatch stopwatch = Stopwatch.createStarted();
-      Future<WeatherConditions> future = cache.getUnchecked(location);
-      WeatherConditions ret = deadlineMs == null
-          ? (future.isDone() ? future.get() : null)
-          : future.get(deadlineMs, TimeUnit.MILLISECONDS);
-
-      if (ret != null && logger.isDebugEnabled()) {
-        logger.debug("{}: Obtained weather conditions in {}ms: {}",
-            location, stopwatch.elapsed(TimeUnit.MILLISECONDS), TextFormat.shortDebugString(ret));
+    return getNormalizedConditions(normalize(location));
+  }
+
+  /**
+   * Same as {@link #getWeatherConditions(String)}, for a key from {@link #normalize(String)}.
+   */
+  @Nullable WeatherConditions getNormalizedConditions(String key) {
+    Entry entry = cache.getIfPresent(key);
+    long now = clock.now().getMillis();
+
+    // A failed lookup past its negative TTL is a plain miss: there's nothing stale to serve
+    if (entry != null && now - entry.fetchedMillis < maxStaleMs
+        && (entry.conditions != null || now < entry.refreshMillis)) {
+      if (now >= entry.refreshMillis) {
+        staleHits.mark();
+        load(key);
+      } else if (entry.conditions == null) {
+        negativeHits.mark();
+      } else {
+        hits.mark();
       }
+      return entry.conditions;
+    }
 
-      return ret;
+    misses.mark();
+    return await(key, load(key));
+  }
+
+  /**
+   * Returns {@code true} if a location has no cached data, or if its data is due for refresh
+   * within {@code horizonMs}. Locations that are currently loading are never expiring.
+   */
+  public boolean isExpiring(String location, long horizonMs) {
+    String key = normalize(location);
+    if (loading.containsKey(key)) {
+      return false;
+    }
+    Entry entry = cache.getIfPresent(key);
+    return entry == null || clock.now().getMillis() + horizonMs >= entry.refreshMillis;
+  }
+
+  /**
+   * Starts a background refresh for a location, unless it's already being loaded.
+   */
+  public void refresh(String location) {
+    load(normalize(location));
+  }
+
+  private @Nullable WeatherConditions await(String key, ListenableFuture<Entry> future) {
+    try {
+      Entry entry = future.get(deadlineMs, TimeUnit.MILLISECONDS);
+      return entry == null ? null : entry.conditions;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
       return null;
     } catch (ExecutionException | TimeoutException e) {
-      logger.warn("{}: {}", location, e.toString());
+      logger.debug("{}: {}", key, e.toString());
       return null;
     }
   }
+
+  /**
+   * Starts loading a location, unless it's already being loaded.
+   *
+   * @return Future for the new entry; completes with {@code null} if the load was rejected
+   */
+  private ListenableFuture<Entry> load(final String key) {
+    final SettableFuture<Entry> future = SettableFuture.create();
+    SettableFuture<Entry> existing = loading.putIfAbsent(key, future);
+    if (existing != null) {
+      return existing;
+    }
+
+    try {
+      executor.execute(new Runnable() {
+        @Override public void run() {
+          Entry entry = fetch(key, cache.getIfPresent(key));
+          cache.put(key, entry);
+          loading.remove(key);
+          future.set(entry);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      rejections.mark();
+      loading.remove(key);
+      future.set(null);
+    }
+
+    return future;
+  }
+
+  private Entry fetch(String key, @Nullable Entry previous) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    WeatherConditions conditions;
+    try {
+      conditions = weatherSource.getWeatherConditions(key);
+    } catch (RuntimeException e) {
+      logger.warn("{}: {}", key, e.toString());
+      conditions = null;
+    }
+    long now = clock.now().getMillis();
+
+    if (conditions == null) {
+      failures.mark();
+      // Keep serving the last good data, if not too old, but retry soon
+      return previous != null && previous.conditions != null
+          && now - previous.fetchedMillis < maxStaleMs
+          ? new Entry(previous.conditions, previous.fetchedMillis, now + negativeTtlMs)
+          : new Entry(null, now, now + negativeTtlMs);
+    }
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("{}: Obtained weather conditions in {}ms: {}",
+          key, stopwatch.elapsed(TimeUnit.MILLISECONDS), TextFormat.shortDebugString(conditions));
+    }
+    return new Entry(conditions, now, now + refreshMs);
+  }
+
+  /**
+   * Normalizes a location to a canonical, interned key: lowercase, with whitespace trimmed,
+   * collapsed and removed around commas. Already-normalized locations are not copied.
+   */
+  String normalize(String location) {
+    StringBuilder sb = null;
+    boolean pendingSpace = false;
+
+    for (int i = 0; i < location.length(); ++i) {
+      char c = location.charAt(i);
+      char n = Ascii.toLowerCase(c);
+
+      if (Character.isWhitespace(c)) {
+        if (sb == null) {
+          sb = new StringBuilder(location.length()).append(location, 0, i);
+        }
+        pendingSpace = true;
+        continue;
+      }
+
+      if (sb != null) {
+        if (pendingSpace && n != ',' && sb.length() != 0 && sb.charAt(sb.length() - 1) != ',') {
+          sb.append(' ');
+        }
+        sb.append(n);
+      } else if (n != c) {
+        sb = new StringBuilder(location.length()).append(location, 0, i).append(n);
+      }
+      pendingSpace = false;
+    }
+
+    return locations.intern(sb == null ? location : sb.toString());
+  }
+
+  /**
+   * A cached lookup result; {@code conditions} is {@code null} for a failed lookup.
+   */
+  static final class Entry {
+    final @Nullable WeatherConditions conditions;
+    final long fetchedMillis;
+    final long refreshMillis;
+
+    Entry(@Nullable WeatherConditions conditions, long fetchedMillis, long refreshMillis) {
+      this.conditions = conditions;
+      this.fetchedMillis = fetchedMillis;
+      this.refreshMillis = refreshMillis;
+    }
+  }
 }
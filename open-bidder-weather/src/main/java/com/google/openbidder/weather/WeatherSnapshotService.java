@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.AbstractScheduledService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Periodically saves the contents of a {@link WeatherServiceCache} to a local file, and
+ * preloads the cache from that file on startup. Services are started before the server
+ * accepts traffic, so a restarted bidder has weather data from its first request.
+ * <p>
+ * The file is replaced atomically, so a crash while saving leaves the previous snapshot.
+ */
+public class WeatherSnapshotService extends AbstractScheduledService {
+  private static final Logger logger = LoggerFactory.getLogger(WeatherSnapshotService.class);
+  private final WeatherServiceCache cache;
+  private final Path path;
+  private final Scheduler scheduler;
+
+  public WeatherSnapshotService(WeatherServiceCache cache, File file, Scheduler scheduler) {
+    this.cache = checkNotNull(cache);
+    this.path = file.toPath();
+    this.scheduler = checkNotNull(scheduler);
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  protected void startUp() {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+      int count = cache.readSnapshot(in);
+      logger.info("Preloaded {} weather conditions from {}", count, path);
+    } catch (NoSuchFileException e) {
+      logger.info("No weather snapshot at {}, starting with an empty cache", path);
+    } catch (IOException | RuntimeException e) {
+      // A bad snapshot only costs a cold cache, it shouldn't keep the bidder down
+      logger.warn("Failed to preload weather snapshot {}: {}", path, e.toString());
+    }
+  }
+
+  @Override
+  protected void runOneIteration() {
+    save();
+  }
+
+  @Override
+  protected void shutDown() {
+    save();
+  }
+
+  /**
+   * Writes a new snapshot.
+   *
+   * @return {@code true} if successful
+   */
+  public boolean save() {
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      int count;
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+        count = cache.writeSnapshot(out);
+      }
+      Files.move(temp, path,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      logger.debug("Saved {} weather conditions to {}", count, path);
+      return true;
+    } catch (IOException e) {
+      logger.warn("Failed to save weather snapshot {}: {}", path, e.toString());
+      return false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).omitNullValues()
+        .add("path", path)
+        .toString();
+  }
+}
@@ -16,19 +16,29 @@
 
 package com.google.openbidder.weather.config;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.Service;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
 import com.google.inject.util.Providers;
 import com.google.openbidder.cloudstorage.GoogleCloudStorage;
+import com.google.openbidder.util.Clock;
 import com.google.openbidder.weather.WeatherDao;
 import com.google.openbidder.weather.WeatherDaoCloudStorage;
 import com.google.openbidder.weather.WeatherInterceptor;
+import com.google.openbidder.weather.WeatherPrefetcher;
+import com.google.openbidder.weather.WeatherRulesReloader;
 import com.google.openbidder.weather.WeatherService;
 import com.google.openbidder.weather.WeatherServiceCache;
 import com.google.openbidder.weather.WeatherServiceOpenWeatherMap;
+import com.google.openbidder.weather.WeatherSnapshotService;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
@@ -38,8 +48,10 @@ import com.codahale.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -59,6 +71,44 @@ public class WeatherModule extends AbstractModule {
   @Parameter(names = "--weather_cache_timeout", required = false,
       description = "Deadline for blocking reads to the weather data cache (ms; 0=never block)")
   private Integer cacheTimeout;
+  @Parameter(names = "--weather_refresh_minutes",
+      description = "Age after which weather data is refreshed in the background")
+  private int refreshMinutes = 120;
+  @Parameter(names = "--weather_max_stale_minutes",
+      description = "Age after which weather data is no longer used, if refreshes failed")
+  private int maxStaleMinutes = 360;
+  @Parameter(names = "--weather_negative_ttl_seconds",
+      description = "Time before retrying a location whose weather lookup failed")
+  private int negativeTtlSeconds = 60;
+  @Parameter(names = "--weather_loader_threads",
+      description = "Maximum threads loading weather data")
+  private int loaderThreads = 8;
+  @Parameter(names = "--weather_loader_queue",
+      description = "Maximum pending weather loads; more are dropped and counted")
+  private int loaderQueue = 1000;
+  @Parameter(names = "--weather_snapshot_file",
+      description = "Local file to periodically save weather data to, and preload it from "
+          + "on startup (empty=disabled)")
+  private String snapshotFile;
+  @Parameter(names = "--weather_snapshot_period_seconds",
+      description = "Period for saving weather data to the snapshot file")
+  private int snapshotPeriodSeconds = 300;
+  @Parameter(names = "--weather_prefetch_top",
+      description = "Number of most frequent locations to keep fresh in the background "
+          + "(0=disabled)")
+  private int prefetchTop = 1000;
+  @Parameter(names = "--weather_prefetch_period_seconds",
+      description = "Period for ranking locations and prefetching their weather data")
+  private int prefetchPeriodSeconds = 60;
+  @Parameter(names = "--weather_prefetch_rate",
+      description = "Maximum weather prefetch requests per second")
+  private double prefetchRate = 5.0;
+  @Parameter(names = "--weather_rules_reload_seconds",
+      description = "Period for reloading weather rules from the bucket (0=load only at startup)")
+  private int rulesReloadSeconds = 300;
+  @Parameter(names = "--weather_rules_fetch_threads",
+      description = "Maximum concurrent fetches of changed weather rules")
+  private int rulesFetchThreads = 8;
 
   @Override
   protected void configure() {
@@ -73,33 +123,77 @@ public class WeatherModule extends AbstractModule {
     }
   }
 
-  private static class ImplModule extends AbstractModule {
-    @Override protected void configure() {}
+  private class ImplModule extends AbstractModule {
+    @Override protected void configure() {
+      bind(WeatherService.class).to(WeatherServiceCache.class);
+      if (!Strings.isNullOrEmpty(snapshotFile)) {
+        checkArgument(snapshotPeriodSeconds > 0,
+            "--weather_snapshot_period_seconds must be greater than 0");
+        Multibinder.newSetBinder(binder(), Service.class).addBinding()
+            .to(WeatherSnapshotService.class);
+        logger.info("Weather snapshot: {}, saved every {}s", snapshotFile, snapshotPeriodSeconds);
+      }
+      if (prefetchTop > 0) {
+        checkArgument(prefetchPeriodSeconds > 0,
+            "--weather_prefetch_period_seconds must be greater than 0");
+        checkArgument(prefetchRate > 0, "--weather_prefetch_rate must be greater than 0");
+        Multibinder.newSetBinder(binder(), Service.class).addBinding()
+            .to(WeatherPrefetcher.class);
+        logger.info("Weather prefetch: top {} locations, every {}s, up to {}/s",
+            prefetchTop, prefetchPeriodSeconds, prefetchRate);
+      }
+      if (rulesReloadSeconds > 0) {
+        Multibinder.newSetBinder(binder(), Service.class).addBinding()
+            .to(WeatherRulesReloader.class);
+      }
+    }
 
     @Provides @Singleton
     public WeatherDao provideWeatherDao(
         GoogleCloudStorage cloudStorage,
         @WeatherStorageBucket String storageBucket) {
-      return new WeatherDaoCloudStorage(cloudStorage, storageBucket);
+      checkArgument(rulesFetchThreads > 0,
+          "--weather_rules_fetch_threads must be greater than 0");
+      return new WeatherDaoCloudStorage(cloudStorage, storageBucket,
+          Executors.newFixedThreadPool(rulesFetchThreads, new ThreadFactoryBuilder()
+              .setNameFormat("weather-rules-%d").setDaemon(true).build()));
+    }
+
+    @Provides @Singleton
+    public WeatherRulesReloader provideWeatherRulesReloader(WeatherInterceptor interceptor) {
+      return new WeatherRulesReloader(interceptor, Scheduler.newFixedDelaySchedule(
+          rulesReloadSeconds, rulesReloadSeconds, TimeUnit.SECONDS));
     }
 
     @Provides @Singleton
-    public WeatherService provideWeatherService(
+    public WeatherServiceCache provideWeatherServiceCache(
         JsonFactory jsonFactory,
         HttpTransport httpTransport,
         MetricRegistry metricRegistry,
+        Clock clock,
         @Nullable @WeatherCacheTimeout Integer cacheTimeout) {
-      final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+      final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(loaderQueue);
       metricRegistry.register(
           MetricRegistry.name(WeatherInterceptor.class, "CacheQueue"),
           new Gauge<Integer>() {
             @Override public Integer getValue() { return queue.size(); }
           });
+      // Limit threads to not overload the server. Core size = max size, because a
+      // ThreadPoolExecutor only grows past its core size when the queue is full.
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+          loaderThreads, loaderThreads, 60L, TimeUnit.SECONDS, queue,
+          new ThreadFactoryBuilder().setNameFormat("weather-%d").setDaemon(true).build());
+      executor.allowCoreThreadTimeOut(true);
       final WeatherServiceCache cache = new WeatherServiceCache(
-          cacheTimeout,
           new WeatherServiceOpenWeatherMap(jsonFactory, httpTransport),
-          // Limit threads to not overload the server
-          new ThreadPoolExecutor(1, 8, 60L, TimeUnit.SECONDS, queue));
+          executor,
+          clock,
+          metricRegistry,
+          cacheTimeout,
+          TimeUnit.MINUTES.toMillis(refreshMinutes),
+          TimeUnit.MINUTES.toMillis(maxStaleMinutes),
+          TimeUnit.SECONDS.toMillis(negativeTtlSeconds),
+          1000000);
       metricRegistry.register(
           MetricRegistry.name(WeatherInterceptor.class, "CacheSize"),
           new Gauge<Long>() {
@@ -107,5 +201,25 @@ public class WeatherModule extends AbstractModule {
           });
       return cache;
     }
+
+    @Provides @Singleton
+    public WeatherSnapshotService provideWeatherSnapshotService(WeatherServiceCache cache) {
+      long periodMs = TimeUnit.SECONDS.toMillis(snapshotPeriodSeconds);
+      return new WeatherSnapshotService(cache, new File(snapshotFile),
+          Scheduler.newFixedDelaySchedule(periodMs, periodMs, TimeUnit.MILLISECONDS));
+    }
+
+    @Provides @Singleton @Nullable
+    public WeatherPrefetcher provideWeatherPrefetcher(
+        WeatherServiceCache cache, MetricRegistry metricRegistry) {
+      if (prefetchTop <= 0) {
+        return null;
+      }
+      long periodMs = TimeUnit.SECONDS.toMillis(prefetchPeriodSeconds);
+      // Look two periods ahead, so data is refreshed before it's due even if a pass runs late
+      return new WeatherPrefetcher(cache,
+          Scheduler.newFixedDelaySchedule(periodMs, periodMs, TimeUnit.MILLISECONDS),
+          metricRegistry, prefetchTop, periodMs * 2, prefetchRate);
+    }
   }
 }
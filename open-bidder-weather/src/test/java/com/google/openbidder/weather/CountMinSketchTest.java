@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CountMinSketch}.
+ */
+public class CountMinSketchTest {
+
+  @Test
+  public void testEstimates() {
+    CountMinSketch sketch = new CountMinSketch(4, 1000);
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i + 1, sketch.add("hot"));
+      sketch.add("key" + i);
+    }
+    assertEquals(100, sketch.estimate("hot"));
+    for (int i = 0; i < 100; ++i) {
+      assertTrue(sketch.estimate("key" + i) >= 1);
+    }
+    assertEquals(0, sketch.estimate("never"));
+
+    sketch.decay();
+    assertEquals(50, sketch.estimate("hot"));
+  }
+}
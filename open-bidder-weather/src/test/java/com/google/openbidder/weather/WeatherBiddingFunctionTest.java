@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.openbidder.weather.model.Weather.WeatherBiddingRule;
+import com.google.openbidder.weather.model.Weather.WeatherConditions;
+import com.google.openbidder.weather.model.Weather.WeatherRules;
+import com.google.openbidder.weather.model.Weather.WeatherTarget;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link WeatherBiddingFunction}.
+ */
+public class WeatherBiddingFunctionTest {
+
+  @Test
+  public void testHighestMatchingMultiplier() {
+    WeatherBiddingFunction function = new WeatherBiddingFunction(WeatherRules.newBuilder()
+        .setOwnerId("1")
+        .addRules(rule(WeatherTarget.newBuilder().setMinTemp(50).setMaxTemp(60), 0.5))
+        .addRules(rule(WeatherTarget.newBuilder().setMinHumidity(0.5), 1.0))
+        .addRules(rule(WeatherTarget.newBuilder().setMinTemp(55).setMaxWind(20), 0.9))
+        .build());
+
+    assertEquals(0.9, function.apply(conditions(57, 10, 0.2)), 1e-9);
+    assertEquals(0.5, function.apply(conditions(57, 30, 0.2)), 1e-9);
+    assertEquals(1.0, function.apply(conditions(57, 10, 0.5)), 1e-9);
+    assertEquals(0.9, function.apply(90, 0, 0.1, -1), 1e-9);
+    assertNull(function.apply(conditions(40, 10, 0.2)));
+    assertEquals(-1, function.apply(40, 10, 0.2, -1), 1e-9);
+  }
+
+  @Test
+  public void testUnbounded() {
+    WeatherBiddingFunction function = new WeatherBiddingFunction(WeatherRules.newBuilder()
+        .setOwnerId("1")
+        .addRules(rule(WeatherTarget.newBuilder(), 0.3))
+        .build());
+
+    assertEquals(0.3, function.apply(Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1), 1e-9);
+    assertEquals(-1, new WeatherBiddingFunction(WeatherRules.newBuilder().setOwnerId("2").build())
+        .apply(0, 0, 0, -1), 1e-9);
+  }
+
+  private static WeatherBiddingRule rule(WeatherTarget.Builder target, double multiplier) {
+    return WeatherBiddingRule.newBuilder().setTarget(target).setMultiplier(multiplier).build();
+  }
+
+  private static WeatherConditions conditions(int temp, int wind, double humidity) {
+    return WeatherConditions.newBuilder()
+        .setTempFahrenheit(temp).setWindMph(wind).setHumidityPercent(humidity).build();
+  }
+}
@@ -18,10 +18,11 @@ package com.google.openbidder.weather;
 
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.api.client.http.HttpResponseException;
-import com.google.openbidder.cloudstorage.GoogleCloudStorage;
+import com.google.common.collect.ImmutableList;
 import com.google.openbidder.cloudstorage.testing.FakeGoogleCloudStorage;
 import com.google.openbidder.util.testing.FakeClock;
 import com.google.openbidder.weather.model.Weather.WeatherBiddingRule;
@@ -31,15 +32,18 @@ import com.google.openbidder.weather.model.Weather.WeatherTarget;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.List;
+
 /**
  * Unit tests for {@link WeatherDao}.
  */
 public class WeatherDaoTest {
+  private FakeGoogleCloudStorage cloudStorage;
   private WeatherDao weatherDao;
 
   @Before
   public void setUp() throws HttpResponseException {
-    GoogleCloudStorage cloudStorage = new FakeGoogleCloudStorage(new FakeClock());
+    cloudStorage = new FakeGoogleCloudStorage(new FakeClock());
     cloudStorage.putBucket("weather-0");
     weatherDao = new WeatherDaoCloudStorage(cloudStorage, "weather-0");
   }
@@ -61,4 +65,41 @@ public class WeatherDaoTest {
     weatherDao.deleteRules("0");
     assertTrue(weatherDao.listRules().isEmpty());
   }
+
+  @Test
+  public void testIncrementalList() {
+    weatherDao.insert(rules("0", 1.0));
+    weatherDao.insert(rules("1", 1.0));
+    List<WeatherRules> list1 = weatherDao.listRules();
+    assertEquals(ImmutableList.of(rules("0", 1.0), rules("1", 1.0)), list1);
+
+    // Unchanged objects are not fetched again
+    List<WeatherRules> list2 = weatherDao.listRules();
+    assertSame(list1.get(0), list2.get(0));
+    assertSame(list1.get(1), list2.get(1));
+
+    weatherDao.insert(rules("0", 0.5));
+    List<WeatherRules> list3 = weatherDao.listRules();
+    assertEquals(rules("0", 0.5), list3.get(0));
+    assertSame(list1.get(1), list3.get(1));
+
+    // Failed listing keeps the last good rules
+    cloudStorage.forceHttpError(500, 1);
+    assertEquals(list3, weatherDao.listRules());
+
+    // Failed fetch keeps the last good version of that object
+    weatherDao.insert(rules("0", 0.8));
+    cloudStorage.forceHttpError(500, 2);
+    assertEquals(list3, weatherDao.listRules());
+    assertEquals(rules("0", 0.8), weatherDao.listRules().get(0));
+  }
+
+  private static WeatherRules rules(String ownerId, double multiplier) {
+    return WeatherRules.newBuilder()
+        .setOwnerId(ownerId)
+        .addRules(WeatherBiddingRule.newBuilder()
+            .setTarget(WeatherTarget.newBuilder().setMinTemp(50))
+            .setMultiplier(multiplier))
+        .build();
+  }
 }
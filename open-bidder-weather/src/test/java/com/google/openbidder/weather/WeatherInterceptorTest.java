@@ -58,6 +58,9 @@ import javax.annotation.Nullable;
 public class WeatherInterceptorTest {
   private static final String CID_AMUSEMENT_PARK = "1";
   private static final String CID_SAILING_CRUISE = "2";
+  private static final String CID_SKI_RESORT = "3";
+  private WeatherDao weatherDao;
+  private WeatherInterceptor interceptor;
   private BidController controller;
 
   @Before
@@ -66,7 +69,7 @@ public class WeatherInterceptorTest {
     cloudStorage.putBucket("weather-0");
 
     // Fake data for our tests
-    WeatherDao weatherDao = new WeatherDaoCloudStorage(cloudStorage, "weather-0");
+    weatherDao = new WeatherDaoCloudStorage(cloudStorage, "weather-0");
 
     weatherDao.insert(WeatherRules.newBuilder().setOwnerId(CID_AMUSEMENT_PARK)
         .addRules(WeatherBiddingRule.newBuilder()
@@ -108,8 +111,9 @@ public class WeatherInterceptorTest {
             .setTempFahrenheit(55).setWindMph(5).setHumidityPercent(0.1).build())
     );
 
+    interceptor = new WeatherInterceptor(weatherDao, weatherService);
     controller = BiddingTestUtil.newBidController(
-        new WeatherInterceptor(weatherDao, weatherService),
+        interceptor,
         new BidInterceptor() {
           @Override public void execute(InterceptorChain<BidRequest, BidResponse> chain) {
             for (Imp imp : chain.request().imps()) {
@@ -158,6 +162,22 @@ public class WeatherInterceptorTest {
     assertEquals(0.2, run(CID_AMUSEMENT_PARK, null), 1e-9);
   }
 
+  @Test
+  public void testReloadRules() {
+    // No rules for this campaign; bid untouched
+    assertEquals(1.0, run(CID_SKI_RESORT, "New York,USA"), 1e-9);
+
+    weatherDao.insert(WeatherRules.newBuilder().setOwnerId(CID_SKI_RESORT)
+        .addRules(WeatherBiddingRule.newBuilder()
+            .setTarget(WeatherTarget.newBuilder().setMaxTemp(32))
+            .setMultiplier(1.0))
+        .build());
+    interceptor.reloadRules();
+    // Too hot; min bid
+    assertEquals(0.2, run(CID_SKI_RESORT, "New York,USA"), 1e-9);
+    assertEquals(0.8, run(CID_AMUSEMENT_PARK, "Paris,FRA"), 1e-9);
+  }
+
   private double run(String cid, @Nullable String location) {
     OpenRtb.BidRequest.Builder openrtbRequest = OpenRtb.BidRequest.newBuilder()
         .setId("1")
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.http.HttpStatusCodes;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService.Scheduler;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.openbidder.util.testing.FakeClock;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link WeatherPrefetcher}.
+ */
+public class WeatherPrefetcherTest {
+  private static final long REFRESH = TimeUnit.MINUTES.toMillis(120);
+  private static final long HORIZON = TimeUnit.MINUTES.toMillis(2);
+  private static final String RESPONSE =
+      "{\"main\":{\"temp\":70.5,\"humidity\":40},\"wind\":{\"speed\":10.2}}";
+
+  private final FakeClock clock = new FakeClock(new Instant(0), Duration.ZERO);
+  private final List<String> urls = new ArrayList<>();
+  private WeatherServiceCache cache;
+  private WeatherPrefetcher prefetcher;
+
+  @Before
+  public void setUp() {
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override public LowLevelHttpRequest buildRequest(String method, String url) {
+        urls.add(url);
+        return new MockLowLevelHttpRequest() {
+          @Override public LowLevelHttpResponse execute() {
+            MockLowLevelHttpResponse result = new MockLowLevelHttpResponse();
+            result.setContentType(Json.MEDIA_TYPE);
+            result.setContent(RESPONSE);
+            result.setStatusCode(HttpStatusCodes.STATUS_CODE_OK);
+            return result;
+          }};
+      }};
+    MetricRegistry metricRegistry = new MetricRegistry();
+    cache = new WeatherServiceCache(
+        new WeatherServiceOpenWeatherMap(new JacksonFactory(), transport),
+        MoreExecutors.directExecutor(), clock, metricRegistry,
+        null, REFRESH, REFRESH * 3, 1000, 100);
+    prefetcher = new WeatherPrefetcher(cache,
+        Scheduler.newFixedDelaySchedule(1, 1, TimeUnit.MINUTES), metricRegistry,
+        2, HORIZON, 1000.0);
+  }
+
+  @Test
+  public void testPrefetchTopLocations() {
+    record("New York,USA", 5);
+    record("Paris, FRA", 3);
+    record("Rio de Janeiro,BRA", 1);
+
+    prefetcher.runOneIteration();
+    assertEquals(ImmutableList.of("new york,usa", "paris,fra"), prefetcher.getTopLocations());
+    assertEquals(2, urls.size());
+    assertEquals(2, cache.size());
+    assertNotNull(cache.getWeatherConditions("New York,USA"));
+    assertEquals(2, urls.size());
+
+    // Still fresh, nothing to do
+    prefetcher.runOneIteration();
+    assertEquals(2, urls.size());
+
+    // Refreshed ahead of time
+    clock.setNow(REFRESH - HORIZON);
+    prefetcher.runOneIteration();
+    assertEquals(4, urls.size());
+  }
+
+  @Test
+  public void testRankingFollowsTraffic() {
+    record("New York,USA", 8);
+    record("Paris,FRA", 4);
+    prefetcher.runOneIteration();
+    assertEquals(ImmutableList.of("new york,usa", "paris,fra"), prefetcher.getTopLocations());
+
+    // Old counts decay, so a location that's now busier takes over
+    record("Rio de Janeiro,BRA", 16);
+    record("Paris,FRA", 8);
+    prefetcher.runOneIteration();
+    assertEquals(ImmutableList.of("rio de janeiro,bra", "paris,fra"),
+        prefetcher.getTopLocations());
+    assertTrue(urls.get(urls.size() - 1).contains("rio"));
+  }
+
+  private void record(String location, int times) {
+    for (int i = 0; i < times; ++i) {
+      prefetcher.record(cache.normalize(location));
+    }
+  }
+}
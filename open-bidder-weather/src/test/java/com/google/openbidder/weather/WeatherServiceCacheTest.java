@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.openbidder.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.openbidder.util.testing.FakeClock;
+import com.google.openbidder.weather.model.Weather.WeatherConditions;
+
+import com.codahale.metrics.MetricRegistry;
+
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests for {@link WeatherServiceCache}.
+ */
+public class WeatherServiceCacheTest {
+  private static final long REFRESH = 1000;
+  private static final long MAX_STALE = 5000;
+  private static final long NEGATIVE_TTL = 100;
+  private static final WeatherConditions SUNNY = WeatherConditions.newBuilder()
+      .setTempFahrenheit(80).setWindMph(5).setHumidityPercent(0.3).build();
+  private static final WeatherConditions RAINY = WeatherConditions.newBuilder()
+      .setTempFahrenheit(60).setWindMph(20).setHumidityPercent(0.9).build();
+
+  private final FakeClock clock = new FakeClock(new Instant(0), Duration.ZERO);
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final Executor queueingExecutor = new Executor() {
+    @Override public void execute(Runnable command) {
+      tasks.add(command);
+    }
+  };
+  private CountingWeatherService source;
+
+  @Before
+  public void setUp() {
+    source = new CountingWeatherService();
+  }
+
+  @Test
+  public void testLoadAndHit() {
+    WeatherServiceCache cache = newCache(directExecutor());
+    source.conditions = SUNNY;
+    assertSame(SUNNY, cache.getWeatherConditions("New York,USA"));
+    assertSame(SUNNY, cache.getWeatherConditions(" new york , usa"));
+    assertEquals(1, source.calls);
+    assertEquals("new york,usa", source.lastLocation);
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testStaleWhileRevalidate() {
+    WeatherServiceCache cache = newCache(queueingExecutor);
+    source.conditions = SUNNY;
+    assertNull(cache.getWeatherConditions("Paris,FRA"));
+    runTasks();
+    assertSame(SUNNY, cache.getWeatherConditions("Paris,FRA"));
+
+    clock.setNow(REFRESH);
+    source.conditions = RAINY;
+    // Stale value served while refreshing, and only one refresh is queued
+    assertSame(SUNNY, cache.getWeatherConditions("Paris,FRA"));
+    assertSame(SUNNY, cache.getWeatherConditions("Paris,FRA"));
+    assertEquals(1, tasks.size());
+    runTasks();
+    assertSame(RAINY, cache.getWeatherConditions("Paris,FRA"));
+    assertEquals(2, source.calls);
+  }
+
+  @Test
+  public void testFailedRefreshKeepsStaleValue() {
+    WeatherServiceCache cache = newCache(directExecutor());
+    source.conditions = SUNNY;
+    assertSame(SUNNY, cache.getWeatherConditions("Paris,FRA"));
+
+    clock.setNow(REFRESH);
+    source.conditions = null;
+    assertSame(SUNNY, cache.getWeatherConditions("Paris,FRA"));
+    assertSame(SUNNY, cache.getWeatherConditions("Paris,FRA"));
+    assertEquals(2, source.calls);
+
+    clock.setNow(MAX_STALE);
+    assertNull(cache.getWeatherConditions("Paris,FRA"));
+  }
+
+  @Test
+  public void testNegativeCaching() {
+    WeatherServiceCache cache = newCache(directExecutor());
+    assertNull(cache.getWeatherConditions("Atlantis,XXX"));
+    assertNull(cache.getWeatherConditions("Atlantis,XXX"));
+    assertEquals(1, source.calls);
+    assertEquals(1, metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheNegativeHit")).getCount());
+    assertEquals(0, metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheHit")).getCount());
+
+    clock.setNow(NEGATIVE_TTL);
+    source.conditions = SUNNY;
+    assertSame(SUNNY, cache.getWeatherConditions("Atlantis,XXX"));
+    assertEquals(2, source.calls);
+  }
+
+  @Test
+  public void testRejected() {
+    WeatherServiceCache cache = newCache(new Executor() {
+      @Override public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    });
+    assertNull(cache.getWeatherConditions("Paris,FRA"));
+    assertNull(cache.getWeatherConditions("Paris,FRA"));
+    assertEquals(0, cache.size());
+    assertEquals(2, metricRegistry.meter(
+        MetricRegistry.name(WeatherInterceptor.class, "CacheRejected")).getCount());
+  }
+
+  @Test
+  public void testSnapshot() throws IOException {
+    WeatherServiceCache cache = newCache(directExecutor());
+    source.conditions = SUNNY;
+    assertSame(SUNNY, cache.getWeatherConditions("Paris,FRA"));
+    source.conditions = null;
+    assertNull(cache.getWeatherConditions("Atlantis,XXX"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // Failed lookups are not saved
+    assertEquals(1, cache.writeSnapshot(out));
+
+    clock.setNow(REFRESH);
+    WeatherServiceCache restored = newCache(queueingExecutor);
+    assertEquals(1, restored.readSnapshot(new ByteArrayInputStream(out.toByteArray())));
+    // Preloaded data is served right away, and refreshed since it's old enough
+    assertEquals(SUNNY, restored.getWeatherConditions("Paris, FRA"));
+    assertEquals(1, tasks.size());
+
+    clock.setNow(MAX_STALE);
+    WeatherServiceCache expired = newCache(queueingExecutor);
+    assertEquals(0, expired.readSnapshot(new ByteArrayInputStream(out.toByteArray())));
+    assertEquals(0, expired.size());
+  }
+
+  private WeatherServiceCache newCache(Executor executor) {
+    return new WeatherServiceCache(source, executor, clock, metricRegistry,
+        null, REFRESH, MAX_STALE, NEGATIVE_TTL, 100);
+  }
+
+  private void runTasks() {
+    for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+      task.run();
+    }
+  }
+
+  private static Executor directExecutor() {
+    return new Executor() {
+      @Override public void execute(Runnable command) {
+        command.run();
+      }
+    };
+  }
+
+  static class CountingWeatherService implements WeatherService {
+    @Nullable WeatherConditions conditions;
+    @Nullable String lastLocation;
+    int calls;
+
+    @Override public @Nullable WeatherConditions getWeatherConditions(String location) {
+      ++calls;
+      lastLocation = location;
+      return conditions;
+    }
+  }
+}
@@ -7,13 +7,17 @@ import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.common.base.Stopwatch;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.openbidder.util.SystemClock;
 import com.google.openbidder.weather.model.Weather.WeatherConditions;
 
+import com.codahale.metrics.MetricRegistry;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -54,8 +58,7 @@ public class WeatherServiceOpenWeatherMapTest {
   public void testCache() {
     if (!ENABLED) { return; }
 
-    WeatherService cache = new WeatherServiceCache(
-        TIMEOUT, service, MoreExecutors.newDirectExecutorService());
+    WeatherService cache = newCache(TIMEOUT, MoreExecutors.newDirectExecutorService());
     Stopwatch stopwatch1 = Stopwatch.createStarted();
     assertNotNull(cache.getWeatherConditions(LOCATION));
     logger.info("Weather lookup time (cache miss): {}ms",
@@ -74,8 +77,7 @@ public class WeatherServiceOpenWeatherMapTest {
   public void testCacheTimeout() throws InterruptedException {
     if (!ENABLED) { return; }
 
-    WeatherService cache = new WeatherServiceCache(
-        0, service, Executors.newFixedThreadPool(1, new ThreadFactory() {
+    WeatherService cache = newCache(0, Executors.newFixedThreadPool(1, new ThreadFactory() {
           @Override public Thread newThread(final Runnable r) {
             return new Thread() {
               @Override public void run() {
@@ -89,4 +91,10 @@ public class WeatherServiceOpenWeatherMapTest {
     Thread.sleep(TIMEOUT);
     assertNotNull(cache.getWeatherConditions(LOCATION));
   }
+
+  private static WeatherService newCache(Integer timeout, Executor executor) {
+    return new WeatherServiceCache(service, executor, new SystemClock(), new MetricRegistry(),
+        timeout, TimeUnit.MINUTES.toMillis(120), TimeUnit.MINUTES.toMillis(360),
+        TimeUnit.SECONDS.toMillis(60), 1000);
+  }
 }